@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.awsapi.ec2
+
+import java.net.{ InetAddress, URI }
+import java.util.concurrent.{ CompletableFuture, TimeoutException }
+import java.util.concurrent.atomic.AtomicReference
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.CollectionConverters._
+import scala.jdk.FutureConverters._
+import scala.util.Try
+import scala.util.control.NonFatal
+
+import org.apache.pekko
+import pekko.Done
+import pekko.actor.{ CoordinatedShutdown, ExtendedActorSystem }
+import pekko.annotation.{ ApiMayChange, InternalApi }
+import pekko.discovery.{ Lookup, ServiceDiscovery }
+import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
+import pekko.management.metrics.internal.ManagementMetrics
+import pekko.stream.{ Materializer, SystemMaterializer }
+import pekko.stream.scaladsl.{ Sink, Source }
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient
+import software.amazon.awssdk.regions.Region
+import software.amazon.awssdk.retries.DefaultRetryStrategy
+import software.amazon.awssdk.services.ec2.{ Ec2AsyncClient, Ec2AsyncClientBuilder }
+import software.amazon.awssdk.services.ec2.model.{ DescribeInstancesRequest, DescribeInstancesResponse, Filter }
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[ec2] object AsyncEc2TagBasedServiceDiscovery {
+
+  private[ec2] def parseFiltersString(filtersString: String): List[Filter] =
+    filtersString
+      .split(";")
+      .filter(_.nonEmpty)
+      .map { kv =>
+        val pair = kv.split("=")
+        require(pair.length == 2, s"failed to parse [$kv] in filters, expected key=value")
+        Filter.builder().name(pair(0)).values(pair(1)).build()
+      }
+      .toList
+
+  private[ec2] def privateIpAddresses(response: DescribeInstancesResponse): List[String] =
+    response.reservations.asScala.iterator
+      .flatMap(_.instances.asScala)
+      .flatMap(instance => Option(instance.privateIpAddress))
+      .toList
+}
+
+/**
+ * Discovers the EC2 instances that are tagged with the service name, like `aws-api-ec2-tag-based` in
+ * `pekko-discovery-aws-api`, but with the non-blocking AWS SDK v2 client.
+ *
+ * The pages of the DescribeInstances result are fetched as a stream, so the instances of a page are resolved while
+ * the next page is requested. When the lookup times out, the request that is in flight is cancelled.
+ */
+@ApiMayChange
+class AsyncEc2TagBasedServiceDiscovery(system: ExtendedActorSystem) extends ServiceDiscovery {
+  import AsyncEc2TagBasedServiceDiscovery._
+
+  private val config = system.settings.config.getConfig("pekko.discovery.aws-api-ec2-tag-based-async")
+
+  private val tagKey = config.getString("tag-key")
+
+  private val otherFilters = parseFiltersString(config.getString("filters"))
+
+  private val preDefinedPorts: List[Option[Int]] =
+    config.getIntList("ports").asScala.toList match {
+      case Nil   => List(None)
+      case ports => ports.map(port => Some(port.intValue)) // Pekko Management ports
+    }
+
+  private val runningInstancesFilter = Filter.builder().name("instance-state-name").values("running").build()
+
+  private implicit val ec: ExecutionContext = system.dispatcher
+
+  private implicit val mat: Materializer = SystemMaterializer(system).materializer
+
+  @volatile private var ec2ClientUsed = false
+
+  private lazy val ec2Client: Ec2AsyncClient = {
+    ec2ClientUsed = true
+    // we have our own retry/back-off mechanism (in Cluster Bootstrap), so we don't need the client's in addition
+    val conf = ClientOverrideConfiguration.builder().retryStrategy(DefaultRetryStrategy.doNotRetry()).build()
+    val builder = Ec2AsyncClient.builder().overrideConfiguration(conf).httpClient(NettyNioAsyncHttpClient.create())
+    if (config.hasPath("endpoint")) builder.endpointOverride(URI.create(config.getString("endpoint")))
+    if (config.hasPath("region")) builder.region(Region.of(config.getString("region")))
+    createClient(builder)
+  }
+
+  /**
+   * Builds the client from the builder that is configured from `pekko.discovery.aws-api-ec2-tag-based-async`. Can be
+   * overridden to configure the client further, e.g. with a credentials provider other than the default one.
+   */
+  protected def createClient(builder: Ec2AsyncClientBuilder): Ec2AsyncClient =
+    builder.build()
+
+  CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceUnbind, "ec2-async-client-close") { () =>
+    if (ec2ClientUsed) ec2Client.close()
+    Future.successful(Done)
+  }
+
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("aws-api-ec2-tag-based-async")
+
+  override def lookup(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
+    lookupMetrics.record(System.nanoTime(), resolve(query, resolveTimeout))(_.addresses.size)
+
+  private def resolve(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
+    val tagFilter = Filter.builder().name("tag:" + tagKey).values(query.serviceName).build()
+    val filters = (runningInstancesFilter :: tagFilter :: otherFilters).asJava
+    val inFlight = new AtomicReference[CompletableFuture[DescribeInstancesResponse]]()
+
+    // the state is the token of the next page to fetch, the first page has none, and None after the last page
+    Source
+      .unfoldAsync[Option[Option[String]], DescribeInstancesResponse](Some(None)) {
+        case None => Future.successful(None)
+        case Some(nextToken) =>
+          val request = DescribeInstancesRequest.builder().filters(filters).nextToken(nextToken.orNull).build()
+          val response = ec2Client.describeInstances(request)
+          inFlight.set(response)
+          response.asScala.map { page =>
+            val next = Option(page.nextToken).filter(_.nonEmpty)
+            Some((next.map(Some(_)), page))
+          }
+      }
+      .mapConcat(privateIpAddresses)
+      .mapConcat { ip =>
+        val address = Try(InetAddress.getByName(ip)).toOption
+        // several ports allow multiple Pekko nodes (i.e. JVMs) per EC2 instance
+        preDefinedPorts.map(port => ResolvedTarget(host = ip, port = port, address = address))
+      }
+      .completionTimeout(resolveTimeout)
+      .runWith(Sink.seq[ResolvedTarget])
+      .map(targets => Resolved(query.serviceName, targets))
+      .recoverWith {
+        case NonFatal(e) =>
+          Option(inFlight.get).foreach(_.cancel(true))
+          e match {
+            case _: TimeoutException =>
+              Future.failed(new TimeoutException(s"Lookup for [$query] timed-out, within [$resolveTimeout]!"))
+            case _ => Future.failed(e)
+          }
+      }
+  }
+}
@@ -27,9 +27,11 @@ import org.apache.pekko
 import pekko.actor.ActorSystem
 import pekko.annotation.ApiMayChange
 import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
-import pekko.discovery.awsapi.ecs.AsyncEcsServiceDiscovery.{ resolveTasks, Tag }
+import pekko.discovery.awsapi.ecs.AsyncEcsServiceDiscovery.{ describeTasks, resolveTasks, Tag }
 import pekko.discovery.{ Lookup, ServiceDiscovery }
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.after
+import pekko.stream.SystemMaterializer
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration
 import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient
 import software.amazon.awssdk.retries.DefaultRetryStrategy
@@ -59,22 +61,32 @@ class AsyncEcsServiceDiscovery(system: ActorSystem) extends ServiceDiscovery {
 
   private implicit val ec: ExecutionContext = system.dispatcher
 
+  private val taskDescriber =
+    new EcsTaskDescriber(
+      describeTasks(ecsClient, cluster, _),
+      config.getInt("describe-tasks-parallelism"),
+      config.getBoolean("incremental"))(SystemMaterializer(system).materializer)
+
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("aws-api-ecs-async")
+
   override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
-    Future.firstCompletedOf(
-      Seq(
-        after(resolveTimeout, using = system.scheduler)(
-          Future.failed(new TimeoutException("Future timed out!"))),
-        resolveTasks(ecsClient, cluster, lookup.serviceName, tags).map(tasks =>
-          Resolved(
-            serviceName = lookup.serviceName,
-            addresses = for {
-              task <- tasks
-              container <- task.containers().asScala
-              networkInterface <- container.networkInterfaces().asScala
-            } yield {
-              val address = networkInterface.privateIpv4Address()
-              ResolvedTarget(host = address, port = None, address = Try(InetAddress.getByName(address)).toOption)
-            }))))
+    lookupMetrics.record(
+      System.nanoTime(),
+      Future.firstCompletedOf(
+        Seq(
+          after(resolveTimeout, using = system.scheduler)(
+            Future.failed(new TimeoutException("Future timed out!"))),
+          resolveTasks(ecsClient, cluster, lookup.serviceName, tags, taskDescriber).map(tasks =>
+            Resolved(
+              serviceName = lookup.serviceName,
+              addresses = for {
+                task <- tasks
+                container <- task.containers().asScala
+                networkInterface <- container.networkInterfaces().asScala
+              } yield {
+                val address = networkInterface.privateIpv4Address()
+                ResolvedTarget(host = address, port = None, address = Try(InetAddress.getByName(address)).toOption)
+              })))))(_.addresses.size)
 
 }
 
@@ -83,11 +95,15 @@ object AsyncEcsServiceDiscovery {
 
   case class Tag(key: String, value: String)
 
-  private def resolveTasks(ecsClient: EcsAsyncClient, cluster: String, serviceName: String, tags: List[Tag])(
-      implicit ec: ExecutionContext): Future[Seq[Task]] =
+  private def resolveTasks(
+      ecsClient: EcsAsyncClient,
+      cluster: String,
+      serviceName: String,
+      tags: List[Tag],
+      taskDescriber: EcsTaskDescriber)(implicit ec: ExecutionContext): Future[Seq[Task]] =
     for {
       taskArns <- listTaskArns(ecsClient, cluster, serviceName)
-      tasks <- describeTasks(ecsClient, cluster, taskArns)
+      tasks <- taskDescriber.describe(serviceName, taskArns)
       tasksWithTags = tasks.filter { task =>
         val ecsTags = task.tags().asScala.map(tag => Tag(tag.key(), tag.value())).toList
         tags.diff(ecsTags).isEmpty
@@ -124,15 +140,13 @@ object AsyncEcsServiceDiscovery {
       }
     } yield taskArns
 
+  // at most EcsTaskDescriber.MaxTasksPerRequest task ARNs
   private def describeTasks(ecsClient: EcsAsyncClient, cluster: String, taskArns: Seq[String])(
       implicit ec: ExecutionContext): Future[Seq[Task]] =
-    for {
-      // Each DescribeTasksRequest can contain at most 100 task ARNs.
-      describeTasksResponses <- Future.traverse(taskArns.grouped(100))(taskArnGroup =>
-        ecsClient.describeTasks(
-          DescribeTasksRequest.builder().cluster(cluster).tasks(taskArnGroup.asJava).include(
-            TaskField.TAGS).build()).asScala)
-      tasks = describeTasksResponses.flatMap(_.tasks().asScala).toList
-    } yield tasks
+    ecsClient
+      .describeTasks(
+        DescribeTasksRequest.builder().cluster(cluster).tasks(taskArns.asJava).include(TaskField.TAGS).build())
+      .asScala
+      .map(_.tasks().asScala.toList)
 
 }
@@ -27,12 +27,13 @@ import org.apache.pekko
 import pekko.actor.ActorSystem
 import pekko.annotation.ApiMayChange
 import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
-import pekko.discovery.awsapi.ecs.AsyncEcsTaskSetDiscovery.resolveTasks
+import pekko.discovery.awsapi.ecs.AsyncEcsTaskSetDiscovery.{ describeTasks, resolveTasks }
 import pekko.discovery.{ Lookup, ServiceDiscovery }
 import pekko.http.scaladsl.marshallers.sprayjson.SprayJsonSupport._
 import pekko.http.scaladsl.model._
 import pekko.http.scaladsl.unmarshalling.Unmarshal
 import pekko.http.scaladsl.{ Http, HttpExt }
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.after
 import pekko.stream.Materializer
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration
@@ -65,22 +66,32 @@ class AsyncEcsTaskSetDiscovery(system: ActorSystem) extends ServiceDiscovery {
 
   private val httpClient: HttpExt = Http()
 
+  private val taskDescriber =
+    new EcsTaskDescriber(
+      describeTasks(ecsClient, cluster, _),
+      config.getInt("describe-tasks-parallelism"),
+      config.getBoolean("incremental"))
+
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("aws-api-ecs-task-set-async")
+
   override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
-    Future.firstCompletedOf(
-      Seq(
-        after(resolveTimeout, using = system.scheduler)(
-          Future.failed(new TimeoutException(s"$lookup timed out after $resolveTimeout"))),
-        resolveTasks(ecsClient, cluster, httpClient).map(tasks =>
-          Resolved(
-            serviceName = lookup.serviceName,
-            addresses = for {
-              task <- tasks
-              container <- task.containers().asScala
-              networkInterface <- container.networkInterfaces().asScala
-            } yield {
-              val address = networkInterface.privateIpv4Address()
-              ResolvedTarget(host = address, port = None, address = Try(InetAddress.getByName(address)).toOption)
-            }))))
+    lookupMetrics.record(
+      System.nanoTime(),
+      Future.firstCompletedOf(
+        Seq(
+          after(resolveTimeout, using = system.scheduler)(
+            Future.failed(new TimeoutException(s"$lookup timed out after $resolveTimeout"))),
+          resolveTasks(ecsClient, cluster, httpClient, taskDescriber).map(tasks =>
+            Resolved(
+              serviceName = lookup.serviceName,
+              addresses = for {
+                task <- tasks
+                container <- task.containers().asScala
+                networkInterface <- container.networkInterfaces().asScala
+              } yield {
+                val address = networkInterface.privateIpv4Address()
+                ResolvedTarget(host = address, port = None, address = Try(InetAddress.getByName(address)).toOption)
+              })))))(_.addresses.size)
 
 }
 
@@ -94,7 +105,11 @@ object AsyncEcsTaskSetDiscovery {
 
   private val ECS_CONTAINER_METADATA_URI_PATH = "ECS_CONTAINER_METADATA_URI"
 
-  private def resolveTasks(ecsClient: EcsAsyncClient, cluster: String, httpClient: HttpExt)(
+  private def resolveTasks(
+      ecsClient: EcsAsyncClient,
+      cluster: String,
+      httpClient: HttpExt,
+      taskDescriber: EcsTaskDescriber)(
       implicit
       ec: ExecutionContext,
       mat: Materializer): Future[Seq[Task]] =
@@ -104,11 +119,10 @@ object AsyncEcsTaskSetDiscovery {
         case Some(arn) => resolveTaskSet(ecsClient, cluster, arn)
         case None      => Future.successful(None)
       }
-      taskArns <- taskSet match {
-        case Some(ts) => listTaskArns(ecsClient, cluster, ts)
-        case None     => Future.successful(Seq.empty[String])
+      tasks <- taskSet match {
+        case Some(ts) => listTaskArns(ecsClient, cluster, ts).flatMap(taskDescriber.describe(ts.value, _))
+        case None     => Future.successful(Seq.empty[Task])
       }
-      tasks <- describeTasks(ecsClient, cluster, taskArns)
     } yield tasks
 
   // https://docs.aws.amazon.com/AmazonECS/latest/developerguide/task-metadata-endpoint-v3.html
@@ -168,15 +182,13 @@ object AsyncEcsTaskSetDiscovery {
       }
     } yield taskArns
 
+  // at most EcsTaskDescriber.MaxTasksPerRequest task ARNs
   private def describeTasks(ecsClient: EcsAsyncClient, cluster: String, taskArns: Seq[String])(
       implicit ec: ExecutionContext): Future[Seq[Task]] =
-    for {
-      // Each DescribeTasksRequest can contain at most 100 task ARNs.
-      describeTasksResponses <- Future.traverse(taskArns.grouped(100))(taskArnGroup =>
-        ecsClient.describeTasks(
-          DescribeTasksRequest.builder().cluster(cluster).tasks(taskArnGroup.asJava).include(
-            TaskField.TAGS).build()).asScala)
-      tasks = describeTasksResponses.flatMap(_.tasks().asScala).toList
-    } yield tasks
+    ecsClient
+      .describeTasks(
+        DescribeTasksRequest.builder().cluster(cluster).tasks(taskArns.asJava).include(TaskField.TAGS).build())
+      .asScala
+      .map(_.tasks().asScala.toList)
 
 }
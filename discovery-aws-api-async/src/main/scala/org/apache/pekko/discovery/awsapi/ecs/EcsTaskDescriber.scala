@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.awsapi.ecs
+
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.immutable
+import scala.concurrent.Future
+
+import org.apache.pekko
+import pekko.annotation.InternalApi
+import pekko.stream.Materializer
+import pekko.stream.scaladsl.{ Sink, Source }
+import software.amazon.awssdk.services.ecs.model.Task
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[ecs] object EcsTaskDescriber {
+
+  // Each DescribeTasksRequest can contain at most 100 task ARNs.
+  val MaxTasksPerRequest = 100
+
+  private val Running = "RUNNING"
+}
+
+/**
+ * INTERNAL API
+ *
+ * Describes the listed tasks of a group, i.e. an ECS service or task set, with at most `parallelism`
+ * DescribeTasks requests at a time.
+ *
+ * When `incremental`, the running tasks are kept by task ARN and only the tasks that weren't seen before are
+ * described, so that the cost of a lookup follows the churn of the tasks rather than their number. Tasks that are
+ * no longer listed, because they are stopped, are evicted. Tasks that don't run yet are described again on the next
+ * lookup, as their network interfaces may not be attached.
+ */
+@InternalApi
+private[ecs] final class EcsTaskDescriber(
+    describeTasks: immutable.Seq[String] => Future[immutable.Seq[Task]],
+    parallelism: Int,
+    incremental: Boolean)(implicit mat: Materializer) {
+  import EcsTaskDescriber._
+
+  require(parallelism > 0, "the parallelism of describing tasks must be positive")
+
+  private val runningTasks = new ConcurrentHashMap[String, Map[String, Task]]
+
+  def describe(group: String, taskArns: immutable.Seq[String]): Future[immutable.Seq[Task]] = {
+    val known = if (incremental) runningTasks.getOrDefault(group, Map.empty) else Map.empty[String, Task]
+    val unseen = taskArns.filterNot(known.contains)
+    Source(unseen.grouped(MaxTasksPerRequest).toList)
+      .mapAsyncUnordered(parallelism)(describeTasks)
+      .mapConcat(identity)
+      .runWith(Sink.seq)
+      .map { described =>
+        if (incremental) update(group, taskArns, described)
+        taskArns.flatMap(known.get) ++ described
+      }(mat.executionContext)
+  }
+
+  private def update(group: String, taskArns: immutable.Seq[String], described: immutable.Seq[Task]): Unit = {
+    val listed = taskArns.toSet
+    runningTasks.compute(
+      group,
+      (_, previous) => {
+        val retained =
+          if (previous eq null) Map.empty[String, Task] else previous.filter { case (arn, _) => listed(arn) }
+        val updated = retained ++ described.iterator.filter(_.lastStatus == Running).map(task => task.taskArn -> task)
+        if (updated.isEmpty) null else updated
+      })
+  }
+}
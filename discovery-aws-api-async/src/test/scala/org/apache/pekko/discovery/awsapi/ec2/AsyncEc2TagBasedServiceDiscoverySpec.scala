@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.awsapi.ec2
+
+import java.util.concurrent.{ ConcurrentLinkedQueue, TimeoutException }
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+
+import org.apache.pekko
+import pekko.NotUsed
+import pekko.actor.{ ActorSystem, ExtendedActorSystem }
+import pekko.discovery.Lookup
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model.{ ContentTypes, HttpEntity, StatusCodes }
+import pekko.http.scaladsl.server.Directives._
+import pekko.http.scaladsl.server.Route
+import pekko.stream.scaladsl.Source
+import pekko.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+import software.amazon.awssdk.auth.credentials.{ AwsBasicCredentials, StaticCredentialsProvider }
+import software.amazon.awssdk.services.ec2.{ Ec2AsyncClient, Ec2AsyncClientBuilder }
+
+object AsyncEc2TagBasedServiceDiscoverySpec {
+
+  def describeInstancesResponse(reservations: Seq[Seq[String]], nextToken: Option[String]): String = {
+    val reservationSet = reservations.map { ips =>
+      val instancesSet = ips.map(ip => s"<item><privateIpAddress>$ip</privateIpAddress></item>").mkString
+      s"<item><instancesSet>$instancesSet</instancesSet></item>"
+    }.mkString
+    s"""<?xml version="1.0" encoding="UTF-8"?>
+       |<DescribeInstancesResponse xmlns="http://ec2.amazonaws.com/doc/2016-11-15/">
+       |  <requestId>8f7724cf-496f-496e-8fe3-example</requestId>
+       |  <reservationSet>$reservationSet</reservationSet>
+       |  ${nextToken.map(token => s"<nextToken>$token</nextToken>").getOrElse("")}
+       |</DescribeInstancesResponse>""".stripMargin
+  }
+}
+
+class AsyncEc2TagBasedServiceDiscoverySpec
+    extends AnyWordSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with BeforeAndAfterAll {
+  import AsyncEc2TagBasedServiceDiscoverySpec._
+
+  implicit override val patienceConfig: PatienceConfig = PatienceConfig(timeout = Span(10, Seconds))
+
+  private val ec2System = ActorSystem("Ec2StandIn")
+
+  private val requests = new ConcurrentLinkedQueue[Map[String, String]]()
+
+  // the responses that were cancelled before they were complete, because the client closed the connection
+  private val cancelledResponses = new AtomicInteger
+
+  private def xml(body: String) = HttpEntity(ContentTypes.`text/xml(UTF-8)`, body)
+
+  // answers DescribeInstances requests of the EC2 Query API, by the service name in the tag filter
+  private val ec2StandIn: Route =
+    post {
+      formFieldMap { fields =>
+        requests.add(fields)
+        (fields.get("Filter.2.Value.1"), fields.get("NextToken")) match {
+          case (Some("products-api"), None) =>
+            complete(xml(describeInstancesResponse(Seq(Seq("10.0.0.1")), Some("page-2"))))
+          case (Some("products-api"), Some("page-2")) =>
+            complete(xml(describeInstancesResponse(Seq(Seq("10.0.0.2"), Seq("10.0.0.3")), None)))
+          case (Some("slow-api"), _) =>
+            // the body never ends, until the client disconnects
+            val body = Source
+              .single(ByteString("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"))
+              .concat(Source.maybe[ByteString])
+              .watchTermination() { (_, terminated) =>
+                terminated.onComplete(_ => cancelledResponses.incrementAndGet())(ec2System.dispatcher)
+                NotUsed
+              }
+            complete(HttpEntity.Chunked.fromData(ContentTypes.`text/xml(UTF-8)`, body))
+          case _ =>
+            complete(StatusCodes.BadRequest)
+        }
+      }
+    }
+
+  private val binding =
+    Await.result(Http()(ec2System).newServerAt("127.0.0.1", 0).bind(ec2StandIn), 10.seconds)
+
+  private val system = ActorSystem(
+    "AsyncEc2TagBasedServiceDiscoverySpec",
+    ConfigFactory.parseString(s"""
+      pekko.discovery.aws-api-ec2-tag-based-async {
+        endpoint = "http://127.0.0.1:${binding.localAddress.getPort}"
+        region = "eu-west-1"
+        filters = "tag:purpose=demo"
+        ports = [7626, 7627]
+      }
+      """).withFallback(ConfigFactory.load()))
+
+  private val discovery = new AsyncEc2TagBasedServiceDiscovery(system.asInstanceOf[ExtendedActorSystem]) {
+    override protected def createClient(builder: Ec2AsyncClientBuilder): Ec2AsyncClient =
+      builder
+        .credentialsProvider(
+          StaticCredentialsProvider.create(AwsBasicCredentials.create("test-access-key", "test-secret-key")))
+        .build()
+  }
+
+  override protected def afterAll(): Unit = {
+    Await.result(system.terminate(), 10.seconds)
+    Await.result(ec2System.terminate(), 10.seconds)
+  }
+
+  "The async EC2 tag based discovery" should {
+
+    "follow the pages of the result and discover the running instances tagged with the service" in {
+      val resolved = discovery.lookup(Lookup("products-api"), 5.seconds).futureValue
+      resolved.serviceName shouldEqual "products-api"
+      resolved.addresses.map(target => (target.host, target.port)) shouldEqual List(
+        ("10.0.0.1", Some(7626)),
+        ("10.0.0.1", Some(7627)),
+        ("10.0.0.2", Some(7626)),
+        ("10.0.0.2", Some(7627)),
+        ("10.0.0.3", Some(7626)),
+        ("10.0.0.3", Some(7627)))
+      resolved.addresses.head.address.map(_.getHostAddress) shouldEqual Some("10.0.0.1")
+
+      val sent = requests.asScala.toList.filter(_.get("Filter.2.Value.1").contains("products-api"))
+      sent.map(_.get("NextToken")) shouldEqual List(None, Some("page-2"))
+      sent.head should contain allOf (
+        "Action" -> "DescribeInstances",
+        "Filter.1.Name" -> "instance-state-name",
+        "Filter.1.Value.1" -> "running",
+        "Filter.2.Name" -> "tag:service",
+        "Filter.3.Name" -> "tag:purpose",
+        "Filter.3.Value.1" -> "demo")
+    }
+
+    "fail when the lookup doesn't complete within the resolve timeout, and cancel the request in flight" in {
+      val failure = discovery.lookup(Lookup("slow-api"), 500.millis).failed.futureValue
+      failure shouldBe a[TimeoutException]
+      failure.getMessage should include("slow-api")
+      requests.asScala.count(_.get("Filter.2.Value.1").contains("slow-api")) shouldEqual 1
+      eventually(cancelledResponses.get shouldEqual 1)
+    }
+
+    "parse the additional filters" in {
+      val filters =
+        AsyncEc2TagBasedServiceDiscovery.parseFiltersString("tag:purpose=production;instance-type=m1.small")
+      filters.map(filter => filter.name -> filter.values.asScala.toList) shouldEqual List(
+        "tag:purpose" -> List("production"),
+        "instance-type" -> List("m1.small"))
+      AsyncEc2TagBasedServiceDiscovery.parseFiltersString("") shouldBe empty
+      an[IllegalArgumentException] should be thrownBy AsyncEc2TagBasedServiceDiscovery.parseFiltersString("purpose")
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.awsapi.ecs
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.collection.immutable
+import scala.concurrent.{ Await, Future }
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.pattern.after
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+import software.amazon.awssdk.services.ecs.model.Task
+
+class EcsTaskDescriberSpec extends AnyWordSpec with Matchers with ScalaFutures with BeforeAndAfterAll {
+
+  implicit override val patienceConfig: PatienceConfig = PatienceConfig(timeout = Span(5, Seconds))
+
+  private implicit val system: ActorSystem = ActorSystem("EcsTaskDescriberSpec")
+
+  override protected def afterAll(): Unit = Await.result(system.terminate(), 10.seconds)
+
+  /** Describes the tasks as running, except for the ones in `pending`, and records the requests. */
+  private final class DescribeTasks(pending: Set[String] = Set.empty) {
+    val requests = new ConcurrentLinkedQueue[immutable.Seq[String]]()
+    private val inFlight = new AtomicInteger
+    val maxInFlight = new AtomicInteger
+
+    def apply(taskArns: immutable.Seq[String]): Future[immutable.Seq[Task]] = {
+      requests.add(taskArns)
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), (a, b) => math.max(a, b))
+      after(10.millis) {
+        inFlight.decrementAndGet()
+        Future.successful(taskArns.map { arn =>
+          Task.builder().taskArn(arn).lastStatus(if (pending(arn)) "PENDING" else "RUNNING").build()
+        })
+      }
+    }
+
+    def described: List[String] = requests.asScala.toList.flatten
+  }
+
+  private def arns(range: Range): immutable.Seq[String] = range.map(i => s"arn:aws:ecs:eu-west-1:1:task/c/$i").toList
+
+  "The ECS task describer" should {
+
+    "describe all tasks, in requests of at most 100 tasks, with limited parallelism" in {
+      val describeTasks = new DescribeTasks
+      val describer = new EcsTaskDescriber(describeTasks(_), parallelism = 2, incremental = false)
+      val taskArns = arns(1 to 450)
+
+      describer.describe("service", taskArns).futureValue.map(_.taskArn).toSet shouldEqual taskArns.toSet
+      describeTasks.requests.asScala.map(_.size).toList.sorted shouldEqual List(50, 100, 100, 100, 100)
+      describeTasks.maxInFlight.get should be <= 2
+
+      describer.describe("service", taskArns).futureValue should have size 450
+      describeTasks.described should have size 900
+    }
+
+    "describe only the tasks that weren't seen before, and evict the tasks that are no longer listed" in {
+      val describeTasks = new DescribeTasks
+      val describer = new EcsTaskDescriber(describeTasks(_), parallelism = 4, incremental = true)
+
+      describer.describe("service", arns(1 to 150)).futureValue should have size 150
+      describeTasks.described should have size 150
+
+      // task 1 stopped and task 151 started
+      describeTasks.requests.clear()
+      val tasks = describer.describe("service", arns(2 to 151)).futureValue
+      tasks.map(_.taskArn) should contain theSameElementsAs arns(2 to 151)
+      describeTasks.described shouldEqual arns(151 to 151)
+
+      // the evicted task is described again if it is listed again
+      describeTasks.requests.clear()
+      describer.describe("service", arns(1 to 151)).futureValue should have size 151
+      describeTasks.described shouldEqual arns(1 to 1)
+
+      // other services are kept apart
+      describeTasks.requests.clear()
+      describer.describe("other-service", arns(1 to 2)).futureValue should have size 2
+      describeTasks.described shouldEqual arns(1 to 2)
+    }
+
+    "describe the tasks that don't run yet again" in {
+      val describeTasks = new DescribeTasks(pending = arns(2 to 2).toSet)
+      val describer = new EcsTaskDescriber(describeTasks(_), parallelism = 4, incremental = true)
+
+      describer.describe("service", arns(1 to 2)).futureValue should have size 2
+      describeTasks.requests.clear()
+      describer.describe("service", arns(1 to 2)).futureValue should have size 2
+      describeTasks.described shouldEqual arns(2 to 2)
+    }
+  }
+}
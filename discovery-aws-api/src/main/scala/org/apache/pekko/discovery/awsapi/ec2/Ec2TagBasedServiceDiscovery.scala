@@ -25,6 +25,7 @@ import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
 import pekko.discovery.awsapi.ec2.Ec2TagBasedServiceDiscovery.parseFiltersString
 import pekko.discovery.{ Lookup, ServiceDiscovery }
 import pekko.event.Logging
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.after
 
 import java.net.InetAddress
@@ -176,12 +177,16 @@ final class Ec2TagBasedServiceDiscovery(system: ExtendedActorSystem) extends Ser
 
   }
 
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("aws-api-ec2-tag-based")
+
   override def lookup(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
-    Future.firstCompletedOf(
-      Seq(
-        after(resolveTimeout, using = system.scheduler)(
-          Future.failed(new TimeoutException(s"Lookup for [$query] timed-out, within [$resolveTimeout]!"))),
-        lookup(query)))
+    lookupMetrics.record(
+      System.nanoTime(),
+      Future.firstCompletedOf(
+        Seq(
+          after(resolveTimeout, using = system.scheduler)(
+            Future.failed(new TimeoutException(s"Lookup for [$query] timed-out, within [$resolveTimeout]!"))),
+          lookup(query))))(_.addresses.size)
 
   def lookup(query: Lookup): Future[Resolved] = {
 
@@ -22,6 +22,7 @@ import pekko.discovery.{ Lookup, ServiceDiscovery }
 import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
 import pekko.discovery.awsapi.ecs.EcsServiceDiscovery.resolveTasks
 import pekko.event.Logging
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.after
 
 import com.amazonaws.ClientConfiguration
@@ -80,23 +81,27 @@ final class EcsServiceDiscovery(system: ActorSystem) extends ServiceDiscovery {
     }
   }
 
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("aws-api-ecs")
+
   override def lookup(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
-    Future.firstCompletedOf(
-      Seq(
-        after(resolveTimeout, using = system.scheduler)(
-          Future.failed(new TimeoutException("Future timed out!"))),
-        Future {
-          Resolved(
-            serviceName = query.serviceName,
-            addresses = for {
-              task <- resolveTasks(ecsClient, cluster, query.serviceName)
-              container <- task.getContainers.asScala
-              networkInterface <- container.getNetworkInterfaces.asScala
-            } yield {
-              val address = networkInterface.getPrivateIpv4Address
-              ResolvedTarget(host = address, port = None, address = Try(InetAddress.getByName(address)).toOption)
-            })
-        }))
+    lookupMetrics.record(
+      System.nanoTime(),
+      Future.firstCompletedOf(
+        Seq(
+          after(resolveTimeout, using = system.scheduler)(
+            Future.failed(new TimeoutException("Future timed out!"))),
+          Future {
+            Resolved(
+              serviceName = query.serviceName,
+              addresses = for {
+                task <- resolveTasks(ecsClient, cluster, query.serviceName)
+                container <- task.getContainers.asScala
+                networkInterface <- container.getNetworkInterfaces.asScala
+              } yield {
+                val address = networkInterface.getPrivateIpv4Address
+                ResolvedTarget(host = address, port = None, address = Try(InetAddress.getByName(address)).toOption)
+              })
+          })))(_.addresses.size)
 
 }
 
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.caching
+
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.duration._
+import scala.util.{ Failure, Success, Try }
+import scala.util.control.NonFatal
+
+import org.apache.pekko
+import pekko.actor.ExtendedActorSystem
+import pekko.annotation.{ ApiMayChange, InternalApi }
+import pekko.discovery.{ Discovery, Lookup, ServiceDiscovery }
+import pekko.discovery.ServiceDiscovery.Resolved
+import pekko.event.{ Logging, LoggingAdapter }
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[caching] object CachingServiceDiscovery {
+
+  /**
+   * The last good result of a lookup, valid until `expiresAtNanos`, and the refresh that is in flight, if any.
+   */
+  private final case class Entry(lastGood: Option[Resolved], expiresAtNanos: Long, inFlight: Option[Future[Resolved]])
+
+  private val Empty = Entry(None, 0L, None)
+}
+
+/**
+ * Caches the results of another discovery method, `pekko.discovery.caching.underlying-method`, so that the backend
+ * of that method, e.g. the AWS API, is not called on every lookup.
+ *
+ * A result is served for its time to live, and after that for `stale-while-revalidate` while it is refreshed in the
+ * background. Concurrent lookups that can't be answered from the cache share one lookup of the underlying method,
+ * which is given the timeout of the lookup that started it. When the underlying method fails, the last good result
+ * is served for `stale-if-error` after it expired.
+ */
+@ApiMayChange
+final class CachingServiceDiscovery private[caching] (
+    settings: CachingSettings,
+    loadServiceDiscovery: String => ServiceDiscovery,
+    log: LoggingAdapter,
+    nanoTime: () => Long)(implicit ec: ExecutionContext)
+    extends ServiceDiscovery {
+  import CachingServiceDiscovery._
+
+  def this(system: ExtendedActorSystem) =
+    this(
+      new CachingSettings(system.settings.config),
+      Discovery(system).loadServiceDiscovery,
+      Logging(system, classOf[CachingServiceDiscovery]),
+      () => System.nanoTime())(system.dispatcher)
+
+  // not while this method is created, which Discovery does within an update of the map of its loaded methods
+  private lazy val underlying = loadServiceDiscovery(settings.underlyingMethod)
+
+  private val cache = new ConcurrentHashMap[Lookup, Entry]
+
+  override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
+    val now = nanoTime()
+    val refresh = Promise[Resolved]()
+    val entry = cache.compute(
+      lookup,
+      (_, previous) => {
+        val current = if (previous eq null) Empty else previous
+        val expired = current.lastGood.isEmpty || current.expiresAtNanos - now <= 0
+        if (expired && current.inFlight.isEmpty) current.copy(inFlight = Some(refresh.future))
+        else current
+      })
+    if (entry.inFlight.exists(_ eq refresh.future)) startRefresh(lookup, resolveTimeout, refresh)
+
+    val expiredFor = (now - entry.expiresAtNanos).nanos
+    entry.lastGood match {
+      case Some(resolved) if expiredFor < settings.staleWhileRevalidate =>
+        Future.successful(resolved)
+      case Some(resolved) if expiredFor < settings.staleIfError =>
+        entry.inFlight.get.recover {
+          case NonFatal(e) =>
+            log.warning(
+              "Discovery method [{}] failed for [{}], serving the result that expired [{}] ago: {}",
+              settings.underlyingMethod,
+              lookup,
+              expiredFor.toCoarsest,
+              e.getMessage)
+            resolved
+        }
+      case _ =>
+        entry.inFlight.get
+    }
+  }
+
+  private def startRefresh(lookup: Lookup, resolveTimeout: FiniteDuration, refresh: Promise[Resolved]): Unit = {
+    refresh.completeWith(Try(underlying.lookup(lookup, resolveTimeout)) match {
+      case Success(resolved) => resolved
+      case Failure(e)        => Future.failed(e)
+    })
+    refresh.future.onComplete { result =>
+      cache.compute(
+        lookup,
+        (_, current) =>
+          if ((current eq null) || !current.inFlight.exists(_ eq refresh.future)) current
+          else
+            result match {
+              case Success(resolved) =>
+                Entry(Some(resolved), nanoTime() + timeToLive(lookup, resolved).toNanos, None)
+              case Failure(_) if current.lastGood.isEmpty =>
+                null
+              case Failure(e) =>
+                log.debug("Discovery method [{}] failed for [{}]: {}", settings.underlyingMethod, lookup, e.getMessage)
+                current.copy(inFlight = None)
+            })
+    }
+  }
+
+  private def timeToLive(lookup: Lookup, resolved: Resolved): FiniteDuration =
+    if (resolved.addresses.isEmpty) settings.negativeTimeToLive
+    else settings.timeToLivePerService.getOrElse(lookup.serviceName, settings.timeToLive)
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.caching
+
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
+
+import org.apache.pekko.annotation.InternalApi
+import com.typesafe.config.Config
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[caching] final class CachingSettings(config: Config) {
+  private val caching = config.getConfig("pekko.discovery.caching")
+
+  val underlyingMethod: String = caching.getString("underlying-method")
+  require(underlyingMethod.nonEmpty, "pekko.discovery.caching.underlying-method must be set")
+  require(underlyingMethod != "caching", "pekko.discovery.caching.underlying-method can't be caching")
+
+  val timeToLive: FiniteDuration = caching.getDuration("time-to-live").toScala
+
+  val timeToLivePerService: Map[String, FiniteDuration] = {
+    val perService = caching.getConfig("time-to-live-per-service")
+    perService.root.keySet.asScala.iterator.map { name =>
+      name -> perService.getDuration(s""""$name"""").toScala
+    }.toMap
+  }
+
+  val negativeTimeToLive: FiniteDuration = caching.getDuration("negative-time-to-live").toScala
+
+  val staleWhileRevalidate: FiniteDuration = caching.getDuration("stale-while-revalidate").toScala
+
+  val staleIfError: FiniteDuration = caching.getDuration("stale-if-error").toScala
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.caching
+
+import java.util.concurrent.atomic.AtomicLong
+
+import scala.collection.immutable
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.discovery.{ Discovery, Lookup, ServiceDiscovery }
+import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
+import pekko.event.NoLogging
+import pekko.testkit.TestKit
+import com.typesafe.config.ConfigFactory
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+object CachingServiceDiscoverySpec {
+
+  /** Answers each lookup with the next promise that the test completes. */
+  final class ManualServiceDiscovery extends ServiceDiscovery {
+    @volatile var requests: immutable.Seq[Promise[Resolved]] = Nil
+
+    override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = synchronized {
+      val promise = Promise[Resolved]()
+      requests = requests :+ promise
+      promise.future
+    }
+  }
+
+  def resolved(hosts: String*): Resolved =
+    Resolved("service", hosts.map(host => ResolvedTarget(host, Some(7626), None)).toList)
+
+  val settings = new CachingSettings(ConfigFactory.parseString("""
+    pekko.discovery.caching {
+      underlying-method = manual
+      time-to-live = 10s
+      time-to-live-per-service { "slow-changing" = 1m }
+      negative-time-to-live = 2s
+      stale-while-revalidate = 30s
+      stale-if-error = 5m
+    }
+    """).withFallback(ConfigFactory.load()))
+}
+
+class CachingServiceDiscoverySpec extends AnyWordSpec with Matchers with ScalaFutures {
+  import CachingServiceDiscoverySpec._
+
+  // the cache is updated as soon as the test completes an underlying lookup
+  private implicit val ec: ExecutionContext = ExecutionContext.parasitic
+
+  private val lookup = Lookup("service")
+
+  private def fixture(): (CachingServiceDiscovery, ManualServiceDiscovery, AtomicLong) = {
+    val underlying = new ManualServiceDiscovery
+    val clock = new AtomicLong(System.nanoTime())
+    val discovery = new CachingServiceDiscovery(settings, _ => underlying, NoLogging, () => clock.get())
+    (discovery, underlying, clock)
+  }
+
+  private def advance(clock: AtomicLong, by: FiniteDuration): Unit = clock.addAndGet(by.toNanos)
+
+  "The caching discovery" should {
+
+    "share one underlying lookup between concurrent lookups and serve the result for its time to live" in {
+      val (discovery, underlying, clock) = fixture()
+      val first = discovery.lookup(lookup, 1.second)
+      val second = discovery.lookup(lookup, 1.second)
+      underlying.requests.size shouldEqual 1
+
+      underlying.requests(0).success(resolved("a"))
+      first.futureValue shouldEqual resolved("a")
+      second.futureValue shouldEqual resolved("a")
+
+      advance(clock, 9.seconds)
+      discovery.lookup(lookup, 1.second).futureValue shouldEqual resolved("a")
+      underlying.requests.size shouldEqual 1
+
+      // other lookups are cached separately
+      discovery.lookup(Lookup("service").withPortName("management"), 1.second)
+      underlying.requests.size shouldEqual 2
+    }
+
+    "serve a stale result while it is refreshed in the background" in {
+      val (discovery, underlying, clock) = fixture()
+      discovery.lookup(lookup, 1.second)
+      underlying.requests(0).success(resolved("a"))
+
+      advance(clock, 11.seconds)
+      discovery.lookup(lookup, 1.second).futureValue shouldEqual resolved("a")
+      discovery.lookup(lookup, 1.second).futureValue shouldEqual resolved("a")
+      underlying.requests.size shouldEqual 2
+
+      underlying.requests(1).success(resolved("a", "b"))
+      discovery.lookup(lookup, 1.second).futureValue shouldEqual resolved("a", "b")
+      underlying.requests.size shouldEqual 2
+    }
+
+    "fall back to the last good result when the underlying method fails" in {
+      val (discovery, underlying, clock) = fixture()
+      discovery.lookup(lookup, 1.second)
+      underlying.requests(0).success(resolved("a"))
+
+      advance(clock, 1.minute)
+      val result = discovery.lookup(lookup, 1.second)
+      underlying.requests(1).failure(new RuntimeException("throttled"))
+      result.futureValue shouldEqual resolved("a")
+
+      // after stale-if-error the failure is returned
+      advance(clock, 5.minutes)
+      val failed = discovery.lookup(lookup, 1.second)
+      underlying.requests.last.failure(new RuntimeException("throttled"))
+      failed.failed.futureValue.getMessage shouldEqual "throttled"
+    }
+
+    "fail without a previous result, and retry on the next lookup" in {
+      val (discovery, underlying, _) = fixture()
+      val failed = discovery.lookup(lookup, 1.second)
+      underlying.requests(0).failure(new RuntimeException("unavailable"))
+      failed.failed.futureValue.getMessage shouldEqual "unavailable"
+
+      discovery.lookup(lookup, 1.second)
+      underlying.requests.size shouldEqual 2
+    }
+
+    "use the time to live of the service, and the negative time to live for no addresses" in {
+      val (discovery, underlying, clock) = fixture()
+      val slowChanging = Lookup("slow-changing")
+      discovery.lookup(slowChanging, 1.second)
+      underlying.requests(0).success(resolved("a"))
+      discovery.lookup(slowChanging, 1.second).futureValue shouldEqual resolved("a")
+
+      discovery.lookup(lookup, 1.second)
+      underlying.requests(1).success(resolved())
+
+      advance(clock, 3.seconds)
+      discovery.lookup(lookup, 1.second)
+      discovery.lookup(slowChanging, 1.second)
+      underlying.requests.size shouldEqual 3
+
+      advance(clock, 1.minute)
+      discovery.lookup(slowChanging, 1.second)
+      underlying.requests.size shouldEqual 4
+    }
+
+    "be loaded as a discovery method that caches another one" in {
+      val system = ActorSystem(
+        "CachingServiceDiscoverySpec",
+        ConfigFactory.parseString("""
+          pekko.discovery {
+            method = caching
+            caching.underlying-method = config
+            config.services.service.endpoints = [{ host = "a", port = 7626 }]
+          }
+          """))
+      try {
+        val discovery = Discovery(system).discovery
+        discovery shouldBe a[CachingServiceDiscovery]
+        discovery.lookup(lookup, 1.second).futureValue shouldEqual resolved("a")
+      } finally TestKit.shutdownActorSystem(system)
+    }
+  }
+}
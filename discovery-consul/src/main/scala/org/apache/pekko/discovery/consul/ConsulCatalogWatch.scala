@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.consul
+
+import java.math.BigInteger
+import java.net.InetAddress
+import java.util
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.collection.immutable
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.CollectionConverters._
+import scala.util.{ Failure, Success, Try }
+
+import org.apache.pekko
+import pekko.actor.Scheduler
+import pekko.annotation.InternalApi
+import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
+import pekko.discovery.consul.ConsulServiceDiscovery._
+import pekko.event.LoggingAdapter
+import org.kiwiproject.consul.Consul
+import org.kiwiproject.consul.async.ConsulResponseCallback
+import org.kiwiproject.consul.model.ConsulResponse
+import org.kiwiproject.consul.model.health.ServiceHealth
+import org.kiwiproject.consul.option.QueryOptions
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[consul] object ConsulCatalogWatch {
+
+  /**
+   * The index to send with the next blocking query, following
+   * https://developer.hashicorp.com/consul/api-docs/features/blocking#implementation-details
+   */
+  def nextIndex(previous: BigInteger, response: ConsulResponse[_]): BigInteger =
+    Option(response.getIndex) match {
+      case Some(index) if index.signum <= 0             => BigInteger.ONE
+      case Some(index) if index.compareTo(previous) < 0 => BigInteger.ZERO
+      case Some(index)                                  => index
+      case None                                         => BigInteger.ZERO
+    }
+
+  /** The passing instances of a service, kept current by a blocking query. */
+  private final class ServiceWatch(val name: String) {
+    @volatile var stopped = false
+    @volatile var targets: immutable.Seq[ResolvedTarget] = Nil
+    val loaded: Promise[Unit] = Promise()
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Keeps a view of the services in the Consul catalog that are tagged with an application name, and of their
+ * instances that pass their health checks, current with blocking queries: each query waits for a change after the
+ * index of the previous response, https://developer.hashicorp.com/consul/api-docs/features/blocking.
+ * Lookups are answered from this view once it is loaded.
+ */
+@InternalApi
+private[consul] final class ConsulCatalogWatch(
+    consul: Consul,
+    settings: ConsulSettings,
+    scheduler: Scheduler,
+    log: LoggingAdapter)(implicit ec: ExecutionContext) {
+  import ConsulCatalogWatch._
+
+  private val waitSeconds = settings.watchWaitTime.toSeconds.toInt
+
+  @volatile private var stopped = false
+
+  // service name -> tags, of the services that are tagged with an application name
+  @volatile private var services: Map[String, immutable.Seq[String]] = Map.empty
+
+  private val catalogLoaded = Promise[Unit]()
+
+  private val serviceWatches = new ConcurrentHashMap[String, ServiceWatch]
+
+  watchCatalog(BigInteger.ZERO)
+
+  def lookup(name: String): Future[Resolved] =
+    catalogLoaded.future.flatMap { _ =>
+      val nameTag = settings.applicationNameTagPrefix + name
+      val watches = services.iterator.collect {
+        case (service, tags) if tags.contains(nameTag) => Option(serviceWatches.get(service))
+      }.flatten.toList
+      Future
+        .traverse(watches)(_.loaded.future)
+        .map(_ => Resolved(name, watches.flatMap(_.targets)))
+    }
+
+  def stop(): Unit = {
+    stopped = true
+    serviceWatches.values.asScala.foreach(_.stopped = true)
+  }
+
+  private def blockingQuery(index: BigInteger): QueryOptions =
+    QueryOptions.blockSeconds(waitSeconds, index).build()
+
+  private def watchCatalog(index: BigInteger): Unit =
+    if (!stopped) {
+      ((callback: ConsulResponseCallback[util.Map[String, util.List[String]]]) =>
+            consul.catalogClient().getServices(blockingQuery(index), callback)).asFuture.onComplete {
+        case Success(response) =>
+          updateServices(response.getResponse)
+          catalogLoaded.trySuccess(())
+          watchCatalog(nextIndex(index, response))
+        case Failure(e) =>
+          log.warning("Watching the Consul catalog failed, retrying in [{}]: {}", settings.watchRetryInterval, e)
+          scheduler.scheduleOnce(settings.watchRetryInterval)(watchCatalog(index))
+      }
+    }
+
+  private def updateServices(catalog: util.Map[String, util.List[String]]): Unit = {
+    val tagged = catalog.asScala.iterator.collect {
+      case (service, tags) if tags.asScala.exists(_.startsWith(settings.applicationNameTagPrefix)) =>
+        service -> tags.asScala.toList
+    }.toMap
+    tagged.keys.foreach { service =>
+      if (!serviceWatches.containsKey(service)) {
+        val watch = new ServiceWatch(service)
+        serviceWatches.put(service, watch)
+        watchService(watch, BigInteger.ZERO)
+      }
+    }
+    serviceWatches.values.asScala.foreach { watch =>
+      if (!tagged.contains(watch.name)) {
+        watch.stopped = true
+        serviceWatches.remove(watch.name)
+      }
+    }
+    services = tagged
+  }
+
+  private def watchService(watch: ServiceWatch, index: BigInteger): Unit =
+    if (!watch.stopped) {
+      ((callback: ConsulResponseCallback[util.List[ServiceHealth]]) =>
+            consul
+              .healthClient()
+              .getHealthyServiceInstances(watch.name, blockingQuery(index), callback)).asFuture.onComplete {
+        case Success(response) =>
+          watch.targets = response.getResponse.asScala.map(resolvedTarget).toList
+          watch.loaded.trySuccess(())
+          watchService(watch, nextIndex(index, response))
+        case Failure(e) =>
+          log.warning(
+            "Watching the instances of Consul service [{}] failed, retrying in [{}]: {}",
+            watch.name,
+            settings.watchRetryInterval,
+            e)
+          scheduler.scheduleOnce(settings.watchRetryInterval)(watchService(watch, index))
+      }
+    }
+
+  private def resolvedTarget(health: ServiceHealth): ResolvedTarget = {
+    val service = health.getService
+    val port = service.getTags.asScala
+      .find(_.startsWith(settings.applicationPekkoManagementPortTagPrefix))
+      .flatMap(tag => Try(tag.substring(settings.applicationPekkoManagementPortTagPrefix.length).toInt).toOption)
+    // instances registered without an address of their own have the address of their node
+    val address = if (service.getAddress.isEmpty) health.getNode.getAddress else service.getAddress
+    ResolvedTarget(
+      host = address,
+      port = Some(port.getOrElse(service.getPort)),
+      address = Try(InetAddress.getByName(address)).toOption)
+  }
+}
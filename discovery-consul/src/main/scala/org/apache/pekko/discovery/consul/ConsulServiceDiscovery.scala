@@ -21,6 +21,8 @@ import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
 import pekko.discovery.consul.ConsulServiceDiscovery._
 import pekko.discovery.{ Lookup, ServiceDiscovery }
 import pekko.dispatch.Dispatchers.DefaultBlockingDispatcherId
+import pekko.event.Logging
+import pekko.management.metrics.internal.ManagementMetrics
 import org.kiwiproject.consul.Consul
 import org.kiwiproject.consul.async.ConsulResponseCallback
 import org.kiwiproject.consul.model.ConsulResponse
@@ -71,26 +73,42 @@ class ConsulServiceDiscovery(system: ActorSystem) extends ServiceDiscovery {
   }
   private val blockingEc: ExecutionContext = system.dispatchers.lookup(DefaultBlockingDispatcherId)
 
+  // started right away, so that the view of the catalog is loaded by the first lookup
+  private val catalogWatch: Option[ConsulCatalogWatch] =
+    if (settings.watchEnabled)
+      Some(
+        new ConsulCatalogWatch(consul, settings, system.scheduler, Logging(system, classOf[ConsulCatalogWatch]))(
+          system.dispatcher))
+    else None
+
   CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseServiceUnbind, "consul-close") { () =>
+    catalogWatch.foreach(_.stop())
     Future {
       consul.destroy()
       pekko.Done
     }(system.dispatcher)
   }
 
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("consul")
+
   override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
     implicit val ec: ExecutionContext = system.dispatcher
+    val startNanos = System.nanoTime()
     // Use a Promise-based pattern instead of Future.firstCompletedOf to avoid leaking
     // the underlying Consul HTTP connections when the timeout fires first.
     val promise = Promise[Resolved]()
     val timeoutCancellable = system.scheduler.scheduleOnce(resolveTimeout) {
       promise.tryFailure(new TimeoutException(s"Lookup for [$lookup] timed-out, within [$resolveTimeout]!"))
     }
-    lookupInConsul(lookup.serviceName).onComplete { result =>
+    val resolved = catalogWatch match {
+      case Some(watch) => watch.lookup(lookup.serviceName)
+      case None        => lookupInConsul(lookup.serviceName)
+    }
+    resolved.onComplete { result =>
       timeoutCancellable.cancel()
       promise.tryComplete(result)
     }
-    promise.future
+    lookupMetrics.record(startNanos, promise.future)(_.addresses.size)
   }
 
   private def lookupInConsul(name: String)(implicit executionContext: ExecutionContext): Future[Resolved] = {
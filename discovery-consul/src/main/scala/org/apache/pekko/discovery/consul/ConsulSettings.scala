@@ -83,6 +83,30 @@ final class ConsulSettings(system: ExtendedActorSystem) extends Extension {
     case ""   => None
     case path => Some(path)
   }
+
+  /**
+   * Whether to keep a view of the catalog current with blocking queries, and answer lookups from it.
+   * @since 2.0.0
+   */
+  val watchEnabled: Boolean = consulConfig.getBoolean("watch.enabled")
+
+  /**
+   * How long a blocking query waits for a change.
+   * @since 2.0.0
+   */
+  val watchWaitTime: FiniteDuration =
+    consulConfig.getDuration("watch.wait-time").toScala
+
+  require(
+    !watchEnabled || (watchWaitTime >= 1.second && watchWaitTime < readTimeout),
+    "pekko.discovery.pekko-consul.watch.wait-time must be at least 1s, and shorter than read-timeout")
+
+  /**
+   * How long to wait before a failed blocking query is sent again.
+   * @since 2.0.0
+   */
+  val watchRetryInterval: FiniteDuration =
+    consulConfig.getDuration("watch.retry-interval").toScala
 }
 
 @ApiMayChange
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.cluster.bootstrap.discovery
+
+import java.net.InetSocketAddress
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{ ConcurrentLinkedQueue, Executors }
+
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.discovery.consul.ConsulServiceDiscovery
+import pekko.testkit.TestKit
+import com.sun.net.httpserver.{ HttpExchange, HttpServer }
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+
+object ConsulWatchDiscoverySpec {
+
+  final case class Instance(node: String, address: String, port: Int, tags: List[String])
+
+  /**
+   * Answers the catalog services and healthy service instances queries of the Consul HTTP API, and blocks the queries
+   * for an index that is current until the stand-in changes or the wait time is up.
+   */
+  final class ConsulStandIn {
+    private var index = 1L
+    private var catalog: Map[String, List[String]] = Map.empty
+    private var passing: Map[String, List[Instance]] = Map.empty
+
+    val requests = new ConcurrentLinkedQueue[String]()
+
+    private val server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0)
+    server.setExecutor(Executors.newCachedThreadPool())
+    server.createContext("/", (exchange: HttpExchange) => handle(exchange))
+    server.start()
+
+    def port: Int = server.getAddress.getPort
+
+    def stop(): Unit = server.stop(0)
+
+    def update(catalog: Map[String, List[String]], passing: Map[String, List[Instance]]): Unit = synchronized {
+      this.catalog = catalog
+      this.passing = passing
+      index += 1
+      notifyAll()
+    }
+
+    private def handle(exchange: HttpExchange): Unit = {
+      val path = exchange.getRequestURI.getPath
+      val query = Option(exchange.getRequestURI.getRawQuery).getOrElse("")
+      requests.add(s"$path?$query")
+      val params = query.split('&').iterator.map(_.split('=')).map(kv => kv(0) -> kv.lift(1).getOrElse("")).toMap
+      val requestedIndex = params.get("index").map(_.toLong).getOrElse(0L)
+      val waitMillis = params.get("wait").map(_.stripSuffix("s").toLong * 1000).getOrElse(0L)
+
+      val (currentIndex, body) = synchronized {
+        val deadline = System.currentTimeMillis() + waitMillis
+        while (index <= requestedIndex && System.currentTimeMillis() < deadline)
+          wait(math.max(1L, deadline - System.currentTimeMillis()))
+        (index, responseBody(path, params))
+      }
+
+      val bytes = body.getBytes(StandardCharsets.UTF_8)
+      exchange.getResponseHeaders.add("Content-Type", "application/json")
+      exchange.getResponseHeaders.add("X-Consul-Index", currentIndex.toString)
+      exchange.sendResponseHeaders(200, bytes.length.toLong)
+      exchange.getResponseBody.write(bytes)
+      exchange.close()
+    }
+
+    private def responseBody(path: String, params: Map[String, String]): String =
+      if (path == "/v1/catalog/services")
+        catalog.map { case (service, tags) => s""""$service":${strings(tags)}""" }.mkString("{", ",", "}")
+      else if (path.startsWith("/v1/health/service/")) {
+        require(params.contains("passing"), "only healthy instances are expected to be queried")
+        val service = path.stripPrefix("/v1/health/service/")
+        passing.getOrElse(service, Nil).map(instance => serviceHealth(service, instance)).mkString("[", ",", "]")
+      } else "{}"
+
+    private def strings(values: List[String]): String = values.map(v => s""""$v"""").mkString("[", ",", "]")
+
+    private def serviceHealth(service: String, instance: Instance): String =
+      s"""{
+         |  "Node": { "ID": "${instance.node}", "Node": "${instance.node}", "Address": "10.0.0.1",
+         |            "Datacenter": "dc1", "TaggedAddresses": {}, "Meta": {} },
+         |  "Service": { "ID": "$service-${instance.node}", "Service": "$service", "Tags": ${strings(instance.tags)},
+         |               "Address": "${instance.address}", "Port": ${instance.port}, "Meta": {},
+         |               "EnableTagOverride": false },
+         |  "Checks": [{ "Node": "${instance.node}", "CheckID": "serfHealth", "Name": "Serf Health Status",
+         |               "Status": "passing", "Notes": "", "Output": "", "ServiceID": "", "ServiceName": "",
+         |               "ServiceTags": [] }]
+         |}""".stripMargin
+  }
+}
+
+class ConsulWatchDiscoverySpec
+    extends AnyWordSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with BeforeAndAfterAll {
+  import ConsulWatchDiscoverySpec._
+
+  implicit override val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(10, Seconds), interval = Span(100, Millis))
+
+  private val consul = new ConsulStandIn
+
+  private val tags = List("system:watched", "pekko-management-port:7626")
+
+  consul.update(
+    catalog = Map("watched" -> tags, "consul" -> Nil),
+    passing = Map(
+      "watched" -> List(Instance("a", "127.0.0.1", 8080, tags), Instance("b", "", 8080, "system:watched" :: Nil))))
+
+  private val system = ActorSystem(
+    "ConsulWatchDiscoverySpec",
+    ConfigFactory.parseString(s"""
+      pekko.discovery.pekko-consul {
+        consul-port = ${consul.port}
+        watch {
+          enabled = on
+          wait-time = 2s
+        }
+      }
+      """).withFallback(ConfigFactory.load()))
+
+  private val discovery = new ConsulServiceDiscovery(system)
+
+  override protected def afterAll(): Unit = {
+    TestKit.shutdownActorSystem(system)
+    consul.stop()
+  }
+
+  "Consul discovery in watch mode" should {
+
+    "discover the passing instances of the tagged services" in {
+      val resolved = discovery.lookup("watched", 5.seconds).futureValue
+      resolved.addresses.map(target => (target.host, target.port)) should contain theSameElementsAs List(
+        ("127.0.0.1", Some(7626)),
+        ("10.0.0.1", Some(8080)))
+      resolved.addresses.find(_.host == "127.0.0.1").flatMap(_.address) shouldBe defined
+
+      discovery.lookup("unknown", 5.seconds).futureValue.addresses shouldBe empty
+    }
+
+    "answer lookups from memory, and follow changes with blocking queries" in {
+      (1 to 10).foreach(_ => discovery.lookup("watched", 5.seconds).futureValue.addresses should have size 2)
+      // all queries were sent by the watch, none by the lookups
+      consul.requests.asScala.forall(_.contains("index=")) shouldBe true
+
+      // instance b no longer passes its health checks
+      consul.update(
+        catalog = Map("watched" -> tags, "consul" -> Nil),
+        passing = Map("watched" -> List(Instance("a", "127.0.0.1", 8080, tags))))
+      eventually {
+        discovery.lookup("watched", 5.seconds).futureValue.addresses.map(_.host) shouldEqual List("127.0.0.1")
+      }
+
+      val queries = consul.requests.asScala.toList
+      queries.filter(_.startsWith("/v1/health/service/")).map(_.takeWhile(_ != '?')).distinct shouldEqual List(
+        "/v1/health/service/watched")
+      queries.exists(query => query.contains("index=2") && query.contains("wait=2s")) shouldBe true
+    }
+  }
+}
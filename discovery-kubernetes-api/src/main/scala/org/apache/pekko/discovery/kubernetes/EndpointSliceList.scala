@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import scala.collection.immutable
+import org.apache.pekko.annotation.InternalApi
+
+/**
+ * INTERNAL API
+ *
+ * The fields of `discovery.k8s.io/v1` EndpointSlices that are needed to resolve targets.
+ */
+@InternalApi private[kubernetes] object EndpointSliceList {
+  final case class EndpointConditions(ready: Option[Boolean], serving: Option[Boolean], terminating: Option[Boolean])
+
+  final case class Endpoint(addresses: immutable.Seq[String], conditions: Option[EndpointConditions])
+
+  final case class EndpointPort(name: Option[String], port: Option[Int])
+
+  final case class EndpointSlice(
+      addressType: String,
+      endpoints: Option[immutable.Seq[Endpoint]],
+      ports: Option[immutable.Seq[EndpointPort]])
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi private[kubernetes] final case class EndpointSliceList(
+    items: immutable.Seq[EndpointSliceList.EndpointSlice])
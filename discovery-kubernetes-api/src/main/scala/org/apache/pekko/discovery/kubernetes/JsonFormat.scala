@@ -24,6 +24,7 @@ import pekko.discovery.kubernetes.PodList.{
   PodSpec,
   PodStatus
 }
+import pekko.discovery.kubernetes.EndpointSliceList.{ Endpoint, EndpointConditions, EndpointPort, EndpointSlice }
 import pekko.http.scaladsl.marshallers.sprayjson.SprayJsonSupport
 import spray.json._
 
@@ -36,7 +37,13 @@ import spray.json._
   implicit val podSpecFormat: JsonFormat[PodSpec] = jsonFormat1(PodSpec.apply)
   implicit val containerStatusFormat: JsonFormat[ContainerStatus] = jsonFormat2(ContainerStatus.apply)
   implicit val podStatusFormat: JsonFormat[PodStatus] = jsonFormat3(PodStatus.apply)
-  implicit val metadataFormat: JsonFormat[Metadata] = jsonFormat1(Metadata.apply)
+  implicit val metadataFormat: JsonFormat[Metadata] = jsonFormat4(Metadata.apply)
   implicit val podFormat: JsonFormat[Pod] = jsonFormat3(Pod.apply)
-  implicit val podListFormat: RootJsonFormat[PodList] = jsonFormat1(PodList.apply)
+  implicit val podListFormat: RootJsonFormat[PodList] = jsonFormat2(PodList.apply)
+
+  implicit val endpointConditionsFormat: JsonFormat[EndpointConditions] = jsonFormat3(EndpointConditions.apply)
+  implicit val endpointFormat: JsonFormat[Endpoint] = jsonFormat2(Endpoint.apply)
+  implicit val endpointPortFormat: JsonFormat[EndpointPort] = jsonFormat2(EndpointPort.apply)
+  implicit val endpointSliceFormat: JsonFormat[EndpointSlice] = jsonFormat3(EndpointSlice.apply)
+  implicit val endpointSliceListFormat: RootJsonFormat[EndpointSliceList] = jsonFormat1(EndpointSliceList.apply)
 }
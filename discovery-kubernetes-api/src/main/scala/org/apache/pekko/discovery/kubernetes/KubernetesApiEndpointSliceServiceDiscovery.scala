@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import java.net.InetAddress
+
+import scala.collection.immutable
+import scala.concurrent.Future
+import scala.concurrent.duration.FiniteDuration
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.annotation.InternalApi
+import pekko.discovery.Lookup
+import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
+import pekko.discovery.kubernetes.JsonFormat._
+import pekko.event.Logging
+import pekko.http.scaladsl.model.{ StatusCodes, Uri }
+import pekko.http.scaladsl.unmarshalling.Unmarshal
+
+object KubernetesApiEndpointSliceServiceDiscovery {
+
+  /**
+   * INTERNAL API
+   *
+   * Finds the targets in the endpoint slices of a service. Endpoints that are terminating, or that are not serving
+   * (or ready, when the API server does not report serving), are not targets. A Service with
+   * `publishNotReadyAddresses: true` reports all of its endpoints as ready.
+   */
+  @InternalApi
+  private[kubernetes] def targets(
+      endpointSlices: EndpointSliceList,
+      portName: Option[String],
+      podNamespace: String,
+      podDomain: String,
+      rawIp: Boolean): immutable.Seq[ResolvedTarget] = {
+    val resolved = for {
+      slice <- endpointSlices.items
+      if slice.addressType == "IPv4" || slice.addressType == "IPv6"
+      endpoint <- slice.endpoints.getOrElse(Nil)
+      conditions = endpoint.conditions
+      if !conditions.flatMap(_.terminating).contains(true)
+      if conditions.flatMap(c => c.serving.orElse(c.ready)).getOrElse(true)
+      // an endpoint has one address, further addresses are to be ignored
+      ip <- endpoint.addresses.headOption.toList
+      maybePort <- portName match {
+        case None =>
+          List(None)
+        case Some(name) =>
+          for {
+            port <- slice.ports.getOrElse(Nil)
+            if port.name.contains(name)
+            number <- port.port.toList
+          } yield Some(number)
+      }
+    } yield ResolvedTarget(
+      host = KubernetesApiServiceDiscovery.targetHost(ip, podNamespace, podDomain, rawIp),
+      port = maybePort,
+      address = Some(InetAddress.getByName(ip)))
+    // an endpoint can be in more than one slice while the slices are being updated
+    resolved.distinct
+  }
+}
+
+/**
+ * Resolves the targets from the `discovery.k8s.io/v1` EndpointSlices of a Service instead of from the pods. The
+ * endpoint slices are much smaller than the pod objects, which reduces the size of the responses of the API server
+ * for large deployments. The port name refers to the name of the port of the Service.
+ *
+ * This uses the settings of the `kubernetes-api` discovery method.
+ */
+class KubernetesApiEndpointSliceServiceDiscovery(settings: Settings)(
+    implicit system: ActorSystem) extends KubernetesApiServiceDiscovery(settings) {
+
+  import KubernetesApiEndpointSliceServiceDiscovery.targets
+  import system.dispatcher
+
+  def this()(implicit system: ActorSystem) = this(Settings(system))
+
+  private val log = Logging(system, classOf[KubernetesApiEndpointSliceServiceDiscovery])
+
+  override def lookup(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
+    val labelSelector = settings.endpointSliceLabelSelector(query.serviceName)
+
+    for {
+      setup <- kubernetesSetup
+
+      request <- optionToFuture(
+        apiRequest(
+          apiToken(setup),
+          Uri.Path.Empty / "apis" / "discovery.k8s.io" / "v1" / "namespaces" / setup.podNamespace / "endpointslices",
+          List("labelSelector" -> labelSelector)),
+        s"Unable to form request; check Kubernetes environment (expecting env vars ${settings.apiServiceHostEnvName}, ${settings.apiServicePortEnvName})"
+      )
+
+      _ = log.info(
+        "Querying for endpoint slices with label selector: [{}]. Namespace: [{}]. Port: [{}]",
+        labelSelector,
+        setup.podNamespace,
+        query.portName)
+
+      response <- singleRequest(request, setup, resolveTimeout)
+
+      endpointSlices <- response.status match {
+        case StatusCodes.OK =>
+          val unmarshalled = Unmarshal(response.entity).to[EndpointSliceList]
+          unmarshalled.failed.foreach { t =>
+            log.warning("Failed to unmarshal Kubernetes API response. Ex: [{}]", t.getMessage)
+          }
+          unmarshalled
+        case _ =>
+          unexpectedResponse[EndpointSliceList](response, resolveTimeout)
+      }
+
+    } yield {
+      val addresses = targets(endpointSlices, query.portName, setup.podNamespace, settings.podDomain, settings.rawIp)
+      if (addresses.isEmpty && endpointSlices.items.exists(_.endpoints.exists(_.nonEmpty))) {
+        if (log.isInfoEnabled) {
+          val portNames = endpointSlices.items.flatMap(_.ports.getOrElse(Nil)).flatMap(_.name).toSet
+          log.info(
+            "No targets found from endpoint slices. Is the correct port name configured? Current configuration: [{}]. Ports of the service: [{}]",
+            query.portName,
+            portNames)
+        }
+      }
+      Resolved(
+        serviceName = query.serviceName,
+        addresses = addresses)
+    }
+  }
+}
@@ -14,8 +14,7 @@
 package org.apache.pekko.discovery.kubernetes
 
 import java.net.InetAddress
-import java.nio.charset.StandardCharsets
-import java.util.concurrent.TimeoutException
+import java.util.concurrent.{ ConcurrentHashMap, TimeoutException }
 import java.nio.file.{ Files, Paths }
 
 import scala.collection.immutable
@@ -42,7 +41,8 @@ import pekko.http.scaladsl.coding.Coders
 import pekko.http.scaladsl.model._
 import pekko.http.scaladsl.model.headers.{ Authorization, HttpEncodings, OAuth2BearerToken }
 import pekko.http.scaladsl.unmarshalling.Unmarshal
-import pekko.pki.kubernetes.PemManagersProvider
+import pekko.kubernetes.client.KubernetesApiClient
+import pekko.management.metrics.internal.ManagementMetrics
 
 object KubernetesApiServiceDiscovery {
 
@@ -85,13 +85,22 @@ object KubernetesApiServiceDiscovery {
           } yield Some(port.containerPort)
       }
     } yield {
-      val hostOrIp = if (rawIp) ip else s"${ip.replace('.', '-')}.$podNamespace.pod.$podDomain"
       ResolvedTarget(
-        host = hostOrIp,
+        host = targetHost(ip, podNamespace, podDomain, rawIp),
         port = maybePort,
         address = Some(InetAddress.getByName(ip)))
     }
 
+  /**
+   * INTERNAL API
+   *
+   * The raw IP, or the DNS name of the pod with that IP. Pod DNS names are only defined for IPv4 addresses, so
+   * IPv6 addresses are always used as they are.
+   */
+  @InternalApi
+  private[kubernetes] def targetHost(ip: String, podNamespace: String, podDomain: String, rawIp: Boolean): String =
+    if (rawIp || ip.contains(':')) ip else s"${ip.replace('.', '-')}.$podNamespace.pod.$podDomain"
+
   class KubernetesApiException(msg: String) extends RuntimeException(msg) with NoStackTrace
 
   private[kubernetes] final case class KubernetesSetup(
@@ -110,15 +119,17 @@ class KubernetesApiServiceDiscovery(settings: Settings)(
   import KubernetesApiServiceDiscovery.KubernetesSetup
   import pekko.discovery.kubernetes.KubernetesApiServiceDiscovery._
 
-  private val http = Http()
+  private val client = KubernetesApiClient(system)
 
   def this()(implicit system: ActorSystem) = this(Settings(system))
 
   private val log = Logging(system, classOf[KubernetesApiServiceDiscovery])
 
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("kubernetes-api")
+
   log.debug("Settings {}", settings)
 
-  private val kubernetesSetup: Future[KubernetesSetup] = {
+  private[kubernetes] val kubernetesSetup: Future[KubernetesSetup] = {
     implicit val blockingDispatcher: ExecutionContext = system.dispatchers.lookup(DefaultBlockingDispatcherId)
     for {
       apiToken: String <- Future {
@@ -137,75 +148,28 @@ class KubernetesApiServiceDiscovery(settings: Settings)(
 
   import system.dispatcher
 
-  override def lookup(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
+  private val podWatchers = new ConcurrentHashMap[String, PodWatcher]()
+
+  override def lookup(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
+    lookupMetrics.record(System.nanoTime(), resolve(query, resolveTimeout))(_.addresses.size)
+
+  private def resolve(query: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
     val labelSelector = settings.podLabelSelector(query.serviceName)
 
     for {
       setup <- kubernetesSetup
 
-      request <- {
-        log.info(
-          "Querying for pods with label selector: [{}]. Namespace: [{}]. Port: [{}]",
-          labelSelector,
-          setup.podNamespace,
-          query.portName)
-
-        optionToFuture(
-          podRequest(setup.apiToken, setup.podNamespace, labelSelector),
-          s"Unable to form request; check Kubernetes environment (expecting env vars ${settings.apiServiceHostEnvName}, ${settings.apiServicePortEnvName})"
-        )
-      }
-
-      response <- {
-        val rawResponse = http.singleRequest(request, setup.clientHttpsConnectionContext)
-        val promise = Promise[HttpResponse]()
-        val timeoutCancellable = system.scheduler.scheduleOnce(resolveTimeout) {
-          promise.tryFailure(new TimeoutException(s"Kubernetes API request timed out after $resolveTimeout"))
-        }
-        rawResponse.onComplete {
-          case scala.util.Success(resp) =>
-            timeoutCancellable.cancel()
-            if (!promise.trySuccess(resp)) {
-              resp.discardEntityBytes()
-            }
-          case scala.util.Failure(ex) =>
-            timeoutCancellable.cancel()
-            promise.tryFailure(ex)
-        }(system.dispatcher)
-        promise.future.map(decodeResponse)
-      }
-
-      entity <- response.entity.toStrict(resolveTimeout)
-
       podList <- {
-        response.status match {
-          case StatusCodes.OK =>
-            log.debug("Kubernetes API entity: [{}]", entity.data.utf8String)
-            val unmarshalled = Unmarshal(entity).to[PodList]
-            unmarshalled.failed.foreach { t =>
-              log.warning(
-                "Failed to unmarshal Kubernetes API response.  Status code: [{}]; Response body: [{}]. Ex: [{}]",
-                response.status.value,
-                entity,
-                t.getMessage)
-            }
-            unmarshalled
-          case StatusCodes.Forbidden =>
-            Unmarshal(entity).to[String].foreach { body =>
-              log.warning(
-                "Forbidden to communicate with Kubernetes API server; check RBAC settings. Response: [{}]",
-                body)
-            }
-            Future.failed(
-              new KubernetesApiException("Forbidden when communicating with the Kubernetes API. Check RBAC settings."))
-          case other =>
-            Unmarshal(entity).to[String].foreach { body =>
-              log.warning(
-                "Non-200 when communicating with Kubernetes API server. Status code: [{}]. Response body: [{}]",
-                other,
-                body)
-            }
-            Future.failed(new KubernetesApiException(s"Non-200 from Kubernetes API server: $other"))
+        if (settings.podWatchEnabled) {
+          log.debug("Using watched pods with label selector: [{}]. Port: [{}]", labelSelector, query.portName)
+          withTimeout(podWatcher(labelSelector).currentPods(), resolveTimeout)
+        } else {
+          log.info(
+            "Querying for pods with label selector: [{}]. Namespace: [{}]. Port: [{}]",
+            labelSelector,
+            setup.podNamespace,
+            query.portName)
+          listPods(setup, labelSelector, resolveTimeout)
         }
       }
 
@@ -227,18 +191,200 @@ class KubernetesApiServiceDiscovery(settings: Settings)(
     }
   }
 
-  private def optionToFuture[T](option: Option[T], failMsg: String): Future[T] =
+  private def podWatcher(labelSelector: String): PodWatcher =
+    podWatchers.computeIfAbsent(
+      labelSelector,
+      _ => {
+        val watcher = new PodWatcher(
+          labelSelector,
+          list =
+            () => kubernetesSetup.flatMap(setup => listPods(setup, labelSelector, settings.podWatchRequestTimeout)),
+          watch = resourceVersion => kubernetesSetup.flatMap(setup => watchPods(setup, labelSelector, resourceVersion)),
+          settings.podWatchRetryInterval)
+        watcher.start()
+        watcher
+      })
+
+  /**
+   * Lists the pods page by page, within the given timeout for all pages. Each page is decoded while it is
+   * received, so that only the pods, and not the complete response, are held in memory.
+   */
+  private def listPods(setup: KubernetesSetup, labelSelector: String, timeout: FiniteDuration): Future[PodList] = {
+    val deadline = timeout.fromNow
+
+    def listFrom(continue: Option[String], pods: Vector[PodList.Pod]): Future[PodList] =
+      listPodsPage(setup, labelSelector, continue, deadline.timeLeft).flatMap { page =>
+        val listed = pods ++ page.items
+        page.metadata.flatMap(_.continue).filter(_.nonEmpty) match {
+          case Some(next) => listFrom(Some(next), listed)
+          case None =>
+            log.debug("Listed [{}] pods with label selector [{}]", listed.size, labelSelector)
+            Future.successful(PodList(listed, page.metadata))
+        }
+      }
+
+    listFrom(None, Vector.empty)
+  }
+
+  private def listPodsPage(
+      setup: KubernetesSetup,
+      labelSelector: String,
+      continue: Option[String],
+      timeout: FiniteDuration): Future[PodList] = {
+    val listQuery =
+      (if (settings.podListPageSize > 0) List("limit" -> settings.podListPageSize.toString) else Nil) ++
+      continue.map("continue" -> _)
+    for {
+      request <- optionToFuture(
+        podRequest(apiToken(setup), setup.podNamespace, labelSelector, listQuery),
+        s"Unable to form request; check Kubernetes environment (expecting env vars ${settings.apiServiceHostEnvName}, ${settings.apiServicePortEnvName})"
+      )
+
+      response <- singleRequest(request, setup, timeout)
+
+      podList <- {
+        response.status match {
+          case StatusCodes.OK =>
+            val parsed = PodListParser.parse(response.entity.dataBytes.completionTimeout(timeout))
+            parsed.failed.foreach { t =>
+              log.warning(
+                "Failed to unmarshal Kubernetes API response.  Status code: [{}]. Ex: [{}]",
+                response.status.value,
+                t.getMessage)
+            }
+            parsed
+          case _ =>
+            unexpectedResponse(response, timeout)
+        }
+      }
+    } yield podList
+  }
+
+  /**
+   * Starts a watch on a connection of its own, as the response is streamed until the server timeout expires and
+   * would otherwise occupy a connection of the pool that is shared with other requests.
+   */
+  private def watchPods(
+      setup: KubernetesSetup,
+      labelSelector: String,
+      resourceVersion: Option[String]): Future[HttpResponse] = {
+    val watchQuery =
+      List(
+        "watch" -> "true",
+        "allowWatchBookmarks" -> "true",
+        "timeoutSeconds" -> settings.podWatchServerTimeout.toSeconds.toString) ++
+      resourceVersion.map("resourceVersion" -> _)
+    optionToFuture(
+      podRequest(apiToken(setup), setup.podNamespace, labelSelector, watchQuery),
+      s"Unable to form request; check Kubernetes environment (expecting env vars ${settings.apiServiceHostEnvName}, ${settings.apiServicePortEnvName})"
+    ).flatMap { request =>
+      withTimeout(
+        client.watchRequest(request, Some(setup.clientHttpsConnectionContext)),
+        settings.podWatchRequestTimeout).map(decodeResponse)
+    }
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * Logs the body of a non-200 response and fails with a [[KubernetesApiException]].
+   */
+  @InternalApi
+  private[kubernetes] def unexpectedResponse[T](response: HttpResponse, timeout: FiniteDuration): Future[T] = {
+    val body = response.entity.toStrict(timeout).flatMap(entity => Unmarshal(entity).to[String])
+    response.status match {
+      case StatusCodes.Forbidden =>
+        body.foreach { body =>
+          log.warning(
+            "Forbidden to communicate with Kubernetes API server; check RBAC settings. Response: [{}]",
+            body)
+        }
+        Future.failed(
+          new KubernetesApiException("Forbidden when communicating with the Kubernetes API. Check RBAC settings."))
+      case other =>
+        body.foreach { body =>
+          log.warning(
+            "Non-200 when communicating with Kubernetes API server. Status code: [{}]. Response body: [{}]",
+            other,
+            body)
+        }
+        Future.failed(new KubernetesApiException(s"Non-200 from Kubernetes API server: $other"))
+    }
+  }
+
+  /** INTERNAL API */
+  @InternalApi
+  private[kubernetes] def singleRequest(
+      request: HttpRequest,
+      setup: KubernetesSetup,
+      timeout: FiniteDuration): Future[HttpResponse] =
+    client
+      .withTimeout(timeout, new TimeoutException(s"Kubernetes API request timed out after $timeout"))(
+        client.singleRequest(request, Some(setup.clientHttpsConnectionContext)))
+      .map(decodeResponse)
+
+  private def withTimeout[T](result: Future[T], timeout: FiniteDuration): Future[T] = {
+    val promise = Promise[T]()
+    val timeoutCancellable = system.scheduler.scheduleOnce(timeout) {
+      promise.tryFailure(new TimeoutException(s"Kubernetes API request timed out after $timeout"))
+    }
+    result.onComplete {
+      case scala.util.Success(value) =>
+        timeoutCancellable.cancel()
+        if (!promise.trySuccess(value)) {
+          value match {
+            case resp: HttpResponse => resp.discardEntityBytes()
+            case _                  =>
+          }
+        }
+      case scala.util.Failure(ex) =>
+        timeoutCancellable.cancel()
+        promise.tryFailure(ex)
+    }(system.dispatcher)
+    promise.future
+  }
+
+  /** INTERNAL API */
+  @InternalApi
+  private[kubernetes] def optionToFuture[T](option: Option[T], failMsg: String): Future[T] =
     option.fold(Future.failed[T](new NoSuchElementException(failMsg)))(Future.successful)
 
-  private def podRequest(token: String, namespace: String, labelSelector: String) =
+  /**
+   * INTERNAL API
+   *
+   * The base URI of the API server, taken from the environment. Tests override this to use a local stub.
+   */
+  @InternalApi
+  private[kubernetes] def apiServerUri: Option[Uri] =
     for {
       host <- sys.env.get(settings.apiServiceHostEnvName)
       portStr <- sys.env.get(settings.apiServicePortEnvName)
       port <- Try(portStr.toInt).toOption
+    } yield Uri.from(scheme = "https", host = host, port = port)
+
+  private def podRequest(
+      token: String,
+      namespace: String,
+      labelSelector: String,
+      extraQuery: immutable.Seq[(String, String)] = Nil) = {
+    val selectors = ("labelSelector" -> labelSelector) +: settings.podFieldSelector.map("fieldSelector" -> _).toList
+    apiRequest(token, Uri.Path.Empty / "api" / "v1" / "namespaces" / namespace / "pods", selectors ++ extraQuery)
+  }
+
+  /**
+   * INTERNAL API
+   *
+   * A request to the API server, None when the API server is not known from the environment.
+   */
+  @InternalApi
+  private[kubernetes] def apiRequest(
+      token: String,
+      path: Uri.Path,
+      query: immutable.Seq[(String, String)]): Option[HttpRequest] =
+    for {
+      baseUri <- apiServerUri
     } yield {
-      val path = Uri.Path.Empty / "api" / "v1" / "namespaces" / namespace / "pods"
-      val query = Uri.Query("labelSelector" -> labelSelector)
-      val uri = Uri.from(scheme = "https", host = host, port = port).withPath(path).withQuery(query)
+      val uri = baseUri.withPath(path).withQuery(Uri.Query(query: _*))
 
       val authHeaders = immutable.Seq(Authorization(OAuth2BearerToken(token)))
       val acceptEncodingHeader = HttpEncodings.getForKey(settings.httpRequestAcceptEncoding)
@@ -249,10 +395,18 @@ class KubernetesApiServiceDiscovery(settings: Settings)(
   /**
    * This uses blocking IO, and so should only be used at startup from blocking dispatcher.
    */
-  private def clientHttpsConnectionContext(): HttpsConnectionContext = {
-    val sslContext = PemManagersProvider.createSslContext(settings.apiCaPath, settings.tlsVersion)
-    ConnectionContext.httpsClient(sslContext)
-  }
+  private def clientHttpsConnectionContext(): HttpsConnectionContext =
+    client.httpsConnectionContext(settings.apiCaPath, settings.tlsVersion)
+
+  /**
+   * The token of the service account, which Kubernetes rotates. The file is only read again when it changed, see
+   * [[KubernetesApiClient.readFile]]. Falls back to the token read at startup.
+   */
+  private[kubernetes] def apiToken(setup: KubernetesSetup): String =
+    try client.readFile(settings.apiTokenPath)
+    catch {
+      case NonFatal(_) => setup.apiToken
+    }
 
   /**
    * This uses blocking IO, and so should only be used to read configuration at startup.
@@ -261,7 +415,7 @@ class KubernetesApiServiceDiscovery(settings: Settings)(
     val file = Paths.get(path)
     if (Files.exists(file)) {
       try {
-        Some(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+        Some(client.readFile(path))
       } catch {
         case NonFatal(e) =>
           log.error(e, "Error reading {} from {}", name, path)
@@ -20,7 +20,11 @@ import org.apache.pekko.annotation.InternalApi
  * INTERNAL API
  */
 @InternalApi private[kubernetes] object PodList {
-  final case class Metadata(deletionTimestamp: Option[String])
+  final case class Metadata(
+      deletionTimestamp: Option[String],
+      name: Option[String] = None,
+      resourceVersion: Option[String] = None,
+      continue: Option[String] = None)
 
   final case class ContainerPort(name: Option[String], containerPort: Int)
 
@@ -41,4 +45,6 @@ import org.apache.pekko.annotation.InternalApi
 /**
  * INTERNAL API
  */
-@InternalApi private[kubernetes] final case class PodList(items: immutable.Seq[PodList.Pod])
+@InternalApi private[kubernetes] final case class PodList(
+    items: immutable.Seq[PodList.Pod],
+    metadata: Option[PodList.Metadata] = None)
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import scala.collection.immutable
+import scala.concurrent.{ ExecutionContext, Future }
+
+import org.apache.pekko
+import pekko.annotation.InternalApi
+import pekko.discovery.kubernetes.JsonFormat._
+import pekko.discovery.kubernetes.PodList.Pod
+import pekko.stream.Materializer
+import pekko.stream.scaladsl.{ Sink, Source }
+import pekko.util.{ ByteString, ByteStringBuilder }
+import spray.json._
+
+/**
+ * INTERNAL API
+ *
+ * Parses a pod list while it is being received. The elements of the top level `items` array are cut out of the
+ * stream one by one and decoded into the few fields that are needed, so that the AST of the complete list, which can
+ * be several megabytes for a large namespace, is never built. What remains of the document, with an empty `items`
+ * array, is decoded for the list metadata.
+ */
+@InternalApi private[kubernetes] object PodListParser {
+
+  def parse(bytes: Source[ByteString, Any])(implicit mat: Materializer): Future[PodList] = {
+    implicit val ec: ExecutionContext = mat.executionContext
+    val scanner = new ItemsScanner
+    bytes
+      .mapConcat(scanner.offer)
+      .map(item => item.utf8String.parseJson.convertTo[Pod])
+      .runWith(Sink.collection[Pod, Vector[Pod]])
+      .map { items =>
+        val rest = scanner.remainder()
+        val metadata =
+          if (rest.isEmpty) None
+          else rest.utf8String.parseJson.convertTo[PodList].metadata
+        PodList(items, metadata)
+      }
+  }
+
+  /**
+   * Splits a JSON object into the elements of its top level `items` array, and the rest of the object.
+   * Not thread safe, each stream must use its own instance.
+   */
+  final class ItemsScanner {
+    private var depth = 0
+    private var inString = false
+    private var escaped = false
+    // the last key at depth 1 and whether it was followed by a colon, to find the start of `items`
+    private val key = new java.lang.StringBuilder
+    private var lastKey = ""
+    private var afterColon = false
+    private var inItems = false
+    private var item: ByteStringBuilder = null
+    private val rest = new ByteStringBuilder
+
+    def offer(bytes: ByteString): immutable.Seq[ByteString] = {
+      var items = List.empty[ByteString]
+      val it = bytes.iterator
+      while (it.hasNext) {
+        val b = it.next()
+        val c = (b & 0xFF).toChar
+        if (inString) {
+          append(b)
+          if (escaped) escaped = false
+          else if (c == '\\') escaped = true
+          else if (c == '"') {
+            inString = false
+            if (depth == 1) lastKey = key.toString
+          } else if (depth == 1 && key.length <= MaxKeyLength) key.append(c)
+        } else
+          c match {
+            case '"' =>
+              append(b)
+              inString = true
+              if (depth == 1) key.setLength(0)
+            case ':' =>
+              append(b)
+              afterColon = depth == 1
+            case '{' | '[' =>
+              if (inItems && depth == 2) item = new ByteStringBuilder
+              append(b)
+              if (depth == 1 && c == '[' && afterColon && lastKey == "items") inItems = true
+              depth += 1
+              afterColon = false
+            case '}' | ']' =>
+              if (item ne null) {
+                item.putByte(b)
+                depth -= 1
+                if (depth == 2) {
+                  items = item.result() :: items
+                  item = null
+                }
+              } else {
+                depth -= 1
+                if (inItems && depth == 1) inItems = false
+                append(b)
+              }
+            case ' ' | '\n' | '\r' | '\t' =>
+              append(b)
+            case _ =>
+              append(b)
+              afterColon = false
+          }
+      }
+      items.reverse
+    }
+
+    /** The object without the elements of `items`, only complete after the last bytes were offered. */
+    def remainder(): ByteString = rest.result()
+
+    // elements of `items` go to the current item, the separators between them are dropped
+    private def append(b: Byte): Unit =
+      if (item ne null) item.putByte(b)
+      else if (!(inItems && depth == 2)) rest.putByte(b)
+  }
+
+  private val MaxKeyLength = 16
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import java.util.concurrent.atomic.AtomicReference
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.duration.FiniteDuration
+import scala.util.{ Failure, Success }
+import scala.util.control.NoStackTrace
+
+import org.apache.pekko
+import pekko.Done
+import pekko.actor.ActorSystem
+import pekko.annotation.InternalApi
+import pekko.discovery.kubernetes.JsonFormat._
+import pekko.discovery.kubernetes.KubernetesApiServiceDiscovery.KubernetesApiException
+import pekko.discovery.kubernetes.PodList.Pod
+import pekko.event.Logging
+import pekko.http.scaladsl.model.{ HttpResponse, StatusCodes }
+import pekko.stream.KillSwitches
+import pekko.stream.scaladsl.{ Framing, Sink }
+import pekko.util.ByteString
+import spray.json._
+
+/**
+ * INTERNAL API
+ */
+@InternalApi private[kubernetes] object PodWatcher {
+
+  /**
+   * The pods for one label selector, keyed by pod name, and the resourceVersion they are current with.
+   */
+  final case class Snapshot(pods: Map[String, Pod], resourceVersion: Option[String]) {
+    def podList: PodList = PodList(pods.valuesIterator.toList)
+  }
+
+  /** The resourceVersion to resume from is too old, the pods have to be listed again. */
+  final class ResourceExpiredException(msg: String) extends RuntimeException(msg) with NoStackTrace
+
+  private val MaxEventSize = 1024 * 1024
+}
+
+/**
+ * INTERNAL API
+ *
+ * Keeps the pods matching one label selector current in memory. The pods are listed once, and then watched
+ * starting from the resourceVersion of the list. A watch that ends, for example when the server timeout expires,
+ * is resumed from the last seen resourceVersion. When the API server has compacted that version away the pods
+ * are listed again.
+ *
+ * @param list lists the pods, the result must include the resourceVersion of the list
+ * @param watch starts a watch request from the given resourceVersion
+ */
+@InternalApi private[kubernetes] final class PodWatcher(
+    labelSelector: String,
+    list: () => Future[PodList],
+    watch: Option[String] => Future[HttpResponse],
+    retryInterval: FiniteDuration)(implicit system: ActorSystem) {
+  import PodWatcher._
+
+  private implicit val ec: ExecutionContext = system.dispatcher
+  private val log = Logging(system, classOf[PodWatcher])
+  private val snapshot = new AtomicReference[Option[Snapshot]](None)
+  private val firstList = new AtomicReference(Promise[PodList]())
+  private val killSwitch = KillSwitches.shared(s"pod-watch-$labelSelector")
+  @volatile private var stopped = false
+
+  system.registerOnTermination(stop())
+
+  /**
+   * The current pods. Until the pods have been listed the first time this is completed by the result of the
+   * next attempt to list them.
+   */
+  def currentPods(): Future[PodList] =
+    snapshot.get() match {
+      case Some(current) => Future.successful(current.podList)
+      case None          => firstList.get().future
+    }
+
+  def start(): Unit = relist()
+
+  def stop(): Unit = {
+    stopped = true
+    killSwitch.shutdown()
+  }
+
+  private def relist(): Unit =
+    if (!stopped)
+      list().onComplete {
+        case Success(podList) =>
+          val pods = podList.items.flatMap(pod => pod.metadata.flatMap(_.name).map(_ -> pod)).toMap
+          val resourceVersion = podList.metadata.flatMap(_.resourceVersion)
+          snapshot.set(Some(Snapshot(pods, resourceVersion)))
+          firstList.get().trySuccess(podList)
+          log.debug("Listed [{}] pods with label selector [{}] at resourceVersion [{}]", pods.size, labelSelector,
+            resourceVersion)
+          watchFrom(resourceVersion)
+        case Failure(e) =>
+          log.warning("Failed to list pods with label selector [{}], retrying: {}", labelSelector, e.getMessage)
+          if (snapshot.get().isEmpty) firstList.getAndSet(Promise()).tryFailure(e)
+          retry(() => relist())
+      }
+
+  private def watchFrom(resourceVersion: Option[String]): Unit =
+    if (!stopped)
+      watch(resourceVersion)
+        .flatMap { response =>
+          response.status match {
+            case StatusCodes.OK =>
+              response.entity.dataBytes
+                .via(killSwitch.flow)
+                .via(Framing.delimiter(ByteString("\n"), MaxEventSize, allowTruncation = true))
+                .filter(_.nonEmpty)
+                .runWith(Sink.foreach(line => onEvent(line.utf8String.parseJson.asJsObject)))
+            case StatusCodes.Gone =>
+              response.discardEntityBytes()
+              Future.failed(new ResourceExpiredException(s"resourceVersion [$resourceVersion] is too old"))
+            case other =>
+              response.discardEntityBytes()
+              Future.failed(new KubernetesApiException(s"Non-200 from Kubernetes API server for watch: $other"))
+          }
+        }
+        .onComplete {
+          case Success(Done) =>
+            // the API server ended the watch, resume where it stopped
+            watchFrom(snapshot.get().flatMap(_.resourceVersion))
+          case Failure(e: ResourceExpiredException) =>
+            log.debug("Listing pods with label selector [{}] again: {}", labelSelector, e.getMessage)
+            relist()
+          case Failure(e) =>
+            log.warning("Watching pods with label selector [{}] failed, retrying: {}", labelSelector, e.getMessage)
+            retry(() => watchFrom(snapshot.get().flatMap(_.resourceVersion)))
+        }
+
+  private def onEvent(event: JsObject): Unit = {
+    val eventType = event.fields.get("type").collect { case JsString(t) => t }.getOrElse("")
+    val obj = event.fields.getOrElse("object", JsObject.empty)
+    eventType match {
+      case "ADDED" | "MODIFIED" | "DELETED" =>
+        val pod = obj.convertTo[Pod]
+        val metadata = pod.metadata
+        metadata.flatMap(_.name).foreach { name =>
+          update { current =>
+            val pods = if (eventType == "DELETED") current.pods - name else current.pods.updated(name, pod)
+            Snapshot(pods, metadata.flatMap(_.resourceVersion).orElse(current.resourceVersion))
+          }
+        }
+        log.debug("Pod [{}] with label selector [{}] {}", metadata.flatMap(_.name).getOrElse(""), labelSelector,
+          eventType)
+      case "BOOKMARK" =>
+        val resourceVersion = obj.convertTo[Pod].metadata.flatMap(_.resourceVersion)
+        update(current => current.copy(resourceVersion = resourceVersion.orElse(current.resourceVersion)))
+      case "ERROR" =>
+        // the object is a Status, 410 Gone when the resourceVersion is too old
+        obj.asJsObject.fields.get("code") match {
+          case Some(JsNumber(code)) if code.intValue == StatusCodes.Gone.intValue =>
+            throw new ResourceExpiredException(obj.compactPrint)
+          case _ =>
+            throw new KubernetesApiException(s"Error event when watching pods: ${obj.compactPrint}")
+        }
+      case other =>
+        log.debug("Ignoring watch event of type [{}]", other)
+    }
+  }
+
+  private def update(f: Snapshot => Snapshot): Unit =
+    snapshot.getAndUpdate(_.map(f))
+
+  private def retry(action: () => Unit): Unit =
+    if (!stopped)
+      try system.scheduler.scheduleOnce(retryInterval)(action())
+      catch {
+        case _: IllegalStateException => // scheduler shut down
+      }
+}
@@ -18,6 +18,8 @@ import java.util.Optional
 import org.apache.pekko.actor._
 import com.typesafe.config.Config
 
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.DurationConverters._
 import scala.jdk.OptionConverters._
 
 final class Settings(kubernetesApi: Config) extends Extension {
@@ -68,15 +70,35 @@ final class Settings(kubernetesApi: Config) extends Extension {
   def podLabelSelector(name: String): String =
     kubernetesApi.getString("pod-label-selector").format(name)
 
+  def endpointSliceLabelSelector(name: String): String =
+    kubernetesApi.getString("endpoint-slice-label-selector").format(name)
+
   lazy val rawIp: Boolean = kubernetesApi.getBoolean("use-raw-ip")
 
   val containerName: Option[String] = Some(kubernetesApi.getString("container-name")).filter(_.nonEmpty)
 
   val httpRequestAcceptEncoding: String = kubernetesApi.getString("http-request-accept-encoding")
 
+  val podListPageSize: Int = kubernetesApi.getInt("pod-list-page-size")
+
+  /** Scala API */
+  val podFieldSelector: Option[String] = Some(kubernetesApi.getString("pod-field-selector")).filter(_.nonEmpty)
+
+  /** Java API */
+  def getPodFieldSelector: Optional[String] = podFieldSelector.toJava
+
+  val podWatchEnabled: Boolean = kubernetesApi.getBoolean("pod-watch.enabled")
+
+  val podWatchRequestTimeout: FiniteDuration = kubernetesApi.getDuration("pod-watch.request-timeout").toScala
+
+  val podWatchServerTimeout: FiniteDuration = kubernetesApi.getDuration("pod-watch.server-timeout").toScala
+
+  val podWatchRetryInterval: FiniteDuration = kubernetesApi.getDuration("pod-watch.retry-interval").toScala
+
   override def toString =
     s"Settings($apiCaPath, $apiTokenPath, $apiServiceHostEnvName, $apiServicePortEnvName, " +
-    s"$podNamespacePath, $podNamespace, $podDomain, httpRequestAcceptEncoding=$httpRequestAcceptEncoding)"
+    s"$podNamespacePath, $podNamespace, $podDomain, httpRequestAcceptEncoding=$httpRequestAcceptEncoding, " +
+    s"podListPageSize=$podListPageSize, podFieldSelector=$podFieldSelector, podWatchEnabled=$podWatchEnabled)"
 }
 
 object Settings extends ExtensionId[Settings] with ExtensionIdProvider {
@@ -39,7 +39,8 @@ class JsonFormatSpec extends AnyWordSpec with Matchers {
                 Some("172.17.0.4"),
                 Some(List(ContainerStatus("pekko-cluster-tooling-example", Map(("running", ()))))),
                 Some("Running"))),
-            Some(Metadata(deletionTimestamp = None))),
+            Some(Metadata(deletionTimestamp = None, name = Some("pekko-cluster-tooling-example-v0-1-0-7f854bcc78-dvm9q"),
+              resourceVersion = Some("6523")))),
           Pod(
             Some(PodSpec(List(Container(
               "pekko-cluster-tooling-example",
@@ -52,7 +53,8 @@ class JsonFormatSpec extends AnyWordSpec with Matchers {
                 Some("172.17.0.6"),
                 Some(List(ContainerStatus("pekko-cluster-tooling-example", Map(("running", ()))))),
                 Some("Running"))),
-            Some(Metadata(deletionTimestamp = None))),
+            Some(Metadata(deletionTimestamp = None, name = Some("pekko-cluster-tooling-example-v0-1-0-7f854bcc78-m8dqb"),
+              resourceVersion = Some("6520")))),
           Pod(
             Some(PodSpec(List(Container(
               "pekko-cluster-tooling-example",
@@ -65,7 +67,8 @@ class JsonFormatSpec extends AnyWordSpec with Matchers {
                 Some("172.17.0.7"),
                 Some(List(ContainerStatus("pekko-cluster-tooling-example", Map(("running", ()))))),
                 Some("Running"))),
-            Some(Metadata(deletionTimestamp = Some("2017-12-06T16:30:22Z")))),
+            Some(Metadata(deletionTimestamp = Some("2017-12-06T16:30:22Z"),
+              name = Some("pekko-cluster-tooling-example-v0-1-0-7f854bcc78-xncvj"), resourceVersion = Some("6593")))),
           Pod(
             Some(PodSpec(
               List(Container("pekko-cluster-tooling-example", Some(List(ContainerPort(Some("management"), 10001))))))),
@@ -74,7 +77,9 @@ class JsonFormatSpec extends AnyWordSpec with Matchers {
                 Some("172.17.0.47"),
                 Some(List(ContainerStatus("pekko-cluster-tooling-example", Map(("terminated", ()))))),
                 Some("Succeeded"))),
-            Some(Metadata(deletionTimestamp = None)))))
+            Some(Metadata(deletionTimestamp = None, name = Some("pekko-cluster-tooling-example-job-mt4qt"),
+              resourceVersion = Some("7406832"))))),
+        Some(Metadata(deletionTimestamp = None, resourceVersion = Some("16042"))))
     }
   }
 
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import java.net.InetAddress
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.io.Source
+import scala.jdk.CollectionConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.discovery.{ Discovery, Lookup }
+import pekko.discovery.ServiceDiscovery.ResolvedTarget
+import pekko.discovery.kubernetes.EndpointSliceList._
+import pekko.discovery.kubernetes.JsonFormat._
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model.{ ContentTypes, HttpEntity, Uri }
+import pekko.http.scaladsl.server.Directives._
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+import spray.json._
+
+class KubernetesApiEndpointSliceServiceDiscoverySpec
+    extends AnyWordSpec
+    with Matchers
+    with ScalaFutures
+    with BeforeAndAfterAll {
+
+  implicit override val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(5, Seconds), interval = Span(50, Millis))
+
+  private implicit val system: ActorSystem = ActorSystem(
+    "KubernetesApiEndpointSliceServiceDiscoverySpec",
+    ConfigFactory.parseString("""
+      pekko.discovery.kubernetes-api {
+        pod-namespace = "default"
+        api-token-path = "/non-existing/token"
+      }
+      """).withFallback(ConfigFactory.load()))
+
+  private val endpointSlices =
+    Source.fromInputStream(getClass.getClassLoader.getResourceAsStream("endpointslices.json")).mkString
+
+  private def target(ip: String, port: Option[Int]) =
+    ResolvedTarget(s"${ip.replace('.', '-')}.default.pod.cluster.local", port, Some(InetAddress.getByName(ip)))
+
+  private def slice(endpoints: Endpoint*) =
+    EndpointSlice("IPv4", Some(endpoints.toList), Some(List(EndpointPort(Some("management"), Some(10001)))))
+
+  "targets" should {
+
+    "resolve the serving endpoints with the named port" in {
+      val list = endpointSlices.parseJson.convertTo[EndpointSliceList]
+      KubernetesApiEndpointSliceServiceDiscovery.targets(list, Some("management"), "default", "cluster.local",
+        rawIp = false) shouldEqual List(target("172.17.0.4", Some(10001)), target("172.17.0.6", Some(10001)))
+    }
+
+    "resolve without port when no port name is given, and nothing for an unknown port name" in {
+      val list = endpointSlices.parseJson.convertTo[EndpointSliceList]
+      KubernetesApiEndpointSliceServiceDiscovery.targets(list, None, "default", "cluster.local", rawIp = true)
+        .map(_.host) shouldEqual List("172.17.0.4", "172.17.0.6")
+      KubernetesApiEndpointSliceServiceDiscovery.targets(list, Some("http"), "default", "cluster.local",
+        rawIp = false) shouldBe empty
+    }
+
+    "use ready when serving is not reported, and treat unknown conditions as ready" in {
+      val list = EndpointSliceList(List(slice(
+        Endpoint(List("10.0.0.1"), Some(EndpointConditions(ready = Some(false), serving = None, terminating = None))),
+        Endpoint(List("10.0.0.2"), Some(EndpointConditions(ready = Some(true), serving = None, terminating = None))),
+        Endpoint(List("10.0.0.3"), None))))
+      KubernetesApiEndpointSliceServiceDiscovery.targets(list, Some("management"), "default", "cluster.local",
+        rawIp = false) shouldEqual List(target("10.0.0.2", Some(10001)), target("10.0.0.3", Some(10001)))
+    }
+
+    "ignore endpoints in more than one slice, and FQDN slices" in {
+      val endpoint = Endpoint(List("10.0.0.1"), None)
+      val list = EndpointSliceList(List(
+        slice(endpoint),
+        slice(endpoint),
+        slice(Endpoint(List("example.com"), None)).copy(addressType = "FQDN")))
+      KubernetesApiEndpointSliceServiceDiscovery.targets(list, Some("management"), "default", "cluster.local",
+        rawIp = false) shouldEqual List(target("10.0.0.1", Some(10001)))
+    }
+
+    "use the raw IP of IPv6 endpoints" in {
+      val list = EndpointSliceList(List(
+        slice(Endpoint(List("fd00::1"), None)).copy(addressType = "IPv6"),
+        slice(Endpoint(List("10.0.0.1"), None))))
+      KubernetesApiEndpointSliceServiceDiscovery.targets(list, Some("management"), "default", "cluster.local",
+        rawIp = false) shouldEqual List(
+        ResolvedTarget("fd00::1", Some(10001), Some(InetAddress.getByName("fd00::1"))),
+        target("10.0.0.1", Some(10001)))
+    }
+  }
+
+  "KubernetesApiEndpointSliceServiceDiscovery" should {
+
+    "be the kubernetes-api-endpoint-slices discovery method" in {
+      Discovery(system).loadServiceDiscovery("kubernetes-api-endpoint-slices") shouldBe a[
+        KubernetesApiEndpointSliceServiceDiscovery]
+    }
+
+    "query the endpoint slices of the service" in {
+      val requests = new ConcurrentLinkedQueue[Map[String, String]]()
+      val route =
+        path("apis" / "discovery.k8s.io" / "v1" / "namespaces" / "default" / "endpointslices") {
+          parameterMap { params =>
+            requests.add(params)
+            complete(HttpEntity(ContentTypes.`application/json`, endpointSlices))
+          }
+        }
+      val binding = Http().newServerAt("127.0.0.1", 0).bind(route).futureValue
+      try {
+        val discovery = new KubernetesApiEndpointSliceServiceDiscovery() {
+          override private[kubernetes] def apiServerUri: Option[Uri] =
+            Some(Uri(s"http://127.0.0.1:${binding.localAddress.getPort}"))
+        }
+        val resolved = discovery
+          .lookup(Lookup("pekko-cluster-tooling-example").withPortName("management"), 3.seconds)
+          .futureValue
+        resolved.addresses shouldEqual List(target("172.17.0.4", Some(10001)), target("172.17.0.6", Some(10001)))
+        requests.asScala.toList shouldEqual List(
+          Map("labelSelector" -> "kubernetes.io/service-name=pekko-cluster-tooling-example"))
+      } finally binding.unbind()
+    }
+  }
+
+  override protected def afterAll(): Unit =
+    Await.ready(system.terminate(), 10.seconds)
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.io.Source
+import scala.jdk.CollectionConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.discovery.Lookup
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model.{ ContentTypes, HttpEntity, Uri }
+import pekko.http.scaladsl.server.Directives._
+import pekko.stream.scaladsl.{ Source => StreamSource }
+import pekko.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+import spray.json._
+
+class PodListPaginationSpec extends AnyWordSpec with Matchers with ScalaFutures with BeforeAndAfterAll {
+
+  implicit override val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(5, Seconds), interval = Span(50, Millis))
+
+  private implicit val system: ActorSystem = ActorSystem(
+    "PodListPaginationSpec",
+    ConfigFactory.parseString("""
+      pekko.discovery.kubernetes-api {
+        pod-namespace = "default"
+        api-token-path = "/non-existing/token"
+        pod-list-page-size = 3
+      }
+      """).withFallback(ConfigFactory.load()))
+
+  private val podList =
+    Source.fromInputStream(getClass.getClassLoader.getResourceAsStream("pods.json")).mkString.parseJson.asJsObject
+
+  // the pods of pods.json in pages of `limit` pods, the continue token is the index of the next pod
+  private def page(limit: Int, from: Int): String = {
+    val items = podList.fields("items").asInstanceOf[JsArray].elements
+    val metadata = JsObject(
+      podList.fields("metadata").asJsObject.fields ++
+      (if (from + limit < items.size) Map("continue" -> JsString((from + limit).toString)) else Map.empty))
+    JsObject(podList.fields ++ Map("metadata" -> metadata, "items" -> JsArray(items.slice(from, from + limit))))
+      .prettyPrint
+  }
+
+  private val requests = new ConcurrentLinkedQueue[Map[String, String]]()
+
+  private val route =
+    path("api" / "v1" / "namespaces" / "default" / "pods") {
+      parameterMap { params =>
+        requests.add(params)
+        val body = ByteString(page(params("limit").toInt, params.get("continue").fold(0)(_.toInt)))
+        // a chunked response, so that the pods are parsed while they are received
+        complete(HttpEntity.Chunked.fromData(ContentTypes.`application/json`, StreamSource(body.grouped(512).toList)))
+      }
+    }
+
+  private val binding = Http().newServerAt("127.0.0.1", 0).bind(route).futureValue
+
+  private val discovery = new KubernetesApiServiceDiscovery() {
+    override private[kubernetes] def apiServerUri: Option[Uri] =
+      Some(Uri(s"http://127.0.0.1:${binding.localAddress.getPort}"))
+  }
+
+  "KubernetesApiServiceDiscovery" should {
+
+    "list the pods in pages, filtered on the phase by the API server" in {
+      val resolved =
+        discovery.lookup(Lookup("pekko-cluster-tooling-example").withPortName("management"), 3.seconds).futureValue
+      resolved.addresses.map(_.host).toSet shouldEqual
+      Set("172-17-0-4.default.pod.cluster.local", "172-17-0-6.default.pod.cluster.local")
+
+      val pages = requests.asScala.toList
+      pages.map(_.get("continue")) shouldEqual List(None, Some("3"))
+      pages.foreach { params =>
+        params.get("labelSelector") shouldEqual Some("app=pekko-cluster-tooling-example")
+        params.get("fieldSelector") shouldEqual Some("status.phase=Running")
+        params.get("limit") shouldEqual Some("3")
+      }
+    }
+  }
+
+  override protected def afterAll(): Unit = {
+    binding.unbind()
+    Await.ready(system.terminate(), 10.seconds)
+  }
+}
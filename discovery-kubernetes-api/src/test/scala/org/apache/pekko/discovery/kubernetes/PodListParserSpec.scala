@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.io.Source
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.discovery.kubernetes.JsonFormat._
+import pekko.discovery.kubernetes.PodList._
+import pekko.stream.scaladsl.{ Source => StreamSource }
+import pekko.util.ByteString
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+import spray.json._
+
+class PodListParserSpec extends AnyWordSpec with Matchers with ScalaFutures with BeforeAndAfterAll {
+
+  private implicit val system: ActorSystem = ActorSystem("PodListParserSpec")
+
+  private def resource(name: String): String =
+    Source.fromInputStream(getClass.getClassLoader.getResourceAsStream(name)).mkString
+
+  private def parse(json: String, chunkSize: Int): PodList =
+    PodListParser.parse(StreamSource(ByteString(json).grouped(chunkSize).toList)).futureValue
+
+  "PodListParser" should {
+
+    "parse a pod list the same as the JSON format, however the bytes are chunked" in {
+      val json = resource("pods.json")
+      val expected = json.parseJson.convertTo[PodList]
+      expected.items should have size 4
+      Seq(1, 7, 100, 4096, json.length).foreach { chunkSize =>
+        parse(json, chunkSize) shouldEqual expected
+      }
+    }
+
+    "ignore braces, brackets and escaped quotes in strings" in {
+      val json =
+        """{"kind":"PodList","metadata":{"resourceVersion":"7","continue":"abc"},"items":[
+          | {"metadata":{"name":"a\"}]{[","deletionTimestamp":null},"status":{"podIP":"10.0.0.1","phase":"Running"}},
+          | {"metadata":{"name":"b\\","annotations":{"items":"[{"}},"status":{"podIP":"10.0.0.2"}}
+          |]}""".stripMargin
+      val podList = parse(json, 3)
+      podList.items.map(_.metadata.flatMap(_.name)) shouldEqual List(Some("a\"}]{["), Some("b\\"))
+      podList.items.map(_.status.flatMap(_.podIP)) shouldEqual List(Some("10.0.0.1"), Some("10.0.0.2"))
+      podList.metadata shouldEqual Some(Metadata(None, resourceVersion = Some("7"), continue = Some("abc")))
+    }
+
+    "find the items before the list metadata and in nested keys named items" in {
+      val json =
+        """{"items" : [{"metadata":{"name":"a","labels":{"items":"x"}},"spec":{"containers":[]}}],
+          | "metadata" : {"items":[1,2],"resourceVersion":"8"}}""".stripMargin
+      val podList = parse(json, 5)
+      podList.items shouldEqual List(Pod(Some(PodSpec(Nil)), None, Some(Metadata(None, name = Some("a")))))
+      podList.metadata.flatMap(_.resourceVersion) shouldEqual Some("8")
+    }
+
+    "parse an empty pod list" in {
+      parse("""{"metadata":{},"items":[]}""", 2) shouldEqual PodList(Nil, Some(Metadata(None)))
+    }
+
+    "fail on malformed items" in {
+      PodListParser
+        .parse(StreamSource.single(ByteString("""{"items":[{"metadata":{"name":}}]}""")))
+        .failed
+        .futureValue shouldBe a[JsonParser.ParsingException]
+    }
+  }
+
+  override protected def afterAll(): Unit =
+    Await.ready(system.terminate(), 10.seconds)
+}
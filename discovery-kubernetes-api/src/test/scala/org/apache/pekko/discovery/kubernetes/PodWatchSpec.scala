@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.discovery.kubernetes
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicReference }
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.io.Source
+import scala.jdk.CollectionConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.discovery.Lookup
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model.{ ContentTypes, HttpEntity, StatusCodes, Uri }
+import pekko.http.scaladsl.server.Directives._
+import pekko.stream.BoundedSourceQueue
+import pekko.stream.scaladsl.{ Source => StreamSource }
+import pekko.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+
+class PodWatchSpec extends AnyWordSpec with Matchers with ScalaFutures with Eventually with BeforeAndAfterAll {
+
+  implicit override val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(5, Seconds), interval = Span(50, Millis))
+
+  private implicit val system: ActorSystem = ActorSystem(
+    "PodWatchSpec",
+    ConfigFactory.parseString("""
+      pekko.discovery.kubernetes-api {
+        pod-namespace = "default"
+        api-token-path = "/non-existing/token"
+        pod-watch {
+          enabled = on
+          retry-interval = 100ms
+        }
+      }
+      """).withFallback(ConfigFactory.load()))
+
+  private val podList = Source.fromInputStream(getClass.getClassLoader.getResourceAsStream("pods.json")).mkString
+
+  // the stub API server
+  private val lists = new AtomicInteger
+  private val watchRequests = new ConcurrentLinkedQueue[Map[String, String]]()
+  private val watchStatus = new AtomicReference[StatusCodes.ClientError](null)
+  private val watchQueue = new AtomicReference[BoundedSourceQueue[ByteString]]()
+
+  private val route =
+    path("api" / "v1" / "namespaces" / "default" / "pods") {
+      parameterMap { params =>
+        if (params.get("watch").contains("true")) {
+          watchRequests.add(params)
+          Option(watchStatus.getAndSet(null)) match {
+            case Some(status) =>
+              complete(status)
+            case None =>
+              val (queue, events) = StreamSource.queue[ByteString](16).preMaterialize()
+              watchQueue.set(queue)
+              complete(HttpEntity.Chunked.fromData(ContentTypes.`application/json`, events))
+          }
+        } else {
+          lists.incrementAndGet()
+          complete(HttpEntity(ContentTypes.`application/json`, podList))
+        }
+      }
+    }
+
+  private val binding = Http().newServerAt("127.0.0.1", 0).bind(route).futureValue
+
+  private val discovery = new KubernetesApiServiceDiscovery() {
+    override private[kubernetes] def apiServerUri: Option[Uri] =
+      Some(Uri(s"http://127.0.0.1:${binding.localAddress.getPort}"))
+  }
+
+  private def lookup(): Set[String] =
+    discovery
+      .lookup(Lookup("pekko-cluster-tooling-example").withPortName("management"), 3.seconds)
+      .futureValue
+      .addresses
+      .map(_.host)
+      .toSet
+
+  private def sendEvent(eventType: String, name: String, ip: String, resourceVersion: String): Unit =
+    watchQueue.get().offer(ByteString(s"""{"type":"$eventType","object":{
+      "metadata":{"name":"$name","resourceVersion":"$resourceVersion"},
+      "spec":{"containers":[{"name":"app","ports":[{"name":"management","containerPort":10001}]}]},
+      "status":{"podIP":"$ip","phase":"Running"}}}
+      """.replace("\n", "") + "\n"))
+
+  private val initialPods = Set("172-17-0-4.default.pod.cluster.local", "172-17-0-6.default.pod.cluster.local")
+
+  "KubernetesApiServiceDiscovery with pod watch" should {
+
+    "list the pods once and serve lookups from memory" in {
+      lookup() shouldEqual initialPods
+      eventually {
+        watchQueue.get() should not be null
+      }
+      watchRequests.asScala.head.get("resourceVersion") shouldEqual Some("16042")
+
+      (1 to 10).foreach(_ => lookup() shouldEqual initialPods)
+      lists.get() shouldEqual 1
+    }
+
+    "apply added, modified and deleted pods from the watch" in {
+      sendEvent("ADDED", "new-pod", "10.0.0.1", "16050")
+      eventually {
+        lookup() shouldEqual initialPods + "10-0-0-1.default.pod.cluster.local"
+      }
+
+      sendEvent("MODIFIED", "new-pod", "10.0.0.2", "16051")
+      eventually {
+        lookup() shouldEqual initialPods + "10-0-0-2.default.pod.cluster.local"
+      }
+
+      sendEvent("DELETED", "new-pod", "10.0.0.2", "16052")
+      eventually {
+        lookup() shouldEqual initialPods
+      }
+      lists.get() shouldEqual 1
+    }
+
+    "resume the watch from the last seen resourceVersion" in {
+      val watchesBefore = watchRequests.size
+      val previousQueue = watchQueue.get()
+      previousQueue.complete()
+      eventually {
+        watchRequests.size shouldEqual watchesBefore + 1
+        watchQueue.get() should not be theSameInstanceAs(previousQueue)
+      }
+      watchRequests.asScala.last.get("resourceVersion") shouldEqual Some("16052")
+      lists.get() shouldEqual 1
+    }
+
+    "list the pods again when the resourceVersion is too old" in {
+      watchStatus.set(StatusCodes.Gone)
+      watchQueue.get().complete()
+      eventually {
+        lists.get() shouldEqual 2
+      }
+      lookup() shouldEqual initialPods
+    }
+  }
+
+  override protected def afterAll(): Unit = {
+    binding.unbind()
+    Await.ready(system.terminate(), 10.seconds)
+  }
+}
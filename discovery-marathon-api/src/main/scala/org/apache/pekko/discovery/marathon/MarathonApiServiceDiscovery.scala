@@ -30,6 +30,7 @@ import pekko.annotation.ApiMayChange
 import pekko.discovery.{ Lookup, ServiceDiscovery }
 import pekko.discovery.ServiceDiscovery.{ Resolved, ResolvedTarget }
 import pekko.event.{ LogSource, Logging }
+import pekko.management.metrics.internal.ManagementMetrics
 
 @ApiMayChange
 object MarathonApiServiceDiscovery {
@@ -94,7 +95,12 @@ class MarathonApiServiceDiscovery(implicit system: ActorSystem) extends ServiceD
 
   private val settings = Settings(system)
 
-  override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
+  private val lookupMetrics = ManagementMetrics(system).discoveryLookups("marathon-api")
+
+  override def lookup(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] =
+    lookupMetrics.record(System.nanoTime(), resolve(lookup, resolveTimeout))(_.addresses.size)
+
+  private def resolve(lookup: Lookup, resolveTimeout: FiniteDuration): Future[Resolved] = {
     val uri =
       Uri(settings.appApiUrl).withQuery(
         Uri.Query(
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.kubernetes.client
+
+import java.util.concurrent.ConcurrentHashMap
+import javax.net.ssl.SSLContext
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicLong, LongAdder }
+
+import scala.collection.immutable
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import scala.util.{ Failure, Success }
+
+import org.apache.pekko
+import pekko.actor.{
+  ActorSystem,
+  ClassicActorSystemProvider,
+  ExtendedActorSystem,
+  Extension,
+  ExtensionId,
+  ExtensionIdProvider
+}
+import pekko.annotation.InternalApi
+import pekko.event.Logging
+import pekko.http.scaladsl.{ ConnectionContext, Http, HttpsConnectionContext }
+import pekko.http.scaladsl.model.{ HttpRequest, HttpResponse, StatusCodes, Uri }
+import pekko.http.scaladsl.settings.ConnectionPoolSettings
+import pekko.pattern.{ after, RetrySupport }
+import pekko.pki.kubernetes.CachedCredentials
+import pekko.stream.Materializer
+import pekko.stream.scaladsl.{ Sink, Source }
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object KubernetesApiClient extends ExtensionId[KubernetesApiClient] with ExtensionIdProvider {
+  override def get(system: ActorSystem): KubernetesApiClient = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): KubernetesApiClient = super.get(system)
+
+  override def lookup: KubernetesApiClient.type = KubernetesApiClient
+
+  override def createExtension(system: ExtendedActorSystem): KubernetesApiClient = new KubernetesApiClient(system)
+
+  /**
+   * How to retry requests that are answered with 401 Unauthorized, which happens for a short time when the token
+   * of the service account is rotated.
+   *
+   * @param maxAttempts the number of attempts including the first one
+   */
+  final case class UnauthorizedRetry(
+      maxAttempts: Int,
+      minBackoff: FiniteDuration,
+      maxBackoff: FiniteDuration,
+      randomFactor: Double)
+
+  object UnauthorizedRetry {
+    val Disabled: UnauthorizedRetry = UnauthorizedRetry(1, Duration.Zero, Duration.Zero, 0.0)
+  }
+
+  /**
+   * The requests to one kind of resource with one HTTP method, since the start of the actor system.
+   *
+   * @param inFlight the requests waiting for their response right now
+   * @param failures the requests that failed, or were answered with a server error
+   * @param totalLatency the sum of the time until the response of all requests
+   */
+  final case class RequestStats(
+      method: String,
+      resource: String,
+      inFlight: Int,
+      requests: Long,
+      failures: Long,
+      totalLatency: FiniteDuration,
+      maxLatency: FiniteDuration) {
+    def meanLatency: FiniteDuration = if (requests == 0) Duration.Zero else totalLatency / requests
+  }
+
+  /**
+   * The kind of resource of an API path, e.g. `pods` for `/api/v1/namespaces/default/pods/name` or `leases` for
+   * `/apis/pekko.apache.org/v1/namespaces/default/leases/name`.
+   */
+  def resourceOf(path: Uri.Path): String = {
+    val segments = path.toString.split('/').iterator.filter(_.nonEmpty).toList
+    val afterVersion = segments match {
+      case "api" :: _ :: rest      => rest
+      case "apis" :: _ :: _ :: rest => rest
+      case other                   => other
+    }
+    val afterNamespace = afterVersion match {
+      case "namespaces" :: _ :: resource :: _ => List(resource)
+      case other                              => other
+    }
+    afterNamespace.headOption.getOrElse("")
+  }
+
+  private final class Counters {
+    val inFlight = new AtomicInteger
+    val requests = new LongAdder
+    val failures = new LongAdder
+    val totalNanos = new LongAdder
+    val maxNanos = new AtomicLong
+
+    def completed(nanos: Long, failed: Boolean): Unit = {
+      inFlight.decrementAndGet()
+      requests.increment()
+      if (failed) failures.increment()
+      totalNanos.add(nanos)
+      maxNanos.accumulateAndGet(nanos, Math.max)
+    }
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * The client for the Kubernetes API server that is shared by the lease, discovery and rolling update modules. All
+ * requests go through one connection pool per API server, with the settings of
+ * `pekko.management.kubernetes-api-client.connection-pool`, and the TLS connection contexts are shared for the same
+ * CA certificates. The latency and the number of requests in flight are tracked per HTTP method and resource.
+ */
+@InternalApi
+private[pekko] final class KubernetesApiClient(system: ExtendedActorSystem) extends Extension {
+  import KubernetesApiClient._
+
+  private val http = Http()(system)
+  private val log = Logging(system, classOf[KubernetesApiClient])
+  private val credentials = new CachedCredentials
+  private val connectionContexts = new ConcurrentHashMap[(String, String), (SSLContext, HttpsConnectionContext)]()
+  private val counters = new ConcurrentHashMap[(String, String), Counters]()
+
+  /**
+   * One instance, as the pool of a host is only shared by requests with equal settings and connection context.
+   */
+  val connectionPoolSettings: ConnectionPoolSettings = {
+    val config = system.settings.config
+    ConnectionPoolSettings(
+      config
+        .getConfig("pekko.management.kubernetes-api-client.connection-pool")
+        .atPath("pekko.http.host-connection-pool")
+        .withFallback(config))
+  }
+
+  /**
+   * The connection context trusting the CA certificates in the given PEM file, shared until the file changes.
+   * This uses blocking IO, see [[CachedCredentials]].
+   */
+  def httpsConnectionContext(caPath: String, tlsVersion: String): HttpsConnectionContext = {
+    val sslContext = credentials.sslContext(caPath, tlsVersion)
+    connectionContexts
+      .compute(
+        (caPath, tlsVersion),
+        (_, current) =>
+          if (current != null && (current._1 eq sslContext)) current
+          else (sslContext, ConnectionContext.httpsClient(sslContext)))
+      ._2
+  }
+
+  /**
+   * The content of a file of the service account, like the token, cached until the file changes.
+   * This uses blocking IO, see [[CachedCredentials]].
+   */
+  def readFile(path: String): String =
+    credentials.readFile(path)
+
+  /**
+   * Sends one request through the shared pool. A request with an `http` URI is sent without TLS.
+   */
+  def singleRequest(request: HttpRequest, connectionContext: Option[HttpsConnectionContext]): Future[HttpResponse] =
+    measured(request) {
+      http.singleRequest(request, connectionContext.getOrElse(http.defaultClientHttpsContext), connectionPoolSettings)
+    }
+
+  /**
+   * Sends one request on a connection of its own, for watches: their response is streamed until the server timeout
+   * expires, and would otherwise occupy a connection of the shared pool for that long. A request with an `http` URI
+   * is sent without TLS.
+   */
+  def watchRequest(request: HttpRequest, connectionContext: Option[HttpsConnectionContext]): Future[HttpResponse] =
+    measured(request) {
+      val host = request.uri.authority.host.address
+      val port = request.uri.effectivePort
+      val connection =
+        if (request.uri.scheme == "https")
+          http.outgoingConnectionHttps(host, port, connectionContext.getOrElse(http.defaultClientHttpsContext))
+        else http.outgoingConnection(host, port)
+      Source
+        .single(request.withUri(request.uri.toRelative))
+        .via(connection)
+        .runWith(Sink.head)(Materializer.matFromSystem(system))
+    }
+
+  private def measured(request: HttpRequest)(send: => Future[HttpResponse]): Future[HttpResponse] = {
+    val counter = counters.computeIfAbsent((request.method.value, resourceOf(request.uri.path)), _ => new Counters)
+    counter.inFlight.incrementAndGet()
+    val start = System.nanoTime()
+    val response =
+      try send
+      catch {
+        case e: Exception => Future.failed(e)
+      }
+    response.onComplete { result =>
+      val failed = result match {
+        case Success(r) => r.status.isInstanceOf[StatusCodes.ServerError]
+        case Failure(_) => true
+      }
+      counter.completed(System.nanoTime() - start, failed)
+    }(ExecutionContext.parasitic)
+    response
+  }
+
+  /**
+   * Makes attempts until the response is not 401 Unauthorized, or the maximum number of attempts is reached.
+   * The entities of the 401 responses that are retried are discarded. The attempts are numbered from 1, so that later
+   * attempts can use a new token.
+   */
+  def retryUnauthorized(retry: UnauthorizedRetry)(attempt: Int => Future[HttpResponse]): Future[HttpResponse] = {
+    import system.dispatcher
+    def loop(attempts: Int): Future[HttpResponse] =
+      attempt(attempts).flatMap { response =>
+        if (response.status == StatusCodes.Unauthorized && attempts < retry.maxAttempts) {
+          log.warning("Received status code 401 as response, retrying due to possible token rotation")
+          response.discardEntityBytes()(Materializer.matFromSystem(system))
+          val delay = RetrySupport.calculateDelay(attempts - 1, retry.minBackoff, retry.maxBackoff, retry.randomFactor)
+          after(delay, system.scheduler)(loop(attempts + 1))
+        } else Future.successful(response)
+      }
+    loop(1)
+  }
+
+  /**
+   * Fails with the given exception when there is no response within the timeout. A response that arrives later is
+   * discarded, so that its connection is returned to the pool.
+   */
+  def withTimeout(timeout: FiniteDuration, timeoutFailure: => Throwable)(
+      response: Future[HttpResponse]): Future[HttpResponse] = {
+    val promise = Promise[HttpResponse]()
+    val timeoutCancellable = system.scheduler.scheduleOnce(timeout) {
+      promise.tryFailure(timeoutFailure)
+    }(ExecutionContext.parasitic)
+    response.onComplete {
+      case Success(resp) =>
+        timeoutCancellable.cancel()
+        if (!promise.trySuccess(resp)) {
+          // the timeout fired already, discard the response to release the connection
+          resp.discardEntityBytes()(Materializer.matFromSystem(system))
+        }
+      case Failure(ex) =>
+        timeoutCancellable.cancel()
+        promise.tryFailure(ex)
+    }(ExecutionContext.parasitic)
+    promise.future
+  }
+
+  /**
+   * The request statistics per HTTP method and resource.
+   */
+  def stats(): immutable.Seq[RequestStats] =
+    counters.asScala.iterator.map {
+      case ((method, resource), c) =>
+        RequestStats(
+          method,
+          resource,
+          c.inFlight.get(),
+          c.requests.sum(),
+          c.failures.sum(),
+          c.totalNanos.sum().nanos,
+          c.maxNanos.get().nanos)
+    }.toList.sortBy(s => (s.resource, s.method))
+}
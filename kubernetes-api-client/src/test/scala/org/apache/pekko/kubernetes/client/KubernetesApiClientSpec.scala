@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.kubernetes.client
+
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.concurrent.{ Await, Future, Promise }
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model.{ HttpMethods, HttpRequest, HttpResponse, StatusCodes, Uri }
+import pekko.http.scaladsl.server.Directives._
+import pekko.kubernetes.client.KubernetesApiClient.UnauthorizedRetry
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpec
+
+class KubernetesApiClientSpec
+    extends AnyWordSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with BeforeAndAfterAll {
+
+  implicit override val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(5, Seconds), interval = Span(50, Millis))
+
+  private implicit val system: ActorSystem = ActorSystem("KubernetesApiClientSpec")
+
+  private val slowResponse = Promise[HttpResponse]()
+  private val watchResponse = Promise[HttpResponse]()
+
+  private val route =
+    path("watch") {
+      get {
+        complete(watchResponse.future)
+      }
+    } ~
+    pathPrefix("api" / "v1" / "namespaces" / Segment / "pods") { _ =>
+      get {
+        complete("[]")
+      }
+    } ~ pathPrefix("apis" / "pekko.apache.org" / "v1" / "namespaces" / Segment / "leases") { _ =>
+      put {
+        complete(StatusCodes.InternalServerError)
+      } ~ get {
+        complete(slowResponse.future)
+      }
+    }
+
+  private val binding = Http().newServerAt("127.0.0.1", 0).bind(route).futureValue
+  private def uri(path: String) = Uri(s"http://127.0.0.1:${binding.localAddress.getPort}$path")
+
+  private val client = KubernetesApiClient(system)
+
+  "KubernetesApiClient" should {
+
+    "find the resource of API paths" in {
+      KubernetesApiClient.resourceOf(Uri.Path("/api/v1/namespaces/default/pods")) shouldEqual "pods"
+      KubernetesApiClient.resourceOf(Uri.Path("/api/v1/namespaces/default/pods/my-pod")) shouldEqual "pods"
+      KubernetesApiClient.resourceOf(Uri.Path("/apis/pekko.apache.org/v1/namespaces/ns/leases/l")) shouldEqual "leases"
+      KubernetesApiClient.resourceOf(Uri.Path("/apis/discovery.k8s.io/v1/endpointslices")) shouldEqual "endpointslices"
+      KubernetesApiClient.resourceOf(Uri.Path("/api/v1/namespaces")) shouldEqual "namespaces"
+    }
+
+    "be shared by the actor system" in {
+      KubernetesApiClient(system) should be theSameInstanceAs client
+    }
+
+    "reuse the connection context for the same CA file and TLS version" in {
+      val context = client.httpsConnectionContext("", "TLSv1.2")
+      client.httpsConnectionContext("", "TLSv1.2") should be theSameInstanceAs context
+      (client.httpsConnectionContext("", "TLSv1.3") eq context) shouldEqual false
+    }
+
+    "count requests, failures and requests in flight per method and resource" in {
+      (1 to 3).foreach { _ =>
+        val response = client.singleRequest(HttpRequest(uri = uri("/api/v1/namespaces/default/pods")), None)
+        response.futureValue.status shouldEqual StatusCodes.OK
+      }
+      client
+        .singleRequest(HttpRequest(HttpMethods.PUT, uri("/apis/pekko.apache.org/v1/namespaces/ns/leases/a")), None)
+        .futureValue
+        .status shouldEqual StatusCodes.InternalServerError
+      val slow = client.singleRequest(HttpRequest(uri = uri("/apis/pekko.apache.org/v1/namespaces/ns/leases/a")), None)
+
+      // the counters are updated after the response futures complete
+      eventually {
+        client.stats().find(s => s.method == "PUT").map(_.requests) shouldEqual Some(1)
+      }
+      val stats = client.stats().map(s => (s.method, s.resource) -> s).toMap
+      stats(("GET", "pods")).requests shouldEqual 3
+      stats(("GET", "pods")).failures shouldEqual 0
+      stats(("GET", "pods")).maxLatency should be >= stats(("GET", "pods")).meanLatency
+      stats(("PUT", "leases")).failures shouldEqual 1
+      stats(("GET", "leases")).inFlight shouldEqual 1
+
+      slowResponse.success(HttpResponse(StatusCodes.OK))
+      slow.futureValue.status shouldEqual StatusCodes.OK
+      eventually {
+        val after = client.stats().find(s => s.method == "GET" && s.resource == "leases").get
+        after.inFlight shouldEqual 0
+        after.requests shouldEqual 1
+      }
+    }
+
+    "send watches on connections of their own, outside of the shared pool" in {
+      val watches = (0 to client.connectionPoolSettings.maxConnections).map { _ =>
+        client.watchRequest(HttpRequest(uri = uri("/watch")), None)
+      }
+      // all pooled connections would be taken by the watches that are waiting for their response
+      client
+        .singleRequest(HttpRequest(uri = uri("/api/v1/namespaces/default/pods")), None)
+        .futureValue
+        .status shouldEqual StatusCodes.OK
+      watches.foreach(_.isCompleted shouldEqual false)
+
+      watchResponse.success(HttpResponse(StatusCodes.OK))
+      watches.foreach(_.futureValue.status shouldEqual StatusCodes.OK)
+    }
+
+    "retry 401 responses up to the maximum number of attempts" in {
+      val retry = UnauthorizedRetry(3, 10.millis, 50.millis, 0.0)
+      val attempts = new AtomicInteger
+      client
+        .retryUnauthorized(retry) { _ =>
+          val status = if (attempts.incrementAndGet() < 2) StatusCodes.Unauthorized else StatusCodes.OK
+          Future.successful(HttpResponse(status))
+        }
+        .futureValue
+        .status shouldEqual StatusCodes.OK
+      attempts.get() shouldEqual 2
+
+      attempts.set(0)
+      client
+        .retryUnauthorized(retry) { _ =>
+          attempts.incrementAndGet()
+          Future.successful(HttpResponse(StatusCodes.Unauthorized))
+        }
+        .futureValue
+        .status shouldEqual StatusCodes.Unauthorized
+      attempts.get() shouldEqual 3
+    }
+
+    "fail with the given exception when the response does not arrive in time" in {
+      client
+        .withTimeout(100.millis, new TimeoutException("too slow"))(Promise[HttpResponse]().future)
+        .failed
+        .futureValue
+        .getMessage shouldEqual "too slow"
+    }
+  }
+
+  override protected def afterAll(): Unit = {
+    binding.unbind()
+    Await.ready(system.terminate(), 10.seconds)
+  }
+}
@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.kubernetes.testkit
+
+import java.time.Instant
+import java.util.UUID
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.{ AtomicInteger, LongAdder }
+
+import scala.collection.immutable
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.{ Done, NotUsed }
+import pekko.actor.ActorSystem
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model._
+import pekko.pattern.after
+import pekko.stream.{ BoundedSourceQueue, QueueOfferResult }
+import pekko.stream.scaladsl.Source
+import pekko.util.ByteString
+import spray.json._
+
+object FakeKubernetesApiServer {
+
+  /**
+   * Starts a server on the given interface, on a free port unless a port is given.
+   */
+  def start(interface: String = "127.0.0.1", port: Int = 0)(
+      implicit system: ActorSystem): Future[FakeKubernetesApiServer] = {
+    val server = new FakeKubernetesApiServer(system)
+    Http(system)
+      .newServerAt(interface, port)
+      .bind(server.handle)
+      .map { binding =>
+        server.binding = Some(binding)
+        server
+      }(ExecutionContext.parasitic)
+  }
+
+  /** Pods, as read and annotated by rolling update and listed and watched by discovery. */
+  def podsPath(namespace: String): String = s"/api/v1/namespaces/$namespace/pods"
+
+  /** ReplicaSets, as read by rolling update. */
+  def replicaSetsPath(namespace: String): String = s"/apis/apps/v1/namespaces/$namespace/replicasets"
+
+  /** Native Kubernetes leases, as used by `NativeKubernetesLease`. */
+  def leasesPath(namespace: String): String = s"/apis/coordination.k8s.io/v1/namespaces/$namespace/leases"
+
+  /** The lease custom resources, as used by `KubernetesLease`. */
+  def leaseCustomResourcesPath(namespace: String): String = s"/apis/pekko.apache.org/v1/namespaces/$namespace/leases"
+
+  /** The pod cost custom resources, as used by rolling update. */
+  def podCostsPath(namespace: String): String = s"/apis/pekko.apache.org/v1/namespaces/$namespace/podcosts"
+
+  /**
+   * The requests served since the start or the last [[FakeKubernetesApiServer.resetStats]].
+   *
+   * @param reads GET requests, including lists and watches
+   * @param writes POST, PUT, PATCH and DELETE requests
+   * @param conflicts requests rejected with 409 Conflict, because of an outdated `resourceVersion` or because the
+   *                  object to create already exists
+   * @param injectedErrors requests failed by the configured error injection
+   */
+  final case class Stats(requests: Long, reads: Long, writes: Long, conflicts: Long, injectedErrors: Long) {
+
+    /** The share of the writes that were rejected with a conflict. */
+    def conflictRate: Double = if (writes == 0) 0.0 else conflicts.toDouble / writes
+  }
+
+  private final case class ResourcePath(collection: String, namespace: String, name: Option[String])
+
+  private final case class Event(collection: String, resourceVersion: Long, eventType: String, obj: JsObject)
+
+  private final case class LabelRequirement(key: String, value: Option[String], equal: Boolean) {
+    def matches(labels: Map[String, JsValue]): Boolean =
+      value match {
+        case Some(v) => labels.get(key).contains(JsString(v)) == equal
+        case None    => labels.contains(key)
+      }
+  }
+
+  private final case class Selector(name: Option[String], labels: immutable.Seq[LabelRequirement]) {
+    def matches(obj: JsObject): Boolean = {
+      val meta = metadata(obj)
+      name.forall(n => stringField(meta, "name").contains(n)) && {
+        val objLabels = meta.get("labels") match {
+          case Some(JsObject(l)) => l
+          case _                 => Map.empty[String, JsValue]
+        }
+        labels.forall(_.matches(objLabels))
+      }
+    }
+  }
+
+  private def metadata(obj: JsObject): Map[String, JsValue] =
+    obj.fields.get("metadata") match {
+      case Some(JsObject(fields)) => fields
+      case _                      => Map.empty
+    }
+
+  private def withMetadata(obj: JsObject, fields: (String, JsValue)*): JsObject =
+    JsObject(obj.fields.updated("metadata", JsObject(metadata(obj) ++ fields)))
+
+  private def stringField(fields: Map[String, JsValue], name: String): Option[String] =
+    fields.get(name).collect { case JsString(s) => s }
+
+  /** JSON merge patch, RFC 7386. */
+  private def mergePatch(target: JsValue, patch: JsValue): JsValue =
+    patch match {
+      case JsObject(patchFields) =>
+        val targetFields = target match {
+          case JsObject(fields) => fields
+          case _                => Map.empty[String, JsValue]
+        }
+        JsObject(patchFields.foldLeft(targetFields) {
+          case (acc, (key, JsNull)) => acc - key
+          case (acc, (key, value))  => acc.updated(key, mergePatch(acc.getOrElse(key, JsNull), value))
+        })
+      case other => other
+    }
+
+  // the metadata that a PUT or PATCH cannot change
+  private val IdentityFields = List("name", "namespace", "uid", "creationTimestamp")
+
+  private val MaxHistory = 1000
+  private val MaxWatchBuffer = 2 * MaxHistory
+  private val DefaultWatchTimeout = 30.minutes
+  private val BodyReadTimeout = 5.seconds
+}
+
+/**
+ * An in-process stand-in for the Kubernetes API server, to test and measure the Kubernetes lease, discovery and
+ * rolling update without a cluster.
+ *
+ * Any namespaced resource is served in memory under `/api/v1/namespaces/<namespace>/<resource>` and
+ * `/apis/<group>/<version>/namespaces/<namespace>/<resource>`: create with POST, read with GET, list and watch with
+ * GET on the resource, replace with PUT, JSON merge patch with PATCH and delete with DELETE. As in Kubernetes, every
+ * write gives the object a new `metadata.resourceVersion`, and a PUT or PATCH with a `metadata.resourceVersion` other
+ * than the current one is rejected with 409 Conflict. Lists and watches support the `labelSelector` and the
+ * `metadata.name` field selector, and watches resume from a `resourceVersion` of the last 1000 writes. The
+ * Authorization header is not checked.
+ *
+ * Latency and errors can be injected with [[setLatency]], [[setErrorRate]] and [[failNext]], and [[stats]] counts the
+ * requests and conflicts.
+ */
+final class FakeKubernetesApiServer private (system: ActorSystem) {
+  import FakeKubernetesApiServer._
+
+  private implicit val sys: ActorSystem = system
+  private implicit val ec: ExecutionContext = system.dispatcher
+
+  @volatile private var binding: Option[Http.ServerBinding] = None
+
+  @volatile private var latency: FiniteDuration = Duration.Zero
+  @volatile private var jitter: FiniteDuration = Duration.Zero
+  @volatile private var errorRate = 0.0
+  @volatile private var errorStatus: StatusCode = StatusCodes.InternalServerError
+  private val failNextCount = new AtomicInteger
+  @volatile private var failNextStatus: StatusCode = StatusCodes.ServiceUnavailable
+
+  private val requests = new LongAdder
+  private val reads = new LongAdder
+  private val writes = new LongAdder
+  private val conflicts = new LongAdder
+  private val injectedErrors = new LongAdder
+
+  private final class Watcher(collection: String, selector: Selector, queue: BoundedSourceQueue[ByteString]) {
+    def matches(event: Event): Boolean = event.collection == collection && selector.matches(event.obj)
+
+    /** False when the watch is closed, or too slow to keep up. */
+    def offer(eventType: String, obj: JsValue): Boolean =
+      queue.offer(ByteString(JsObject("type" -> JsString(eventType), "object" -> obj).compactPrint + "\n")) match {
+        case QueueOfferResult.Enqueued => true
+        case _                         =>
+          queue.complete()
+          false
+      }
+
+    def complete(): Unit = queue.complete()
+  }
+
+  // all guarded by lock
+  private val lock = new Object
+  private var collections = Map.empty[String, Map[String, JsObject]]
+  private var lastResourceVersion = 0L
+  private var history = immutable.Queue.empty[Event]
+  private var compactedVersion = 0L
+  private var watchers = Set.empty[Watcher]
+
+  /** The port the server is bound to. */
+  def port: Int = binding.map(_.localAddress.getPort).getOrElse(throw new IllegalStateException("Not started"))
+
+  /**
+   * Every request is delayed by `latency` plus a random share of `jitter`.
+   */
+  def setLatency(latency: FiniteDuration, jitter: FiniteDuration = Duration.Zero): Unit = {
+    this.latency = latency
+    this.jitter = jitter
+  }
+
+  /**
+   * The given share of the requests, between 0.0 and 1.0, fails with the given status without being served.
+   */
+  def setErrorRate(rate: Double, status: StatusCode = StatusCodes.InternalServerError): Unit = {
+    require(rate >= 0.0 && rate <= 1.0, s"rate must be between 0.0 and 1.0, was [$rate]")
+    errorStatus = status
+    errorRate = rate
+  }
+
+  /**
+   * The next `requests` requests fail with the given status without being served.
+   */
+  def failNext(requests: Int, status: StatusCode = StatusCodes.ServiceUnavailable): Unit = {
+    failNextStatus = status
+    failNextCount.set(requests)
+  }
+
+  def stats: Stats =
+    Stats(requests.sum(), reads.sum(), writes.sum(), conflicts.sum(), injectedErrors.sum())
+
+  def resetStats(): Unit =
+    List(requests, reads, writes, conflicts, injectedErrors).foreach(_.reset())
+
+  /**
+   * Creates an object in the resource with the given path, e.g. [[FakeKubernetesApiServer.podsPath]], as a POST
+   * would. Returns the stored object, with its resourceVersion.
+   */
+  def create(resourcePath: String, obj: JsObject): JsObject =
+    parsePath(Uri.Path(resourcePath)) match {
+      case Some(path) =>
+        createObject(path, obj) match {
+          case Right(stored) => stored
+          case Left(_)       => throw new IllegalArgumentException(s"Object already exists or has no name: $obj")
+        }
+      case None => throw new IllegalArgumentException(s"Not a resource path: [$resourcePath]")
+    }
+
+  /** The object with the given name in the resource with the given path. */
+  def get(resourcePath: String, name: String): Option[JsObject] =
+    lock.synchronized(collections.get(Uri.Path(resourcePath).toString.stripSuffix("/")).flatMap(_.get(name)))
+
+  /** The objects in the resource with the given path. */
+  def list(resourcePath: String): immutable.Seq[JsObject] =
+    lock.synchronized(
+      collections.getOrElse(Uri.Path(resourcePath).toString.stripSuffix("/"), Map.empty).values.toVector)
+
+  def stop(): Future[Done] = {
+    lock.synchronized {
+      watchers.foreach(_.complete())
+      watchers = Set.empty
+    }
+    binding match {
+      case Some(b) => b.terminate(1.second).map(_ => Done)
+      case None    => Future.successful(Done)
+    }
+  }
+
+  /**
+   * Serves a request, can also be used without binding the server.
+   */
+  def handle(request: HttpRequest): Future[HttpResponse] = {
+    requests.increment()
+    request.method match {
+      case HttpMethods.GET => reads.increment()
+      case _               => writes.increment()
+    }
+    val delay =
+      if (jitter == Duration.Zero) latency
+      else latency + (jitter.toNanos * ThreadLocalRandom.current().nextDouble()).toLong.nanos
+    val response =
+      if (delay == Duration.Zero) respond(request)
+      else after(delay)(respond(request))
+    response.map { r =>
+      if (r.status == StatusCodes.Conflict) conflicts.increment()
+      r
+    }(ExecutionContext.parasitic)
+  }
+
+  private def respond(request: HttpRequest): Future[HttpResponse] =
+    injectedError() match {
+      case Some(status) =>
+        request.discardEntityBytes()
+        injectedErrors.increment()
+        Future.successful(statusResponse(status, "InternalError", "Injected error"))
+      case None =>
+        request.entity.toStrict(BodyReadTimeout).map { entity =>
+          try route(request, entity.data)
+          catch {
+            case e @ (_: JsonParser.ParsingException | _: DeserializationException) =>
+              statusResponse(StatusCodes.BadRequest, "BadRequest", e.getMessage)
+          }
+        }
+    }
+
+  private def injectedError(): Option[StatusCode] =
+    if (failNextCount.get() > 0 && failNextCount.getAndDecrement() > 0) Some(failNextStatus)
+    else if (errorRate > 0.0 && ThreadLocalRandom.current().nextDouble() < errorRate) Some(errorStatus)
+    else None
+
+  private def route(request: HttpRequest, body: ByteString): HttpResponse =
+    parsePath(request.uri.path) match {
+      case None =>
+        statusResponse(StatusCodes.NotFound, "NotFound", s"The server could not find [${request.uri.path}]")
+      case Some(path) =>
+        (request.method, path.name) match {
+          case (HttpMethods.GET, Some(name)) =>
+            lock.synchronized(collections.get(path.collection).flatMap(_.get(name))) match {
+              case Some(obj) => jsonResponse(StatusCodes.OK, obj)
+              case None      => notFound(path, name)
+            }
+          case (HttpMethods.GET, None) =>
+            val query = request.uri.query()
+            if (query.get("watch").contains("true")) watch(path, query)
+            else listObjects(path, selector(query))
+          case (HttpMethods.POST, _) =>
+            createObject(path, body.utf8String.parseJson.asJsObject) match {
+              case Right(stored)  => jsonResponse(StatusCodes.Created, stored)
+              case Left(response) => response
+            }
+          case (HttpMethods.PUT, Some(name)) =>
+            val obj = body.utf8String.parseJson.asJsObject
+            write(path, name, stringField(metadata(obj), "resourceVersion"))(_ => obj)
+          case (HttpMethods.PATCH, Some(name)) =>
+            val patch = body.utf8String.parseJson
+            val expectedVersion = patch match {
+              case obj: JsObject => stringField(metadata(obj), "resourceVersion")
+              case _             => None
+            }
+            write(path, name, expectedVersion)(current => mergePatch(current, patch).asJsObject)
+          case (HttpMethods.DELETE, Some(name)) =>
+            lock.synchronized {
+              collections.get(path.collection).flatMap(_.get(name)) match {
+                case Some(current) => jsonResponse(StatusCodes.OK, commit(path.collection, name, "DELETED", current))
+                case None          => notFound(path, name)
+              }
+            }
+          case (method, _) =>
+            statusResponse(StatusCodes.MethodNotAllowed, "MethodNotAllowed", s"[${method.value}] is not supported")
+        }
+    }
+
+  private def createObject(path: ResourcePath, obj: JsObject): Either[HttpResponse, JsObject] =
+    stringField(metadata(obj), "name").orElse(path.name).filter(_.nonEmpty) match {
+      case None =>
+        Left(statusResponse(StatusCodes.BadRequest, "Invalid", "metadata.name is required"))
+      case Some(name) =>
+        lock.synchronized {
+          if (collections.get(path.collection).exists(_.contains(name)))
+            Left(statusResponse(StatusCodes.Conflict, "AlreadyExists", s"[$name] already exists"))
+          else {
+            val created = withMetadata(
+              obj,
+              "name" -> JsString(name),
+              "namespace" -> JsString(path.namespace),
+              "uid" -> JsString(UUID.randomUUID().toString),
+              "creationTimestamp" -> JsString(Instant.now().toString))
+            Right(commit(path.collection, name, "ADDED", created))
+          }
+        }
+    }
+
+  /**
+   * Replaces the object if it exists and `expectedVersion`, if given, is its current resourceVersion. The identity
+   * of the object cannot be changed.
+   */
+  private def write(path: ResourcePath, name: String, expectedVersion: Option[String])(
+      update: JsObject => JsObject): HttpResponse =
+    lock.synchronized {
+      collections.get(path.collection).flatMap(_.get(name)) match {
+        case None => notFound(path, name)
+        case Some(current) =>
+          val currentMetadata = metadata(current)
+          if (expectedVersion.exists(v => !stringField(currentMetadata, "resourceVersion").contains(v)))
+            statusResponse(
+              StatusCodes.Conflict,
+              "Conflict",
+              s"Operation cannot be fulfilled on [$name]: the object has been modified; " +
+              "please apply your changes to the latest version and try again")
+          else {
+            val identity = IdentityFields.flatMap(key => currentMetadata.get(key).map(key -> _))
+            val updated = withMetadata(update(current), identity: _*)
+            jsonResponse(StatusCodes.OK, commit(path.collection, name, "MODIFIED", updated))
+          }
+      }
+    }
+
+  // must be called with the lock held
+  private def commit(collection: String, name: String, eventType: String, obj: JsObject): JsObject = {
+    lastResourceVersion += 1
+    val stored = withMetadata(obj, "resourceVersion" -> JsString(lastResourceVersion.toString))
+    val objects = collections.getOrElse(collection, Map.empty)
+    collections = collections.updated(
+      collection,
+      if (eventType == "DELETED") objects - name else objects.updated(name, stored))
+
+    val event = Event(collection, lastResourceVersion, eventType, stored)
+    history = history.enqueue(event)
+    if (history.size > MaxHistory) {
+      val (dropped, rest) = history.dequeue
+      compactedVersion = dropped.resourceVersion
+      history = rest
+    }
+    watchers = watchers.filter(w => !w.matches(event) || w.offer(eventType, stored))
+    stored
+  }
+
+  private def listObjects(path: ResourcePath, selector: Selector): HttpResponse = {
+    val (objects, version) = lock.synchronized {
+      (collections.getOrElse(path.collection, Map.empty).values.filter(selector.matches).toVector, lastResourceVersion)
+    }
+    jsonResponse(
+      StatusCodes.OK,
+      JsObject(
+        "kind" -> JsString("List"),
+        "apiVersion" -> JsString("v1"),
+        "metadata" -> JsObject("resourceVersion" -> JsString(version.toString)),
+        "items" -> JsArray(objects)))
+  }
+
+  /**
+   * Sends the changes after the given resourceVersion, or all objects as added when there is none, and then the
+   * changes as they happen until the timeout. An ERROR event with status 410 Gone is sent when the resourceVersion is
+   * older than the kept history.
+   */
+  private def watch(path: ResourcePath, query: Uri.Query): HttpResponse = {
+    val watchSelector = selector(query)
+    val timeout = query.get("timeoutSeconds").flatMap(_.toLongOption).map(_.seconds).getOrElse(DefaultWatchTimeout)
+    val since = query.get("resourceVersion").flatMap(_.toLongOption).filter(_ > 0)
+    val (queue, source) = Source.queue[ByteString](MaxWatchBuffer).preMaterialize()
+    val watcher = new Watcher(path.collection, watchSelector, queue)
+
+    lock.synchronized {
+      since match {
+        case Some(version) if version < compactedVersion =>
+          watcher.offer("ERROR", status(StatusCodes.Gone, "Expired", s"too old resource version: $version"))
+          watcher.complete()
+        case Some(version) =>
+          val replayed = history.iterator.filter(e => e.resourceVersion > version && watcher.matches(e)).forall(e =>
+            watcher.offer(e.eventType, e.obj))
+          if (replayed) watchers += watcher
+        case None =>
+          val added = collections.getOrElse(path.collection, Map.empty).valuesIterator.filter(
+            watchSelector.matches).forall(obj => watcher.offer("ADDED", obj))
+          if (added) watchers += watcher
+      }
+    }
+
+    val events = source.takeWithin(timeout).watchTermination() { (_, done) =>
+      done.onComplete { _ =>
+        watcher.complete()
+        lock.synchronized(watchers -= watcher)
+      }(ExecutionContext.parasitic)
+      NotUsed
+    }
+    HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, events))
+  }
+
+  private def parsePath(path: Uri.Path): Option[ResourcePath] = {
+    val segments = path.toString.split('/').toList.filter(_.nonEmpty)
+    val (prefix, rest) = segments match {
+      case "api" :: version :: rest           => (List("api", version), rest)
+      case "apis" :: group :: version :: rest => (List("apis", group, version), rest)
+      case _                                  => (Nil, Nil)
+    }
+    rest match {
+      case "namespaces" :: namespace :: resource :: name =>
+        val collection = (prefix ::: List("namespaces", namespace, resource)).mkString("/", "/", "")
+        name match {
+          case Nil     => Some(ResourcePath(collection, namespace, None))
+          case List(n) => Some(ResourcePath(collection, namespace, Some(n)))
+          case _       => None
+        }
+      case _ => None
+    }
+  }
+
+  private def selector(query: Uri.Query): Selector = {
+    def terms(param: String): List[String] =
+      query.get(param).toList.flatMap(_.split(',')).map(_.trim).filter(_.nonEmpty)
+
+    val name = terms("fieldSelector").collectFirst {
+      case term if term.startsWith("metadata.name=") => term.stripPrefix("metadata.name=").stripPrefix("=")
+    }
+    val labels = terms("labelSelector").map { term =>
+      term.split("!=", 2) match {
+        case Array(key, value) => LabelRequirement(key.trim, Some(value.trim), equal = false)
+        case _                 =>
+          term.split("==?", 2) match {
+            case Array(key, value) => LabelRequirement(key.trim, Some(value.trim), equal = true)
+            case _                 => LabelRequirement(term, None, equal = true)
+          }
+      }
+    }
+    Selector(name, labels)
+  }
+
+  private def notFound(path: ResourcePath, name: String): HttpResponse =
+    statusResponse(StatusCodes.NotFound, "NotFound", s"[${path.collection}/$name] not found")
+
+  private def status(code: StatusCode, reason: String, message: String): JsObject =
+    JsObject(
+      "kind" -> JsString("Status"),
+      "apiVersion" -> JsString("v1"),
+      "metadata" -> JsObject.empty,
+      "status" -> JsString("Failure"),
+      "message" -> JsString(message),
+      "reason" -> JsString(reason),
+      "code" -> JsNumber(code.intValue))
+
+  private def statusResponse(code: StatusCode, reason: String, message: String): HttpResponse =
+    jsonResponse(code, status(code, reason, message))
+
+  private def jsonResponse(code: StatusCode, json: JsValue): HttpResponse =
+    HttpResponse(code, entity = HttpEntity(ContentTypes.`application/json`, json.compactPrint))
+}
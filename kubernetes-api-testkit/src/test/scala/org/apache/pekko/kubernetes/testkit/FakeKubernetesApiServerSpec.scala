@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.kubernetes.testkit
+
+import scala.concurrent.Future
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.http.scaladsl.Http
+import pekko.http.scaladsl.model._
+import pekko.stream.scaladsl.{ Framing, Sink }
+import pekko.testkit.TestKit
+import pekko.util.ByteString
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpecLike
+import spray.json._
+import spray.json.DefaultJsonProtocol._
+
+class FakeKubernetesApiServerSpec
+    extends TestKit(ActorSystem("FakeKubernetesApiServerSpec"))
+    with AnyWordSpecLike
+    with Matchers
+    with ScalaFutures
+    with BeforeAndAfterAll {
+
+  override implicit val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(5, Seconds), interval = Span(50, Millis))
+
+  private val server = FakeKubernetesApiServer.start().futureValue
+
+  override protected def afterAll(): Unit = {
+    server.stop().futureValue
+    TestKit.shutdownActorSystem(system)
+  }
+
+  private def request(method: HttpMethod, path: String, body: Option[JsValue] = None): (StatusCode, JsObject) = {
+    val entity = body.map(b => HttpEntity(ContentTypes.`application/json`, b.compactPrint)).getOrElse(HttpEntity.Empty)
+    val response =
+      Http().singleRequest(HttpRequest(method, Uri(s"http://127.0.0.1:${server.port}$path"), entity = entity))
+        .futureValue
+    val json = response.entity.toStrict(3.seconds).futureValue.data.utf8String.parseJson.asJsObject
+    (response.status, json)
+  }
+
+  private def resourceVersion(obj: JsObject): String =
+    obj.fields("metadata").asJsObject.fields("resourceVersion").convertTo[String]
+
+  private def lease(name: String, holder: String, version: Option[String] = None): JsObject =
+    JsObject(
+      "metadata" -> JsObject(Map("name" -> JsString(name)) ++ version.map("resourceVersion" -> JsString(_))),
+      "spec" -> JsObject("holderIdentity" -> JsString(holder)))
+
+  "FakeKubernetesApiServer" should {
+
+    "create, read and replace objects with resourceVersion optimistic concurrency" in {
+      val leases = FakeKubernetesApiServer.leasesPath("ns1")
+      server.resetStats()
+
+      val (created, first) = request(HttpMethods.POST, leases, Some(lease("lease-1", "")))
+      created shouldEqual StatusCodes.Created
+      request(HttpMethods.POST, leases, Some(lease("lease-1", "")))._1 shouldEqual StatusCodes.Conflict
+
+      request(HttpMethods.GET, s"$leases/lease-1")._2 shouldEqual first
+      request(HttpMethods.GET, s"$leases/other")._1 shouldEqual StatusCodes.NotFound
+
+      val (updated, second) =
+        request(HttpMethods.PUT, s"$leases/lease-1", Some(lease("lease-1", "a", Some(resourceVersion(first)))))
+      updated shouldEqual StatusCodes.OK
+      resourceVersion(second) should not equal resourceVersion(first)
+      second.fields("metadata").asJsObject.fields("uid") shouldEqual first.fields("metadata").asJsObject.fields("uid")
+
+      // the update based on the first version lost
+      val (outdated, _) =
+        request(HttpMethods.PUT, s"$leases/lease-1", Some(lease("lease-1", "b", Some(resourceVersion(first)))))
+      outdated shouldEqual StatusCodes.Conflict
+      server.get(leases, "lease-1") shouldEqual Some(second)
+
+      val stats = server.stats
+      stats.conflicts shouldEqual 2
+      stats.writes shouldEqual 4
+      stats.reads shouldEqual 2
+    }
+
+    "merge patch objects and list them by label" in {
+      val pods = FakeKubernetesApiServer.podsPath("ns2")
+      def pod(name: String, app: String) =
+        JsObject("metadata" -> JsObject("name" -> JsString(name), "labels" -> JsObject("app" -> JsString(app))))
+      server.create(pods, pod("pod-1", "a"))
+      server.create(pods, pod("pod-2", "a"))
+      server.create(pods, pod("pod-3", "b"))
+
+      val patch = """{"metadata": {"annotations": {"controller.kubernetes.io/pod-deletion-cost": "10"}}}""".parseJson
+      val (patched, pod1) = request(HttpMethods.PATCH, s"$pods/pod-1", Some(patch))
+      patched shouldEqual StatusCodes.OK
+      val metadata = pod1.fields("metadata").asJsObject.fields
+      metadata("annotations") shouldEqual JsObject("controller.kubernetes.io/pod-deletion-cost" -> JsString("10"))
+      metadata("labels") shouldEqual JsObject("app" -> JsString("a"))
+
+      val (_, list) = request(HttpMethods.GET, s"$pods?labelSelector=app%3Da")
+      val names = list.fields("items").convertTo[Vector[JsObject]].map(
+        _.fields("metadata").asJsObject.fields("name").convertTo[String])
+      names should contain theSameElementsAs List("pod-1", "pod-2")
+      resourceVersion(list) shouldEqual resourceVersion(pod1)
+
+      request(HttpMethods.DELETE, s"$pods/pod-3")._1 shouldEqual StatusCodes.OK
+      server.list(pods).size shouldEqual 2
+    }
+
+    "watch the changes after a resourceVersion" in {
+      val leases = FakeKubernetesApiServer.leaseCustomResourcesPath("ns3")
+      val first = server.create(leases, lease("lease-1", ""))
+      server.create(leases, lease("lease-2", ""))
+
+      val response = Http()
+        .singleRequest(HttpRequest(uri = Uri(
+          s"http://127.0.0.1:${server.port}$leases?watch=true&fieldSelector=metadata.name%3Dlease-1" +
+          s"&resourceVersion=${resourceVersion(first)}&timeoutSeconds=3")))
+        .futureValue
+      val events: Future[Seq[JsObject]] = response.entity.dataBytes
+        .via(Framing.delimiter(ByteString("\n"), 65536))
+        .map(_.utf8String.parseJson.asJsObject)
+        .take(2)
+        .runWith(Sink.seq)
+
+      request(HttpMethods.PUT, s"$leases/lease-2", Some(lease("lease-2", "a")))
+      request(HttpMethods.PUT, s"$leases/lease-1", Some(lease("lease-1", "a", Some(resourceVersion(first)))))
+      request(HttpMethods.DELETE, s"$leases/lease-1")
+
+      val received = events.futureValue
+      received.map(_.fields("type")) shouldEqual List(JsString("MODIFIED"), JsString("DELETED"))
+      received.head.fields("object").asJsObject.fields("spec") shouldEqual
+      JsObject("holderIdentity" -> JsString("a"))
+    }
+
+    "inject errors and latency" in {
+      val leases = FakeKubernetesApiServer.leasesPath("ns4")
+      server.resetStats()
+
+      server.failNext(1)
+      request(HttpMethods.GET, s"$leases/lease-1")._1 shouldEqual StatusCodes.ServiceUnavailable
+      request(HttpMethods.GET, s"$leases/lease-1")._1 shouldEqual StatusCodes.NotFound
+
+      server.setErrorRate(1.0, StatusCodes.InternalServerError)
+      request(HttpMethods.GET, s"$leases/lease-1")._1 shouldEqual StatusCodes.InternalServerError
+      server.setErrorRate(0.0)
+      server.stats.injectedErrors shouldEqual 2
+
+      server.setLatency(200.millis)
+      val start = System.nanoTime()
+      request(HttpMethods.GET, s"$leases/lease-1")
+      (System.nanoTime() - start).nanos should be >= 200.millis
+      server.setLatency(Duration.Zero)
+    }
+  }
+}
@@ -20,11 +20,13 @@ import java.util.Locale
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
 import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration.{ Duration, FiniteDuration }
 import scala.util.{ Failure, Success }
 import scala.annotation.nowarn
 
 import org.apache.pekko
 import pekko.actor.ExtendedActorSystem
+import pekko.annotation.InternalApi
 import pekko.coordination.lease.kubernetes.LeaseActor._
 import pekko.coordination.lease.scaladsl.Lease
 import pekko.coordination.lease.LeaseException
@@ -139,8 +141,22 @@ abstract class AbstractKubernetesLease(system: ExtendedActorSystem, leaseTaken:
       settings.leaseName,
       k8sSettings.leaseLabelMaxLength,
       k8sSettings.onTruncateAddHashLength)
+  private val leaseGroup =
+    if (k8sSettings.leaseGroupEnabled)
+      Some(KubernetesLeaseGroup(system).coordinator(
+        settings.timeoutSettings.heartbeatInterval,
+        k8sSettings.leaseGroupMaxConcurrentRenewals))
+    else None
+  private val renewalStats = new LeaseRenewalStats(settings.timeoutSettings)
   private val leaseActor = system.systemActorOf(
-    LeaseActor.props(k8sApi, settings, leaseName, leaseTaken),
+    LeaseActor.props(
+      k8sApi,
+      settings,
+      leaseName,
+      leaseTaken,
+      leaseGroup,
+      if (k8sSettings.waitForLeaseEnabled) Some(k8sSettings.waitForLeaseMaxWait) else None,
+      Some(renewalStats)),
     s"kubernetesLease${AbstractKubernetesLease.leaseCounter.incrementAndGet}")
   if (leaseName != settings.leaseName) {
     logger.info(
@@ -153,7 +169,22 @@ abstract class AbstractKubernetesLease(system: ExtendedActorSystem, leaseTaken:
     leaseName,
     settings.ownerName)
 
-  override def checkLease(): Boolean = leaseTaken.get()
+  /**
+   * The lease is held, and not at risk of expiring: a renewal of the lease started now is expected to complete
+   * before other nodes can take the lease, based on the measured latency of the writes to the API server.
+   */
+  override def checkLease(): Boolean = leaseTaken.get() && !renewalStats.atRisk
+
+  /**
+   * How long the lease stays valid for other nodes if it is not renewed, zero when it is not held.
+   */
+  def remainingValidity(): FiniteDuration =
+    if (leaseTaken.get()) renewalStats.remainingValidity else Duration.Zero
+
+  /**
+   * INTERNAL API
+   */
+  @InternalApi private[pekko] def leaseRenewalStats: LeaseRenewalStats = renewalStats
 
   @nowarn("msg=match may not be exhaustive")
   override def release(): Future[Boolean] = {
@@ -16,6 +16,7 @@ package org.apache.pekko.coordination.lease.kubernetes
 import org.apache.pekko.annotation.InternalApi
 
 import scala.concurrent.Future
+import scala.concurrent.duration.FiniteDuration
 
 /**
  * INTERNAL API
@@ -54,4 +55,14 @@ private[pekko] trait KubernetesApi {
       clientName: String,
       version: String,
       time: Long = System.currentTimeMillis()): Future[Either[LeaseResource, LeaseResource]]
+
+  /**
+   * Watches the named resource for the next change after the given version, for at most the given time.
+   *
+   * Can return one of two things:
+   *  - Some(resource): the resource was updated to this
+   *  - None: the watch ended without a change, or the resource was deleted or the version is too old. The resource
+   *    has to be read again to know its current state.
+   */
+  def watchLeaseResource(name: String, version: String, timeout: FiniteDuration): Future[Option[LeaseResource]]
 }
@@ -53,6 +53,18 @@ private[pekko] object KubernetesSettings {
       apiServerRequestTimeout < leaseTimeoutSettings.operationTimeout,
       "'api-server-request-timeout can not be less than 'lease-operation-timeout'")
 
+    val waitForLeaseMaxWait =
+      if (config.hasDefined("wait-for-lease.max-wait"))
+        config.getDuration("wait-for-lease.max-wait").toScala
+      else
+        leaseTimeoutSettings.operationTimeout - apiServerRequestTimeout * 2 // leaves time for the read and the update
+
+    val waitForLeaseEnabled = config.getBoolean("wait-for-lease.enabled")
+    require(
+      !waitForLeaseEnabled || (waitForLeaseMaxWait > Duration.Zero &&
+      waitForLeaseMaxWait < leaseTimeoutSettings.operationTimeout),
+      "'wait-for-lease.max-wait' must be greater than zero and less than 'lease-operation-timeout'")
+
     val retryConfPath = "token-rotation-retry"
 
     val tokenRetrySettings = new TokenRetrySettings(
@@ -75,7 +87,11 @@ private[pekko] object KubernetesSettings {
       bodyReadTimeout = apiServerRequestTimeout / 2,
       tokenRetrySettings = tokenRetrySettings,
       leaseLabelMaxLength = config.getInt("lease-name-max-length"),
-      onTruncateAddHashLength = config.getInt("on-truncate-add-hash-length"))
+      onTruncateAddHashLength = config.getInt("on-truncate-add-hash-length"),
+      leaseGroupEnabled = config.getBoolean("lease-group.enabled"),
+      leaseGroupMaxConcurrentRenewals = config.getInt("lease-group.max-concurrent-renewals"),
+      waitForLeaseEnabled = waitForLeaseEnabled,
+      waitForLeaseMaxWait = waitForLeaseMaxWait)
   }
 }
 
@@ -111,4 +127,8 @@ private[pekko] class KubernetesSettings(
       0.3
     ),
     val leaseLabelMaxLength: Int = 63,
-    val onTruncateAddHashLength: Int = 8)
+    val onTruncateAddHashLength: Int = 8,
+    val leaseGroupEnabled: Boolean = false,
+    val leaseGroupMaxConcurrentRenewals: Int = 8,
+    val waitForLeaseEnabled: Boolean = false,
+    val waitForLeaseMaxWait: FiniteDuration = 1.second)
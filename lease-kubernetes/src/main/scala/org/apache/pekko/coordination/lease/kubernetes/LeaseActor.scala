@@ -20,6 +20,7 @@ import pekko.actor.Status.Failure
 import pekko.actor.{ ActorRef, DeadLetterSuppression, FSM, LoggingFSM, Props }
 import pekko.annotation.InternalApi
 import pekko.coordination.lease.{ LeaseSettings, LeaseTimeoutException }
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.util.ConstantFun
 import pekko.util.PrettyDuration._
 
@@ -38,6 +39,7 @@ private[pekko] object LeaseActor {
   case object Granting extends State
   case object Granted extends State
   case object Releasing extends State
+  case object WaitingForLease extends State
 
   sealed trait Data
   case object ReadRequired extends Data
@@ -61,6 +63,14 @@ private[pekko] object LeaseActor {
       extends Data
       with ReplyRequired
   case class GrantedVersion(version: String, leaseLostCallback: Option[Throwable] => Unit) extends Data
+  // Waiting for the lease taken by another owner to be released or to go stale
+  case class WaitingForLeaseData(
+      replyTo: ActorRef,
+      leaseLostCallback: Option[Throwable] => Unit,
+      version: String,
+      deadline: Deadline)
+      extends Data
+      with ReplyRequired
 
   sealed trait Command
   case class Acquire(leaseLostCallback: Option[Throwable] => Unit = ConstantFun.scalaAnyToUnit) extends Command
@@ -69,7 +79,32 @@ private[pekko] object LeaseActor {
   // internal
   private case class ReadResponse(response: LeaseResource) extends Command
   private case class WriteResponse(response: Either[LeaseResource, LeaseResource]) extends Command
-  private case object Heartbeat extends Command
+  private case class WatchResponse(response: Option[LeaseResource]) extends Command
+  private case class WatchFailed(cause: Throwable) extends Command
+  private case object LeaseStale extends Command
+  private case object WaitForLeaseTimeout extends Command
+  // sent by the own timer, or by the LeaseGroupCoordinator in lease group mode
+  private[kubernetes] case object Heartbeat extends Command
+
+  /**
+   * The duration of the writes of one lease operation, by outcome.
+   */
+  private final class OperationMetrics(metrics: ManagementMetrics, operation: String) {
+    private val okDuration = duration("ok")
+    private val conflictDuration = duration("conflict")
+    private val failedDuration = duration("failed")
+
+    private def duration(outcome: String): ManagementMetrics.Histogram =
+      metrics.histogram(
+        "pekko_management_lease_operation_duration_seconds",
+        "The time until a write of a Kubernetes lease completed",
+        "operation" -> operation,
+        "outcome" -> outcome)
+
+    def succeeded(startNanos: Long): Unit = okDuration.recordNanos(System.nanoTime() - startNanos)
+    def conflicted(startNanos: Long): Unit = conflictDuration.recordNanos(System.nanoTime() - startNanos)
+    def failed(startNanos: Long): Unit = failedDuration.recordNanos(System.nanoTime() - startNanos)
+  }
 
   sealed trait Response
   case object LeaseAcquired extends Response
@@ -77,8 +112,28 @@ private[pekko] object LeaseActor {
   case object LeaseReleased extends Response with DeadLetterSuppression
   case class InvalidRequest(reason: String) extends Response with DeadLetterSuppression
 
-  def props(k8sApi: KubernetesApi, settings: LeaseSettings, leaseName: String, granted: AtomicBoolean): Props = {
-    Props(new LeaseActor(k8sApi, settings, leaseName, granted))
+  /**
+   * @param leaseGroup the [[LeaseGroupCoordinator]] that sends the heartbeats, instead of a timer of this lease
+   * @param waitForLease how long an acquire waits for a lease taken by another owner, if at all
+   * @param renewalStats where the latency of the writes and the validity of the lease are recorded
+   */
+  def props(
+      k8sApi: KubernetesApi,
+      settings: LeaseSettings,
+      leaseName: String,
+      granted: AtomicBoolean,
+      leaseGroup: Option[ActorRef] = None,
+      waitForLease: Option[FiniteDuration] = None,
+      renewalStats: Option[LeaseRenewalStats] = None): Props = {
+    Props(
+      new LeaseActor(
+        k8sApi,
+        settings,
+        leaseName,
+        granted,
+        leaseGroup,
+        waitForLease,
+        renewalStats.getOrElse(new LeaseRenewalStats(settings.timeoutSettings))))
   }
 
 }
@@ -88,7 +143,8 @@ private[pekko] object LeaseActor {
  */
 @InternalApi
 private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings, leaseName: String,
-    granted: AtomicBoolean)
+    granted: AtomicBoolean, leaseGroup: Option[ActorRef], waitForLease: Option[FiniteDuration],
+    renewalStats: LeaseRenewalStats)
     extends LoggingFSM[LeaseActor.State, LeaseActor.Data] {
 
   import pekko.pattern.pipe
@@ -97,6 +153,15 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
 
   private val ownerName = settings.ownerName
 
+  // when the heartbeat in progress sent its write, to measure the latency
+  private var heartbeatStartNanos = 0L
+  private var heartbeatStartMillis = 0L
+
+  private val metrics = ManagementMetrics(context.system)
+  private val acquireMetrics = new OperationMetrics(metrics, "acquire")
+  private val renewMetrics = new OperationMetrics(metrics, "renew")
+  private val releaseMetrics = new OperationMetrics(metrics, "release")
+
   startWith(Idle, ReadRequired)
 
   when(Idle) {
@@ -132,6 +197,7 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
           "Lease is still within timeout so granting immediately",
           leaseName,
           ownerName)
+        renewalStats.validFrom(time)
         who ! LeaseAcquired
         goto(Granted).using(GrantedVersion(version, leaseLost))
       }
@@ -144,12 +210,55 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
           ownerName)
         tryGetLease(version, who, leaseLost)
       } else {
-        who ! LeaseTaken
-        // Even though we have a version there is no benefit to storing it as we can't update a lease that has a client
-        goto(Idle).using(ReadRequired)
+        waitForLease match {
+          case Some(maxWait) =>
+            log.debug("Lease {} is taken by {}, waiting up to {} for it", leaseName, currentOwner, maxWait.pretty)
+            startSingleTimer("wait-for-lease", WaitForLeaseTimeout, maxWait)
+            waitForRelease(version, time, WaitingForLeaseData(who, leaseLost, version, maxWait.fromNow))
+          case None =>
+            who ! LeaseTaken
+            // Even though we have a version there is no benefit to storing it as we can't update a lease that has a
+            // client
+            goto(Idle).using(ReadRequired)
+        }
       }
   }
 
+  when(WaitingForLease) {
+    case Event(WatchResponse(Some(LeaseResource(None, version, _))), WaitingForLeaseData(who, leaseLost, _, _)) =>
+      log.debug("Lease {} was released, trying to take it", leaseName)
+      tryGetLease(version, who, leaseLost)
+    case Event(WatchResponse(Some(LeaseResource(Some(_), version, time))), data: WaitingForLeaseData) =>
+      // the owner updated the lease, e.g. with a heartbeat
+      waitForRelease(version, time, data)
+    case Event(WatchResponse(None), _) =>
+      // the watch ended without a change, or the version is too old
+      pipe(k8sApi.readOrCreateLeaseResource(leaseName).map(ReadResponse.apply)).to(self)
+      stay()
+    case Event(ReadResponse(LeaseResource(None, version, _)), WaitingForLeaseData(who, leaseLost, _, _)) =>
+      tryGetLease(version, who, leaseLost)
+    case Event(ReadResponse(LeaseResource(Some(_), version, time)), data @ WaitingForLeaseData(who, leaseLost, _, _)) =>
+      if (hasLeaseTimedOut(time)) tryGetLease(version, who, leaseLost)
+      else waitForRelease(version, time, data)
+    case Event(LeaseStale, WaitingForLeaseData(who, leaseLost, version, _)) =>
+      log.warning(
+        "Lease {} has reached TTL while waiting for it. Owner has failed to heartbeat, have they crashed?. " +
+        "Allowing {} to try and take lease",
+        leaseName,
+        ownerName)
+      tryGetLease(version, who, leaseLost)
+    case Event(WaitForLeaseTimeout, WaitingForLeaseData(who, _, _, _)) =>
+      who ! LeaseTaken
+      goto(Idle).using(ReadRequired)
+    case Event(WatchFailed(t), _) =>
+      // reading again could fail the same way, so only the TTL or the timeout end the wait
+      log.warning("Failure watching lease {}, waiting for its TTL: [{}]", leaseName, t.getMessage)
+      stay()
+    case Event(Failure(t), _) =>
+      log.warning("Failure reading lease {} while waiting for it: [{}]", leaseName, t.getMessage)
+      stay()
+  }
+
   when(Granting) {
     case Event(
           WriteResponse(Right(response)),
@@ -158,24 +267,30 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
         oldVersion != response.version,
         s"Update response from Kubernetes API should not return the same version: Response: $response. Client: $cc")
       val operationDuration = System.nanoTime() - operationStartTime
+      acquireMetrics.succeeded(operationStartTime)
       if (operationDuration > (settings.timeoutSettings.heartbeatTimeout.toNanos / 2)) {
         log.warning("API server took too long to respond to update: {}. ", operationDuration.nanos.pretty)
         who ! Failure(
           new LeaseTimeoutException(s"API server took too long to respond: ${operationDuration.nanos.pretty}"))
         goto(Idle).using(ReadRequired)
       } else {
+        renewalStats.recordWrite(operationDuration.nanos, System.currentTimeMillis() - operationDuration.nanos.toMillis)
         granted.set(true)
         who ! LeaseAcquired
         goto(Granted).using(GrantedVersion(response.version, leaseLost))
       }
 
-    case Event(WriteResponse(Left(LeaseResource(None, version, _))), OperationInProgress(who, oldVersion, _, _)) =>
+    case Event(
+          WriteResponse(Left(LeaseResource(None, version, _))),
+          OperationInProgress(_, oldVersion, _, operationStartTime)) =>
       require(oldVersion != version)
-      who ! LeaseAcquired
-      // Try again as lock version has moved on but is not taken
+      acquireMetrics.conflicted(operationStartTime)
+      // Try again as lock version has moved on but is not taken. The lease is only acquired if the retry succeeds,
+      // another owner may take it first.
       pipe(k8sApi.updateLeaseResource(leaseName, ownerName, version).map(r => WriteResponse(r))).to(self)
       stay()
-    case Event(WriteResponse(Left(LeaseResource(Some(_), _, _))), OperationInProgress(who, _, _, _)) =>
+    case Event(WriteResponse(Left(LeaseResource(Some(_), _, _))), OperationInProgress(who, _, _, operationStartTime)) =>
+      acquireMetrics.conflicted(operationStartTime)
       // The audacity, someone else has taken the lease :(
       who ! LeaseTaken
       goto(Idle).using(ReadRequired) // can't use version as another owner has the lock
@@ -184,23 +299,34 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
   when(Granted) {
     case Event(Heartbeat, GrantedVersion(version, _)) =>
       log.debug("Heartbeat: updating lease time. Version {}", version)
-      pipe(k8sApi.updateLeaseResource(leaseName, ownerName, version).map(WriteResponse.apply)).to(self)
+      heartbeatStartNanos = System.nanoTime()
+      heartbeatStartMillis = System.currentTimeMillis()
+      pipe(k8sApi.updateLeaseResource(leaseName, ownerName, version, heartbeatStartMillis).map(WriteResponse.apply))
+        .to(self)
       stay()
     case Event(WriteResponse(Right(resource)), gv: GrantedVersion) =>
       require(
         resource.owner.contains(ownerName),
         "response from API server has different owner for success: " + resource)
-      log.debug("Heartbeat: lease time updated: Version {}", resource.version)
-      startSingleTimer("heartbeat", Heartbeat, settings.timeoutSettings.heartbeatInterval)
+      val latency = (System.nanoTime() - heartbeatStartNanos).nanos
+      renewalStats.recordWrite(latency, heartbeatStartMillis)
+      renewMetrics.succeeded(heartbeatStartNanos)
+      log.debug("Heartbeat: lease time updated in {}: Version {}", latency.pretty, resource.version)
+      leaseGroup match {
+        case Some(group) => group ! LeaseGroupCoordinator.RenewalDone(self)
+        case None        => startSingleTimer("heartbeat", Heartbeat, renewalStats.nextRenewalDelay)
+      }
       stay().using(gv.copy(version = resource.version))
     case Event(WriteResponse(Left(lr @ _)), GrantedVersion(_, leaseLost)) =>
       log.warning("Conflict during heartbeat to lease {}. Lease assumed to be released.", lr)
+      renewMetrics.conflicted(heartbeatStartNanos)
       granted.set(false)
       executeLeaseLockCallback(leaseLost, None)
       goto(Idle).using(ReadRequired)
     case Event(Failure(t), GrantedVersion(_, leaseLost)) =>
       // FIXME, retry if timeout far enough off: https://github.com/lightbend/akka-commercial-addons/issues/501
       log.warning("Failure during heartbeat to lease: [{}]. Lease assumed to be released.", t.getMessage)
+      renewMetrics.failed(heartbeatStartNanos)
       granted.set(false)
       executeLeaseLockCallback(leaseLost, Some(t))
       goto(Idle).using(ReadRequired)
@@ -222,17 +348,24 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
 
   when(Releasing) {
     // FIXME deal with failure from releasing the the lock, currently handled in whenUnhandled but could retry to remove: https://github.com/lightbend/akka-commercial-addons/issues/502
-    case Event(WriteResponse(Right(lr)), OperationInProgress(who, _, _, _)) =>
+    case Event(WriteResponse(Right(lr)), OperationInProgress(who, _, _, operationStartTime)) =>
       require(lr.owner.isEmpty, "Released lease has unexpected owner: " + lr)
+      releaseMetrics.succeeded(operationStartTime)
       who ! LeaseReleased
       goto(Idle).using(LeaseCleared(lr.version))
-    case Event(WriteResponse(Left(lr @ LeaseResource(None, _, _))), OperationInProgress(who, _, _, _)) =>
+    case Event(
+          WriteResponse(Left(lr @ LeaseResource(None, _, _))),
+          OperationInProgress(who, _, _, operationStartTime)) =>
+      releaseMetrics.conflicted(operationStartTime)
       log.warning(
         "Release conflict and owner has been removed: {}. Lease will continue to work but TTL must have been reached to allow another node to remove lease.",
         lr)
       who ! LeaseReleased
       goto(Idle).using(ReadRequired)
-    case Event(WriteResponse(Left(lr @ LeaseResource(Some(_), _, _))), OperationInProgress(who, _, _, _)) =>
+    case Event(
+          WriteResponse(Left(lr @ LeaseResource(Some(_), _, _))),
+          OperationInProgress(who, _, _, operationStartTime)) =>
+      releaseMetrics.conflicted(operationStartTime)
       log.warning(
         "Release conflict and owner has changed: {}. Lease will continue to work but TTL must have been reached to allow another node to update the lease.",
         lr)
@@ -241,6 +374,13 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
   }
 
   whenUnhandled {
+    case Event(WatchResponse(_) | WatchFailed(_), data @ _) =>
+      // from a watch that was started while waiting for the lease
+      stay().using(data)
+    case Event(Heartbeat, data @ _) =>
+      // from the lease group, sent before it knew that the lease is no longer granted
+      leaseGroup.foreach(_ ! LeaseGroupCoordinator.RenewalDone(self))
+      stay().using(data)
     case Event(Acquire(_), data @ _) =>
       log.info(
         "Acquire request for owner {} lease {} while previous acquire/release still in progress. Current state: {}",
@@ -263,15 +403,31 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
         leaseName,
         t.getMessage,
         stateName)
+      replyRequired match {
+        case OperationInProgress(_, _, _, operationStartTime) =>
+          if (stateName == Granting) acquireMetrics.failed(operationStartTime)
+          else if (stateName == Releasing) releaseMetrics.failed(operationStartTime)
+        case _ =>
+      }
       replyRequired.replyTo ! Failure(t)
       goto(Idle).using(ReadRequired)
   }
 
   onTransition {
     case _ -> Granted =>
-      startSingleTimer("heartbeat", Heartbeat, settings.timeoutSettings.heartbeatInterval)
+      leaseGroup match {
+        case Some(group) => group ! LeaseGroupCoordinator.Register(self)
+        case None        => startSingleTimer("heartbeat", Heartbeat, renewalStats.nextRenewalDelay)
+      }
+    case WaitingForLease -> _ =>
+      cancelTimer("lease-stale")
+      cancelTimer("wait-for-lease")
     case Granted -> _ =>
-      cancelTimer("heartbeat")
+      leaseGroup match {
+        case Some(group) => group ! LeaseGroupCoordinator.Unregister(self)
+        case None        => cancelTimer("heartbeat")
+      }
+      renewalStats.invalidate()
       granted.set(false)
   }
 
@@ -283,6 +439,30 @@ private[pekko] class LeaseActor(k8sApi: KubernetesApi, settings: LeaseSettings,
     goto(Granting).using(OperationInProgress(reply, version, leaseLost))
   }
 
+  /**
+   * Watches the lease taken by another owner, and schedules taking it when its time goes stale.
+   */
+  private def waitForRelease(
+      version: String,
+      leaseTime: Long,
+      data: WaitingForLeaseData): FSM.State[LeaseActor.State, Data] = {
+    val watchTimeout = data.deadline.timeLeft
+    if (watchTimeout > Duration.Zero)
+      pipe(
+        k8sApi
+          .watchLeaseResource(leaseName, version, watchTimeout)
+          .map(WatchResponse.apply)
+          .recover { case NonFatal(t) => WatchFailed(t) }).to(self)
+    startSingleTimer("lease-stale", LeaseStale, (leaseTimeoutAt(leaseTime) - System.currentTimeMillis()).max(0L).millis)
+    // a transition to the same state would cancel the timers
+    if (stateName == WaitingForLease) stay().using(data.copy(version = version))
+    else goto(WaitingForLease).using(data.copy(version = version))
+  }
+
+  private def leaseTimeoutAt(leaseTime: Long): Long =
+    leaseTime + settings.timeoutSettings.heartbeatTimeout.toMillis -
+    (2 * settings.timeoutSettings.heartbeatInterval.toMillis)
+
   private def hasLeaseTimedOut(leaseTime: Long): Boolean = {
     System
       .currentTimeMillis() >
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.coordination.lease.kubernetes
+
+import java.util.concurrent.ConcurrentHashMap
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.actor.{
+  Actor,
+  ActorLogging,
+  ActorRef,
+  ActorSystem,
+  ClassicActorSystemProvider,
+  ExtendedActorSystem,
+  Extension,
+  ExtensionId,
+  ExtensionIdProvider,
+  Props,
+  Terminated,
+  Timers
+}
+import pekko.annotation.InternalApi
+
+/**
+ * INTERNAL API
+ *
+ * The lease group of this node, used when `lease-group.enabled` is on.
+ */
+@InternalApi
+private[pekko] object KubernetesLeaseGroup extends ExtensionId[KubernetesLeaseGroup] with ExtensionIdProvider {
+  override def get(system: ActorSystem): KubernetesLeaseGroup = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): KubernetesLeaseGroup = super.get(system)
+
+  override def lookup: KubernetesLeaseGroup.type = KubernetesLeaseGroup
+
+  override def createExtension(system: ExtendedActorSystem): KubernetesLeaseGroup = new KubernetesLeaseGroup(system)
+}
+
+/**
+ * INTERNAL API
+ *
+ * One [[LeaseGroupCoordinator]] per heartbeat interval renews the leases held by this node, and the reads of the
+ * leases, e.g. after conflicting updates, share the list requests of all leases in the namespace.
+ */
+@InternalApi
+private[pekko] final class KubernetesLeaseGroup(system: ExtendedActorSystem) extends Extension {
+
+  private val coordinators = new ConcurrentHashMap[(FiniteDuration, Int), ActorRef]()
+  private val lists = new ConcurrentHashMap[String, Future[Map[String, LeaseResource]]]()
+
+  def coordinator(heartbeatInterval: FiniteDuration, maxConcurrentRenewals: Int): ActorRef =
+    coordinators.computeIfAbsent(
+      (heartbeatInterval, maxConcurrentRenewals),
+      _ =>
+        system.systemActorOf(
+          LeaseGroupCoordinator.props(heartbeatInterval, maxConcurrentRenewals),
+          s"kubernetesLeaseGroup-${heartbeatInterval.toMillis}ms-$maxConcurrentRenewals"))
+
+  /**
+   * Joins the list of the leases in the collection with the given path that is in flight, or starts a new one, so
+   * that the leases of the group that are read at the same time share one request. A list that started before an
+   * update can return the version from before the update, which then fails with a conflict and reads again.
+   *
+   * @return the leases by their name
+   */
+  def sharedList(leasesPath: String)(
+      list: => Future[Map[String, LeaseResource]]): Future[Map[String, LeaseResource]] = {
+    var started = false
+    val result = lists.computeIfAbsent(leasesPath,
+      _ => {
+        started = true
+        list
+      })
+    if (started) result.onComplete(_ => lists.remove(leasesPath, result))(ExecutionContext.parasitic)
+    result
+  }
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object LeaseGroupCoordinator {
+
+  def props(heartbeatInterval: FiniteDuration, maxConcurrentRenewals: Int): Props =
+    Props(new LeaseGroupCoordinator(heartbeatInterval, maxConcurrentRenewals))
+
+  /** Sent by a [[LeaseActor]] when its lease was granted. */
+  final case class Register(lease: ActorRef)
+
+  /** Sent by a [[LeaseActor]] when its lease is no longer granted. */
+  final case class Unregister(lease: ActorRef)
+
+  /** Sent by a [[LeaseActor]] when it completed the renewal started by a heartbeat. */
+  final case class RenewalDone(lease: ActorRef)
+
+  private case object Tick
+}
+
+/**
+ * INTERNAL API
+ *
+ * Renews the leases held by this node, instead of a heartbeat timer per lease. The renewals are spread evenly over
+ * the heartbeat interval: with N leases the next lease in round robin order is sent a heartbeat every
+ * `heartbeatInterval / N`. At most `maxConcurrentRenewals` renewals are in flight, the heartbeats that could not be
+ * sent are sent when renewals complete.
+ */
+@InternalApi
+private[pekko] final class LeaseGroupCoordinator(heartbeatInterval: FiniteDuration, maxConcurrentRenewals: Int)
+    extends Actor
+    with ActorLogging
+    with Timers {
+  import LeaseGroupCoordinator._
+
+  // in the order they are renewed, the last renewed at the end
+  private var leases = Vector.empty[ActorRef]
+  private var inFlight = Set.empty[ActorRef]
+  // ticks that were skipped because of too many renewals in flight
+  private var owed = 0
+
+  override def receive: Receive = {
+    case Register(lease) =>
+      if (!leases.contains(lease)) {
+        context.watch(lease)
+        leases :+= lease
+        scheduleTicks()
+      }
+    case Unregister(lease) =>
+      context.unwatch(lease)
+      remove(lease)
+    case Terminated(lease) =>
+      remove(lease)
+    case RenewalDone(lease) =>
+      inFlight -= lease
+      if (owed > 0) {
+        owed -= 1
+        renewNext()
+      }
+    case Tick =>
+      renewNext()
+  }
+
+  private def remove(lease: ActorRef): Unit =
+    if (leases.contains(lease)) {
+      leases = leases.filterNot(_ == lease)
+      inFlight -= lease
+      owed = math.min(owed, leases.size)
+      scheduleTicks()
+    }
+
+  private def renewNext(): Unit =
+    if (inFlight.size >= maxConcurrentRenewals) owed = math.min(owed + 1, leases.size)
+    else
+      leases.find(lease => !inFlight(lease)).foreach { lease =>
+        leases = leases.filterNot(_ == lease) :+ lease
+        inFlight += lease
+        lease ! LeaseActor.Heartbeat
+      }
+
+  private def scheduleTicks(): Unit =
+    if (leases.isEmpty) timers.cancel(Tick)
+    else {
+      val interval = (heartbeatInterval / leases.size).max(1.millis)
+      log.debug("Renewing [{}] leases, one every [{}]", leases.size, interval)
+      timers.startTimerWithFixedDelay(Tick, Tick, interval)
+    }
+}
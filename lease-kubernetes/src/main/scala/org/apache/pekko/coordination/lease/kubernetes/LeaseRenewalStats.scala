@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.coordination.lease.kubernetes
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+import scala.collection.immutable
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.annotation.InternalApi
+import pekko.coordination.lease.TimeoutSettings
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object LeaseRenewalStats {
+
+  /** The upper bounds of the buckets of the write latency histogram, in milliseconds. */
+  val BucketBoundsMillis: immutable.IndexedSeq[Long] =
+    Vector(5L, 10L, 25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L, 10000L, Long.MaxValue)
+
+  // weights of the latest measurement for the smoothed latency and its deviation, as for TCP round trip times
+  private val Alpha = 0.125
+  private val Beta = 0.25
+}
+
+/**
+ * INTERNAL API
+ *
+ * Measures the latency of the writes of one lease, and how long the lease stays valid for other nodes. Other nodes
+ * take the lease when its time is older than `heartbeat-timeout - 2 * heartbeat-interval`, and the time is set when
+ * the write is sent.
+ *
+ * The latency estimate is the smoothed latency plus four times its smoothed deviation, like the retransmission
+ * timeout of TCP. It is used to schedule renewals early enough that they complete in time, and to report the lease
+ * as at risk when a renewal started now might not complete before the lease expires.
+ *
+ * Updated by the [[LeaseActor]] only, and read from any thread.
+ */
+@InternalApi
+private[pekko] final class LeaseRenewalStats(timeoutSettings: TimeoutSettings) {
+  import LeaseRenewalStats._
+
+  private val counts = new AtomicLongArray(BucketBoundsMillis.size)
+  @volatile private var smoothedNanos = -1.0
+  @volatile private var deviationNanos = 0.0
+  @volatile private var latencyRising = false
+  @volatile private var validUntilMillis = 0L
+
+  private val validity: FiniteDuration =
+    timeoutSettings.heartbeatTimeout - timeoutSettings.heartbeatInterval * 2
+
+  /**
+   * Records a successful write of the lease that was sent at the given time.
+   */
+  def recordWrite(latency: FiniteDuration, sentAtMillis: Long): Unit = {
+    val millis = latency.toMillis
+    counts.incrementAndGet(BucketBoundsMillis.indexWhere(millis <= _))
+
+    val nanos = latency.toNanos.toDouble
+    if (smoothedNanos < 0) {
+      smoothedNanos = nanos
+      deviationNanos = nanos / 2
+      latencyRising = false
+    } else {
+      latencyRising = nanos > smoothedNanos + 4 * deviationNanos
+      deviationNanos = (1 - Beta) * deviationNanos + Beta * math.abs(smoothedNanos - nanos)
+      smoothedNanos = (1 - Alpha) * smoothedNanos + Alpha * nanos
+    }
+    validFrom(sentAtMillis)
+  }
+
+  /**
+   * The lease is valid for other nodes based on the given lease time.
+   */
+  def validFrom(leaseTimeMillis: Long): Unit =
+    validUntilMillis = leaseTimeMillis + validity.toMillis
+
+  /** The lease is no longer held. */
+  def invalidate(): Unit =
+    validUntilMillis = 0L
+
+  /** The write latency that is rarely exceeded, zero before the first write. */
+  def latencyEstimate: FiniteDuration =
+    if (smoothedNanos < 0) Duration.Zero
+    else (smoothedNanos + 4 * deviationNanos).toLong.nanos
+
+  /** How long the lease stays valid for other nodes without renewals, zero when it is not held. */
+  def remainingValidity: FiniteDuration =
+    if (validUntilMillis == 0L) Duration.Zero
+    else (validUntilMillis - System.currentTimeMillis()).max(0L).millis
+
+  /**
+   * The lease is held, but a renewal started now might not complete before the lease expires.
+   */
+  def atRisk: Boolean =
+    validUntilMillis != 0L && remainingValidity <= latencyEstimate
+
+  /**
+   * When to renew the lease next: so that the write completes at the end of the heartbeat interval, and with a
+   * margin of the latency estimate before the lease expires. When the latency rises above the estimate, the lease is
+   * renewed early, after a quarter of the heartbeat interval.
+   */
+  def nextRenewalDelay: FiniteDuration = {
+    val interval = timeoutSettings.heartbeatInterval
+    val minDelay = interval / 4
+    if (latencyRising) minDelay
+    else {
+      val estimate = latencyEstimate
+      (interval - estimate).min(remainingValidity - estimate * 2).max(minDelay)
+    }
+  }
+
+  /** The number of writes per latency bucket, with the upper bound of each bucket in milliseconds. */
+  def histogram: immutable.IndexedSeq[(Long, Long)] =
+    BucketBoundsMillis.indices.map(i => BucketBoundsMillis(i) -> counts.get(i))
+}
@@ -15,24 +15,25 @@ package org.apache.pekko.coordination.lease.kubernetes.internal
 
 import org.apache.pekko
 import pekko.Done
-import pekko.actor.{ ActorSystem, Scheduler }
+import pekko.actor.ActorSystem
 import pekko.annotation.InternalApi
-import pekko.coordination.lease.kubernetes.{ KubernetesApi, KubernetesSettings, LeaseResource }
+import pekko.coordination.lease.kubernetes.{ KubernetesApi, KubernetesLeaseGroup, KubernetesSettings, LeaseResource }
 import pekko.coordination.lease.{ LeaseException, LeaseTimeoutException }
 import pekko.event.{ LogSource, Logging, LoggingAdapter }
 import pekko.http.scaladsl.model._
 import pekko.http.scaladsl.model.headers.{ Authorization, OAuth2BearerToken }
 import pekko.http.scaladsl.unmarshalling.Unmarshal
-import pekko.http.scaladsl.{ ConnectionContext, Http, HttpExt, HttpsConnectionContext }
-import pekko.pattern.RetrySupport
-import pekko.pki.kubernetes.PemManagersProvider
-import pekko.stream.scaladsl.{ FileIO, Keep, Sink }
+import pekko.http.scaladsl.HttpsConnectionContext
+import pekko.kubernetes.client.KubernetesApiClient
+import pekko.kubernetes.client.KubernetesApiClient.UnauthorizedRetry
+import pekko.stream.scaladsl.{ Framing, Sink }
 import pekko.util.ByteString
+import spray.json._
 
 import java.nio.file.{ Files, Paths }
-import javax.net.ssl.SSLContext
 import scala.collection.immutable
-import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration._
 import scala.util.control.NonFatal
 
 /**
@@ -48,12 +49,17 @@ import scala.util.control.NonFatal
   protected implicit val sys: ActorSystem = system
   private implicit val classLogSource: LogSource[Class[?]] = LogSource.fromClass
   protected val log: LoggingAdapter = Logging(system, getClass: Class[?])
-  private val http: HttpExt = Http()(system)
+  private val client = KubernetesApiClient(system)
+  private val MaxWatchEventSize = 64 * 1024
 
-  private lazy val sslContext: SSLContext =
-    PemManagersProvider.createSslContext(settings.apiCaPath, settings.tlsVersion)
+  private lazy val clientSslContext: HttpsConnectionContext =
+    client.httpsConnectionContext(settings.apiCaPath, settings.tlsVersion)
 
-  private lazy val clientSslContext: HttpsConnectionContext = ConnectionContext.httpsClient(sslContext)
+  private val unauthorizedRetry = UnauthorizedRetry(
+    settings.tokenRetrySettings.maxAttempts,
+    settings.tokenRetrySettings.minBackoff,
+    settings.tokenRetrySettings.maxBackoff,
+    settings.tokenRetrySettings.randomFactor)
 
   protected val namespace: Future[String] = {
     settings.namespace match {
@@ -80,8 +86,70 @@ import scala.util.control.NonFatal
 
   protected def getLeaseResource(name: String): Future[Option[LeaseResource]]
 
+  private val leaseGroup = if (settings.leaseGroupEnabled) Some(KubernetesLeaseGroup(system)) else None
+
+  /**
+   * Reads the lease. In lease group mode the leases of this node that are read at the same time, e.g. after
+   * conflicting renewals, share one list request of all leases in the namespace.
+   */
+  protected def readLeaseResource(name: String): Future[Option[LeaseResource]] =
+    leaseGroup match {
+      case Some(group) =>
+        for {
+          leasesPath <- pathForLeases
+          leasePath <- pathForLease(name)
+          leases <- group.sharedList(leasesPath.toString)(listLeaseResources(leasesPath))
+        } yield leases.get(leasePath.reverse.head.toString)
+      case None => getLeaseResource(name)
+    }
+
+  private def listLeaseResources(leasesPath: Uri.Path): Future[Map[String, LeaseResource]] =
+    for {
+      request <- requestForPath(leasesPath)
+      response <- makeRequest(request, "Timed out listing leases")
+      result <- response.status match {
+        case StatusCodes.OK =>
+          Unmarshal(response.entity).to[JsValue].map { json =>
+            val list = json.asJsObject.fields
+            val apiVersion = list.getOrElse("apiVersion", JsString(""))
+            list.get("items") match {
+              case Some(JsArray(items)) =>
+                items.iterator.map { item =>
+                  // the items of a list can be without their kind and API version
+                  val fields = Map("kind" -> JsString("Lease"), "apiVersion" -> apiVersion) ++ item.asJsObject.fields
+                  val name = fields.get("metadata").flatMap(_.asJsObject.fields.get("name")) match {
+                    case Some(JsString(n)) => n
+                    case _                 => ""
+                  }
+                  name -> parseLeaseResource(JsObject(fields))
+                }.toMap
+              case _ => Map.empty[String, LeaseResource]
+            }
+          }
+        case StatusCodes.Unauthorized =>
+          handleUnauthorized(response)
+        case unexpected =>
+          Unmarshal(response.entity)
+            .to[String]
+            .flatMap(body => {
+              Future.failed(new LeaseException(
+                s"Unexpected response from API server when listing leases StatusCode: $unexpected. Body: $body"))
+            })
+      }
+    } yield result
+
   protected def pathForLease(name: String): Future[Uri.Path]
 
+  /**
+   * The path of the collection of the leases in the namespace.
+   */
+  protected def pathForLeases: Future[Uri.Path]
+
+  /**
+   * Converts the object of a watch event of a lease.
+   */
+  protected def parseLeaseResource(json: JsValue): LeaseResource
+
   override def readOrCreateLeaseResource(name: String): Future[LeaseResource] = {
     // TODO backoff retry
     val maxTries = 5
@@ -89,7 +157,7 @@ import scala.util.control.NonFatal
     def loop(tries: Int = 0): Future[LeaseResource] = {
       log.debug("Trying to create lease {}", tries)
       for {
-        olr <- getLeaseResource(name)
+        olr <- readLeaseResource(name)
         lr <- olr match {
           case Some(found) =>
             log.debug("{} already exists. Returning {}", name, found)
@@ -136,6 +204,59 @@ import scala.util.control.NonFatal
     } yield result
   }
 
+  override def watchLeaseResource(
+      name: String,
+      version: String,
+      timeout: FiniteDuration): Future[Option[LeaseResource]] = {
+    for {
+      leasePath <- pathForLease(name)
+      leasesPath <- pathForLeases
+      request <- requestForPath(leasesPath)
+      response <- {
+        val query = Uri.Query(
+          "watch" -> "true",
+          "fieldSelector" -> s"metadata.name=${leasePath.reverse.head}",
+          "resourceVersion" -> version,
+          "timeoutSeconds" -> timeout.toSeconds.max(1L).toString,
+          "allowWatchBookmarks" -> "false")
+        // on a connection of its own, as the response is streamed until the timeout
+        client.withTimeout(
+          settings.apiServerRequestTimeout,
+          new LeaseTimeoutException(s"Timed out watching lease [$name]. Is the API server up?"))(
+          client.watchRequest(
+            request.withUri(request.uri.withQuery(query)),
+            if (settings.secure) Some(clientSslContext) else None))
+      }
+      result <- response.status match {
+        case StatusCodes.OK =>
+          response.entity.dataBytes
+            .via(Framing.delimiter(ByteString("\n"), MaxWatchEventSize, allowTruncation = true))
+            .filter(_.nonEmpty)
+            .map(_.utf8String.parseJson.asJsObject.fields)
+            .map { event =>
+              event.get("type") match {
+                case Some(JsString("ADDED" | "MODIFIED")) =>
+                  Some(parseLeaseResource(event.getOrElse("object", JsObject.empty)))
+                // deleted, or an error such as 410 Gone when the version is too old
+                case _ => None
+              }
+            }
+            .completionTimeout(timeout + settings.apiServerRequestTimeout)
+            .runWith(Sink.headOption)
+            .map(_.flatten)
+        case StatusCodes.Unauthorized =>
+          handleUnauthorized(response)
+        case unexpected =>
+          Unmarshal(response.entity)
+            .to[String]
+            .flatMap(body => {
+              Future.failed(new LeaseException(
+                s"Unexpected response from API server when watching lease StatusCode: $unexpected. Body: $body"))
+            })
+      }
+    } yield result
+  }
+
   protected def handleUnauthorized(response: HttpResponse): Future[Nothing] = {
     Unmarshal(response.entity)
       .to[String]
@@ -155,58 +276,31 @@ import scala.util.control.NonFatal
     }(ExecutionContext.parasitic)
   }
 
-  private[pekko] def makeRawRequest(request: HttpRequest): Future[HttpResponse] = {
-    if (settings.secure)
-      http.singleRequest(request, clientSslContext)
-    else
-      http.singleRequest(request)
-  }
+  private[pekko] def makeRawRequest(request: HttpRequest): Future[HttpResponse] =
+    client.singleRequest(request, if (settings.secure) Some(clientSslContext) else None)
 
   protected def makeRequest(request: HttpRequest, timeoutMsg: String): Future[HttpResponse] = {
-    // It's possible to legitimately get a 401 response due to kubernetes doing a token rotation
-    implicit val scheduler: Scheduler = system.scheduler
-    val response = RetrySupport.retry(
-      () => makeRawRequest(request: HttpRequest),
-      (response: HttpResponse, _: Throwable) => {
-        log.warning("Received status code 401 as response, retrying due to possible token rotation")
-        response.status == StatusCodes.Unauthorized
-      },
-      settings.tokenRetrySettings.maxAttempts,
-      settings.tokenRetrySettings.minBackoff,
-      settings.tokenRetrySettings.maxBackoff,
-      settings.tokenRetrySettings.randomFactor
-    )
-
-    // Use a Promise-based pattern instead of Future.firstCompletedOf so that when the
-    // timeout fires first, we properly discard the in-flight response entity to release
-    // the HTTP connection back to the pool.
-    val promise = Promise[HttpResponse]()
-    val timeoutCancellable = system.scheduler.scheduleOnce(settings.apiServerRequestTimeout) {
-      promise.tryFailure(new LeaseTimeoutException(s"$timeoutMsg. Is the API server up?"))
-    }
-    response.onComplete {
-      case scala.util.Success(resp) =>
-        timeoutCancellable.cancel()
-        if (!promise.trySuccess(resp)) {
-          // Timeout already fired — discard the response to release the connection
-          resp.discardEntityBytes()(pekko.stream.Materializer.matFromSystem(system))
+    // It's possible to legitimately get a 401 response due to kubernetes doing a token rotation,
+    // so the retries use the token that is current by then
+    val response = client.retryUnauthorized(unauthorizedRetry) { attempt =>
+      if (attempt == 1 || !settings.secure) makeRawRequest(request)
+      else
+        apiToken().flatMap { token =>
+          makeRawRequest(request.removeHeader(Authorization.name).addHeader(Authorization(OAuth2BearerToken(token))))
         }
-      case scala.util.Failure(ex) =>
-        timeoutCancellable.cancel()
-        promise.tryFailure(ex)
-    }(system.dispatcher)
-    promise.future.flatMap(_.toStrict(settings.bodyReadTimeout))
+    }
+    client
+      .withTimeout(settings.apiServerRequestTimeout, new LeaseTimeoutException(s"$timeoutMsg. Is the API server up?"))(
+        response)
+      .flatMap(_.toStrict(settings.bodyReadTimeout))
   }
 
   protected def readConfigVarFromFilesystem(path: String, name: String): Future[Option[String]] = {
     val file = Paths.get(path)
     if (Files.exists(file)) {
-      try {
-        FileIO.fromPath(file)
-          .toMat(Sink.fold(ByteString.empty)(_ ++ _))(Keep.right)
-          .run()
-          .map(bs => Some(bs.utf8String))(ExecutionContext.parasitic)
-      } catch {
+      // only read again when the file changed, e.g. when the token was rotated
+      try Future.successful(Some(client.readFile(path)))
+      catch {
         case NonFatal(e) =>
           log.error(e, "Error reading {} from {}", name, path)
           Future.successful(None)
@@ -24,6 +24,7 @@ import pekko.coordination.lease.kubernetes.{ KubernetesSettings, LeaseResource }
 import pekko.http.scaladsl.marshalling.Marshal
 import pekko.http.scaladsl.model._
 import pekko.http.scaladsl.unmarshalling.Unmarshal
+import spray.json.JsValue
 
 /**
  * Could be shared between leases: https://github.com/akka/akka-management/issues/680
@@ -77,7 +78,7 @@ PUTs must contain resourceVersions. Response:
               Right(toLeaseResource(updatedLcr))
             })
         case StatusCodes.Conflict =>
-          getLeaseResource(leaseName).flatMap {
+          readLeaseResource(leaseName).flatMap {
             case None =>
               Future.failed(
                 new LeaseException(s"GET after PUT conflict did not return a lease. Lease[$leaseName-$ownerName]"))
@@ -131,14 +132,18 @@ PUTs must contain resourceVersions. Response:
     } yield lr
   }
 
-  override def pathForLease(name: String): Future[Uri.Path] = {
-    namespace.map { ns =>
-      Uri.Path.Empty / "apis" / "pekko.apache.org" / "v1" / "namespaces" / ns / "leases" /
+  override def pathForLease(name: String): Future[Uri.Path] =
+    pathForLeases.map { leases =>
+      leases /
       name
         .replaceAll("[^\\d\\w\\-\\.]", "")
         .toLowerCase(Locale.ROOT)
     }(ExecutionContext.parasitic)
-  }
+
+  override def pathForLeases: Future[Uri.Path] =
+    namespace.map { ns =>
+      Uri.Path.Empty / "apis" / "pekko.apache.org" / "v1" / "namespaces" / ns / "leases"
+    }(ExecutionContext.parasitic)
 
   override def createLeaseResource(name: String): Future[Option[LeaseResource]] = {
     val lcr = LeaseCustomResource(Metadata(name, None), Spec("", System.currentTimeMillis()))
@@ -172,6 +177,9 @@ PUTs must contain resourceVersions. Response:
     } yield lr
   }
 
+  override protected def parseLeaseResource(json: JsValue): LeaseResource =
+    toLeaseResource(json.convertTo[LeaseCustomResource])
+
   private def toLeaseResource(lcr: LeaseCustomResource) = {
     log.debug("Converting {}", lcr)
     require(
@@ -26,6 +26,7 @@ import pekko.coordination.lease.LeaseException
 import pekko.http.scaladsl.marshalling.Marshal
 import pekko.http.scaladsl.model._
 import pekko.http.scaladsl.unmarshalling.Unmarshal
+import spray.json.JsValue
 
 import java.time.{ Instant, LocalDateTime, ZoneId }
 import java.time.format.{ DateTimeFormatter, DateTimeFormatterBuilder }
@@ -86,7 +87,7 @@ object NativeKubernetesApiImpl {
               Right(toLeaseResource(updatedLcr))
             })
         case StatusCodes.Conflict =>
-          getLeaseResource(leaseName).flatMap {
+          readLeaseResource(leaseName).flatMap {
             case None =>
               Future.failed(
                 new LeaseException(s"GET after PUT conflict did not return a lease. Lease[$leaseName-$ownerName]"))
@@ -140,14 +141,18 @@ object NativeKubernetesApiImpl {
     } yield lr
   }
 
-  override def pathForLease(name: String): Future[Uri.Path] = {
-    namespace.map { ns =>
-      Uri.Path.Empty / "apis" / "coordination.k8s.io" / "v1" / "namespaces" / ns / "leases" /
+  override def pathForLease(name: String): Future[Uri.Path] =
+    pathForLeases.map { leases =>
+      leases /
       name
         .replaceAll("[^\\d\\w\\-\\.]", "")
         .toLowerCase(Locale.ROOT)
     }(ExecutionContext.parasitic)
-  }
+
+  override def pathForLeases: Future[Uri.Path] =
+    namespace.map { ns =>
+      Uri.Path.Empty / "apis" / "coordination.k8s.io" / "v1" / "namespaces" / ns / "leases"
+    }(ExecutionContext.parasitic)
 
   override def createLeaseResource(name: String): Future[Option[LeaseResource]] = {
     val lcr = NativeLeaseResource(Metadata(name, None), NativeSpec("", currentTimeRFC3339))
@@ -185,6 +190,9 @@ object NativeKubernetesApiImpl {
     RFC3339MICRO_FORMATTER.withZone(ZoneId.of("UTC")).format(Instant.now())
   }
 
+  override protected def parseLeaseResource(json: JsValue): LeaseResource =
+    toLeaseResource(json.convertTo[NativeLeaseResource])
+
   private def toLeaseResource(lcr: NativeLeaseResource) = {
     log.debug("Converting {}", lcr)
     require(
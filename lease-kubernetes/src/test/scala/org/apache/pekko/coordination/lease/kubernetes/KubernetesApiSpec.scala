@@ -218,6 +218,31 @@ class KubernetesApiSpec
       response shouldEqual Done
     }
 
+    "watch a lease for its next change" in {
+      stubFor(
+        get(urlPathEqualTo("/apis/pekko.apache.org/v1/namespaces/lease/leases/"))
+          .withQueryParam("watch", equalTo("true"))
+          .withQueryParam("fieldSelector", equalTo("metadata.name=lease-1"))
+          .withQueryParam("resourceVersion", equalTo("2"))
+          .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json").withBody(
+            """{"type":"MODIFIED","object":{"apiVersion":"pekko.apache.org/v1","kind":"Lease",""" +
+            """"metadata":{"name":"lease-1","resourceVersion":"3"},"spec":{"owner":"","time":1549439255948}}}""" +
+            "\n")))
+
+      underTest.watchLeaseResource(leaseName, "2", 5.seconds).futureValue shouldEqual Some(
+        LeaseResource(None, "3", 1549439255948L))
+    }
+
+    "end a lease watch without a change when the version is too old" in {
+      stubFor(
+        get(urlPathEqualTo("/apis/pekko.apache.org/v1/namespaces/lease/leases/"))
+          .withQueryParam("watch", equalTo("true"))
+          .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json").withBody(
+            """{"type":"ERROR","object":{"kind":"Status","code":410,"reason":"Expired"}}""" + "\n")))
+
+      underTest.watchLeaseResource(leaseName, "1", 5.seconds).futureValue shouldEqual None
+    }
+
     "timeout on readOrCreateLeaseResource" in {
       val owner = "client1"
       val lease = "lease-1"
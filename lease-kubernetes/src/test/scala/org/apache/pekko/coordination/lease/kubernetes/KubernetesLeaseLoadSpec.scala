@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.coordination.lease.kubernetes
+
+import java.util.concurrent.{ ConcurrentLinkedQueue, ThreadLocalRandom }
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger }
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration._
+import scala.jdk.CollectionConverters._
+import scala.jdk.DurationConverters._
+import scala.util.{ Failure, Success }
+
+import org.apache.pekko
+import pekko.Done
+import pekko.actor.{ ActorSystem, ExtendedActorSystem }
+import pekko.coordination.lease.{ LeaseSettings, TimeoutSettings }
+import pekko.kubernetes.testkit.FakeKubernetesApiServer
+import pekko.pattern
+import pekko.testkit.TestKit
+import com.typesafe.config.{ Config, ConfigFactory }
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+object KubernetesLeaseLoadSpec {
+
+  // can be overridden with system properties, e.g. -Dlease-load-test.contenders=100 -Dlease-load-test.duration=60s
+  val LoadConfig: Config = ConfigFactory
+    .systemProperties()
+    .withFallback(ConfigFactory.parseString("""
+      lease-load-test {
+        # lease instances competing for the leases, each with its own owner name
+        contenders = 8
+        # the contenders are spread over this many leases
+        leases = 2
+        duration = 3s
+        # how long a contender holds an acquired lease before releasing it
+        hold = 20ms
+        # latency and errors injected by the fake API server
+        api-latency = 2ms
+        api-jitter = 3ms
+        api-error-rate = 0.0
+      }"""))
+    .getConfig("lease-load-test")
+
+  final case class Result(granted: Int, denied: Int, failed: Int, overlaps: Int, acquireLatencies: Vector[Long])
+}
+
+/**
+ * Runs contending leases against the in-process fake API server, and reports the latency of the acquire calls, the
+ * conflict rate of the writes and the request rate. Kept short by default so that it can run with the other tests.
+ */
+class KubernetesLeaseLoadSpec
+    extends TestKit(
+      ActorSystem(
+        "KubernetesLeaseLoadSpec",
+        ConfigFactory.parseString("""
+          pekko.loglevel = WARNING
+          pekko.http.host-connection-pool.max-connections = 32
+          pekko.http.host-connection-pool.max-open-requests = 1024
+          """)))
+    with AnyWordSpecLike
+    with Matchers
+    with ScalaFutures
+    with BeforeAndAfterAll {
+  import KubernetesLeaseLoadSpec._
+
+  private implicit val ec: ExecutionContext = system.dispatcher
+
+  private val contenders = LoadConfig.getInt("contenders")
+  private val leases = LoadConfig.getInt("leases")
+  private val duration = LoadConfig.getDuration("duration").toScala
+  private val hold = LoadConfig.getDuration("hold").toScala
+
+  private val server = FakeKubernetesApiServer.start().futureValue
+  server.setLatency(LoadConfig.getDuration("api-latency").toScala, LoadConfig.getDuration("api-jitter").toScala)
+  server.setErrorRate(LoadConfig.getDouble("api-error-rate"))
+
+  override protected def afterAll(): Unit = {
+    server.stop().futureValue
+    TestKit.shutdownActorSystem(system)
+  }
+
+  private def leaseSettings(leaseName: String, owner: String): LeaseSettings =
+    new LeaseSettings(
+      leaseName,
+      owner,
+      new TimeoutSettings(1.second, 10.seconds, 5.seconds),
+      ConfigFactory
+        .parseString(s"""
+          api-service-host = "127.0.0.1"
+          api-service-port = ${server.port}
+          secure-api-server = false
+          namespace = "load-test"
+          """)
+        .withFallback(system.settings.config.getConfig(KubernetesLease.configPath)))
+
+  private def run(name: String, newLease: LeaseSettings => AbstractKubernetesLease): Result = {
+    val holders = Vector.fill(leases)(new AtomicInteger)
+    val granted = new AtomicInteger
+    val denied = new AtomicInteger
+    val failed = new AtomicInteger
+    val overlaps = new AtomicInteger
+    val latencies = new ConcurrentLinkedQueue[java.lang.Long]
+    val deadline = System.nanoTime() + duration.toNanos
+
+    def backoff(): FiniteDuration = (5 + ThreadLocalRandom.current().nextInt(10)).millis
+
+    def contend(lease: AbstractKubernetesLease, leaseIndex: Int): Future[Done] =
+      if (System.nanoTime() >= deadline) Future.successful(Done)
+      else {
+        val start = System.nanoTime()
+        lease.acquire().transformWith { result =>
+          latencies.add(System.nanoTime() - start)
+          result match {
+            case Success(true) =>
+              granted.incrementAndGet()
+              if (holders(leaseIndex).incrementAndGet() > 1) overlaps.incrementAndGet()
+              pattern.after(hold) {
+                holders(leaseIndex).decrementAndGet()
+                lease.release()
+              }.transformWith(_ => contend(lease, leaseIndex))
+            case Success(false) =>
+              denied.incrementAndGet()
+              pattern.after(backoff())(contend(lease, leaseIndex))
+            case Failure(_) =>
+              failed.incrementAndGet()
+              pattern.after(backoff())(contend(lease, leaseIndex))
+          }
+        }
+      }
+
+    server.resetStats()
+    val start = System.nanoTime()
+    val runs = (0 until contenders).map { i =>
+      val leaseIndex = i % leases
+      contend(newLease(leaseSettings(s"$name-lease-$leaseIndex", s"$name-owner-$i")), leaseIndex)
+    }
+    Future.sequence(runs).futureValue(timeout(duration + 30.seconds))
+    val elapsed = (System.nanoTime() - start).nanos
+    val stats = server.stats
+
+    val result =
+      Result(granted.get(), denied.get(), failed.get(), overlaps.get(), latencies.asScala.map(_.longValue).toVector)
+    val sorted = result.acquireLatencies.sorted
+    def percentile(p: Double): Double =
+      if (sorted.isEmpty) 0.0 else sorted(math.min(sorted.size - 1, (p * sorted.size).toInt)) / 1000000.0
+    info(
+      f"$name: $contenders contenders on $leases leases for $duration: ${result.granted} acquired, " +
+      f"${result.denied} denied, ${result.failed} failed; acquire latency p50 ${percentile(0.5)}%.1f ms, " +
+      f"p90 ${percentile(0.9)}%.1f ms, p99 ${percentile(0.99)}%.1f ms, max ${percentile(1.0)}%.1f ms; " +
+      f"${stats.requests} requests (${stats.requests / (elapsed.toMillis / 1000.0)}%.0f req/s), " +
+      f"${stats.conflicts} conflicts (${stats.conflictRate * 100}%.1f%% of writes), " +
+      f"${stats.injectedErrors} injected errors")
+    result
+  }
+
+  "KubernetesLease under contention" should {
+    "never grant a lease to two owners at the same time" in {
+      val result = run("crd",
+        settings => new KubernetesLease(system.asInstanceOf[ExtendedActorSystem], new AtomicBoolean(false), settings))
+      result.overlaps shouldEqual 0
+      result.granted should be > 0
+      if (contenders > leases) result.denied should be > 0
+    }
+  }
+
+  "NativeKubernetesLease under contention" should {
+    "never grant a lease to two owners at the same time" in {
+      val result = run("native",
+        settings =>
+          new NativeKubernetesLease(system.asInstanceOf[ExtendedActorSystem], new AtomicBoolean(false), settings))
+      result.overlaps shouldEqual 0
+      result.granted should be > 0
+      if (contenders > leases) result.denied should be > 0
+    }
+  }
+}
@@ -20,6 +20,7 @@ import pekko.actor.Status.Failure
 import pekko.actor.{ ActorRef, ActorSystem }
 import pekko.coordination.lease.kubernetes.LeaseActor._
 import pekko.coordination.lease.{ LeaseException, LeaseSettings, TimeoutSettings }
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.ask
 import pekko.testkit.{ TestKit, TestProbe }
 import pekko.util.{ ConstantFun, Timeout }
@@ -31,7 +32,12 @@ import scala.concurrent.duration._
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpecLike
 
-class MockKubernetesApi(system: ActorSystem, currentLease: ActorRef, updateLease: ActorRef) extends KubernetesApi {
+class MockKubernetesApi(
+    system: ActorSystem,
+    currentLease: ActorRef,
+    updateLease: ActorRef,
+    watchLease: Option[ActorRef] = None)
+    extends KubernetesApi {
 
   implicit val timeout: Timeout = Timeout(10.seconds)
 
@@ -46,6 +52,15 @@ class MockKubernetesApi(system: ActorSystem, currentLease: ActorRef, updateLease
       time: Long): Future[Either[LeaseResource, LeaseResource]] = {
     updateLease.ask((clientName, version)).mapTo[Either[LeaseResource, LeaseResource]]
   }
+
+  override def watchLeaseResource(
+      name: String,
+      version: String,
+      watchTimeout: FiniteDuration): Future[Option[LeaseResource]] =
+    watchLease match {
+      case Some(watch) => watch.ask(("watch", version)).mapTo[Option[LeaseResource]]
+      case None        => Future.failed(new UnsupportedOperationException("Watching leases is not supported"))
+    }
 }
 
 class LeaseActorSpec
@@ -223,6 +238,23 @@ class LeaseActorSpec
       senderProbe.expectMsg(LeaseAcquired)
     }
 
+    "not grant the lease when another owner takes it before the retry after a conflict" in new Test {
+      acquireLease()
+      releaseLease()
+
+      underTest ! LeaseActor.Acquire()
+      updateProbe.expectMsg((ownerName, currentVersion))
+      // Fail due to cas, no one owns the lock
+      val failedVersion = currentVersionCount + 2
+      updateProbe.reply(Left(LeaseResource(None, failedVersion.toString, System.currentTimeMillis())))
+      updateProbe.expectMsg((ownerName, failedVersion.toString))
+      senderProbe.expectNoMessage(100.millis)
+      // but another owner took it before the retry
+      updateProbe.reply(Left(LeaseResource(Some("another"), (failedVersion + 1).toString, System.currentTimeMillis())))
+      senderProbe.expectMsg(LeaseTaken)
+      granted.get() shouldEqual false
+    }
+
     "heartbeat conflict should set granted to false" in new Test {
       acquireLease()
       expectHeartBeat()
@@ -380,14 +412,147 @@ class LeaseActorSpec
       expectHeartBeat()
     }
 
+    "record the duration of the lease writes" in new Test {
+      def count(operation: String, outcome: String): Double =
+        ManagementMetrics(system)
+          .collect()
+          .find(_.name == "pekko_management_lease_operation_duration_seconds")
+          .flatMap(_.samples.find(s =>
+            s.suffix == "_count" && s.labels == List("operation" -> operation, "outcome" -> outcome)))
+          .fold(0.0)(_.value)
+      val acquired = count("acquire", "ok")
+      val renewed = count("renew", "ok")
+      val released = count("release", "ok")
+
+      acquireLease()
+      releaseLease()
+      count("acquire", "ok") shouldEqual acquired + 1
+      count("release", "ok") shouldEqual released + 1
+
+      acquireLeaseWithoutRead(ownerName)
+      expectHeartBeat()
+      awaitAssert(count("renew", "ok") should be >= renewed + 1)
+    }
+
+    "renew a lease granted from a different incarnation before it expires" in new Test {
+      override def timeoutSettings: TimeoutSettings = new TimeoutSettings(1.second, 3.seconds, 1.second)
+      underTest.tell(LeaseActor.Acquire(), senderProbe.ref)
+      leaseProbe.expectMsg(leaseName)
+      // valid for other nodes for 300 more ms, much less than the heartbeat interval
+      leaseProbe.reply(LeaseResource(Some(ownerName), currentVersion, System.currentTimeMillis() - 700))
+      senderProbe.expectMsg(LeaseAcquired)
+      updateProbe.expectMsg(600.millis, (ownerName, currentVersion))
+    }
+
+    "take a lease as soon as it is released when waiting for it" in new Test {
+      override def waitForLease: Option[FiniteDuration] = Some(800.millis)
+      underTest ! LeaseActor.Acquire()
+      leaseProbe.expectMsg(leaseName)
+      leaseProbe.reply(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis() + 10000))
+      watchProbe.expectMsg(("watch", currentVersion))
+      senderProbe.expectNoMessage(100.millis)
+
+      // the owner renews, then releases the lease
+      incrementVersion()
+      watchProbe.reply(Some(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis())))
+      watchProbe.expectMsg(("watch", currentVersion))
+      incrementVersion()
+      watchProbe.reply(Some(LeaseResource(None, currentVersion, System.currentTimeMillis())))
+
+      updateProbe.expectMsg((ownerName, currentVersion))
+      incrementVersion()
+      updateProbe.reply(Right(LeaseResource(Some(ownerName), currentVersion, System.currentTimeMillis())))
+      senderProbe.expectMsg(LeaseAcquired)
+      granted.get() shouldEqual true
+    }
+
+    "take a lease when its time goes stale when waiting for it" in new Test {
+      override def waitForLease: Option[FiniteDuration] = Some(800.millis)
+      underTest ! LeaseActor.Acquire()
+      leaseProbe.expectMsg(leaseName)
+      leaseProbe.reply(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis()))
+      watchProbe.expectMsg(("watch", currentVersion))
+
+      // no change is seen, the lease is stale after heartbeat-timeout - 2 * heartbeat-interval
+      updateProbe.expectMsg((ownerName, currentVersion))
+      incrementVersion()
+      updateProbe.reply(Right(LeaseResource(Some(ownerName), currentVersion, System.currentTimeMillis())))
+      senderProbe.expectMsg(LeaseAcquired)
+    }
+
+    "take a lease when its time goes stale after the owner renewed it once when waiting for it" in new Test {
+      override def waitForLease: Option[FiniteDuration] = Some(800.millis)
+      underTest ! LeaseActor.Acquire()
+      leaseProbe.expectMsg(leaseName)
+      leaseProbe.reply(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis()))
+      watchProbe.expectMsg(("watch", currentVersion))
+
+      // the owner renews once, and then crashes
+      incrementVersion()
+      watchProbe.reply(Some(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis())))
+      watchProbe.expectMsg(("watch", currentVersion))
+
+      updateProbe.expectMsg((ownerName, currentVersion))
+      incrementVersion()
+      updateProbe.reply(Right(LeaseResource(Some(ownerName), currentVersion, System.currentTimeMillis())))
+      senderProbe.expectMsg(LeaseAcquired)
+    }
+
+    "return lease taken at the end of the wait after the owner renewed the lease" in new Test {
+      override def waitForLease: Option[FiniteDuration] = Some(300.millis)
+      underTest ! LeaseActor.Acquire()
+      leaseProbe.expectMsg(leaseName)
+      leaseProbe.reply(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis() + 10000))
+      watchProbe.expectMsg(("watch", currentVersion))
+
+      incrementVersion()
+      watchProbe.reply(
+        Some(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis() + 10000)))
+      watchProbe.expectMsg(("watch", currentVersion))
+      senderProbe.expectMsg(LeaseTaken)
+      updateProbe.expectNoMessage(100.millis)
+    }
+
+    "read the lease again when the watch ends without a change" in new Test {
+      override def waitForLease: Option[FiniteDuration] = Some(800.millis)
+      underTest ! LeaseActor.Acquire()
+      leaseProbe.expectMsg(leaseName)
+      leaseProbe.reply(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis() + 10000))
+      watchProbe.expectMsg(("watch", currentVersion))
+      watchProbe.reply(None)
+
+      leaseProbe.expectMsg(leaseName)
+      incrementVersion()
+      leaseProbe.reply(LeaseResource(None, currentVersion, System.currentTimeMillis()))
+      updateProbe.expectMsg((ownerName, currentVersion))
+      incrementVersion()
+      updateProbe.reply(Right(LeaseResource(Some(ownerName), currentVersion, System.currentTimeMillis())))
+      senderProbe.expectMsg(LeaseAcquired)
+    }
+
+    "return lease taken when the lease is not released within the wait" in new Test {
+      override def waitForLease: Option[FiniteDuration] = Some(300.millis)
+      underTest ! LeaseActor.Acquire()
+      leaseProbe.expectMsg(leaseName)
+      leaseProbe.reply(LeaseResource(Some("a different client"), currentVersion, System.currentTimeMillis() + 10000))
+      watchProbe.expectMsg(("watch", currentVersion))
+      senderProbe.expectMsg(LeaseTaken)
+      updateProbe.expectNoMessage(100.millis)
+
+      // a late watch response is ignored, and the lease can be acquired again
+      watchProbe.reply(Some(LeaseResource(None, "5", System.currentTimeMillis())))
+      updateProbe.expectNoMessage(100.millis)
+      k8sApiFailureDuringRead()
+    }
   }
 
   trait Test {
+    def timeoutSettings: TimeoutSettings = new TimeoutSettings(25.millis, 250.millis, 1.second)
     val ownerName = "owner1"
     val leaseSettings: LeaseSettings = new LeaseSettings(
       leaseName,
       ownerName,
-      new TimeoutSettings(25.millis, 250.millis, 1.second),
+      timeoutSettings,
       ConfigFactory.empty())
 
     var currentVersionCount = 1
@@ -395,9 +560,13 @@ class LeaseActorSpec
     def incrementVersion() = currentVersionCount += 1
     val leaseProbe = TestProbe()
     val updateProbe = TestProbe()
-    val mockKubernetesApi = new MockKubernetesApi(system, leaseProbe.ref, updateProbe.ref)
+    val watchProbe = TestProbe()
+    def waitForLease: Option[FiniteDuration] = None
+    val mockKubernetesApi = new MockKubernetesApi(system, leaseProbe.ref, updateProbe.ref, Some(watchProbe.ref))
     val granted = new AtomicBoolean(false)
-    val underTest = system.actorOf(LeaseActor.props(mockKubernetesApi, leaseSettings, leaseSettings.leaseName, granted))
+    val underTest = system.actorOf(
+      LeaseActor.props(mockKubernetesApi, leaseSettings, leaseSettings.leaseName, granted,
+        waitForLease = waitForLease))
     val senderProbe = TestProbe()
     implicit val sender: ActorRef = senderProbe.ref
 
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.coordination.lease.kubernetes
+
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger }
+
+import scala.concurrent.{ Future, Promise }
+import scala.concurrent.duration._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.coordination.lease.{ LeaseSettings, TimeoutSettings }
+import pekko.coordination.lease.kubernetes.LeaseActor._
+import pekko.coordination.lease.kubernetes.LeaseGroupCoordinator._
+import pekko.coordination.lease.kubernetes.internal.KubernetesApiImpl
+import pekko.kubernetes.testkit.FakeKubernetesApiServer
+import pekko.testkit.{ TestKit, TestProbe }
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpecLike
+
+class LeaseGroupCoordinatorSpec
+    extends TestKit(ActorSystem("LeaseGroupCoordinatorSpec", ConfigFactory.parseString("pekko.loglevel = INFO")))
+    with AnyWordSpecLike
+    with Matchers
+    with ScalaFutures
+    with BeforeAndAfterAll {
+
+  implicit val patience: PatienceConfig = PatienceConfig(testKitSettings.DefaultTimeout.duration)
+
+  override protected def afterAll(): Unit =
+    TestKit.shutdownActorSystem(system)
+
+  "LeaseGroupCoordinator" should {
+
+    "spread the heartbeats of the leases over the heartbeat interval" in {
+      val coordinator = system.actorOf(LeaseGroupCoordinator.props(400.millis, 8))
+      val leases = (1 to 4).map(_ => TestProbe())
+      leases.foreach(lease => coordinator ! Register(lease.ref))
+
+      // each lease is renewed once per interval, one every 100 ms
+      val renewals = (1 to 8).map { _ =>
+        val lease = leases.find(_.msgAvailable).getOrElse {
+          awaitCond(leases.exists(_.msgAvailable), 1.second, 5.millis)
+          leases.find(_.msgAvailable).get
+        }
+        lease.expectMsg(Heartbeat)
+        coordinator ! RenewalDone(lease.ref)
+        lease -> System.nanoTime()
+      }
+      renewals.take(4).map(_._1).toSet shouldEqual leases.toSet
+      renewals.drop(4).map(_._1) shouldEqual renewals.take(4).map(_._1)
+      renewals.map(_._2).sliding(2).foreach {
+        case Seq(a, b) => (b - a).nanos should be > 50.millis
+        case _         =>
+      }
+      system.stop(coordinator)
+    }
+
+    "bound the number of renewals in flight" in {
+      val coordinator = system.actorOf(LeaseGroupCoordinator.props(100.millis, 2))
+      val leases = (1 to 4).map(_ => TestProbe())
+      leases.foreach(lease => coordinator ! Register(lease.ref))
+
+      awaitCond(leases.count(_.msgAvailable) == 2, 1.second, 5.millis)
+      Thread.sleep(200)
+      leases.count(_.msgAvailable) shouldEqual 2
+
+      // a completed renewal lets the next lease renew
+      val renewing = leases.filter(_.msgAvailable)
+      renewing.foreach(_.expectMsg(Heartbeat))
+      coordinator ! RenewalDone(renewing.head.ref)
+      awaitCond(leases.filterNot(renewing.contains).exists(_.msgAvailable), 1.second, 5.millis)
+      system.stop(coordinator)
+    }
+
+    "stop renewing unregistered leases" in {
+      val coordinator = system.actorOf(LeaseGroupCoordinator.props(50.millis, 8))
+      val lease = TestProbe()
+      coordinator ! Register(lease.ref)
+      lease.expectMsg(Heartbeat)
+      coordinator ! RenewalDone(lease.ref)
+      coordinator ! Unregister(lease.ref)
+      lease.receiveWhile(100.millis) { case Heartbeat => coordinator ! RenewalDone(lease.ref) }
+      lease.expectNoMessage(200.millis)
+      system.stop(coordinator)
+    }
+  }
+
+  "LeaseActor in a lease group" should {
+
+    "register when granted, renew on heartbeats from the group and unregister when released" in {
+      val leaseProbe = TestProbe()
+      val updateProbe = TestProbe()
+      val group = TestProbe()
+      val sender = TestProbe()
+      val settings = new LeaseSettings(
+        "group-lease",
+        "owner1",
+        new TimeoutSettings(25.millis, 250.millis, 1.second),
+        ConfigFactory.empty())
+      val underTest = system.actorOf(
+        LeaseActor.props(
+          new MockKubernetesApi(system, leaseProbe.ref, updateProbe.ref),
+          settings,
+          settings.leaseName,
+          new AtomicBoolean(false),
+          Some(group.ref)))
+
+      underTest.tell(Acquire(), sender.ref)
+      leaseProbe.expectMsg("group-lease")
+      leaseProbe.reply(LeaseResource(None, "1", System.currentTimeMillis()))
+      updateProbe.expectMsg(("owner1", "1"))
+      updateProbe.reply(Right(LeaseResource(Some("owner1"), "2", System.currentTimeMillis())))
+      sender.expectMsg(LeaseAcquired)
+      group.expectMsg(Register(underTest))
+
+      // no own heartbeat timer
+      updateProbe.expectNoMessage(100.millis)
+
+      group.send(underTest, Heartbeat)
+      updateProbe.expectMsg(("owner1", "2"))
+      updateProbe.reply(Right(LeaseResource(Some("owner1"), "3", System.currentTimeMillis())))
+      group.expectMsg(RenewalDone(underTest))
+
+      underTest.tell(Release(), sender.ref)
+      group.expectMsg(Unregister(underTest))
+      updateProbe.expectMsg(("", "3"))
+      updateProbe.reply(Right(LeaseResource(None, "4", System.currentTimeMillis())))
+      sender.expectMsg(LeaseReleased)
+    }
+  }
+
+  "KubernetesLeaseGroup" should {
+
+    "share concurrent lists of the same leases" in {
+      val group = KubernetesLeaseGroup(system)
+      val lists = new AtomicInteger
+      val result = Promise[Map[String, LeaseResource]]()
+      def list(): Future[Map[String, LeaseResource]] = {
+        lists.incrementAndGet()
+        result.future
+      }
+
+      val first = group.sharedList("/ns-a/leases")(list())
+      val second = group.sharedList("/ns-a/leases")(list())
+      val other = group.sharedList("/ns-b/leases")(list())
+      lists.get() shouldEqual 2
+
+      result.success(Map("a" -> LeaseResource(None, "1", 0L)))
+      first.futureValue shouldEqual Map("a" -> LeaseResource(None, "1", 0L))
+      second.futureValue shouldEqual Map("a" -> LeaseResource(None, "1", 0L))
+      other.futureValue shouldEqual Map("a" -> LeaseResource(None, "1", 0L))
+
+      // a completed list is not shared with later lists
+      group.sharedList("/ns-a/leases")(list()).futureValue
+      lists.get() shouldEqual 3
+    }
+
+    "read the leases of conflicting renewals with one request" in {
+      val server = FakeKubernetesApiServer.start()(system).futureValue
+      try {
+        val settings = KubernetesSettings(
+          ConfigFactory
+            .parseString(s"""
+              api-service-host = "127.0.0.1"
+              api-service-port = ${server.port}
+              secure-api-server = false
+              namespace = "lease-group"
+              lease-group.enabled = on
+              """)
+            .withFallback(system.settings.config.getConfig(KubernetesLease.configPath)),
+          new TimeoutSettings(1.second, 10.seconds, 5.seconds))
+        val api = new KubernetesApiImpl(system, settings)
+        val a = api.readOrCreateLeaseResource("lease-a").futureValue
+        val b = api.readOrCreateLeaseResource("lease-b").futureValue
+        api.updateLeaseResource("lease-a", "owner-a", a.version).futureValue.isRight shouldEqual true
+        api.updateLeaseResource("lease-b", "owner-b", b.version).futureValue.isRight shouldEqual true
+
+        // the renewals with the old versions conflict at the same time, and the first list is still in flight
+        // when the second one needs it
+        server.setLatency(200.millis)
+        server.resetStats()
+        val renewalA = api.updateLeaseResource("lease-a", "owner", a.version)
+        val renewalB = api.updateLeaseResource("lease-b", "owner", b.version)
+        renewalA.futureValue.left.map(_.owner) shouldEqual Left(Some("owner-a"))
+        renewalB.futureValue.left.map(_.owner) shouldEqual Left(Some("owner-b"))
+        server.stats.conflicts shouldEqual 2
+        server.stats.reads shouldEqual 1
+      } finally server.stop().futureValue
+    }
+  }
+}
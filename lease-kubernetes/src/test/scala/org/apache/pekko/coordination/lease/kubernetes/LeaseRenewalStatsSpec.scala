@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.coordination.lease.kubernetes
+
+import scala.concurrent.duration._
+
+import org.apache.pekko.coordination.lease.TimeoutSettings
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class LeaseRenewalStatsSpec extends AnyWordSpec with Matchers {
+
+  // valid for 120s - 2 * 12s = 96s after each write
+  private val timeoutSettings = new TimeoutSettings(12.seconds, 120.seconds, 5.seconds)
+
+  private def now(): Long = System.currentTimeMillis()
+
+  "LeaseRenewalStats" should {
+
+    "renew after the heartbeat interval, less the latency estimate" in {
+      val stats = new LeaseRenewalStats(timeoutSettings)
+      stats.latencyEstimate shouldEqual Duration.Zero
+      stats.remainingValidity shouldEqual Duration.Zero
+
+      (1 to 20).foreach(_ => stats.recordWrite(100.millis, now()))
+      stats.latencyEstimate should (be >= 100.millis and be < 300.millis)
+      stats.nextRenewalDelay should (be > 11.seconds and be < 12.seconds)
+      stats.remainingValidity should (be > 95.seconds and be <= 96.seconds)
+      stats.atRisk shouldEqual false
+    }
+
+    "renew early when the latency rises" in {
+      val stats = new LeaseRenewalStats(timeoutSettings)
+      (1 to 20).foreach(_ => stats.recordWrite(100.millis, now()))
+      stats.recordWrite(3.seconds, now())
+      stats.nextRenewalDelay shouldEqual 3.seconds
+
+      // the next write at the same latency is within the new estimate, and renewals complete in time
+      stats.recordWrite(3.seconds, now())
+      stats.latencyEstimate should be > 3.seconds
+      stats.nextRenewalDelay should be < 9.seconds
+    }
+
+    "renew so that the write completes well before the lease expires" in {
+      val stats = new LeaseRenewalStats(timeoutSettings)
+      (1 to 20).foreach(_ => stats.recordWrite(1.second, now()))
+      // the last write was sent long ago, e.g. renewals were delayed, 6s of validity are left
+      stats.recordWrite(1.second, now() - 90.seconds.toMillis)
+      stats.nextRenewalDelay should (be >= 3.seconds and be < 5.seconds)
+    }
+
+    "report the lease at risk when a renewal might not complete before it expires" in {
+      val stats = new LeaseRenewalStats(timeoutSettings)
+      (1 to 20).foreach(_ => stats.recordWrite(2.seconds, now()))
+      stats.atRisk shouldEqual false
+      stats.validFrom(now() - 95.seconds.toMillis)
+      stats.atRisk shouldEqual true
+
+      stats.invalidate()
+      stats.atRisk shouldEqual false
+      stats.remainingValidity shouldEqual Duration.Zero
+    }
+
+    "count the writes per latency bucket" in {
+      val stats = new LeaseRenewalStats(timeoutSettings)
+      stats.recordWrite(3.millis, now())
+      stats.recordWrite(5.millis, now())
+      stats.recordWrite(70.millis, now())
+      stats.recordWrite(1.minute, now())
+      val histogram = stats.histogram.toMap
+      histogram(5L) shouldEqual 2
+      histogram(100L) shouldEqual 1
+      histogram(Long.MaxValue) shouldEqual 1
+      stats.histogram.map(_._2).sum shouldEqual 4
+    }
+  }
+}
@@ -30,10 +30,14 @@ import pekko.management.cluster.bootstrap.internal.BootstrapCoordinator
 import pekko.management.scaladsl.PekkoManagement
 import pekko.management.scaladsl.ManagementRouteProvider
 import pekko.management.scaladsl.ManagementRouteProviderSettings
+import pekko.http.scaladsl.ConnectionContext
+import pekko.http.scaladsl.HttpsConnectionContext
 import pekko.http.scaladsl.model.Uri
 import pekko.http.scaladsl.server.Route
+import pekko.pki.kubernetes.CachedCredentials
 
-import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicReference }
+import javax.net.ssl.SSLContext
 import scala.concurrent.duration._
 import scala.concurrent.Future
 import scala.concurrent.Promise
@@ -149,6 +153,25 @@ final class ClusterBootstrap(implicit system: ExtendedActorSystem) extends Exten
 
   /** INTERNAL API */
   @InternalApi private[pekko] def selfContactPoint: Future[Uri] = _selfContactPointUri.future
+
+  private val clientCredentials = new CachedCredentials
+  private val clientConnectionContext = new AtomicReference[(SSLContext, HttpsConnectionContext)]()
+
+  /**
+   * INTERNAL API: the connection context of the probes of the contact points, shared by all probes and only created
+   * again when the CA file changes, so that TLS sessions can be resumed. This uses blocking IO, see
+   * [[CachedCredentials]].
+   */
+  @InternalApi private[bootstrap] def clientHttpsConnectionContext(): HttpsConnectionContext = {
+    val sslContext = clientCredentials.sslContext(
+      settings.contactPoint.httpClient.caPath.trim,
+      settings.contactPoint.httpClient.tlsVersion.trim)
+    clientConnectionContext
+      .updateAndGet(current =>
+        if (current != null && (current._1 eq sslContext)) current
+        else (sslContext, ConnectionContext.httpsClient(sslContext)))
+      ._2
+  }
 }
 
 object ClusterBootstrap extends ExtensionId[ClusterBootstrap] with ExtensionIdProvider {
@@ -160,6 +160,13 @@ final class ClusterBootstrapSettings(config: Config, log: LoggingAdapter) {
     val probeIntervalJitter: Double =
       contactPointConfig.getDouble("probe-interval-jitter")
 
+    // at most two thirds of the probing-failure-timeout, so that a long poll completes before the probe times out
+    val longPollTimeout: FiniteDuration =
+      contactPointConfig
+        .getDuration("long-poll-timeout", TimeUnit.MILLISECONDS)
+        .millis
+        .min(probingFailureTimeout * 2 / 3)
+
     val httpMaxSeedNodesToExpose: Int = 5
   }
 
@@ -169,6 +176,9 @@ final class ClusterBootstrapSettings(config: Config, log: LoggingAdapter) {
   /** Java API */
   def getContactPointProbingFailureTimeout: java.time.Duration = contactPoint.probingFailureTimeout.toJava
 
+  /** Java API */
+  def getContactPointLongPollTimeout: java.time.Duration = contactPoint.longPollTimeout.toJava
+
   object joinDecider {
     val implClass: String = bootConfig.getString("join-decider.class")
   }
@@ -13,48 +13,144 @@
 
 package org.apache.pekko.management.cluster.bootstrap.contactpoint
 
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicReference
+
 import org.apache.pekko
+import pekko.Done
 import pekko.actor.ActorSystem
 import pekko.cluster.{ Cluster, Member }
+import pekko.cluster.ClusterEvent.CurrentClusterState
 import pekko.event.{ Logging, LoggingAdapter }
 import pekko.http.javadsl.server.directives.RouteAdapter
-import pekko.http.scaladsl.model.{ HttpRequest, Uri }
+import pekko.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpRequest, Uri }
+import pekko.http.scaladsl.model.headers.{ `If-None-Match`, EntityTag, EntityTagRange }
 import pekko.http.scaladsl.server.Route
 import pekko.management.cluster.bootstrap.ClusterBootstrapSettings
 import pekko.management.cluster.bootstrap.contactpoint.HttpBootstrapJsonProtocol.{ ClusterMember, SeedNodes }
+import pekko.management.cluster.bootstrap.internal.ClusterStateWatcher
 
+import scala.concurrent.{ ExecutionContext, Future, Promise }
 import scala.concurrent.duration._
 
+object HttpClusterBootstrapRoutes {
+
+  private final case class EncodedSeedNodes(
+      state: CurrentClusterState,
+      seedNodes: SeedNodes,
+      tag: EntityTag,
+      entity: HttpEntity.Strict)
+}
+
 final class HttpClusterBootstrapRoutes(settings: ClusterBootstrapSettings) extends HttpBootstrapJsonProtocol {
 
+  import HttpClusterBootstrapRoutes._
   import pekko.http.scaladsl.server.Directives._
 
+  // upper bound of the wait parameter, so that a client can't keep requests open for long
+  private val MaxLongPollWait = 1.minute
+
+  // most probes get the same response, so it is only encoded again when the cluster state changed
+  private val encoded = new AtomicReference[EncodedSeedNodes]()
+
   private def routeGetSeedNodes: Route = extractClientIP { clientIp =>
     extractActorSystem { implicit system =>
-      import pekko.cluster.MemberStatus
-      val cluster = Cluster(system)
-
-      def memberToClusterMember(m: Member): ClusterMember =
-        ClusterMember(m.uniqueAddress.address, m.uniqueAddress.longUid, m.status.toString, m.roles)
-
-      val state = cluster.state
-
-      // TODO shuffle the members so in a big deployment nodes start joining different ones and not all the same?
-      val members = state.members
-        .diff(state.unreachable)
-        .filter(m =>
-          m.status == MemberStatus.up || m.status == MemberStatus.weaklyUp || m.status == MemberStatus.joining)
-        .take(settings.contactPoint.httpMaxSeedNodesToExpose)
-        .map(memberToClusterMember)
-
-      val info = SeedNodes(cluster.selfMember.uniqueAddress.address, members)
-      log.info(
-        "Bootstrap request from {}: Contact Point returning {} seed-nodes [{}]",
-        clientIp,
-        members.size,
-        members.map(_.node).mkString(", "))
-      complete(info)
+      (parameter("wait".as[Long].optional) & extractRequest) { (waitMillis, request) =>
+        val seen = request.header[`If-None-Match`].map(_.m)
+        val response = (waitMillis, seen) match {
+          case (Some(millis), Some(tags)) if millis > 0 =>
+            longPoll(tags, millis.millis.min(MaxLongPollWait))(system, system.dispatcher)
+          case _ =>
+            Future.successful(currentSeedNodes(system))
+        }
+        onSuccess(response) { current =>
+          // responds with 304 Not Modified when the client has seen these seed nodes
+          conditional(current.tag) {
+            log.info(
+              "Bootstrap request from {}: Contact Point returning {} seed-nodes [{}]",
+              clientIp,
+              current.seedNodes.seedNodes.size,
+              current.seedNodes.seedNodes.map(_.node).mkString(", "))
+            complete(current.entity)
+          }
+        }
+      }
+    }
+  }
+
+  private def currentSeedNodes(system: ActorSystem): EncodedSeedNodes =
+    ClusterStateWatcher(system).state match {
+      case Some(state) =>
+        val cached = encoded.get()
+        if ((cached ne null) && (cached.state eq state)) cached
+        else {
+          val current = encode(state, system)
+          encoded.set(current)
+          current
+        }
+      case None =>
+        // not subscribed to the cluster events yet
+        encode(Cluster(system).state, system)
+    }
+
+  private def encode(state: CurrentClusterState, system: ActorSystem): EncodedSeedNodes = {
+    import pekko.cluster.MemberStatus
+    val cluster = Cluster(system)
+
+    def memberToClusterMember(m: Member): ClusterMember =
+      ClusterMember(m.uniqueAddress.address, m.uniqueAddress.longUid, m.status.toString, m.roles)
+
+    // TODO shuffle the members so in a big deployment nodes start joining different ones and not all the same?
+    val members = state.members
+      .diff(state.unreachable)
+      .filter(m =>
+        m.status == MemberStatus.up || m.status == MemberStatus.weaklyUp || m.status == MemberStatus.joining)
+      .take(settings.contactPoint.httpMaxSeedNodesToExpose)
+      .map(memberToClusterMember)
+
+    val info = SeedNodes(cluster.selfMember.uniqueAddress.address, members)
+    EncodedSeedNodes(
+      state,
+      info,
+      entityTag(info),
+      HttpEntity(ContentTypes.`application/json`, ClusterMembersFormat.write(info).compactPrint))
+  }
+
+  /**
+   * Completes when the seed nodes no longer match the tags that the client has seen, or with the current seed nodes
+   * when nothing changed within the wait time.
+   */
+  private def longPoll(seen: EntityTagRange, wait: FiniteDuration)(
+      implicit system: ActorSystem,
+      ec: ExecutionContext): Future[EncodedSeedNodes] = {
+    val watcher = ClusterStateWatcher(system)
+    val timeout = Promise[Done]()
+    val timer = system.scheduler.scheduleOnce(wait)(timeout.trySuccess(Done))
+
+    def loop(): Future[EncodedSeedNodes] = {
+      // get the next change before the state, so that a change in between completes it
+      val change = watcher.nextChange
+      val current = currentSeedNodes(system)
+      if (timeout.isCompleted || !EntityTag.matchesRange(current.tag, seen, weakComparison = true))
+        Future.successful(current)
+      else
+        Future.firstCompletedOf(List(change, timeout.future)).flatMap(_ => loop())
     }
+    val result = loop()
+    // don't keep the timer when a change completed the poll
+    result.onComplete(_ => timer.cancel())(ExecutionContext.parasitic)
+    result
+  }
+
+  // the same seed nodes in any order have the same tag, also on another node
+  private def entityTag(seedNodes: SeedNodes): EntityTag = {
+    val canonical = seedNodes.seedNodes.toList
+      .map(m => s"${m.node}|${m.nodeUid}|${m.status}|${m.roles.toList.sorted.mkString(",")}")
+      .sorted
+      .mkString(s"${seedNodes.selfNode}\n", "\n", "")
+    val digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8))
+    EntityTag(digest.take(8).map(b => f"$b%02x").mkString)
   }
 
   /** Scala API */
@@ -79,4 +175,18 @@ object ClusterBootstrapRequests {
   def bootstrapSeedNodes(baseUri: Uri): HttpRequest =
     Get(s"$baseUri/bootstrap/seed-nodes")
 
+  /**
+   * Conditional request of the seed nodes: the contact point responds with `304 Not Modified` when its seed nodes
+   * match the `seen` tag, from the `ETag` header of an earlier response.
+   */
+  def bootstrapSeedNodes(baseUri: Uri, seen: EntityTag): HttpRequest =
+    Get(s"$baseUri/bootstrap/seed-nodes").addHeader(`If-None-Match`(seen))
+
+  /**
+   * Long polls the seed nodes: the contact point responds when its seed nodes no longer match the `seen` tag, from
+   * the `ETag` header of an earlier response, or with `304 Not Modified` when nothing changed within the `wait` time.
+   */
+  def bootstrapSeedNodes(baseUri: Uri, seen: EntityTag, wait: FiniteDuration): HttpRequest =
+    Get(s"$baseUri/bootstrap/seed-nodes?wait=${wait.toMillis}").addHeader(`If-None-Match`(seen))
+
 }
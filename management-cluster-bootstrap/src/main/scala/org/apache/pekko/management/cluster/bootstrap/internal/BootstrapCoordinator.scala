@@ -63,6 +63,13 @@ private[pekko] object BootstrapCoordinator {
         seedNodesSourceAddress: Address,
         observedSeedNodes: Set[Address]) extends DeadLetterSuppression
 
+    // the contact point responded that its seed nodes did not change since the last observation
+    final case class UnchangedHttpSeedNodesObservation(
+        observedAt: LocalDateTime,
+        contactPoint: ResolvedTarget,
+        seedNodesSourceAddress: Address,
+        observedSeedNodes: Set[Address]) extends DeadLetterSuppression
+
     final case class ProbingFailed(contactPoint: ResolvedTarget, cause: Throwable) extends DeadLetterSuppression
   }
 
@@ -260,6 +267,15 @@ private[pekko] class BootstrapCoordinator(
           decide()
       }
 
+    case UnchangedHttpSeedNodesObservation(observedAt, contactPoint, infoFromAddress, observedSeedNodes) =>
+      // only keeps the observation from becoming obsolete, the periodic decision takes it into account
+      lastContactsObservation.foreach { contacts =>
+        if (contacts.observedContactPoints.contains(contactPoint))
+          seedNodesObservations = seedNodesObservations.updated(
+            contactPoint,
+            new SeedNodesObservation(observedAt, contactPoint, infoFromAddress, observedSeedNodes))
+      }
+
     case DecideTick =>
       decide()
 
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.cluster.bootstrap.internal
+
+import java.util.concurrent.atomic.AtomicReference
+
+import scala.concurrent.{ Future, Promise }
+
+import org.apache.pekko
+import pekko.Done
+import pekko.actor.{ Actor, ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Props }
+import pekko.actor.{ Extension, ExtensionId, ExtensionIdProvider }
+import pekko.annotation.InternalApi
+import pekko.cluster.{ Cluster, ClusterEvent }
+import pekko.cluster.ClusterEvent.{ ClusterDomainEvent, CurrentClusterState, MemberEvent, ReachabilityEvent }
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[bootstrap] object ClusterStateWatcher extends ExtensionId[ClusterStateWatcher] with ExtensionIdProvider {
+
+  override def lookup: ClusterStateWatcher.type = ClusterStateWatcher
+
+  override def get(system: ActorSystem): ClusterStateWatcher = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): ClusterStateWatcher = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): ClusterStateWatcher = new ClusterStateWatcher(system)
+
+  private class Subscriber(watcher: ClusterStateWatcher) extends Actor {
+    private val cluster = Cluster(context.system)
+
+    override def preStart(): Unit =
+      cluster.subscribe(self, ClusterEvent.InitialStateAsSnapshot, classOf[MemberEvent], classOf[ReachabilityEvent])
+
+    override def postStop(): Unit =
+      cluster.unsubscribe(self)
+
+    override def receive: Receive = {
+      case state: CurrentClusterState => watcher.update(state)
+      // the state of the publisher includes the event, unlike Cluster.state which is updated asynchronously
+      case _: ClusterDomainEvent => cluster.sendCurrentClusterState(self)
+    }
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Keeps the latest membership and reachability state of the cluster, and lets the seed nodes route wait for the
+ * next change of it when a contact point is long polled.
+ */
+@InternalApi
+private[bootstrap] final class ClusterStateWatcher(system: ExtendedActorSystem) extends Extension {
+  import ClusterStateWatcher._
+
+  @volatile private var latest: Option[CurrentClusterState] = None
+  private val changed = new AtomicReference(Promise[Done]())
+
+  system.systemActorOf(Props(new Subscriber(this)), "bootstrapClusterStateWatcher")
+
+  /** The latest state, `None` until the first snapshot is received. */
+  def state: Option[CurrentClusterState] = latest
+
+  /**
+   * Completed with the next update of the state. Get it before reading the state, so that an update in between is
+   * not missed. Not every update changes the members that are exposed, so callers check again when it completes.
+   */
+  def nextChange: Future[Done] = changed.get().future
+
+  private def update(state: CurrentClusterState): Unit = {
+    latest = Some(state)
+    changed.getAndSet(Promise[Done]()).trySuccess(Done)
+  }
+}
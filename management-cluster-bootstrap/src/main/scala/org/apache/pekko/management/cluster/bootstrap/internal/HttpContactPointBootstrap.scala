@@ -14,10 +14,9 @@
 package org.apache.pekko.management.cluster.bootstrap.internal
 
 import java.time.LocalDateTime
-import java.security.{ KeyStore, SecureRandom }
 import java.util.concurrent.ThreadLocalRandom
 import java.util.concurrent.TimeoutException
-import javax.net.ssl.{ KeyManager, KeyManagerFactory, SSLContext, TrustManager }
+import javax.net.ssl.SSLContext
 import scala.concurrent.{ Future, Promise }
 import scala.concurrent.duration._
 
@@ -32,18 +31,21 @@ import pekko.actor.Timers
 import pekko.annotation.InternalApi
 import pekko.cluster.Cluster
 import pekko.discovery.ServiceDiscovery.ResolvedTarget
-import pekko.http.scaladsl.ConnectionContext
 import pekko.http.scaladsl.Http
 import pekko.http.scaladsl.HttpsConnectionContext
+import pekko.http.scaladsl.model.HttpRequest
 import pekko.http.scaladsl.model.HttpResponse
 import pekko.http.scaladsl.model.StatusCodes
 import pekko.http.scaladsl.model.Uri
 import pekko.http.scaladsl.model.Uri.Host
+import pekko.http.scaladsl.model.headers.ETag
+import pekko.http.scaladsl.model.headers.EntityTag
 import pekko.http.scaladsl.settings.ConnectionPoolSettings
 import pekko.http.scaladsl.unmarshalling.Unmarshal
-import pekko.management.cluster.bootstrap.ClusterBootstrapSettings
+import pekko.management.cluster.bootstrap.{ ClusterBootstrap, ClusterBootstrapSettings }
 import pekko.management.cluster.bootstrap.contactpoint.HttpBootstrapJsonProtocol.SeedNodes
 import pekko.management.cluster.bootstrap.contactpoint.{ ClusterBootstrapRequests, HttpBootstrapJsonProtocol }
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.pipe
 import pekko.pki.kubernetes.PemManagersProvider
 
@@ -63,29 +65,18 @@ private[bootstrap] object HttpContactPointBootstrap {
     Props(new HttpContactPointBootstrap(settings, contactPoint, baseUri))
 
   private case object ProbeTick extends DeadLetterSuppression
+  private sealed trait ProbeResponse extends DeadLetterSuppression
+  // the tag is only sent by contact points that support conditional requests and long polling
+  private final case class ProbeResult(seedNodes: SeedNodes, tag: Option[EntityTag]) extends ProbeResponse
+  private case object SeedNodesNotModified extends ProbeResponse
   private val ProbingTimerKey = "probing-key"
   private val DefaultTlsVersion = "TLSv1.2" // keep in sync with default in reference.conf
 
-  def generateSSLContext(settings: ClusterBootstrapSettings): SSLContext = {
-    val factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm)
-    val keyStore = KeyStore.getInstance("PKCS12")
-    keyStore.load(null)
-    factory.init(keyStore, Array.empty)
-    val km: Array[KeyManager] = factory.getKeyManagers
-    val caPath = settings.contactPoint.httpClient.caPath.trim
-    val tm: Array[TrustManager] = if (caPath.isEmpty) {
-      // null means use the default JVM trust store, which is what we want if no CA path is configured
-      None.orNull
-    } else {
-      val certificates = PemManagersProvider.loadCertificates(caPath)
-      PemManagersProvider.buildTrustManagers(certificates)
-    }
-    val tlsVersion = settings.contactPoint.httpClient.tlsVersion.trim
-    val random: SecureRandom = new SecureRandom
-    val sslContext = SSLContext.getInstance(tlsVersion)
-    sslContext.init(km, tm, random)
-    sslContext
-  }
+  // an empty CA path means the default JVM trust store, which is what we want if no CA path is configured
+  def generateSSLContext(settings: ClusterBootstrapSettings): SSLContext =
+    PemManagersProvider.createSslContext(
+      settings.contactPoint.httpClient.caPath.trim,
+      settings.contactPoint.httpClient.tlsVersion.trim)
 }
 
 /**
@@ -122,8 +113,9 @@ private[bootstrap] class HttpContactPointBootstrap(
     settings.contactPoint.httpClient.caPath.trim.nonEmpty ||
     settings.contactPoint.httpClient.tlsVersion != DefaultTlsVersion
 
-  private lazy val clientSslContext: HttpsConnectionContext =
-    ConnectionContext.httpsClient(generateSSLContext(settings))
+  // shared by all probes, and only created again when the CA file changes, so that TLS sessions can be resumed
+  private def clientSslContext: HttpsConnectionContext =
+    ClusterBootstrap(context.system).clientHttpsConnectionContext()
 
   private val http = Http()
 
@@ -132,6 +124,13 @@ private[bootstrap] class HttpContactPointBootstrap(
 
   private val probeInterval = settings.contactPoint.probeInterval
   private val probeRequest = ClusterBootstrapRequests.bootstrapSeedNodes(baseUri)
+  private val longPollTimeout = settings.contactPoint.longPollTimeout
+
+  /** The last seed nodes of a contact point that supports conditional requests, with their tag. */
+  private var lastSeen: Option[(EntityTag, SeedNodes)] = None
+
+  /** The URI of the probe in flight, which differs from the plain probe for conditional requests. */
+  private var probedUri: Uri = probeRequest.uri
 
   /**
    * If probing keeps failing until the deadline triggers, we notify the parent,
@@ -142,29 +141,41 @@ private[bootstrap] class HttpContactPointBootstrap(
   private def resetProbingKeepFailingWithinDeadline(): Unit =
     probingKeepFailingDeadline = settings.contactPoint.probingFailureTimeout.fromNow
 
+  private def probeCounter(outcome: String): ManagementMetrics.Counter =
+    ManagementMetrics(context.system).counter(
+      "pekko_management_bootstrap_probes",
+      "The probes of the contact points for their seed nodes, by outcome",
+      "outcome" -> outcome)
+
+  private val probesWithSeedNodes = probeCounter("seed-nodes")
+  private val probesNotModified = probeCounter("not-modified")
+  private val probesFailed = probeCounter("failed")
+
   override def preStart(): Unit =
     self ! ProbeTick
 
   override def receive = {
     case ProbeTick =>
-      log.debug("Probing [{}] for seed nodes...", probeRequest.uri)
-      val response = if (probeRequest.uri.scheme == "https" && useCustomSslContext) {
-        http.singleRequest(probeRequest, settings = connectionPoolWithoutRetries,
+      val request = nextProbeRequest()
+      probedUri = request.uri
+      log.debug("Probing [{}] for seed nodes...", request.uri)
+      val response = if (request.uri.scheme == "https" && useCustomSslContext) {
+        http.singleRequest(request, settings = connectionPoolWithoutRetries,
           connectionContext = clientSslContext)
       } else {
-        http.singleRequest(probeRequest, settings = connectionPoolWithoutRetries)
+        http.singleRequest(request, settings = connectionPoolWithoutRetries)
       }
       // Use a Promise-based pattern instead of Future.firstCompletedOf so that when the
       // timeout fires first, we properly discard the in-flight response entity to release
       // the HTTP connection back to the pool.
-      val promise = Promise[SeedNodes]()
+      val promise = Promise[ProbeResponse]()
       val timeoutCancellable = context.system.scheduler.scheduleOnce(settings.contactPoint.probingFailureTimeout) {
         promise.tryFailure(new TimeoutException(s"Probing timeout of [$baseUri]"))
       }
       response.flatMap(handleResponse).onComplete {
-        case scala.util.Success(seedNodes) =>
+        case scala.util.Success(result) =>
           timeoutCancellable.cancel()
-          promise.trySuccess(seedNodes)
+          promise.trySuccess(result)
         case scala.util.Failure(ex) =>
           timeoutCancellable.cancel()
           promise.tryFailure(ex)
@@ -178,7 +189,10 @@ private[bootstrap] class HttpContactPointBootstrap(
       promise.future.pipeTo(self)
 
     case Status.Failure(cause) =>
-      log.warning("Probing [{}] failed due to: {}", probeRequest.uri, cause.getMessage)
+      probesFailed.increment()
+      log.warning("Probing [{}] failed due to: {}", probedUri, cause.getMessage)
+      // start over with a plain probe, the contact point may have been restarted with another version
+      lastSeen = None
       if (probingKeepFailingDeadline.isOverdue()) {
         log.error("Overdue of probing-failure-timeout, stop probing, signaling that it's failed")
         context.parent ! BootstrapCoordinator.Protocol.ProbingFailed(contactPoint, cause)
@@ -188,19 +202,51 @@ private[bootstrap] class HttpContactPointBootstrap(
         scheduleNextContactPointProbing()
       }
 
-    case response: SeedNodes =>
-      notifyParentAboutSeedNodes(response)
+    case ProbeResult(seedNodes, tag) =>
+      probesWithSeedNodes.increment()
+      notifyParentAboutSeedNodes(seedNodes)
       resetProbingKeepFailingWithinDeadline()
+      lastSeen = tag.map(_ -> seedNodes)
       // we keep probing and looking if maybe a cluster does form after all
-      // (technically could be long polling or web-sockets, but that would need reconnect logic, so this is simpler)
-      scheduleNextContactPointProbing()
+      scheduleNextProbe()
+
+    case SeedNodesNotModified =>
+      probesNotModified.increment()
+      // same seed nodes as before, only the time of the observation is updated
+      lastSeen.foreach {
+        case (_, seedNodes) =>
+          context.parent ! BootstrapCoordinator.Protocol.UnchangedHttpSeedNodesObservation(
+            timeNow(),
+            contactPoint,
+            seedNodes.selfNode,
+            seedNodes.seedNodes.map(_.node))
+      }
+      resetProbingKeepFailingWithinDeadline()
+      scheduleNextProbe()
+  }
+
+  private def longPolling: Boolean =
+    longPollTimeout > Duration.Zero
+
+  private def nextProbeRequest(): HttpRequest = lastSeen match {
+    case Some((tag, _)) if longPolling => ClusterBootstrapRequests.bootstrapSeedNodes(baseUri, tag, longPollTimeout)
+    case Some((tag, _))                => ClusterBootstrapRequests.bootstrapSeedNodes(baseUri, tag)
+    case None                          => probeRequest
   }
 
-  private def handleResponse(response: HttpResponse): Future[SeedNodes] = {
+  // right away when long polling, since the contact point only responds when its seed nodes changed or the long
+  // poll timed out
+  private def scheduleNextProbe(): Unit =
+    if (lastSeen.isDefined && longPolling) timers.startSingleTimer(ProbingTimerKey, ProbeTick, longPollMinInterval)
+    else scheduleNextContactPointProbing()
+
+  private def handleResponse(response: HttpResponse): Future[ProbeResponse] = {
     val strictEntity = response.entity.toStrict(1.second)
 
     if (response.status == StatusCodes.OK)
-      strictEntity.flatMap(res => Unmarshal(res).to[SeedNodes])
+      strictEntity.flatMap(res => Unmarshal(res).to[SeedNodes]).map(ProbeResult(_, response.header[ETag].map(_.etag)))
+    else if (response.status == StatusCodes.NotModified)
+      strictEntity.map(_ => SeedNodesNotModified) // nothing to parse, the seed nodes did not change
     else
       strictEntity.flatMap { entity =>
         val body = entity.data.utf8String
@@ -218,6 +264,10 @@ private[bootstrap] class HttpContactPointBootstrap(
       seedAddresses)
   }
 
+  // bounds the rate of requests if the seed nodes of the contact point keep changing
+  private def longPollMinInterval: FiniteDuration =
+    probeInterval / 10
+
   private def scheduleNextContactPointProbing(): Unit =
     timers.startSingleTimer(ProbingTimerKey, ProbeTick, effectiveProbeInterval())
 
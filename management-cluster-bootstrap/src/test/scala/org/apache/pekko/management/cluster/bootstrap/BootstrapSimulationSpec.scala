@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.cluster.bootstrap
+
+import scala.concurrent.duration._
+import scala.jdk.DurationConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.event.NoLogging
+import pekko.management.cluster.bootstrap.BootstrapSimulator.{ Result, Scenario }
+import pekko.testkit.TestKit
+import com.typesafe.config.{ Config, ConfigFactory }
+
+object BootstrapSimulationSpec {
+
+  // can be overridden with system properties, e.g. -Dbootstrap-simulation.nodes=1000, and the bootstrap settings
+  // with -Dpekko.management.cluster.bootstrap.contact-point-discovery.stable-margin=3s
+  val SimulationConfig: Config = ConfigFactory
+    .systemProperties()
+    .withFallback(ConfigFactory.parseString("""
+      bootstrap-simulation {
+        nodes = 200
+        seed = 1
+        start-spread = 2s
+        discovery-lag = 3s
+        probe-loss = 0.001
+        clock-skew = 500ms
+        clock-drift = 0.01
+      }"""))
+    .getConfig("bootstrap-simulation")
+}
+
+class BootstrapSimulationSpec extends AbstractBootstrapSpec {
+  import BootstrapSimulationSpec._
+
+  private val system = ActorSystem(
+    "BootstrapSimulationSpec",
+    ConfigFactory.parseString("pekko.loglevel = ERROR").withFallback(ConfigFactory.load()))
+
+  override protected def afterAll(): Unit =
+    TestKit.shutdownActorSystem(system)
+
+  private def settings(overrides: String = ""): ClusterBootstrapSettings =
+    ClusterBootstrapSettings(
+      ConfigFactory.parseString(overrides).withFallback(ConfigFactory.load()).withFallback(system.settings.config),
+      NoLogging)
+
+  private val scenario = Scenario(
+    nodes = SimulationConfig.getInt("nodes"),
+    seed = SimulationConfig.getLong("seed"),
+    startSpread = SimulationConfig.getDuration("start-spread").toScala,
+    discoveryLag = SimulationConfig.getDuration("discovery-lag").toScala,
+    probeLoss = SimulationConfig.getDouble("probe-loss"),
+    clockSkew = SimulationConfig.getDuration("clock-skew").toScala,
+    clockDrift = SimulationConfig.getDouble("clock-drift"))
+
+  private def simulate(name: String, scenario: Scenario, settings: ClusterBootstrapSettings): Result = {
+    val start = System.nanoTime()
+    val result = new BootstrapSimulator(system, settings, scenario).run()
+    val elapsedMillis = (System.nanoTime() - start) / 1000000
+    info(
+      s"$name: ${scenario.nodes} nodes formed ${result.clusters} cluster(s) " +
+      s"after ${result.formedAfter.map(d => s"${d.toMillis} ms").getOrElse("-")}, " +
+      s"join time p50 ${result.joinTimePercentile(0.5).toMillis} ms, " +
+      s"p99 ${result.joinTimePercentile(0.99).toMillis} ms; ${result.probeRequests} probe requests, " +
+      s"${result.lostProbes} lost, ${result.notModified} not modified; ${result.decisions} join decisions; " +
+      s"simulated in $elapsedMillis ms")
+    result
+  }
+
+  "The bootstrap simulation" should {
+
+    "form one cluster with discovery lag, probe loss and clock skew" in {
+      val result = simulate("long polling", scenario, settings())
+      result.splitBrain shouldEqual false
+      result.formedAfter should not be empty
+      result.joinTimes.size shouldEqual scenario.nodes
+    }
+
+    "form one cluster when probing every probe-interval" in {
+      val result =
+        simulate("probing", scenario, settings("pekko.management.cluster.bootstrap.contact-point.long-poll-timeout=0"))
+      result.splitBrain shouldEqual false
+      result.formedAfter should not be empty
+    }
+
+    "give the same result for the same seed" in {
+      val small = scenario.copy(nodes = 20)
+      val first = new BootstrapSimulator(system, settings(), small).run()
+      new BootstrapSimulator(system, settings(), small).run() shouldEqual first
+      new BootstrapSimulator(system, settings(), small.copy(seed = small.seed + 1)).run() should !==(first)
+    }
+
+    "detect a split brain with unsafe settings" in {
+      // every node that sees itself as the lowest address before the others have joined forms a cluster
+      val result = simulate(
+        "unsafe",
+        scenario.copy(nodes = 50, startSpread = 200.millis, discoveryLag = Duration.Zero),
+        settings("""
+          pekko.management.cluster.bootstrap.contact-point-discovery {
+            contact-with-all-contact-points = false
+            required-contact-point-nr = 1
+            stable-margin = 0s
+          }"""))
+      result.splitBrain shouldEqual true
+    }
+  }
+}
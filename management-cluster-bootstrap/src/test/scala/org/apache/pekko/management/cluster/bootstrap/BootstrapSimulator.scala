@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.cluster.bootstrap
+
+import java.time.LocalDateTime
+
+import scala.collection.immutable.SortedSet
+import scala.collection.mutable
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.util.Random
+
+import org.apache.pekko
+import pekko.actor.{ ActorSystem, Address }
+import pekko.cluster.Member
+import pekko.discovery.ServiceDiscovery.ResolvedTarget
+
+object BootstrapSimulator {
+
+  /**
+   * The deployment to simulate.
+   *
+   * @param nodes the number of nodes, all in the same deployment
+   * @param seed the seed of the random choices, the same seed gives the same result
+   * @param startSpread the nodes start at random times within this duration
+   * @param discoveryLag a started node is returned by the service discovery after a random lag of at most this
+   * @param probeLoss the probability that a probe gets no response and times out
+   * @param probeLatency the round trip time of a probe
+   * @param clockSkew each node clock is off by a random offset of at most this
+   * @param clockDrift each node clock runs fast or slow by a random rate of at most this, e.g. 0.01 for 1%
+   * @param joinLatency the time from the join decision until the node is a member that is exposed as seed node
+   * @param maxDuration the simulation gives up when the cluster is not formed within this time
+   */
+  final case class Scenario(
+      nodes: Int,
+      seed: Long = 1L,
+      startSpread: FiniteDuration = 1.second,
+      discoveryLag: FiniteDuration = Duration.Zero,
+      probeLoss: Double = 0.0,
+      probeLatency: FiniteDuration = 5.millis,
+      clockSkew: FiniteDuration = Duration.Zero,
+      clockDrift: Double = 0.0,
+      joinLatency: FiniteDuration = 100.millis,
+      maxDuration: FiniteDuration = 2.minutes)
+
+  /**
+   * @param formedAfter the time from the start of the first node until all nodes were members, if they were
+   * @param clusters the number of separate clusters that were formed, more than one is a split brain
+   * @param probeRequests the number of seed node requests, including the lost ones
+   * @param notModified the number of requests that were answered with 304 Not Modified
+   * @param joinTimes the time from the start of each node until it was a member
+   */
+  final case class Result(
+      formedAfter: Option[FiniteDuration],
+      clusters: Int,
+      probeRequests: Long,
+      lostProbes: Long,
+      notModified: Long,
+      decisions: Long,
+      joinTimes: Vector[FiniteDuration]) {
+
+    def splitBrain: Boolean = clusters > 1
+
+    def joinTimePercentile(p: Double): FiniteDuration = {
+      val sorted = joinTimes.sorted
+      if (sorted.isEmpty) Duration.Zero else sorted(math.min(sorted.size - 1, (p * sorted.size).toInt))
+    }
+  }
+
+  private val ManagementPort = 7626
+  private val RemotingPort = 7355
+  private val Epoch = LocalDateTime.of(2020, 1, 1, 0, 0)
+
+  private final class Node(
+      val index: Int,
+      random: Random,
+      system: ActorSystem,
+      settings: ClusterBootstrapSettings,
+      scenario: Scenario) {
+    val host = s"10.0.${index / 256}.${index % 256}"
+    val target = ResolvedTarget(host, Some(ManagementPort), None)
+    val address = Address("pekko", "bootstrap-simulation", host, RemotingPort)
+    val startAt: Long = (random.nextDouble() * scenario.startSpread.toNanos).toLong
+    val visibleAt: Long = startAt + (random.nextDouble() * scenario.discoveryLag.toNanos).toLong
+    val clockOffset: Long = ((random.nextDouble() * 2 - 1) * scenario.clockSkew.toNanos).toLong
+    val clockRate: Double = 1.0 + (random.nextDouble() * 2 - 1) * scenario.clockDrift
+
+    val decider: JoinDecider = new LowestAddressJoinDecider(system, settings) {
+      override private[bootstrap] def selfContactPoint: (String, Int) = (host, ManagementPort)
+    }
+
+    var contacts: Option[(LocalDateTime, Set[ResolvedTarget])] = None
+    var observations = Map.empty[ResolvedTarget, SeedNodesObservation]
+    // the probed contact points, with the seed nodes of the last response
+    val probing = mutable.Map.empty[Int, Option[Set[Address]]]
+    var bootstrapping = true
+    var cluster: Option[Int] = None
+    var joinedAt = 0L
+
+    // node clocks are only compared with themselves, as in the coordinator
+    def localTime(now: Long): LocalDateTime =
+      Epoch.plusNanos((now * clockRate).toLong + clockOffset)
+
+    def globalDelay(local: FiniteDuration): Long =
+      (local.toNanos / clockRate).toLong
+  }
+
+  private sealed trait Event { def node: Node }
+  private final case class Start(node: Node) extends Event
+  private final case class Discover(node: Node) extends Event
+  private final case class DecideTick(node: Node) extends Event
+  private final case class Probe(node: Node, target: Node) extends Event
+  private final case class Response(node: Node, target: Node, seedNodes: Option[Set[Address]]) extends Event
+  private final case class LongPollTimeout(node: Node, target: Node, poll: Long) extends Event
+  private final case class ProbeTimeout(node: Node, target: Node) extends Event
+  private final case class Joined(node: Node, cluster: Int) extends Event
+
+  private final case class Scheduled(at: Long, seq: Long, event: Event)
+}
+
+/**
+ * Runs the bootstrap of many virtual nodes in one thread on a virtual clock, so that the outcome only depends on the
+ * scenario and settings. The join decisions are made by the [[LowestAddressJoinDecider]], with the same information
+ * as the `BootstrapCoordinator` collects. The probing follows `HttpContactPointBootstrap`: contact points that have
+ * been seen are long polled when `contact-point.long-poll-timeout` is enabled, and otherwise probed every
+ * `contact-point.probe-interval` with conditional requests.
+ */
+final class BootstrapSimulator(
+    system: ActorSystem,
+    settings: ClusterBootstrapSettings,
+    scenario: BootstrapSimulator.Scenario) {
+  import BootstrapSimulator._
+
+  private val random = new Random(scenario.seed)
+
+  private val queue = mutable.PriorityQueue.empty[Scheduled](
+    Ordering.by[Scheduled, (Long, Long)](s => (s.at, s.seq)).reverse)
+  private var seq = 0L
+  private var now = 0L
+
+  private def schedule(delay: Long, event: Event): Unit = {
+    seq += 1
+    queue.enqueue(Scheduled(now + delay, seq, event))
+  }
+
+  private val nodes = Vector.tabulate(scenario.nodes)(new Node(_, random, system, settings, scenario))
+  private val nodesByTarget = nodes.map(n => n.target -> n).toMap
+  private val nodesByAddress = nodes.map(n => n.address -> n).toMap
+  private val clusterMembers = mutable.Map.empty[Int, SortedSet[Address]]
+  // the long polls waiting for a change of the seed nodes of a contact point, by contact point and polling node
+  private val longPolls = mutable.Map.empty[Int, mutable.Map[Int, Long]]
+
+  private val probeLatency = scenario.probeLatency.toNanos
+  private val longPollTimeout = settings.contactPoint.longPollTimeout
+
+  private var probeRequests = 0L
+  private var lostProbes = 0L
+  private var notModified = 0L
+  private var decisions = 0L
+  private var members = 0
+
+  def run(): Result = {
+    nodes.foreach(node => schedule(node.startAt, Start(node)))
+    val end = scenario.maxDuration.toNanos
+    while (queue.nonEmpty && members < nodes.size && queue.head.at <= end) {
+      val next = queue.dequeue()
+      now = next.at
+      handle(next.event)
+    }
+    val firstStart = nodes.map(_.startAt).min
+    Result(
+      if (members == nodes.size && clusterMembers.size == 1) Some((now - firstStart).nanos) else None,
+      clusterMembers.size,
+      probeRequests,
+      lostProbes,
+      notModified,
+      decisions,
+      nodes.filter(_.cluster.isDefined).map(n => (n.joinedAt - n.startAt).nanos))
+  }
+
+  private def handle(event: Event): Unit = event match {
+    case Start(node) =>
+      schedule(0L, Discover(node))
+      schedule(node.globalDelay(settings.contactPoint.probeInterval), DecideTick(node))
+
+    case Discover(node) if node.bootstrapping =>
+      val discovered = nodes.filter(n => n.visibleAt <= now).map(_.target).toSet
+      node.contacts = node.contacts match {
+        case Some(previous @ (_, targets)) if targets == discovered => Some(previous)
+        case _                                                      => Some(node.localTime(now) -> discovered)
+      }
+      node.observations = node.observations.filter { case (target, _) => discovered.contains(target) }
+      discovered.foreach { target =>
+        val contactPoint = nodesByTarget(target)
+        // including itself, as the lowest address only joins itself when it has seen its own empty seed nodes
+        if (!node.probing.contains(contactPoint.index)) {
+          node.probing.update(contactPoint.index, None)
+          schedule(0L, Probe(node, contactPoint))
+        }
+      }
+      schedule(node.globalDelay(settings.contactPointDiscovery.interval), Discover(node))
+
+    case DecideTick(node) if node.bootstrapping =>
+      decide(node)
+      schedule(node.globalDelay(settings.contactPoint.probeInterval), DecideTick(node))
+
+    case Probe(node, target) if node.bootstrapping =>
+      probeRequests += 1
+      if (random.nextDouble() < scenario.probeLoss) {
+        lostProbes += 1
+        schedule(node.globalDelay(settings.contactPoint.probingFailureTimeout), ProbeTimeout(node, target))
+      } else {
+        val current = seedNodes(target)
+        node.probing.getOrElse(target.index, None) match {
+          case Some(seen) if seen == current && longPollTimeout > Duration.Zero =>
+            longPolls.getOrElseUpdate(target.index, mutable.Map.empty).update(node.index, seq)
+            schedule(probeLatency / 2 + longPollTimeout.toNanos, LongPollTimeout(node, target, seq))
+          case Some(seen) if seen == current =>
+            schedule(probeLatency, Response(node, target, None))
+          case _ =>
+            schedule(probeLatency, Response(node, target, Some(current)))
+        }
+      }
+
+    case LongPollTimeout(node, target, poll) =>
+      longPolls.get(target.index).foreach { polls =>
+        if (polls.get(node.index).contains(poll)) {
+          polls.remove(node.index)
+          schedule(probeLatency / 2, Response(node, target, None))
+        }
+      }
+
+    // as HttpContactPointBootstrap: the probe times out after probing-failure-timeout, which is also when probing
+    // counts as failed, and the contact point is probed again after the next discovery
+    case ProbeTimeout(node, target) if node.bootstrapping =>
+      node.probing.remove(target.index)
+      node.observations -= target.target
+
+    case Response(node, target, response) if node.bootstrapping =>
+      val seen = response match {
+        case Some(seedNodes) => seedNodes
+        case None            =>
+          notModified += 1
+          node.probing.getOrElse(target.index, None).getOrElse(Set.empty)
+      }
+      node.probing.update(target.index, Some(seen))
+      if (node.contacts.exists(_._2.contains(target.target)))
+        node.observations = node.observations.updated(
+          target.target,
+          new SeedNodesObservation(node.localTime(now), target.target, target.address, seen))
+      if (response.exists(_.nonEmpty))
+        decide(node)
+      if (node.bootstrapping) {
+        val delay =
+          if (longPollTimeout > Duration.Zero) settings.contactPoint.probeInterval / 10
+          else probeInterval(node)
+        schedule(node.globalDelay(delay), Probe(node, target))
+      }
+
+    case Joined(node, cluster) =>
+      node.cluster = Some(cluster)
+      node.joinedAt = now
+      clusterMembers.update(cluster, clusterMembers.getOrElse(cluster, SortedSet.empty(Member.addressOrdering)) +
+        node.address)
+      members += 1
+      // the seed nodes of all members of the cluster may have changed
+      clusterMembers(cluster).foreach { address =>
+        val member = nodesByAddress(address)
+        val current = seedNodes(member)
+        longPolls.get(member.index).foreach { polls =>
+          polls.keys.toList.sorted.map(nodes).foreach { poller =>
+            if (!poller.probing.get(member.index).flatten.contains(current)) {
+              polls.remove(poller.index)
+              schedule(probeLatency / 2, Response(poller, member, Some(current)))
+            }
+          }
+        }
+      }
+
+    case _ => // the node has stopped bootstrapping
+  }
+
+  private def probeInterval(node: Node): FiniteDuration = {
+    val interval = settings.contactPoint.probeInterval
+    interval + (interval.toMillis * settings.contactPoint.probeIntervalJitter * random.nextDouble()).millis
+  }
+
+  private def seedNodes(node: Node): Set[Address] =
+    node.cluster match {
+      case Some(cluster) =>
+        clusterMembers(cluster).take(settings.contactPoint.httpMaxSeedNodesToExpose).toSet
+      case None => Set.empty
+    }
+
+  private def decide(node: Node): Unit =
+    node.contacts.foreach {
+      case (changedAt, contactPoints) =>
+        decisions += 1
+        val currentTime = node.localTime(now)
+        val failureTimeout = settings.contactPoint.probingFailureTimeout.toMillis
+        val observations = node.observations.valuesIterator
+          .filterNot(obs => java.time.Duration.between(obs.observedAt, currentTime).toMillis > failureTimeout)
+          .toSet
+        val info = new SeedNodesInformation(currentTime, changedAt, contactPoints, observations)
+        Await.result(node.decider.decide(info), 3.seconds) match {
+          case KeepProbing =>
+          case JoinSelf    =>
+            node.bootstrapping = false
+            schedule(scenario.joinLatency.toNanos, Joined(node, node.index))
+          case JoinOtherSeedNodes(seeds) =>
+            node.bootstrapping = false
+            // joins the cluster of the first seed node that responds, the lowest address here
+            val cluster = seeds.toList.sorted(Member.addressOrdering).flatMap(nodesByAddress(_).cluster).head
+            schedule(scenario.joinLatency.toNanos, Joined(node, cluster))
+        }
+    }
+}
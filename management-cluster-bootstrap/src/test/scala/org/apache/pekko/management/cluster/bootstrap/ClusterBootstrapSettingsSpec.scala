@@ -13,6 +13,8 @@
 
 package org.apache.pekko.management.cluster.bootstrap
 
+import scala.concurrent.duration._
+
 import org.apache.pekko.event.NoLogging
 import com.typesafe.config.ConfigFactory
 
@@ -46,5 +48,18 @@ class ClusterBootstrapSettingsSpec extends AbstractBootstrapSpec {
       settings.newClusterEnabled should ===(true)
 
     }
+
+    "limit the long poll timeout to two thirds of the probing failure timeout" in {
+      val settings = ClusterBootstrapSettings(config, NoLogging)
+      settings.contactPoint.longPollTimeout should ===(2.seconds)
+
+      val overrides = ConfigFactory.parseString("""
+        pekko.management.cluster.bootstrap.contact-point {
+          probing-failure-timeout = 1500ms
+          long-poll-timeout = 5s
+        }""")
+      ClusterBootstrapSettings(overrides.withFallback(config), NoLogging).contactPoint.longPollTimeout should ===(
+        1.second)
+    }
   }
 }
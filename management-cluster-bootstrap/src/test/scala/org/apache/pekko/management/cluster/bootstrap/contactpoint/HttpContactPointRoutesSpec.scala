@@ -13,13 +13,19 @@
 
 package org.apache.pekko.management.cluster.bootstrap.contactpoint
 
+import scala.concurrent.duration._
+
 import org.apache.pekko
 import pekko.cluster.{ Cluster, ClusterEvent }
 import pekko.event.NoLogging
+import pekko.http.scaladsl.model.StatusCodes
+import pekko.http.scaladsl.model.headers.{ ETag, EntityTag }
+import pekko.http.scaladsl.server.Route
 import pekko.http.scaladsl.testkit.ScalatestRouteTest
+import pekko.http.scaladsl.unmarshalling.Unmarshal
 import pekko.management.cluster.bootstrap.ClusterBootstrapSettings
 import pekko.testkit.TestProbe
-import org.scalatest.concurrent.Eventually
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
 import org.scalatest.time.{ Millis, Seconds, Span }
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpecLike
@@ -29,7 +35,8 @@ class HttpContactPointRoutesSpec
     with Matchers
     with ScalatestRouteTest
     with HttpBootstrapJsonProtocol
-    with Eventually {
+    with Eventually
+    with ScalaFutures {
 
   implicit override val patienceConfig: PatienceConfig =
     PatienceConfig(timeout = scaled(Span(3, Seconds)), interval = scaled(Span(50, Millis)))
@@ -61,6 +68,57 @@ class HttpContactPointRoutesSpec
       }
     }
 
+    "respond with not modified when the client has seen the seed nodes" in {
+      val (tag, body) = ClusterBootstrapRequests.bootstrapSeedNodes("") ~> httpBootstrap.routes ~> check {
+        (header[ETag].map(_.etag).get, responseAs[String])
+      }
+      // the same encoded response, until the cluster state changes
+      ClusterBootstrapRequests.bootstrapSeedNodes("") ~> httpBootstrap.routes ~> check {
+        responseAs[String] shouldEqual body
+      }
+
+      ClusterBootstrapRequests.bootstrapSeedNodes("", tag) ~> httpBootstrap.routes ~> check {
+        status shouldEqual StatusCodes.NotModified
+        responseEntity.isKnownEmpty shouldEqual true
+        header[ETag].map(_.etag) shouldEqual Some(tag)
+      }
+      ClusterBootstrapRequests.bootstrapSeedNodes("", EntityTag("other")) ~> httpBootstrap.routes ~> check {
+        status shouldEqual StatusCodes.OK
+        responseAs[String] shouldEqual body
+      }
+    }
+
+    "long poll until the seed nodes change" in {
+      val tag = ClusterBootstrapRequests.bootstrapSeedNodes("") ~> httpBootstrap.routes ~> check {
+        header[ETag].map(_.etag).get
+      }
+
+      // respond right away to a client that has not seen the current seed nodes
+      ClusterBootstrapRequests.bootstrapSeedNodes("", EntityTag("other"), 10.seconds) ~> httpBootstrap.routes ~> check {
+        header[ETag].map(_.etag) shouldEqual Some(tag)
+      }
+
+      // respond that nothing changed within the wait time
+      val start = System.nanoTime()
+      ClusterBootstrapRequests.bootstrapSeedNodes("", tag, 300.millis) ~> httpBootstrap.routes ~> check {
+        (System.nanoTime() - start).nanos should be >= 300.millis
+        status shouldEqual StatusCodes.NotModified
+        header[ETag].map(_.etag) shouldEqual Some(tag)
+      }
+
+      val longPoll =
+        Route.toFunction(httpBootstrap.routes).apply(ClusterBootstrapRequests.bootstrapSeedNodes("", tag, 10.seconds))
+      Thread.sleep(200)
+      longPoll.isCompleted shouldEqual false
+
+      val cluster = Cluster(system)
+      cluster.join(cluster.selfAddress)
+      val response = longPoll.futureValue
+      response.header[ETag].map(_.etag) should !==(Some(tag))
+      val seedNodes = Unmarshal(response).to[HttpBootstrapJsonProtocol.SeedNodes].futureValue
+      seedNodes.seedNodes.map(_.node) should contain(cluster.selfAddress)
+    }
+
     "include seed nodes when part of a cluster" in {
       val cluster = Cluster(system)
       cluster.join(cluster.selfAddress)
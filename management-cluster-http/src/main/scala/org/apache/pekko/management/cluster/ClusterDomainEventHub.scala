@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.cluster
+
+import scala.collection.immutable
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+import scala.util.Try
+
+import org.apache.pekko
+import pekko.NotUsed
+import pekko.actor.{ Actor, ActorLogging, ActorRef, ActorSystem, Address, ClassicActorSystemProvider, Stash }
+import pekko.actor.{ ExtendedActorSystem, Extension, ExtensionId, ExtensionIdProvider, Props }
+import pekko.annotation.InternalApi
+import pekko.cluster.{ Cluster, ClusterEvent, Member, MemberStatus, UniqueAddress }
+import pekko.cluster.ClusterEvent.{ ClusterDomainEvent, CurrentClusterState }
+import pekko.http.scaladsl.model.sse.ServerSentEvent
+import pekko.stream.{ BoundedSourceQueue, QueueOfferResult }
+import pekko.stream.scaladsl.{ Keep, Source }
+import pekko.util.ByteString
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[cluster] object ClusterDomainEventHub extends ExtensionId[ClusterDomainEventHub] with ExtensionIdProvider {
+
+  override def lookup: ClusterDomainEventHub.type = ClusterDomainEventHub
+
+  override def get(system: ActorSystem): ClusterDomainEventHub = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): ClusterDomainEventHub = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): ClusterDomainEventHub = new ClusterDomainEventHub(system)
+
+  val KeepAliveInterval: FiniteDuration = 10.seconds
+
+  // an empty line, which is ignored by the clients
+  private val Heartbeat: ByteString = ByteString("\n")
+
+  /** An event encoded to a server-sent event, shared by all clients that it is sent to. */
+  private final case class Encoded(event: ClusterDomainEvent, bytes: ByteString)
+
+  private final case class Subscribe(
+      queue: BoundedSourceQueue[ByteString],
+      classes: immutable.Seq[Class[?]],
+      lastEventId: Option[String],
+      initial: Promise[immutable.Seq[ByteString]])
+
+  private final case class Unsubscribe(queue: BoundedSourceQueue[ByteString])
+
+  /**
+   * The state that the events seen so far add up to, to send it to new clients as events like
+   * `ClusterEvent.InitialStateAsEvents` does.
+   */
+  private final case class State(
+      members: Map[UniqueAddress, Member],
+      unreachable: Map[UniqueAddress, Member],
+      leader: Option[Address],
+      roleLeaders: Map[String, Address],
+      unreachableDataCenters: Set[String]) {
+
+    def update(event: ClusterDomainEvent): State = event match {
+      case ClusterEvent.MemberRemoved(member, _) =>
+        copy(members = members - member.uniqueAddress, unreachable = unreachable - member.uniqueAddress)
+      case event: ClusterEvent.MemberEvent =>
+        copy(members = members.updated(event.member.uniqueAddress, event.member))
+      case ClusterEvent.UnreachableMember(member) =>
+        copy(unreachable = unreachable.updated(member.uniqueAddress, member))
+      case ClusterEvent.ReachableMember(member) =>
+        copy(unreachable = unreachable - member.uniqueAddress)
+      case ClusterEvent.LeaderChanged(address) =>
+        copy(leader = address)
+      case ClusterEvent.RoleLeaderChanged(role, Some(address)) =>
+        copy(roleLeaders = roleLeaders.updated(role, address))
+      case ClusterEvent.RoleLeaderChanged(role, None) =>
+        copy(roleLeaders = roleLeaders - role)
+      case ClusterEvent.UnreachableDataCenter(dataCenter) =>
+        copy(unreachableDataCenters = unreachableDataCenters + dataCenter)
+      case ClusterEvent.ReachableDataCenter(dataCenter) =>
+        copy(unreachableDataCenters = unreachableDataCenters - dataCenter)
+      case _ =>
+        this
+    }
+
+    def events: immutable.Seq[ClusterDomainEvent] = {
+      val memberEvents = members.values.toVector.sorted(Member.ordering).flatMap { member =>
+        member.status match {
+          case MemberStatus.Joining  => Some(ClusterEvent.MemberJoined(member))
+          case MemberStatus.WeaklyUp => Some(ClusterEvent.MemberWeaklyUp(member))
+          case MemberStatus.Up       => Some(ClusterEvent.MemberUp(member))
+          case MemberStatus.Leaving  => Some(ClusterEvent.MemberLeft(member))
+          case MemberStatus.Exiting  => Some(ClusterEvent.MemberExited(member))
+          case MemberStatus.Down     => Some(ClusterEvent.MemberDowned(member))
+          case _                     => None
+        }
+      }
+      memberEvents ++
+      unreachable.values.toVector.sorted(Member.ordering).map(ClusterEvent.UnreachableMember(_)) ++
+      leader.map(address => ClusterEvent.LeaderChanged(Some(address))) ++
+      roleLeaders.toVector.sortBy(_._1).map {
+        case (role, address) => ClusterEvent.RoleLeaderChanged(role, Some(address))
+      } ++
+      unreachableDataCenters.toVector.sorted.map(ClusterEvent.UnreachableDataCenter(_))
+    }
+  }
+
+  private object State {
+    def apply(state: CurrentClusterState): State =
+      State(
+        state.members.iterator.map(m => m.uniqueAddress -> m).toMap,
+        state.unreachable.iterator.map(m => m.uniqueAddress -> m).toMap,
+        state.leader,
+        state.roleLeaderMap.collect { case (role, Some(address)) => role -> address },
+        state.unreachableDataCenters)
+  }
+
+  /** Encodes the event in the text/event-stream format, in the same way as the pekko-http marshaller. */
+  private def encode(sse: ServerSentEvent, id: String): ByteString = {
+    val builder = new java.lang.StringBuilder
+    sse.data.split("\n", -1).foreach(line => builder.append("data:").append(line).append('\n'))
+    sse.eventType.foreach(eventType => builder.append("event:").append(eventType).append('\n'))
+    builder.append("id:").append(id).append('\n').append('\n')
+    ByteString(builder.toString)
+  }
+
+  private def matches(classes: immutable.Seq[Class[?]], event: ClusterDomainEvent): Boolean =
+    classes.exists(_.isInstance(event))
+
+  /**
+   * Subscribes once to the cluster domain events, encodes each of them once and offers it to the queues of the
+   * clients. A client that falls behind by more than its buffer is disconnected, and can resume with the
+   * `Last-Event-ID` header from the replay buffer.
+   */
+  private final class Hub(settings: ClusterHttpManagementSettings) extends Actor with Stash with ActorLogging {
+    private val cluster = Cluster(context.system)
+
+    // the ids are only valid for this incarnation of this node, another node or a restarted one sends the state
+    private val idPrefix = java.lang.Long.toHexString(cluster.selfUniqueAddress.longUid) + "."
+
+    private var state = State(Map.empty, Map.empty, None, Map.empty, Set.empty)
+    private var seqNr = 0L
+    private val replay = new Array[Encoded](settings.domainEventsReplayBufferSize)
+    private var snapshot: Option[immutable.Seq[Encoded]] = None
+    private var subscribers = Map.empty[BoundedSourceQueue[ByteString], immutable.Seq[Class[?]]]
+
+    override def preStart(): Unit =
+      cluster.subscribe(self, ClusterEvent.InitialStateAsSnapshot, classOf[ClusterDomainEvent])
+
+    override def postStop(): Unit = {
+      cluster.unsubscribe(self)
+      subscribers.keys.foreach(_.complete())
+    }
+
+    override def receive: Receive = {
+      case current: CurrentClusterState =>
+        state = State(current)
+        unstashAll()
+        context.become(active)
+
+      case _ =>
+        stash()
+    }
+
+    private def active: Receive = {
+      case event: ClusterDomainEvent =>
+        val updated = state.update(event)
+        // members are equal by address, not by status
+        if (updated ne state) {
+          state = updated
+          snapshot = None
+        }
+        ClusterDomainEventServerSentEventEncoder.encode(event).foreach { sse =>
+          seqNr += 1
+          val encoded = encode(event, sse, seqNr)
+          if (replay.nonEmpty) replay((seqNr % replay.length).toInt) = encoded
+          subscribers.foreach {
+            case (queue, classes) => if (matches(classes, event)) offer(queue, encoded.bytes)
+          }
+        }
+
+      case Subscribe(queue, classes, lastEventId, initial) =>
+        val resumed = lastEventId.flatMap(replayAfter)
+        val events = resumed.getOrElse(stateEvents)
+        initial.success(events.collect { case Encoded(event, bytes) if matches(classes, event) => bytes })
+        subscribers = subscribers.updated(queue, classes)
+
+      case Unsubscribe(queue) =>
+        subscribers -= queue
+    }
+
+    private def encode(event: ClusterDomainEvent, sse: ServerSentEvent, id: Long): Encoded =
+      Encoded(event, ClusterDomainEventHub.encode(sse, idPrefix + id))
+
+    private def offer(queue: BoundedSourceQueue[ByteString], bytes: ByteString): Unit =
+      queue.offer(bytes) match {
+        case QueueOfferResult.Dropped =>
+          log.warning(
+            "Client of the cluster domain events fell behind by more than [{}] events, disconnecting it",
+            settings.domainEventsClientBufferSize)
+          queue.complete()
+          subscribers -= queue
+        case QueueOfferResult.QueueClosed | QueueOfferResult.Failure(_) =>
+          subscribers -= queue
+        case QueueOfferResult.Enqueued =>
+      }
+
+    /** The events after the given id, if they are all in the replay buffer. */
+    private def replayAfter(lastEventId: String): Option[immutable.Seq[Encoded]] =
+      if (!lastEventId.startsWith(idPrefix)) None
+      else
+        Try(lastEventId.substring(idPrefix.length).toLong).toOption.collect {
+          case last if last >= 0 && last <= seqNr && seqNr - last <= replay.length =>
+            (last + 1 to seqNr).map(nr => replay((nr % replay.length).toInt))
+        }
+
+    /** The current state as events, encoded once for all clients that connect until it changes. */
+    private def stateEvents: immutable.Seq[Encoded] =
+      snapshot.getOrElse {
+        // all carry the id of the latest event, which the state includes
+        val events = state.events.flatMap { event =>
+          ClusterDomainEventServerSentEventEncoder.encode(event).map(encode(event, _, seqNr))
+        }
+        snapshot = Some(events)
+        events
+      }
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Fans out the cluster domain events of one subscription to the clients of the `/cluster/domain-events` route.
+ */
+@InternalApi
+private[cluster] final class ClusterDomainEventHub(system: ExtendedActorSystem) extends Extension {
+  import ClusterDomainEventHub._
+
+  private val settings = new ClusterHttpManagementSettings(system.settings.config)
+
+  private val hub: ActorRef = system.systemActorOf(Props(new Hub(settings)), "clusterDomainEventHub")
+
+  /**
+   * The events of the given classes encoded as server-sent events, starting with the current state as events, or
+   * with the events after `lastEventId` if they are still kept for replaying them. For the response to one client,
+   * it is materialized once.
+   */
+  def events(classes: immutable.Seq[Class[?]], lastEventId: Option[String]): Source[ByteString, NotUsed] = {
+    val initial = Promise[immutable.Seq[ByteString]]()
+    Source
+      .future(initial.future)
+      .mapConcat(identity)
+      .concatMat(Source.queue[ByteString](settings.domainEventsClientBufferSize))(Keep.right)
+      .keepAlive(KeepAliveInterval, () => Heartbeat)
+      .watchTermination() { (queue, done) =>
+        // the initial events are taken when the queue is subscribed, so that no event is missed or sent twice
+        hub ! Subscribe(queue, classes, lastEventId, initial)
+        done.onComplete(_ => hub ! Unsubscribe(queue))(system.dispatcher)
+        NotUsed
+      }
+  }
+}
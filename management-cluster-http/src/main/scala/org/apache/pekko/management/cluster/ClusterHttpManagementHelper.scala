@@ -13,7 +13,10 @@
 
 package org.apache.pekko.management.cluster
 
-import org.apache.pekko.cluster.Member
+import org.apache.pekko
+import pekko.actor.Address
+import pekko.cluster.Member
+import pekko.cluster.sharding.ShardRegion
 
 object ClusterHttpManagementHelper {
   def memberToClusterMember(m: Member): ClusterMember =
@@ -24,6 +27,44 @@ object ClusterHttpManagementHelper {
     roles.map(role => (role, oldestForRole(thisDcMembers, role))).toMap
   }
 
+  /**
+   * The statistics of the shard regions of all nodes, ordered by node, with a summary of how evenly the shards and
+   * entities are spread over them. The entity skew is how much the region with the most entities is above the mean,
+   * relative to the mean, 0 when they are spread evenly.
+   */
+  private[pekko] def clusterShardDetails(regions: Map[Address, ShardRegion.ShardRegionStats]): ClusterShardDetails = {
+    val regionStats = regions.toVector.sortBy(_._1)(Member.addressOrdering).map {
+      case (address, stats) =>
+        val shards = stats.stats.toVector.sortBy(_._1).map {
+          case (shardId, entities) => ShardRegionInfo(shardId, entities)
+        }
+        val entities = shards.map(_.numEntities).sum
+        ClusterShardRegionStats(s"$address", shards.size, entities, shards, stats.failed.toVector.sorted)
+    }
+
+    val shardCounts = regionStats.map(_.numShards)
+    val entityCounts = regionStats.map(_.numEntities)
+    val numEntities = entityCounts.sum
+    val entitySkew =
+      if (numEntities == 0) 0.0
+      else {
+        val mean = numEntities.toDouble / regionStats.size
+        (entityCounts.max - mean) / mean
+      }
+
+    ClusterShardDetails(
+      regionStats,
+      ClusterShardingStatsSummary(
+        numRegions = regionStats.size,
+        numShards = shardCounts.sum,
+        numEntities = numEntities,
+        minShards = if (shardCounts.isEmpty) 0 else shardCounts.min,
+        maxShards = if (shardCounts.isEmpty) 0 else shardCounts.max,
+        minEntities = if (entityCounts.isEmpty) 0 else entityCounts.min,
+        maxEntities = if (entityCounts.isEmpty) 0 else entityCounts.max,
+        entitySkew = entitySkew))
+  }
+
   private def oldestForRole(cluster: Seq[Member], role: String): String = {
     val forRole = cluster.filter(_.roles.contains(role))
 
@@ -36,6 +36,24 @@ final case class ClusterHttpManagementMessage(message: String)
 final case class ShardEntityTypeKeys(entityTypeKeys: immutable.Set[String])
 final case class ShardRegionInfo(shardId: String, numEntities: Int)
 final case class ShardDetails(regions: immutable.Seq[ShardRegionInfo])
+final case class ClusterShardRegionStats(
+    node: String,
+    numShards: Int,
+    numEntities: Int,
+    shards: immutable.Seq[ShardRegionInfo],
+    failedShards: immutable.Seq[String])
+final case class ClusterShardingStatsSummary(
+    numRegions: Int,
+    numShards: Int,
+    numEntities: Int,
+    minShards: Int,
+    maxShards: Int,
+    minEntities: Int,
+    maxEntities: Int,
+    entitySkew: Double)
+final case class ClusterShardDetails(
+    regions: immutable.Seq[ClusterShardRegionStats],
+    summary: ClusterShardingStatsSummary)
 
 /** INTERNAL API */
 @InternalApi private[pekko] sealed trait ClusterHttpManagementMemberOperation
@@ -65,4 +83,9 @@ trait ClusterHttpManagementJsonProtocol extends SprayJsonSupport with DefaultJso
   implicit val shardEntityTypeKeysFormat: RootJsonFormat[ShardEntityTypeKeys] = jsonFormat1(ShardEntityTypeKeys.apply)
   implicit val shardRegionInfoFormat: RootJsonFormat[ShardRegionInfo] = jsonFormat2(ShardRegionInfo.apply)
   implicit val shardDetailsFormat: RootJsonFormat[ShardDetails] = jsonFormat1(ShardDetails.apply)
+  implicit val clusterShardRegionStatsFormat: RootJsonFormat[ClusterShardRegionStats] =
+    jsonFormat5(ClusterShardRegionStats.apply)
+  implicit val clusterShardingStatsSummaryFormat: RootJsonFormat[ClusterShardingStatsSummary] =
+    jsonFormat8(ClusterShardingStatsSummary.apply)
+  implicit val clusterShardDetailsFormat: RootJsonFormat[ClusterShardDetails] = jsonFormat2(ClusterShardDetails.apply)
 }
@@ -13,10 +13,21 @@
 
 package org.apache.pekko.management.cluster
 
+import scala.concurrent.duration.FiniteDuration
+import scala.jdk.DurationConverters._
+
 import com.typesafe.config.Config
 
 final class ClusterHttpManagementSettings(val config: Config) {
-  config.getConfig("pekko.management.cluster")
+  private val clusterConfig = config.getConfig("pekko.management.cluster")
+
+  val domainEventsClientBufferSize: Int = clusterConfig.getInt("domain-events.client-buffer-size")
+  require(domainEventsClientBufferSize > 0, "domain-events.client-buffer-size must be > 0")
+
+  val domainEventsReplayBufferSize: Int = clusterConfig.getInt("domain-events.replay-buffer-size")
+  require(domainEventsReplayBufferSize >= 0, "domain-events.replay-buffer-size must be >= 0")
+
+  val shardStatsTimeout: FiniteDuration = clusterConfig.getDuration("shard-stats.timeout").toScala
 
-  // placeholder for potential future configuration... currently nothing is configured here
+  val shardStatsCacheTimeToLive: FiniteDuration = clusterConfig.getDuration("shard-stats.cache-time-to-live").toScala
 }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.cluster
+
+import java.security.MessageDigest
+
+import scala.collection.immutable
+import scala.util.{ Failure, Success, Try }
+
+import org.apache.pekko
+import pekko.actor.{ Address, AddressFromURIString }
+import pekko.annotation.InternalApi
+import pekko.cluster.{ Member, MemberStatus }
+import pekko.http.scaladsl.model.{ ContentTypes, HttpEntity, UniversalEntity }
+import pekko.http.scaladsl.model.headers.EntityTag
+import pekko.stream.scaladsl.Source
+import pekko.util.ByteString
+import spray.json.{ JsObject, JsString }
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[cluster] object ClusterMembersSnapshot extends ClusterHttpManagementJsonProtocol {
+
+  // members per chunk of a streamed response
+  private val MembersPerChunk = 100
+
+  private val Comma = ByteString(",")
+
+  private val Statuses: Map[String, MemberStatus] =
+    List(
+      MemberStatus.Joining,
+      MemberStatus.WeaklyUp,
+      MemberStatus.Up,
+      MemberStatus.Leaving,
+      MemberStatus.Exiting,
+      MemberStatus.Down,
+      MemberStatus.Removed,
+      MemberStatus.PreparingForShutdown,
+      MemberStatus.ReadyForShutdown).map(status => status.toString.toLowerCase -> status).toMap
+
+  /**
+   * The members selected by a request: the members with any of the roles, statuses and data centers, or all of them
+   * when none is given, after the `cursor` member and at most `limit` of them.
+   */
+  final case class Query(
+      roles: Set[String],
+      statuses: Set[MemberStatus],
+      dataCenters: Set[String],
+      cursor: Option[Address],
+      limit: Option[Int]) {
+
+    def isAll: Boolean = roles.isEmpty && statuses.isEmpty && dataCenters.isEmpty && cursor.isEmpty && limit.isEmpty
+
+    def matches(member: Member): Boolean =
+      (roles.isEmpty || member.roles.exists(roles)) &&
+      (statuses.isEmpty || statuses(member.status)) &&
+      (dataCenters.isEmpty || dataCenters(member.dataCenter))
+  }
+
+  object Query {
+
+    /** Parses the query parameters of a request, or returns the error message for a bad request. */
+    def parse(
+        roles: Iterable[String],
+        statuses: Iterable[String],
+        dataCenters: Iterable[String],
+        cursor: Option[String],
+        limit: Option[Int]): Either[String, Query] = {
+      val unknown = statuses.filterNot(status => Statuses.contains(status.toLowerCase))
+      if (unknown.nonEmpty) Left(s"Unknown member status [${unknown.mkString(", ")}]")
+      else if (limit.exists(_ <= 0)) Left("The limit must be greater than 0")
+      else
+        Try(cursor.map(AddressFromURIString.parse)) match {
+          case Success(address) =>
+            val memberStatuses = statuses.map(status => Statuses(status.toLowerCase)).toSet
+            Right(Query(roles.toSet, memberStatuses, dataCenters.toSet, address, limit))
+          case Failure(_) =>
+            Left(s"Invalid cursor [${cursor.getOrElse("")}]")
+        }
+    }
+  }
+
+  /** The response to a query, and the cursor for the next page if there are more members. */
+  final case class Page(entity: UniversalEntity, nextCursor: Option[Address])
+
+  private def json(value: String): ByteString = ByteString(JsString(value).compactPrint)
+}
+
+/**
+ * INTERNAL API
+ *
+ * The `/cluster/members` response for one version of the membership. Each member is encoded once, and the responses
+ * to all requests for that version are put together from the encoded members, without building the JSON of the whole
+ * response in one piece.
+ */
+@InternalApi
+private[cluster] final class ClusterMembersSnapshot(
+    selfNode: Address,
+    members: immutable.Seq[Member],
+    unreachable: immutable.Seq[ClusterUnreachableMember],
+    leader: Option[Address],
+    oldest: Option[Address],
+    oldestPerRole: Map[String, String]) {
+  import ClusterMembersSnapshot._
+
+  private val encodedMembers: Vector[(Member, ByteString)] =
+    members.toVector.sorted(Member.ordering).map { member =>
+      val clusterMember = ClusterHttpManagementHelper.memberToClusterMember(member)
+      member -> ByteString(clusterMemberFormat.write(clusterMember).compactPrint)
+    }
+
+  private val encodedUnreachable: Vector[(String, ByteString)] =
+    unreachable.iterator.map(u => u.node -> ByteString(clusterUnreachableMemberFormat.write(u).compactPrint)).toVector
+
+  private val start = ByteString("{\"selfNode\":") ++ json(selfNode.toString) ++ ByteString(",\"members\":[")
+
+  private val end = {
+    val fields =
+      leader.map(address => ByteString(",\"leader\":") ++ json(address.toString)).toList :::
+      oldest.map(address => ByteString(",\"oldest\":") ++ json(address.toString)).toList :::
+      List(ByteString(",\"oldestPerRole\":") ++ ByteString(JsObject(oldestPerRole.map {
+          case (role, address) => role -> JsString(address)
+        }).compactPrint))
+    fields.foldLeft(ByteString.empty)(_ ++ _) ++ ByteString("}")
+  }
+
+  private def chunks(members: Vector[ByteString], unreachable: Vector[ByteString]): List[ByteString] = {
+    def join(encoded: Vector[ByteString]): ByteString =
+      encoded.foldLeft(ByteString.empty)((joined, next) => if (joined.isEmpty) next else joined ++ Comma ++ next)
+
+    val memberChunks = members.grouped(MembersPerChunk).map(join).toList
+    val separated = memberChunks match {
+      case first :: rest => first :: rest.map(Comma ++ _)
+      case Nil           => Nil
+    }
+    start :: separated ::: List(ByteString("],\"unreachable\":[") ++ join(unreachable) ++ ByteString("]") ++ end)
+  }
+
+  private val all: List[ByteString] = chunks(encodedMembers.map(_._2), encodedUnreachable.map(_._2))
+
+  // the full response is streamed in chunks of members
+  private val allEntity: UniversalEntity =
+    HttpEntity(ContentTypes.`application/json`, all.iterator.map(_.length.toLong).sum, Source(all))
+
+  /** Identifies this version of the response, the same for all queries. */
+  val tag: EntityTag = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    all.foreach(_.asByteBuffers.foreach(digest.update))
+    EntityTag(digest.digest().take(8).map(b => f"$b%02x").mkString)
+  }
+
+  def page(query: Query): Page =
+    if (query.isAll) Page(allEntity, None)
+    else {
+      val matching = encodedMembers.filter { case (member, _) => query.matches(member) }
+      val afterCursor = query.cursor match {
+        case Some(cursor) =>
+          matching.dropWhile { case (member, _) => Member.addressOrdering.lteq(member.address, cursor) }
+        case None =>
+          matching
+      }
+      val (selected, rest) = afterCursor.splitAt(query.limit.getOrElse(Int.MaxValue))
+      val nextCursor = if (rest.isEmpty) None else selected.lastOption.map(_._1.address)
+
+      val addresses = selected.iterator.map(_._1.address.toString).toSet
+      val selectedUnreachable = encodedUnreachable.collect { case (node, encoded) if addresses(node) => encoded }
+      val encoded = chunks(selected.map(_._2), selectedUnreachable).foldLeft(ByteString.empty)(_ ++ _)
+      Page(HttpEntity(ContentTypes.`application/json`, encoded), nextCursor)
+    }
+}
@@ -17,15 +17,19 @@ import org.apache.pekko
 import pekko.actor.AddressFromURIString
 import pekko.cluster.sharding.{ ClusterSharding, ShardRegion }
 import pekko.cluster.{ Cluster, Member, MemberStatus }
+import pekko.cluster.ClusterEvent.CurrentClusterState
 import pekko.http.scaladsl.model.{ HttpMethod, HttpMethods, StatusCodes, Uri }
+import pekko.http.scaladsl.model.headers.{ Link, LinkParams }
 import Uri.Path
 import pekko.http.scaladsl.server.Route
 import pekko.management.cluster.{
-  ClusterDomainEventServerSentEventEncoder,
+  ClusterDomainEventHub,
   ClusterHttpManagementJsonProtocol,
   ClusterHttpManagementMemberOperation,
   ClusterHttpManagementMessage,
-  ClusterMembers,
+  ClusterHttpManagementSettings,
+  ClusterMembersSnapshot,
+  ClusterShardDetails,
   ClusterUnreachableMember,
   Down,
   Leave,
@@ -39,35 +43,76 @@ import pekko.pattern.AskTimeoutException
 import pekko.util.Timeout
 
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReference
 import scala.annotation.tailrec
+import scala.concurrent.{ ExecutionContext, Future }
 import scala.concurrent.duration._
+import scala.util.{ Failure, Success }
 
 object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
   import pekko.management.cluster.ClusterHttpManagementHelper._
   import pekko.http.scaladsl.server.Directives._
 
-  private def routeGetMembers(cluster: Cluster): Route =
-    get {
-      complete {
-        val readView = ClusterReadViewAccess.internalReadView(cluster)
-        val members = readView.state.members.map(memberToClusterMember)
-
-        val unreachable = readView.reachability.observersGroupedByUnreachable.toVector.sortBy(_._1).map {
-          case (subject, observers) =>
-            ClusterUnreachableMember(s"${subject.address}", observers.toVector.sorted.map(m => s"${m.address}"))
-        }
+  private final case class CachedMembers(state: CurrentClusterState, reachability: AnyRef,
+      snapshot: ClusterMembersSnapshot)
+
+  private final case class CachedShardingStats(expires: Deadline, stats: Future[ClusterShardDetails])
+
+  private def routeGetMembers(cluster: Cluster): Route = {
+    // the encoded response of the latest version of the membership, shared by the requests until it changes
+    val cache = new AtomicReference[Option[CachedMembers]](None)
+
+    def currentSnapshot(): ClusterMembersSnapshot = {
+      val readView = ClusterReadViewAccess.internalReadView(cluster)
+      val state = readView.state
+      val reachability = readView.reachability
+      cache.get() match {
+        case Some(cached) if (cached.state eq state) && (cached.reachability eq reachability) =>
+          cached.snapshot
+        case _ =>
+          val unreachable = reachability.observersGroupedByUnreachable.toVector.sortBy(_._1).map {
+            case (subject, observers) =>
+              ClusterUnreachableMember(s"${subject.address}", observers.toVector.sorted.map(m => s"${m.address}"))
+          }
 
-        val thisDcMembers =
-          cluster.state.members.toSeq.filter(node =>
-            node.status == MemberStatus.Up && node.dataCenter == cluster.selfDataCenter)
+          val thisDcMembers =
+            cluster.state.members.toSeq.filter(node =>
+              node.status == MemberStatus.Up && node.dataCenter == cluster.selfDataCenter)
 
-        val leader = readView.leader.map(_.toString)
+          val oldest = if (thisDcMembers.isEmpty) None else Some(thisDcMembers.min(Member.ageOrdering).address)
 
-        val oldest = if (thisDcMembers.isEmpty) None else Some(thisDcMembers.min(Member.ageOrdering).address.toString)
+          val snapshot = new ClusterMembersSnapshot(readView.selfAddress, state.members.toVector, unreachable,
+            readView.leader, oldest, oldestPerRole(thisDcMembers))
+          cache.set(Some(CachedMembers(state, reachability, snapshot)))
+          snapshot
+      }
+    }
 
-        ClusterMembers(s"${readView.selfAddress}", members, unreachable, leader, oldest, oldestPerRole(thisDcMembers))
+    get {
+      parameters("role".as[String].*, "status".as[String].*, "dc".as[String].*, "cursor".optional,
+        "limit".as[Int].optional) { (roles, statuses, dataCenters, cursor, limit) =>
+        ClusterMembersSnapshot.Query.parse(roles, statuses, dataCenters, cursor, limit) match {
+          case Left(error) =>
+            complete(StatusCodes.BadRequest -> ClusterHttpManagementMessage(error))
+          case Right(query) =>
+            val snapshot = currentSnapshot()
+            conditional(snapshot.tag) {
+              val page = snapshot.page(query)
+              extractUri { uri =>
+                val next = page.nextCursor.map { cursor =>
+                  val params = uri.query().filterNot(_._1 == "cursor") :+ ("cursor" -> cursor.toString)
+                  Link(uri.withQuery(Uri.Query(params: _*)), LinkParams.next)
+                }
+                respondWithHeaders(next.toList) {
+                  complete(page.entity)
+                }
+              }
+            }
+        }
       }
     }
+  }
 
   private def routePostMembers(cluster: Cluster): Route =
     post {
@@ -137,13 +182,9 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
   }
 
   private def routeGetClusterDomainEvents(cluster: Cluster) = {
-    import pekko.actor.ActorRef
     import pekko.cluster.ClusterEvent
-    import pekko.http.scaladsl.marshalling.sse.EventStreamMarshalling._
-    import pekko.http.scaladsl.model.sse.ServerSentEvent
-    import pekko.stream.{ Materializer, OverflowStrategy }
-    import pekko.stream.scaladsl.Source
-    import scala.concurrent.{ ExecutionContext, Promise }
+    import pekko.http.scaladsl.model.{ ContentType, HttpEntity, MediaTypes }
+    import pekko.http.scaladsl.model.headers.`Last-Event-ID`
 
     val eventClasses: Map[String, Class[?]] = Map(
       "ClusterDomainEvent" -> classOf[ClusterEvent.ClusterDomainEvent],
@@ -165,11 +206,9 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
       "UnreachableDataCenter" -> classOf[ClusterEvent.UnreachableDataCenter],
       "ReachableDataCenter" -> classOf[ClusterEvent.ReachableDataCenter])
 
-    extractMaterializer { implicit mat: Materializer =>
-      implicit val ec: ExecutionContext = mat.executionContext
-
-      get {
-        parameter("type".as[String].*) { providedEventTypes =>
+    get {
+      (parameter("type".as[String].*) & optionalHeaderValueByType(`Last-Event-ID`)) {
+        (providedEventTypes, lastEventId) =>
           val classes =
             if (providedEventTypes.nonEmpty)
               providedEventTypes.foldLeft(List.empty[Class[?]]) {
@@ -179,60 +218,12 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
             else
               List(classOf[ClusterEvent.ClusterDomainEvent])
 
-          val eventualActorRef = Promise[Option[ActorRef]]()
-
-          val clusterEvents = Source
-            .actorRef[ClusterEvent.ClusterDomainEvent](
-              completionMatcher = PartialFunction.empty,
-              failureMatcher = PartialFunction.empty,
-              bufferSize = 128,
-              overflowStrategy = OverflowStrategy.fail)
-            .map(ClusterDomainEventServerSentEventEncoder.encode)
-            .collect {
-              case Some(serverSentEvent) => serverSentEvent
-            }
-            .keepAlive(10.seconds, () => ServerSentEvent.heartbeat)
-            .mapMaterializedValue { actorRef =>
-              eventualActorRef.success(Some(actorRef))
-              ()
-            }
-            .watchTermination {
-              case (_, eventualDone) =>
-                eventualDone.onComplete { _ =>
-                  // the stream has terminated, so complete the promise if it isn't already, and
-                  // then unsubscribe if previously subscribed
-
-                  val _ = eventualActorRef.trySuccess(None)
-
-                  eventualActorRef.future.foreach {
-                    case Some(actorRef) =>
-                      if (classes.nonEmpty) {
-                        cluster.unsubscribe(actorRef)
-                      }
-
-                    case None =>
-                  }
-                }
-            }
-
-          eventualActorRef.future.foreach {
-            case Some(actorRef) =>
-              if (classes.nonEmpty) {
-                cluster.subscribe(
-                  actorRef,
-                  initialStateMode = ClusterEvent.InitialStateAsEvents,
-                  classes: _*)
-              }
-
-            case None =>
-          }
-
-          complete(clusterEvents)
-        }
+          // one subscription to the cluster events is shared by all clients, see ClusterDomainEventHub
+          val clusterEvents = ClusterDomainEventHub(cluster.system).events(classes, lastEventId.map(_.id))
 
+          complete(HttpEntity(ContentType(MediaTypes.`text/event-stream`), clusterEvents))
       }
     }
-
   }
 
   private def routeGetShardTypeNames(cluster: Cluster) =
@@ -268,11 +259,65 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
       }
     }
 
+  private def routeGetClusterShardingStats(cluster: Cluster): Route = {
+    // the latest statistics of each shard region, shared by the requests within the cache time to live, so that
+    // frequent requests don't query all nodes each time
+    val cache = new ConcurrentHashMap[String, CachedShardingStats]
+    lazy val settings = new ClusterHttpManagementSettings(cluster.system.settings.config)
+
+    def clusterShardingStats(shardRegionName: String)(
+        implicit executor: ExecutionContext): Future[ClusterShardDetails] = {
+      val timeout = settings.shardStatsTimeout
+
+      def query(): CachedShardingStats = {
+        val stats = ClusterSharding(cluster.system)
+          .shardRegion(shardRegionName)
+          // the regions of the other nodes are given the timeout, the ask waits a bit longer for their replies
+          .ask(ShardRegion.GetClusterShardingStats(timeout))(Timeout(timeout + 1.second))
+          .mapTo[ShardRegion.ClusterShardingStats]
+          .map(stats => clusterShardDetails(stats.regions))
+        CachedShardingStats(Deadline.now + settings.shardStatsCacheTimeToLive, stats)
+      }
+
+      val cached = cache.compute(
+        shardRegionName,
+        (_, previous) =>
+          if (previous != null && (previous.expires.hasTimeLeft() || !previous.stats.isCompleted)) previous
+          else query())
+      // failures are not cached
+      cached.stats.failed.foreach(_ => cache.remove(shardRegionName, cached))
+      cached.stats
+    }
+
+    (pathPrefix("shard-stats" / Remaining) & get) { shardRegionName =>
+      extractExecutionContext { implicit executor =>
+        try {
+          onComplete(clusterShardingStats(shardRegionName)) {
+            case Success(details) =>
+              complete(details)
+            case Failure(_: AskTimeoutException) =>
+              complete(StatusCodes.NotFound -> ClusterHttpManagementMessage(
+                s"Shard Region $shardRegionName not responding, may have been terminated"))
+            case Failure(exception) =>
+              failWith(exception)
+          }
+        } catch {
+          case _: IllegalArgumentException | _: IllegalStateException =>
+            complete(
+              StatusCodes.NotFound -> ClusterHttpManagementMessage(s"Shard Region $shardRegionName is not started"))
+        }
+      }
+    }
+  }
+
   /**
    * Creates an instance of [[ClusterHttpManagementRoutes]] to manage the specified
    * [[pekko.cluster.Cluster]] instance. This version does not provide Basic Authentication.
    */
-  def apply(cluster: Cluster): Route =
+  def apply(cluster: Cluster): Route = {
+    // created once, outside of the directives that are evaluated for each request, so that they share their caches
+    val getMembers = routeGetMembers(cluster)
+    val getClusterShardingStats = routeGetClusterShardingStats(cluster)
     pathPrefix("cluster") {
       concat(
         pathEndOrSingleSlash {
@@ -281,7 +326,7 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
         pathPrefix("members") {
           concat(
             pathEndOrSingleSlash {
-              routeGetMembers(cluster) ~ routePostMembers(cluster)
+              getMembers ~ routePostMembers(cluster)
             },
             routeFindMember(cluster, readOnly = false))
         },
@@ -293,8 +338,10 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
         },
         pathPrefix("shards" / Remaining) { shardRegionName =>
           routeGetShardInfo(cluster, shardRegionName)
-        })
+        },
+        getClusterShardingStats)
     }
+  }
 
   private def routePutCluster(cluster: Cluster): Route = {
     put {
@@ -313,10 +360,12 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
    * Creates an instance of [[ClusterHttpManagementRoutes]] with only the read only routes.
    */
   def readOnly(cluster: Cluster): Route = {
+    val getMembers = routeGetMembers(cluster)
+    val getClusterShardingStats = routeGetClusterShardingStats(cluster)
     concat(
       pathPrefix("cluster" / "members") {
         concat(pathEndOrSingleSlash {
-            routeGetMembers(cluster)
+            getMembers
           }, routeFindMember(cluster, readOnly = true))
       },
       pathPrefix("cluster" / "domain-events") {
@@ -324,6 +373,9 @@ object ClusterHttpManagementRoutes extends ClusterHttpManagementJsonProtocol {
       },
       pathPrefix("cluster" / "shards" / Remaining) { shardRegionName =>
         routeGetShardInfo(cluster, shardRegionName)
+      },
+      pathPrefix("cluster") {
+        getClusterShardingStats
       })
   }
 
@@ -26,7 +26,8 @@ import pekko.cluster.http.management.scaladsl.ClusterHttpManagementRoutesSpec.Te
 import pekko.cluster.sharding.{ ClusterSharding, ClusterShardingSettings, ShardRegion }
 import pekko.http.scaladsl.Http
 import pekko.http.scaladsl.model._
-import pekko.http.scaladsl.testkit.ScalatestRouteTest
+import pekko.http.scaladsl.server.Route
+import pekko.http.scaladsl.testkit.{ RouteTestTimeout, ScalatestRouteTest }
 import pekko.http.scaladsl.unmarshalling.Unmarshal
 import pekko.management.cluster.scaladsl.ClusterHttpManagementRoutes
 import pekko.management.cluster._
@@ -118,6 +119,112 @@ class ClusterHttpManagementRoutesSpec
       }
     }
 
+    "return pages of members filtered by role, status and data center" when {
+      "calling GET /cluster/members with query parameters" in {
+        val addresses = (1 to 3).map(n => Address("pekko", "Main", s"hostname$n.com", 3311))
+        val member1 = new Member(UniqueAddress(addresses(0), 1L), 1, Up, Set("dc-one", "a"), version)
+        val member2 = new Member(UniqueAddress(addresses(1), 2L), 2, Up, Set("dc-one", "b"), version)
+        val member3 = new Member(UniqueAddress(addresses(2), 3L), 3, Joining, Set("dc-two", "a"), version)
+        val currentClusterState =
+          CurrentClusterState(SortedSet(member1, member2, member3), leader = Some(addresses(0)))
+
+        val mockedCluster = mock(classOf[Cluster])
+        val mockedClusterReadView = mock(classOf[ClusterReadView])
+        val mockedReachability = mock(classOf[Reachability])
+
+        when(mockedCluster.readView).thenReturn(mockedClusterReadView)
+        when(mockedCluster.state).thenReturn(currentClusterState)
+        when(mockedCluster.selfDataCenter).thenReturn("one")
+        when(mockedClusterReadView.state).thenReturn(currentClusterState)
+        when(mockedClusterReadView.selfAddress).thenReturn(addresses(0))
+        when(mockedClusterReadView.leader).thenReturn(Some(addresses(0)))
+        when(mockedClusterReadView.reachability).thenReturn(mockedReachability)
+        when(mockedReachability.observersGroupedByUnreachable)
+          .thenReturn(Map(member3.uniqueAddress -> Set(member1.uniqueAddress)))
+
+        val routes = ClusterHttpManagementRoutes(mockedCluster)
+        def nodes(members: ClusterMembers): List[String] = members.members.toList.sorted.map(_.node)
+
+        val nextPage = Get("/cluster/members?limit=2") ~> routes ~> check {
+          status shouldEqual StatusCodes.OK
+          val members = responseAs[ClusterMembers]
+          nodes(members) shouldEqual addresses.take(2).map(_.toString)
+          members.unreachable shouldBe empty
+          members.leader shouldEqual Some(addresses(0).toString)
+          header[headers.Link].get.values.head.uri
+        }
+        nextPage.query().get("cursor") shouldEqual Some(addresses(1).toString)
+
+        Get(nextPage) ~> routes ~> check {
+          val members = responseAs[ClusterMembers]
+          nodes(members) shouldEqual List(addresses(2).toString)
+          members.unreachable.map(_.node) shouldEqual List(addresses(2).toString)
+          header[headers.Link] shouldBe empty
+        }
+
+        Get("/cluster/members?role=a&status=up") ~> routes ~> check {
+          nodes(responseAs[ClusterMembers]) shouldEqual List(addresses(0).toString)
+        }
+        Get("/cluster/members?dc=two") ~> routes ~> check {
+          nodes(responseAs[ClusterMembers]) shouldEqual List(addresses(2).toString)
+        }
+        Get("/cluster/members?status=Unknown") ~> routes ~> check {
+          status shouldEqual StatusCodes.BadRequest
+        }
+
+        val etag = Get("/cluster/members") ~> routes ~> check {
+          nodes(responseAs[ClusterMembers]) shouldEqual addresses.map(_.toString)
+          header[headers.ETag].get.etag
+        }
+        Get("/cluster/members?limit=1") ~> addHeader(headers.`If-None-Match`(etag)) ~> routes ~> check {
+          status shouldEqual StatusCodes.NotModified
+        }
+      }
+    }
+
+    "reuse the snapshot of the membership until it changes" when {
+      "calling GET /cluster/members several times" in {
+        val address1 = Address("pekko", "Main", "hostname.com", 3311)
+        val member1 = new Member(UniqueAddress(address1, 1L), 1, Up, Set("dc-one"), version)
+        val currentClusterState = CurrentClusterState(SortedSet(member1), leader = Some(address1))
+
+        def mockedCluster(): (Cluster, Reachability) = {
+          val mockedCluster = mock(classOf[Cluster])
+          val mockedClusterReadView = mock(classOf[ClusterReadView])
+          val mockedReachability = mock(classOf[Reachability])
+
+          when(mockedCluster.readView).thenReturn(mockedClusterReadView)
+          when(mockedCluster.state).thenReturn(currentClusterState)
+          when(mockedCluster.selfDataCenter).thenReturn("one")
+          when(mockedClusterReadView.state).thenReturn(currentClusterState)
+          when(mockedClusterReadView.selfAddress).thenReturn(address1)
+          when(mockedClusterReadView.leader).thenReturn(Some(address1))
+          when(mockedClusterReadView.reachability).thenReturn(mockedReachability)
+          when(mockedReachability.observersGroupedByUnreachable)
+            .thenReturn(Map.empty[UniqueAddress, Set[UniqueAddress]])
+          (mockedCluster, mockedReachability)
+        }
+
+        val (cluster, reachability) = mockedCluster()
+        val routes = ClusterHttpManagementRoutes(cluster)
+        (1 to 2).foreach { _ =>
+          Get("/cluster/members") ~> routes ~> check {
+            status shouldEqual StatusCodes.OK
+          }
+        }
+        verify(reachability, times(1)).observersGroupedByUnreachable
+
+        val (readOnlyCluster, readOnlyReachability) = mockedCluster()
+        val readOnlyRoutes = ClusterHttpManagementRoutes.readOnly(readOnlyCluster)
+        (1 to 2).foreach { _ =>
+          Get("/cluster/members") ~> readOnlyRoutes ~> check {
+            status shouldEqual StatusCodes.OK
+          }
+        }
+        verify(readOnlyReachability, times(1)).observersGroupedByUnreachable
+      }
+    }
+
     "join a member" when {
       "calling POST /cluster/members with form field 'memberAddress'" in {
         val address = "pekko.tcp://Main@hostname.com:3311"
@@ -461,6 +568,66 @@ class ClusterHttpManagementRoutesSpec
       }
     }
 
+    "query the shard regions once within the cache time to live" when {
+
+      "calling GET /cluster/shard-stats/{name} several times" in {
+        import pekko.pattern.ask
+
+        import scala.concurrent.duration._
+
+        val config = ConfigFactory.parseString(
+          """
+            |pekko.cluster {
+            |  auto-down-unreachable-after = 0s
+            |  periodic-tasks-initial-delay = 120 seconds // turn off scheduled tasks
+            |  publish-stats-interval = 0 s # always, when it happens
+            |  failure-detector.implementation-class = org.apache.pekko.cluster.FailureDetectorPuppet
+            |  sharding.state-store-mode = ddata
+            |}
+            |pekko.actor.provider = "cluster"
+            |pekko.remote.log-remote-lifecycle-events = off
+            |pekko.remote.netty.tcp.port = 0
+            |pekko.remote.artery.canonical.port = 0
+            |pekko.management.cluster.shard-stats.cache-time-to-live = 1 hour
+           """.stripMargin)
+
+        implicit val system: ActorSystem = ActorSystem("test", config)
+        val cluster = Cluster(system)
+        val selfAddress = system.asInstanceOf[ExtendedActorSystem].provider.getDefaultAddress
+        cluster.join(selfAddress)
+        cluster.clusterCore ! LeaderActionsTick
+
+        val name = "TestShardRegion"
+        val shardRegion = ClusterSharding(system).start(
+          name,
+          TestShardedActor.props,
+          ClusterShardingSettings(system),
+          TestShardedActor.extractEntityIdFromEnvelope,
+          TestShardedActor.extractShardIdFromEnvelope)
+
+        implicit val t: ScalatestTimeout = ScalatestTimeout(5.seconds)
+        implicit val routeTimeout: RouteTestTimeout = RouteTestTimeout(5.seconds)
+
+        shardRegion.ask("1" -> "hello")(Timeout(3.seconds)).mapTo[String].futureValue(t)
+
+        def numEntities(routes: Route): Int =
+          Get(s"/cluster/shard-stats/$name") ~> routes ~> check {
+            status shouldEqual StatusCodes.OK
+            responseAs[ClusterShardDetails].summary.numEntities
+          }
+
+        val routes = ClusterHttpManagementRoutes(cluster)
+        numEntities(routes) shouldEqual 1
+
+        // the entity started after the first query is only seen by a new query
+        shardRegion.ask("2" -> "hello")(Timeout(3.seconds)).mapTo[String].futureValue(t)
+        numEntities(routes) shouldEqual 1
+        numEntities(ClusterHttpManagementRoutes(cluster)) shouldEqual 2
+
+        system.terminate()
+      }
+    }
+
     "return cluster domain events" when {
 
       "calling GET /cluster/domain-events" in {
@@ -535,6 +702,12 @@ object ClusterHttpManagementRoutesSpec {
     def extractEntityId: ShardRegion.ExtractEntityId = {
       case m: Any => ("1", m)
     }
+    def extractShardIdFromEnvelope: ShardRegion.ExtractShardId = {
+      case (id: String, _) => s"Shard-$id"
+    }
+    def extractEntityIdFromEnvelope: ShardRegion.ExtractEntityId = {
+      case (id: String, m) => (id, m)
+    }
   }
   class TestShardedActor() extends Actor {
     def receive: Receive = {
@@ -19,7 +19,8 @@ import org.apache.pekko
 import pekko.actor.Address
 import pekko.cluster.MemberStatus._
 import pekko.cluster.{ Member, UniqueAddress }
-import pekko.management.cluster.ClusterHttpManagementHelper
+import pekko.cluster.sharding.ShardRegion
+import pekko.management.cluster.{ ClusterHttpManagementHelper, ClusterShardingStatsSummary, ShardRegionInfo }
 import pekko.util.Version
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
@@ -55,4 +56,37 @@ class ClusterHttpManagementHelperSpec extends AnyWordSpec with Matchers {
     }
   }
 
+  "Cluster shard details" must {
+    "order the regions and shards, and summarize them" in {
+      val address1 = Address("pekko", "Main", "hostname.com", 3311)
+      val address2 = Address("pekko", "Main", "hostname2.com", 3311)
+      val address3 = Address("pekko", "Main", "hostname3.com", 3311)
+
+      val details = ClusterHttpManagementHelper.clusterShardDetails(
+        Map(
+          address3 -> new ShardRegion.ShardRegionStats(Map.empty, Set("4", "3")),
+          address1 -> new ShardRegion.ShardRegionStats(Map("2" -> 10, "1" -> 20), Set.empty),
+          address2 -> new ShardRegion.ShardRegionStats(Map("5" -> 15), Set.empty)))
+
+      details.regions.map(_.node) shouldEqual List(address1.toString, address2.toString, address3.toString)
+      details.regions.head.shards shouldEqual List(ShardRegionInfo("1", 20), ShardRegionInfo("2", 10))
+      details.regions.head.numEntities shouldEqual 30
+      details.regions(2).failedShards shouldEqual List("3", "4")
+      // 45 entities, 15 per region on average, 30 in the region with the most
+      details.summary shouldEqual ClusterShardingStatsSummary(
+        numRegions = 3,
+        numShards = 3,
+        numEntities = 45,
+        minShards = 0,
+        maxShards = 2,
+        minEntities = 0,
+        maxEntities = 30,
+        entitySkew = 1.0)
+    }
+
+    "summarize no regions" in {
+      ClusterHttpManagementHelper.clusterShardDetails(Map.empty).summary shouldEqual
+      ClusterShardingStatsSummary(0, 0, 0, 0, 0, 0, 0, 0.0)
+    }
+  }
 }
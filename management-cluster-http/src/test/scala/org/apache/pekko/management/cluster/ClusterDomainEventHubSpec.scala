@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.cluster
+
+import scala.concurrent.{ Future, Promise }
+
+import org.apache.pekko
+import pekko.Done
+import pekko.actor.ActorSystem
+import pekko.cluster.{ Cluster, ClusterEvent, MemberStatus }
+import pekko.stream.scaladsl.Sink
+import pekko.testkit.TestKit
+import pekko.util.ByteString
+import com.typesafe.config.ConfigFactory
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.time.{ Millis, Seconds, Span }
+import org.scalatest.wordspec.AnyWordSpecLike
+
+object ClusterDomainEventHubSpec {
+  final case class Event(eventType: String, id: String, data: String)
+
+  def parse(bytes: ByteString): Event = {
+    val fields = bytes.utf8String.split('\n').iterator.map(_.split(":", 2)).collect {
+      case Array(field, value) => field -> value
+    }.toMap
+    Event(fields("event"), fields("id"), fields("data"))
+  }
+
+  val config = ConfigFactory.parseString("""
+    pekko.actor.provider = cluster
+    pekko.remote.artery.canonical.hostname = 127.0.0.1
+    pekko.remote.artery.canonical.port = 0
+    pekko.management.cluster.domain-events.client-buffer-size = 1
+    """)
+}
+
+class ClusterDomainEventHubSpec
+    extends TestKit(ActorSystem("ClusterDomainEventHubSpec", ClusterDomainEventHubSpec.config))
+    with AnyWordSpecLike
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with BeforeAndAfterAll {
+  import ClusterDomainEventHubSpec._
+
+  override implicit val patienceConfig: PatienceConfig =
+    PatienceConfig(timeout = Span(10, Seconds), interval = Span(100, Millis))
+
+  private val cluster = Cluster(system)
+  private val hub = ClusterDomainEventHub(system)
+  private val all = List(classOf[ClusterEvent.ClusterDomainEvent])
+
+  private var other: Option[ActorSystem] = None
+
+  override protected def afterAll(): Unit = {
+    other.foreach(TestKit.shutdownActorSystem(_))
+    TestKit.shutdownActorSystem(system)
+  }
+
+  private def events(classes: List[Class[?]], lastEventId: Option[String], n: Int): Future[Seq[Event]] =
+    hub.events(classes, lastEventId).take(n.toLong).map(parse).runWith(Sink.seq)
+
+  "ClusterDomainEventHub" should {
+
+    "send the current state as events to new clients, and the events after a Last-Event-ID to resuming clients" in {
+      cluster.join(cluster.selfAddress)
+      eventually(cluster.selfMember.status shouldEqual MemberStatus.Up)
+
+      val state = eventually {
+        val state = events(List(classOf[ClusterEvent.MemberUp], classOf[ClusterEvent.LeaderChanged]), None, 2)
+          .futureValue
+        state.map(_.eventType) shouldEqual List("MemberUp", "LeaderChanged")
+        state
+      }
+      state.map(_.id).distinct.size shouldEqual 1
+      val lastEventId = state.last.id
+
+      val otherSystem = ActorSystem(system.name, config)
+      other = Some(otherSystem)
+      Cluster(otherSystem).join(cluster.selfAddress)
+
+      val resumed = events(List(classOf[ClusterEvent.MemberEvent]), Some(lastEventId), 2).futureValue
+      resumed.map(_.eventType) shouldEqual List("MemberJoined", "MemberUp")
+      resumed.foreach(_.data should include(Cluster(otherSystem).selfAddress.toString))
+      resumed.map(_.id).distinct.size shouldEqual 2
+      resumed.foreach(_.id should not equal lastEventId)
+
+      // the state is sent again when the Last-Event-ID is unknown
+      events(List(classOf[ClusterEvent.MemberUp]), Some("unknown.1"), 2).futureValue.map(_.eventType) shouldEqual
+      List("MemberUp", "MemberUp")
+    }
+
+    "disconnect a client that falls behind by more than its buffer" in {
+      val otherSystem = other.get
+      // the client does not read on after the first event, the events of the other node leaving overflow its buffer
+      val blocked = Promise[Unit]()
+      val slowClient = hub.events(all, None).runWith(Sink.foreachAsync(1)(_ => blocked.future))
+
+      Cluster(otherSystem).leave(Cluster(otherSystem).selfAddress)
+      eventually(cluster.state.members.map(_.address) shouldEqual Set(cluster.selfAddress))
+
+      blocked.success(())
+      slowClient.futureValue shouldEqual Done
+    }
+  }
+}
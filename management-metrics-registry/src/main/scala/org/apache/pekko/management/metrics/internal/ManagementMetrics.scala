@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.metrics.internal
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+import scala.collection.immutable
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.jdk.CollectionConverters._
+import scala.util.{ Failure, Success }
+
+import org.apache.pekko
+import pekko.actor.{ ActorSystem, ClassicActorSystemProvider, ExtendedActorSystem, Extension, ExtensionId }
+import pekko.actor.ExtensionIdProvider
+import pekko.annotation.InternalApi
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object ManagementMetrics extends ExtensionId[ManagementMetrics] with ExtensionIdProvider {
+
+  override def lookup: ManagementMetrics.type = ManagementMetrics
+
+  override def get(system: ActorSystem): ManagementMetrics = super.get(system)
+
+  override def get(system: ClassicActorSystemProvider): ManagementMetrics = super.get(system)
+
+  override def createExtension(system: ExtendedActorSystem): ManagementMetrics = new ManagementMetrics
+
+  type Labels = immutable.Seq[(String, String)]
+
+  val CounterType = "counter"
+  val GaugeType = "gauge"
+  val HistogramType = "histogram"
+  val SummaryType = "summary"
+
+  /** The upper bounds of the buckets of the latency histograms, in seconds. */
+  val LatencyBuckets: immutable.IndexedSeq[Double] =
+    Vector(0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0)
+
+  /** The upper bounds of the buckets of the size histograms, e.g. of the number of addresses of a lookup. */
+  val SizeBuckets: immutable.IndexedSeq[Double] =
+    Vector(0.0, 1.0, 2.0, 3.0, 5.0, 10.0, 25.0, 50.0, 100.0, 250.0, 500.0, 1000.0)
+
+  private val NamePattern = "[a-zA-Z_:][a-zA-Z0-9_:]*".r
+
+  /**
+   * The values of the metrics with one name at the time they are collected.
+   *
+   * @param name the name of the metric, without the `_total` suffix of counters
+   * @param metricType one of the type constants in this object
+   */
+  final case class MetricFamily(name: String, help: String, metricType: String, samples: immutable.Seq[Sample])
+
+  /**
+   * @param suffix appended to the name of the family, e.g. `_total` or `_bucket`
+   */
+  final case class Sample(suffix: String, labels: Labels, value: Double)
+
+  /**
+   * A counter that is incremented from any thread without contention.
+   */
+  final class Counter private[ManagementMetrics] () {
+    private val adder = new LongAdder
+
+    def increment(): Unit = adder.increment()
+
+    def add(n: Long): Unit = adder.add(n)
+
+    def value: Long = adder.sum()
+  }
+
+  /**
+   * A histogram with fixed buckets, recorded from any thread without contention and without allocating.
+   *
+   * @param scale the recorded values per unit of the bucket bounds, e.g. `1e9` for latencies recorded in nanoseconds
+   *              and exposed in seconds
+   */
+  final class Histogram private[ManagementMetrics] (val bucketBounds: immutable.IndexedSeq[Double], scale: Double) {
+    private val scaledBounds: Array[Long] = bucketBounds.map(bound => (bound * scale).toLong).toArray
+    // the last bucket counts the values above the highest bound
+    private val counts: Array[LongAdder] = Array.fill(scaledBounds.length + 1)(new LongAdder)
+    private val scaledSum = new LongAdder
+
+    /** Records a value in the scale of this histogram, e.g. a number of addresses. */
+    def record(value: Long): Unit = {
+      var i = 0
+      while (i < scaledBounds.length && value > scaledBounds(i)) i += 1
+      counts(i).increment()
+      scaledSum.add(value)
+    }
+
+    /** Records a latency, in a histogram of the [[LatencyBuckets]]. */
+    def recordNanos(nanos: Long): Unit = record(nanos)
+
+    /** The number of values up to each bound, and the number of all of them last. */
+    def cumulativeCounts: immutable.IndexedSeq[Long] =
+      counts.iterator.map(_.sum()).scanLeft(0L)(_ + _).drop(1).toVector
+
+    /** The sum of the values, in the unit of the bucket bounds. */
+    def sum: Double = scaledSum.sum() / scale
+  }
+
+  /**
+   * The metrics of the lookups of one service discovery method: how long they took, by outcome, and how many
+   * addresses they resolved.
+   */
+  final class DiscoveryLookupMetrics private[ManagementMetrics] (metrics: ManagementMetrics, method: String) {
+    private val resolved = duration("resolved")
+    private val failed = duration("failed")
+    private val addresses = metrics.sizeHistogram(
+      "pekko_management_discovery_lookup_addresses",
+      "The number of addresses that a service discovery lookup resolved",
+      "method" -> method)
+
+    private def duration(outcome: String): Histogram =
+      metrics.histogram(
+        "pekko_management_discovery_lookup_duration_seconds",
+        "The time until a service discovery lookup completed",
+        "method" -> method,
+        "outcome" -> outcome)
+
+    /**
+     * Records the lookup that was started at the given `System.nanoTime` when it completes.
+     *
+     * @param addressCount the number of addresses that the lookup resolved
+     * @return the lookup
+     */
+    def record[T](startNanos: Long, lookup: Future[T])(addressCount: T => Int): Future[T] = {
+      lookup.onComplete {
+        case Success(result) =>
+          resolved.recordNanos(System.nanoTime() - startNanos)
+          addresses.record(addressCount(result))
+        case Failure(_) =>
+          failed.recordNanos(System.nanoTime() - startNanos)
+      }(ExecutionContext.parasitic)
+      lookup
+    }
+  }
+
+  private final class Family(val help: String, val metricType: String) {
+    val children = new ConcurrentHashMap[Labels, AnyRef]
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * The counters and histograms that the management, discovery, lease and rolling update modules update while they
+ * run, to be exposed by the metrics endpoint of pekko-management-metrics. This module only depends on pekko-actor, so
+ * that all of them can record their metrics without depending on pekko-management. The metrics are looked up once, when a component is created, and updated on the hot paths without
+ * locking or allocating.
+ */
+@InternalApi
+private[pekko] final class ManagementMetrics extends Extension {
+  import ManagementMetrics._
+
+  private val families = new ConcurrentHashMap[String, Family]
+
+  /**
+   * The counter with the given name and labels, created on first use.
+   *
+   * @param name the name of the metric, without the `_total` suffix
+   */
+  def counter(name: String, help: String, labels: (String, String)*): Counter =
+    child(name, help, CounterType, labels.toList, () => new Counter).asInstanceOf[Counter]
+
+  /**
+   * The latency histogram with the given name and labels, created on first use, with the [[LatencyBuckets]].
+   *
+   * @param name the name of the metric, in seconds by convention, e.g. `..._duration_seconds`
+   */
+  def histogram(name: String, help: String, labels: (String, String)*): Histogram =
+    child(name, help, HistogramType, labels.toList, () => new Histogram(LatencyBuckets, 1e9)).asInstanceOf[Histogram]
+
+  /**
+   * The size histogram with the given name and labels, created on first use, with the [[SizeBuckets]].
+   */
+  def sizeHistogram(name: String, help: String, labels: (String, String)*): Histogram =
+    child(name, help, HistogramType, labels.toList, () => new Histogram(SizeBuckets, 1.0)).asInstanceOf[Histogram]
+
+  /**
+   * The metrics of the lookups of the given service discovery method, e.g. `kubernetes-api`.
+   */
+  def discoveryLookups(method: String): DiscoveryLookupMetrics =
+    new DiscoveryLookupMetrics(this, method)
+
+  private def child(name: String, help: String, metricType: String, labels: Labels, create: () => AnyRef): AnyRef = {
+    require(NamePattern.pattern.matcher(name).matches(), s"Invalid metric name [$name]")
+    labels.foreach {
+      case (label, _) => require(NamePattern.pattern.matcher(label).matches(), s"Invalid label name [$label]")
+    }
+    val family = families.computeIfAbsent(name, _ => new Family(help, metricType))
+    require(
+      family.metricType == metricType,
+      s"Metric [$name] is a [${family.metricType}], it can't be used as a [$metricType]")
+    family.children.computeIfAbsent(labels, _ => create())
+  }
+
+  /** The current values of all metrics, ordered by name. */
+  def collect(): immutable.Seq[MetricFamily] =
+    families.asScala.toList.sortBy(_._1).map {
+      case (name, family) =>
+        val children = family.children.asScala.toList.sortBy(_._1.toString)
+        val samples = children.flatMap {
+          case (labels, counter: Counter) =>
+            List(Sample("_total", labels, counter.value.toDouble))
+          case (labels, histogram: Histogram) =>
+            val counts = histogram.cumulativeCounts
+            val bounds = histogram.bucketBounds.map(_.toString) :+ "+Inf"
+            bounds.zip(counts).map {
+              case (bound, count) => Sample("_bucket", labels :+ ("le" -> bound), count.toDouble)
+            } ++
+            List(Sample("_count", labels, counts.last.toDouble), Sample("_sum", labels, histogram.sum))
+          case (_, other) =>
+            throw new IllegalStateException(s"Unknown metric [$other]")
+        }
+        MetricFamily(name, family.help, family.metricType, samples)
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.metrics.internal
+
+import scala.concurrent.{ Future, Promise }
+
+import org.apache.pekko.management.metrics.internal.ManagementMetrics.{ HistogramType, Sample }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class ManagementMetricsSpec extends AnyWordSpec with Matchers {
+
+  private def samples(metrics: ManagementMetrics, name: String): Seq[Sample] =
+    metrics.collect().find(_.name == name).map(_.samples).getOrElse(Nil)
+
+  "ManagementMetrics" should {
+
+    "count the values of a size histogram per bucket" in {
+      val metrics = new ManagementMetrics
+      val sizes = metrics.sizeHistogram("test_sizes", "Sizes")
+      sizes.record(0)
+      sizes.record(3)
+      sizes.record(4)
+      sizes.record(2000)
+
+      val family = metrics.collect().find(_.name == "test_sizes").get
+      family.metricType shouldEqual HistogramType
+      family.samples should contain allOf (
+        Sample("_bucket", List("le" -> "0.0"), 1),
+        Sample("_bucket", List("le" -> "3.0"), 2),
+        Sample("_bucket", List("le" -> "5.0"), 3),
+        Sample("_bucket", List("le" -> "1000.0"), 3),
+        Sample("_bucket", List("le" -> "+Inf"), 4),
+        Sample("_count", Nil, 4),
+        Sample("_sum", Nil, 2007))
+    }
+
+    "record the discovery lookups when they complete" in {
+      val metrics = new ManagementMetrics
+      val lookups = metrics.discoveryLookups("test")
+      val resolved = Promise[Seq[String]]()
+      lookups.record(System.nanoTime(), resolved.future)(_.size)
+      lookups.record(System.nanoTime(), Future.failed[Seq[String]](new RuntimeException("failed")))(_.size)
+
+      samples(metrics, "pekko_management_discovery_lookup_addresses") should contain(
+        Sample("_count", List("method" -> "test"), 0))
+      resolved.success(List("a", "b"))
+
+      samples(metrics, "pekko_management_discovery_lookup_addresses") should contain allOf (
+        Sample("_count", List("method" -> "test"), 1),
+        Sample("_sum", List("method" -> "test"), 2))
+      samples(metrics, "pekko_management_discovery_lookup_duration_seconds") should contain allOf (
+        Sample("_count", List("method" -> "test", "outcome" -> "resolved"), 1),
+        Sample("_count", List("method" -> "test", "outcome" -> "failed"), 1))
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.metrics
+
+import scala.collection.immutable
+
+import org.apache.pekko
+import pekko.actor.ExtendedActorSystem
+import pekko.annotation.InternalApi
+import pekko.kubernetes.client.KubernetesApiClient
+import pekko.management.metrics.internal.ManagementMetrics.{ CounterType, GaugeType, MetricFamily, Sample, SummaryType }
+
+/**
+ * INTERNAL API
+ *
+ * The requests of the lease, discovery and rolling update modules to the Kubernetes API server, per HTTP method and
+ * resource, as measured by the [[KubernetesApiClient]] that they share.
+ */
+@InternalApi
+private[metrics] object KubernetesApiMetrics {
+
+  /** Nothing when the client has not been used, without starting it. */
+  def collect(system: ExtendedActorSystem): immutable.Seq[MetricFamily] =
+    if (!system.hasExtension(KubernetesApiClient)) Nil
+    else {
+      val stats = KubernetesApiClient(system).stats()
+      def labels(s: KubernetesApiClient.RequestStats) = List("method" -> s.method, "resource" -> s.resource)
+
+      List(
+        MetricFamily(
+          "pekko_management_kubernetes_api_request_duration_seconds",
+          "The time until the Kubernetes API server responded",
+          SummaryType,
+          stats.flatMap { s =>
+            List(
+              Sample("_count", labels(s), s.requests.toDouble),
+              Sample("_sum", labels(s), s.totalLatency.toNanos / 1e9))
+          }),
+        MetricFamily(
+          "pekko_management_kubernetes_api_request_duration_max_seconds",
+          "The longest time until the Kubernetes API server responded",
+          GaugeType,
+          stats.map(s => Sample("", labels(s), s.maxLatency.toNanos / 1e9))),
+        MetricFamily(
+          "pekko_management_kubernetes_api_request_failures",
+          "The requests to the Kubernetes API server that failed, or were answered with a server error",
+          CounterType,
+          stats.map(s => Sample("_total", labels(s), s.failures.toDouble))),
+        MetricFamily(
+          "pekko_management_kubernetes_api_requests_in_flight",
+          "The requests to the Kubernetes API server waiting for their response",
+          GaugeType,
+          stats.map(s => Sample("", labels(s), s.inFlight.toDouble))))
+    }
+}
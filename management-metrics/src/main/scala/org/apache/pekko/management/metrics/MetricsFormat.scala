@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.metrics
+
+import scala.collection.immutable
+
+import org.apache.pekko
+import pekko.annotation.InternalApi
+import pekko.http.scaladsl.model.{ ContentType, HttpCharsets, MediaRange, MediaType, MediaTypes }
+import pekko.http.scaladsl.model.headers.Accept
+import pekko.management.metrics.internal.ManagementMetrics.{ CounterType, MetricFamily }
+
+/**
+ * INTERNAL API
+ *
+ * Encodes metrics in the OpenMetrics text format, https://prometheus.io/docs/specs/om/open_metrics_spec/, or in the
+ * Prometheus text format 0.0.4, which differ in the name of counters in the metadata and the `# EOF` line at the end.
+ */
+@InternalApi
+private[metrics] object MetricsFormat {
+
+  val OpenMetricsMediaType: MediaType.WithFixedCharset =
+    MediaType.customWithFixedCharset(
+      "application",
+      "openmetrics-text",
+      HttpCharsets.`UTF-8`,
+      params = Map("version" -> "1.0.0"))
+
+  val OpenMetricsContentType: ContentType.NonBinary = ContentType(OpenMetricsMediaType)
+
+  val PrometheusContentType: ContentType.NonBinary =
+    ContentType(MediaTypes.`text/plain`.withParams(Map("version" -> "0.0.4")), HttpCharsets.`UTF-8`)
+
+  /** Only when asked for explicitly, e.g. by Prometheus, not for the media range wildcards of other clients. */
+  def acceptsOpenMetrics(accept: Accept): Boolean =
+    accept.mediaRanges.exists {
+      case MediaRange.One(mediaType, qValue) =>
+        qValue > 0 && mediaType.mainType == OpenMetricsMediaType.mainType &&
+        mediaType.subType == OpenMetricsMediaType.subType
+      case _ => false
+    }
+
+  def encode(families: immutable.Seq[MetricFamily], openMetrics: Boolean): String = {
+    val builder = new java.lang.StringBuilder
+    families.foreach { family =>
+      // the Prometheus text format names counters with the suffix of their samples
+      val name = if (!openMetrics && family.metricType == CounterType) family.name + "_total" else family.name
+      builder.append("# HELP ").append(name).append(' ')
+      escape(family.help, builder, quotes = openMetrics)
+      builder.append('\n')
+      builder.append("# TYPE ").append(name).append(' ').append(family.metricType).append('\n')
+      family.samples.foreach { sample =>
+        builder.append(family.name).append(sample.suffix)
+        if (sample.labels.nonEmpty) {
+          builder.append('{')
+          var first = true
+          sample.labels.foreach {
+            case (label, value) =>
+              if (!first) builder.append(',')
+              first = false
+              builder.append(label).append("=\"")
+              escape(value, builder, quotes = true)
+              builder.append('"')
+          }
+          builder.append('}')
+        }
+        builder.append(' ').append(formatValue(sample.value)).append('\n')
+      }
+    }
+    if (openMetrics) builder.append("# EOF\n")
+    builder.toString
+  }
+
+  private def escape(s: String, builder: java.lang.StringBuilder, quotes: Boolean): Unit = {
+    var i = 0
+    while (i < s.length) {
+      s.charAt(i) match {
+        case '\\'          => builder.append("\\\\")
+        case '\n'          => builder.append("\\n")
+        case '"' if quotes => builder.append("\\\"")
+        case c             => builder.append(c)
+      }
+      i += 1
+    }
+  }
+
+  private def formatValue(value: Double): String =
+    if (value.isNaN) "NaN"
+    else if (value.isPosInfinity) "+Inf"
+    else if (value.isNegInfinity) "-Inf"
+    else if (value == math.rint(value) && math.abs(value) < 1e15) value.toLong.toString
+    else value.toString
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.metrics
+
+import org.apache.pekko
+import pekko.actor.{ ExtendedActorSystem, Extension, ExtensionId }
+import pekko.annotation.InternalApi
+import pekko.http.scaladsl.model.HttpEntity
+import pekko.http.scaladsl.model.headers.Accept
+import pekko.http.scaladsl.server.Directives._
+import pekko.http.scaladsl.server.Route
+import pekko.management.metrics.internal.ManagementMetrics
+import pekko.management.scaladsl.{ ManagementRouteProvider, ManagementRouteProviderSettings }
+
+object MetricsRoutes extends ExtensionId[MetricsRoutes] {
+  override def createExtension(system: ExtendedActorSystem): MetricsRoutes =
+    new MetricsRoutes(system)
+}
+
+/**
+ * Provides the path metrics, which serves the metrics of the management modules in the OpenMetrics text format, or
+ * in the Prometheus text format to clients that don't accept OpenMetrics.
+ *
+ * INTERNAL API
+ */
+@InternalApi
+final class MetricsRoutes private (system: ExtendedActorSystem) extends Extension with ManagementRouteProvider {
+
+  private val metrics = ManagementMetrics(system)
+
+  override def routes(settings: ManagementRouteProviderSettings): Route =
+    (path("metrics") & get) {
+      optionalHeaderValueByType(Accept) { accept =>
+        val openMetrics = accept.exists(MetricsFormat.acceptsOpenMetrics)
+        val families = metrics.collect() ++ KubernetesApiMetrics.collect(system)
+        val contentType =
+          if (openMetrics) MetricsFormat.OpenMetricsContentType else MetricsFormat.PrometheusContentType
+        complete(HttpEntity(contentType, MetricsFormat.encode(families, openMetrics)))
+      }
+    }
+}
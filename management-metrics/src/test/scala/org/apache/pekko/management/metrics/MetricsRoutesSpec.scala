@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.metrics
+
+import org.apache.pekko
+import pekko.actor.ExtendedActorSystem
+import pekko.http.scaladsl.model.{ MediaRange, MediaRanges, StatusCodes, Uri }
+import pekko.http.scaladsl.model.headers.Accept
+import pekko.http.scaladsl.testkit.ScalatestRouteTest
+import pekko.management.metrics.internal.ManagementMetrics
+import pekko.management.scaladsl.ManagementRouteProviderSettings
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class MetricsRoutesSpec extends AnyWordSpec with Matchers with ScalatestRouteTest {
+
+  private val routes = MetricsRoutes
+    .createExtension(system.asInstanceOf[ExtendedActorSystem])
+    .routes(ManagementRouteProviderSettings(Uri("https://example.com"), readOnly = true))
+
+  private val metrics = ManagementMetrics(system)
+
+  metrics.counter("test_requests", "Requests", "path" -> "a\"b\\c").add(3)
+  private val histogram = metrics.histogram("test_duration_seconds", "Latency\nof requests")
+  histogram.recordNanos(2000000L) // 2 ms
+  histogram.recordNanos(20000000000L) // 20 s, above the highest bucket
+
+  "The metrics routes" must {
+
+    "serve the metrics in the OpenMetrics format to clients that accept it" in {
+      Get("/metrics").withHeaders(Accept(MediaRange(MetricsFormat.OpenMetricsMediaType))) ~> routes ~> check {
+        response.status should ===(StatusCodes.OK)
+        contentType should ===(MetricsFormat.OpenMetricsContentType)
+        val lines = responseAs[String].split('\n').toList
+        lines should contain inOrder (
+          "# HELP test_duration_seconds Latency\\nof requests",
+          "# TYPE test_duration_seconds histogram",
+          "test_duration_seconds_bucket{le=\"0.001\"} 0",
+          "test_duration_seconds_bucket{le=\"0.0025\"} 1",
+          "test_duration_seconds_bucket{le=\"10.0\"} 1",
+          "test_duration_seconds_bucket{le=\"+Inf\"} 2",
+          "test_duration_seconds_count 2",
+          "test_duration_seconds_sum 20.002",
+          "# HELP test_requests Requests",
+          "# TYPE test_requests counter",
+          "test_requests_total{path=\"a\\\"b\\\\c\"} 3")
+        lines.last should ===("# EOF")
+      }
+    }
+
+    "serve the metrics in the Prometheus text format to other clients" in {
+      Get("/metrics").withHeaders(Accept(MediaRanges.`*/*`)) ~> routes ~> check {
+        contentType should ===(MetricsFormat.PrometheusContentType)
+        val lines = responseAs[String].split('\n').toList
+        lines should contain inOrder (
+          "# TYPE test_requests_total counter",
+          "test_requests_total{path=\"a\\\"b\\\\c\"} 3")
+        lines should not contain "# EOF"
+      }
+    }
+
+    "not mix metrics of different types with the same name" in {
+      an[IllegalArgumentException] should be thrownBy metrics.histogram("test_requests", "Requests")
+    }
+  }
+}
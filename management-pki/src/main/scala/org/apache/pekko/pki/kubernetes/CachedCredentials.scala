@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.pki.kubernetes
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{ Files, Paths }
+import java.util.concurrent.ConcurrentHashMap
+import javax.net.ssl.SSLContext
+
+import org.apache.pekko.annotation.InternalApi
+
+/**
+ * INTERNAL API
+ *
+ * Keeps the service account token, and the SSL contexts built from CA certificate files, in memory, and loads them
+ * again only when their files change, see [[CachedFile]]. The same SSL context is returned until its file changes,
+ * so that the callers can reuse the connection context they build from it, which allows TLS sessions to be resumed,
+ * and requests with the same connection context to share a connection pool.
+ *
+ * The methods check the files for changes, which uses blocking IO, however only reading the attributes of the files
+ * unless they changed.
+ */
+@InternalApi
+private[pekko] final class CachedCredentials {
+
+  private val files = new ConcurrentHashMap[String, CachedFile[String]]()
+  private val sslContexts = new ConcurrentHashMap[(String, String), CachedFile[SSLContext]]()
+  private val defaultTrustSslContexts = new ConcurrentHashMap[String, SSLContext]()
+
+  /**
+   * The content of a text file, like the token or namespace of the service account. Throws the exceptions of reading
+   * the file, e.g. `NoSuchFileException`.
+   */
+  def readFile(path: String): String =
+    files
+      .computeIfAbsent(
+        path,
+        p => new CachedFile(Paths.get(p), file => new String(Files.readAllBytes(file), StandardCharsets.UTF_8)))
+      .get()
+
+  /**
+   * The SSL context trusting the CA certificates in the given PEM file, which is created again when the file changes.
+   * With an empty path the default trust store of the JVM is used.
+   */
+  def sslContext(caPath: String, tlsVersion: String): SSLContext =
+    if (caPath.isEmpty)
+      defaultTrustSslContexts.computeIfAbsent(tlsVersion, _ => PemManagersProvider.createSslContext("", tlsVersion))
+    else
+      sslContexts
+        .computeIfAbsent(
+          (caPath, tlsVersion),
+          _ => new CachedFile(Paths.get(caPath), _ => PemManagersProvider.createSslContext(caPath, tlsVersion)))
+        .get()
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.pki.kubernetes
+
+import java.nio.file.{ Files, Path }
+import java.nio.file.attribute.{ BasicFileAttributes, FileTime }
+
+import org.apache.pekko.annotation.InternalApi
+
+/**
+ * INTERNAL API
+ *
+ * A value loaded from a file, that is loaded again only when the file changed. Kubernetes updates mounted secrets,
+ * like the rotated service account token, by replacing the file, which changes its modification time, size or
+ * file key. Checking for a change reads the attributes of the file, which is much cheaper than reading it.
+ *
+ * Safe to use from several threads, a change can then be loaded more than once.
+ */
+@InternalApi
+private[pekko] final class CachedFile[T](val path: Path, load: Path => T) {
+  import CachedFile._
+
+  @volatile private var loaded: Option[(Version, T)] = None
+
+  /**
+   * The value of the current content of the file. Uses blocking IO, and throws the exceptions of reading the file,
+   * e.g. `NoSuchFileException`.
+   */
+  def get(): T = {
+    val version = versionOf(path)
+    loaded match {
+      case Some((`version`, value)) => value
+      case _                        =>
+        val value = load(path)
+        loaded = Some((version, value))
+        value
+    }
+  }
+}
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object CachedFile {
+  private final case class Version(lastModified: FileTime, size: Long, fileKey: AnyRef)
+
+  private def versionOf(path: Path): Version = {
+    val attributes = Files.readAttributes(path, classOf[BasicFileAttributes])
+    Version(attributes.lastModifiedTime(), attributes.size(), attributes.fileKey())
+  }
+}
@@ -71,18 +71,21 @@ private[pekko] object PemManagersProvider {
   /**
    * INTERNAL API
    *
-   * Creates an SSLContext that trusts the given CA certificate file, with no client key material.
+   * Creates an SSLContext that trusts the given CA certificate file, with no client key material. With an empty
+   * path the default trust store of the JVM is used.
    */
   @InternalApi def createSslContext(caCertPath: String, tlsVersion: String): SSLContext = {
-    val certificates = loadCertificates(caCertPath)
     val factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm)
     val ks = KeyStore.getInstance("PKCS12")
     ks.load(null)
     factory.init(ks, Array.empty)
     val km = factory.getKeyManagers
-    val tm = buildTrustManagers(certificates)
     val sslContext = SSLContext.getInstance(tlsVersion)
-    sslContext.init(km, tm, new SecureRandom)
+    if (caCertPath.isEmpty)
+      // null trust managers means use the default JVM trust store
+      sslContext.init(km, null, new SecureRandom)
+    else
+      sslContext.init(km, buildTrustManagers(loadCertificates(caCertPath)), new SecureRandom)
     sslContext
   }
 
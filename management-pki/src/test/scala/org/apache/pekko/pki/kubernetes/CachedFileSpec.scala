@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.pki.kubernetes
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{ Files, NoSuchFileException, Path, StandardCopyOption }
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+class CachedFileSpec extends AnyWordSpec with Matchers {
+
+  private def withFile(test: Path => Unit): Unit = {
+    val dir = Files.createTempDirectory("cached-file-spec")
+    try test(dir.resolve("token"))
+    finally {
+      Files.list(dir).forEach(file => Files.delete(file))
+      Files.delete(dir)
+    }
+  }
+
+  private def write(path: Path, content: String): Unit =
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8))
+
+  private def countingLoads(path: Path): (CachedFile[String], AtomicInteger) = {
+    val loads = new AtomicInteger
+    val file = new CachedFile(path,
+      p => {
+        loads.incrementAndGet()
+        new String(Files.readAllBytes(p), StandardCharsets.UTF_8)
+      })
+    (file, loads)
+  }
+
+  "CachedFile" should {
+
+    "load the file only once while it does not change" in withFile { path =>
+      write(path, "first")
+      val (file, loads) = countingLoads(path)
+      (1 to 10).foreach(_ => file.get() shouldEqual "first")
+      loads.get() shouldEqual 1
+    }
+
+    "load the file again when it was rewritten" in withFile { path =>
+      write(path, "first")
+      val (file, loads) = countingLoads(path)
+      file.get() shouldEqual "first"
+      write(path, "second")
+      file.get() shouldEqual "second"
+      loads.get() shouldEqual 2
+    }
+
+    "load the file again when it was replaced, like a rotated Kubernetes secret" in withFile { path =>
+      write(path, "first")
+      val (file, _) = countingLoads(path)
+      file.get() shouldEqual "first"
+      // same size, and possibly the same modification time, but a different file
+      val replacement = path.resolveSibling("token.new")
+      write(replacement, "other")
+      Files.move(replacement, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      file.get() shouldEqual "other"
+    }
+
+    "fail when the file does not exist" in withFile { path =>
+      val (file, _) = countingLoads(path)
+      intercept[NoSuchFileException](file.get())
+    }
+  }
+}
@@ -19,8 +19,12 @@ import pekko.annotation.InternalApi
 import pekko.http.scaladsl.model._
 import pekko.http.scaladsl.server.Directives._
 import pekko.http.scaladsl.server.{ PathMatchers, Route }
+import pekko.management.internal.{ BackgroundHealthCheck, CheckOutcome, HealthCheckReport, HealthChecksImpl }
 import pekko.management.scaladsl.{ HealthChecks, ManagementRouteProvider, ManagementRouteProviderSettings }
 
+import spray.json.{ JsArray, JsNumber, JsObject, JsString }
+
+import scala.concurrent.Future
 import scala.util.{ Failure, Success, Try }
 
 /**
@@ -47,21 +51,78 @@ private[pekko] class HealthCheckRoutes(system: ExtendedActorSystem) extends Mana
         StatusCodes.InternalServerError -> s"Health Check Failed: ${t.getMessage}")
   }
 
+  private val detailedHealthCheckResponse: Try[HealthCheckReport] => Route = {
+    case Success(report) =>
+      val status = report.result match {
+        case Success(Right(())) => StatusCodes.OK
+        case _                  => StatusCodes.InternalServerError
+      }
+      val json = HttpEntity(ContentTypes.`application/json`, reportJson(report).compactPrint)
+      complete(HttpResponse(status, entity = json))
+    case Failure(t) =>
+      complete(
+        StatusCodes.InternalServerError -> s"Health Check Failed: ${t.getMessage}")
+  }
+
+  private def reportJson(report: HealthCheckReport): JsObject = {
+    val (status, message) = report.result match {
+      case Success(Right(()))    => CheckOutcome.Ok -> None
+      case Success(Left(reason)) => CheckOutcome.NotOk -> Some(reason)
+      case Failure(t)            => CheckOutcome.Failed -> Some(t.getMessage)
+    }
+    val checks = report.checks.map { outcome =>
+      JsObject(
+        Map(
+          "name" -> JsString(outcome.name),
+          "status" -> JsString(outcome.status),
+          "durationMillis" -> JsNumber(outcome.duration.toMillis)) ++
+        outcome.message.map(m => "message" -> JsString(m)))
+    }
+    JsObject(
+      Map("status" -> JsString(status), "checks" -> JsArray(checks.toVector)) ++
+      message.map(m => "message" -> JsString(m)))
+  }
+
   override def routes(mrps: ManagementRouteProviderSettings): Route = {
+    val impl = healthChecks match {
+      case impl: HealthChecksImpl => Some(impl)
+      case _                      => None
+    }
+
+    // with background evaluation the last published snapshot is served without starting any futures
+    def checkResponse(
+        background: Option[BackgroundHealthCheck],
+        report: HealthChecksImpl => Future[HealthCheckReport],
+        result: => Future[Either[String, Unit]]): Route =
+      parameter("details".optional) {
+        case None =>
+          background match {
+            case Some(b) => ctx => healthCheckResponse(b.result())(ctx)
+            case None    => onComplete(result)(healthCheckResponse)
+          }
+        case Some(_) =>
+          (background, impl) match {
+            case (Some(b), _)    => detailedHealthCheckResponse(Success(b.report()))
+            case (None, Some(i)) => onComplete(report(i))(detailedHealthCheckResponse)
+            case (None, None)    =>
+              onComplete(result)(r => detailedHealthCheckResponse(Success(HealthCheckReport(r, Nil))))
+          }
+      }
+
     concat(
       path(PathMatchers.separateOnSlashes(settings.startupPath)) {
         get {
-          onComplete(healthChecks.startupResult())(healthCheckResponse)
+          checkResponse(impl.flatMap(_.startupBackground), _.startupReport(), healthChecks.startupResult())
         }
       },
       path(PathMatchers.separateOnSlashes(settings.readinessPath)) {
         get {
-          onComplete(healthChecks.readyResult())(healthCheckResponse)
+          checkResponse(impl.flatMap(_.readinessBackground), _.readyReport(), healthChecks.readyResult())
         }
       },
       path(PathMatchers.separateOnSlashes(settings.livenessPath)) {
         get {
-          onComplete(healthChecks.aliveResult())(healthCheckResponse)
+          checkResponse(impl.flatMap(_.livenessBackground), _.aliveReport(), healthChecks.aliveResult())
         }
       })
   }
@@ -13,55 +13,118 @@
 
 package org.apache.pekko.management
 
-import com.typesafe.config.Config
+import com.typesafe.config.{ Config, ConfigFactory, ConfigObject }
 
 import scala.collection.immutable
-import scala.concurrent.duration.FiniteDuration
+import scala.concurrent.duration._
 import scala.jdk.CollectionConverters._
 import scala.jdk.DurationConverters._
 
 final case class NamedHealthCheck(name: String, fullyQualifiedClassName: String)
 
+object HealthCheckLimits {
+
+  /**
+   * No limit on concurrent invocations and no circuit breaker.
+   */
+  val Unlimited: HealthCheckLimits = HealthCheckLimits(0, 0, 30.seconds)
+
+  def apply(config: Config): HealthCheckLimits =
+    HealthCheckLimits(
+      config.getInt("max-concurrent-invocations"),
+      config.getInt("circuit-breaker.max-failures"),
+      config.getDuration("circuit-breaker.reset-timeout").toScala)
+
+  /**
+   * Java API
+   */
+  def create(
+      maxConcurrentInvocations: Int,
+      circuitBreakerMaxFailures: Int,
+      circuitBreakerResetTimeout: java.time.Duration): HealthCheckLimits =
+    HealthCheckLimits(maxConcurrentInvocations, circuitBreakerMaxFailures, circuitBreakerResetTimeout.toScala)
+}
+
+/**
+ * Limits for a single named health check, configured next to the class name of the check.
+ *
+ * @param maxConcurrentInvocations at most this many invocations of the check run at the same time, further
+ *                                 evaluations share the result of the most recently started invocation, 0 for no limit
+ * @param circuitBreakerMaxFailures consecutive failures or timeouts that open the circuit breaker, 0 for no breaker.
+ *                                  While the breaker is open the check is not invoked and the last known result is used.
+ * @param circuitBreakerResetTimeout how long the circuit breaker stays open before the check is invoked again
+ */
+final case class HealthCheckLimits(
+    maxConcurrentInvocations: Int,
+    circuitBreakerMaxFailures: Int,
+    circuitBreakerResetTimeout: FiniteDuration) {
+  require(maxConcurrentInvocations >= 0, "maxConcurrentInvocations must be >= 0")
+  require(circuitBreakerMaxFailures >= 0, "circuitBreakerMaxFailures must be >= 0")
+}
+
 object HealthCheckSettings {
+
+  // added after the first release, taken from the reference configuration when a config doesn't have them
+  private val optionalPaths = List("result-cache", "background-evaluation", "fail-fast", "check-defaults")
+
   def apply(config: Config): HealthCheckSettings = {
+    val reference = ConfigFactory
+      .defaultReference(classOf[HealthCheckSettings].getClassLoader)
+      .getConfig("pekko.management.health-checks")
+    fromConfig(optionalPaths.foldLeft(config)((c, path) => c.withFallback(reference.withOnlyPath(path))))
+  }
+
+  private def fromConfig(config: Config): HealthCheckSettings = {
     def validFQCN(value: Any) = {
       value != null &&
       value != "null" &&
       value.toString.trim.nonEmpty
     }
 
-    new HealthCheckSettings(
-      config
-        .getConfig("startup-checks")
-        .root
-        .unwrapped
-        .asScala
-        .collect {
-          case (name, value) if validFQCN(value) => NamedHealthCheck(name, value.toString)
-        }
-        .toList,
+    def isObject(value: Any) = value.isInstanceOf[java.util.Map[_, _]]
+
+    def namedChecks(path: String): List[NamedHealthCheck] =
       config
-        .getConfig("readiness-checks")
+        .getConfig(path)
         .root
         .unwrapped
         .asScala
         .collect {
-          case (name, value) if validFQCN(value) => NamedHealthCheck(name, value.toString)
+          case (name, value: java.util.Map[_, _]) if validFQCN(value.get("class")) =>
+            NamedHealthCheck(name, value.get("class").toString)
+          case (name, value) if !isObject(value) && validFQCN(value) => NamedHealthCheck(name, value.toString)
         }
-        .toList,
+        .toList
+
+    def checkLimits(path: String): Map[String, HealthCheckLimits] =
       config
-        .getConfig("liveness-checks")
+        .getConfig(path)
         .root
-        .unwrapped
         .asScala
         .collect {
-          case (name, value) if validFQCN(value) => NamedHealthCheck(name, value.toString)
+          case (name, value: ConfigObject) if validFQCN(value.unwrapped.get("class")) =>
+            name -> HealthCheckLimits(value.toConfig.withFallback(config.getConfig("check-defaults")))
         }
-        .toList,
+        .toMap
+
+    new HealthCheckSettings(
+      namedChecks("startup-checks"),
+      namedChecks("readiness-checks"),
+      namedChecks("liveness-checks"),
       config.getString("startup-path"),
       config.getString("readiness-path"),
       config.getString("liveness-path"),
-      config.getDuration("check-timeout").toScala)
+      config.getDuration("check-timeout").toScala,
+      config.getBoolean("result-cache.enabled"),
+      config.getDuration("result-cache.success-ttl").toScala,
+      config.getDuration("result-cache.failure-ttl").toScala,
+      config.getBoolean("background-evaluation.enabled"),
+      config.getDuration("background-evaluation.interval").toScala,
+      config.getDuration("background-evaluation.max-snapshot-age").toScala,
+      config.getBoolean("fail-fast"),
+      checkLimits("startup-checks"),
+      checkLimits("readiness-checks"),
+      checkLimits("liveness-checks"))
   }
 
   /**
@@ -117,6 +180,16 @@ object HealthCheckSettings {
  * @param readinessPath The path to serve readiness on
  * @param livenessPath The path to serve liveness on
  * @param checkTimeout how long to wait for all health checks to complete
+ * @param resultCacheEnabled share in-flight evaluations between concurrent callers and cache completed results
+ * @param resultCacheSuccessTtl how long a successful result is reused when the result cache is enabled
+ * @param resultCacheFailureTtl how long a failed result is reused when the result cache is enabled
+ * @param backgroundEvaluationEnabled evaluate the checks on a fixed schedule and serve the last published snapshot
+ * @param backgroundEvaluationInterval delay between the end of one background evaluation and the start of the next
+ * @param maxSnapshotAge snapshots older than this are reported as failures, `Duration.Zero` to disable
+ * @param failFast complete an evaluation on the first check that is not ok instead of waiting for all checks
+ * @param startupCheckLimits concurrency limit and circuit breaker per startup check name, for checks loaded from configuration
+ * @param readinessCheckLimits concurrency limit and circuit breaker per readiness check name, for checks loaded from configuration
+ * @param livenessCheckLimits concurrency limit and circuit breaker per liveness check name, for checks loaded from configuration
  */
 final class HealthCheckSettings(
     val startupChecks: immutable.Seq[NamedHealthCheck],
@@ -125,7 +198,44 @@ final class HealthCheckSettings(
     val startupPath: String,
     val readinessPath: String,
     val livenessPath: String,
-    val checkTimeout: FiniteDuration) {
+    val checkTimeout: FiniteDuration,
+    val resultCacheEnabled: Boolean,
+    val resultCacheSuccessTtl: FiniteDuration,
+    val resultCacheFailureTtl: FiniteDuration,
+    val backgroundEvaluationEnabled: Boolean,
+    val backgroundEvaluationInterval: FiniteDuration,
+    val maxSnapshotAge: FiniteDuration,
+    val failFast: Boolean,
+    val startupCheckLimits: immutable.Map[String, HealthCheckLimits],
+    val readinessCheckLimits: immutable.Map[String, HealthCheckLimits],
+    val livenessCheckLimits: immutable.Map[String, HealthCheckLimits]) {
+
+  def this(
+      startupChecks: immutable.Seq[NamedHealthCheck],
+      readinessChecks: immutable.Seq[NamedHealthCheck],
+      livenessChecks: immutable.Seq[NamedHealthCheck],
+      startupPath: String,
+      readinessPath: String,
+      livenessPath: String,
+      checkTimeout: FiniteDuration) =
+    this(
+      startupChecks,
+      readinessChecks,
+      livenessChecks,
+      startupPath,
+      readinessPath,
+      livenessPath,
+      checkTimeout,
+      resultCacheEnabled = false,
+      resultCacheSuccessTtl = Duration.Zero,
+      resultCacheFailureTtl = Duration.Zero,
+      backgroundEvaluationEnabled = false,
+      backgroundEvaluationInterval = Duration.Zero,
+      maxSnapshotAge = Duration.Zero,
+      failFast = false,
+      startupCheckLimits = Map.empty,
+      readinessCheckLimits = Map.empty,
+      livenessCheckLimits = Map.empty)
 
   @deprecated("Use constructor that takes `startupChecks` and `startupPath` parameters instead", "1.1.0")
   def this(
@@ -165,4 +275,130 @@ final class HealthCheckSettings(
    * Java API
    */
   def getCheckTimeout(): java.time.Duration = checkTimeout.toJava
+
+  /**
+   * Java API
+   */
+  def getResultCacheSuccessTtl(): java.time.Duration = resultCacheSuccessTtl.toJava
+
+  /**
+   * Java API
+   */
+  def getResultCacheFailureTtl(): java.time.Duration = resultCacheFailureTtl.toJava
+
+  /**
+   * Enable the result cache. Concurrent callers share one in-flight evaluation of the checks and the
+   * completed result is reused for `successTtl` or `failureTtl` depending on the outcome.
+   */
+  def withResultCache(successTtl: FiniteDuration, failureTtl: FiniteDuration): HealthCheckSettings =
+    copy(resultCacheEnabled = true, resultCacheSuccessTtl = successTtl, resultCacheFailureTtl = failureTtl)
+
+  /**
+   * Java API: Enable the result cache. Concurrent callers share one in-flight evaluation of the checks and the
+   * completed result is reused for `successTtl` or `failureTtl` depending on the outcome.
+   */
+  def withResultCache(successTtl: java.time.Duration, failureTtl: java.time.Duration): HealthCheckSettings =
+    withResultCache(successTtl.toScala, failureTtl.toScala)
+
+  /**
+   * Java API
+   */
+  def getBackgroundEvaluationInterval(): java.time.Duration = backgroundEvaluationInterval.toJava
+
+  /**
+   * Java API
+   */
+  def getMaxSnapshotAge(): java.time.Duration = maxSnapshotAge.toJava
+
+  /**
+   * Enable background evaluation. The checks are run every `interval` on the actor system scheduler and callers
+   * get the last published snapshot. Snapshots older than `maxSnapshotAge` are reported as failures,
+   * `Duration.Zero` disables that.
+   */
+  def withBackgroundEvaluation(interval: FiniteDuration, maxSnapshotAge: FiniteDuration): HealthCheckSettings =
+    copy(
+      backgroundEvaluationEnabled = true,
+      backgroundEvaluationInterval = interval,
+      maxSnapshotAge = maxSnapshotAge)
+
+  /**
+   * Java API: Enable background evaluation. The checks are run every `interval` on the actor system scheduler and
+   * callers get the last published snapshot. Snapshots older than `maxSnapshotAge` are reported as failures,
+   * `Duration.ZERO` disables that.
+   */
+  def withBackgroundEvaluation(interval: java.time.Duration, maxSnapshotAge: java.time.Duration): HealthCheckSettings =
+    withBackgroundEvaluation(interval.toScala, maxSnapshotAge.toScala)
+
+  /**
+   * Complete an evaluation on the first check that is not ok, cancelling the timeouts of the checks that are
+   * still pending, instead of waiting for all checks to complete.
+   */
+  def withFailFast(failFast: Boolean): HealthCheckSettings =
+    copy(failFast = failFast)
+
+  /**
+   * Limit concurrent invocations of the startup check with the given name and optionally guard it with a circuit
+   * breaker.
+   */
+  def withStartupCheckLimits(name: String, limits: HealthCheckLimits): HealthCheckSettings =
+    copy(startupCheckLimits = startupCheckLimits.updated(name, limits))
+
+  /**
+   * Limit concurrent invocations of the readiness check with the given name and optionally guard it with a circuit
+   * breaker.
+   */
+  def withReadinessCheckLimits(name: String, limits: HealthCheckLimits): HealthCheckSettings =
+    copy(readinessCheckLimits = readinessCheckLimits.updated(name, limits))
+
+  /**
+   * Limit concurrent invocations of the liveness check with the given name and optionally guard it with a circuit
+   * breaker.
+   */
+  def withLivenessCheckLimits(name: String, limits: HealthCheckLimits): HealthCheckSettings =
+    copy(livenessCheckLimits = livenessCheckLimits.updated(name, limits))
+
+  /**
+   * Java API
+   */
+  def getStartupCheckLimits(): java.util.Map[String, HealthCheckLimits] = startupCheckLimits.asJava
+
+  /**
+   * Java API
+   */
+  def getReadinessCheckLimits(): java.util.Map[String, HealthCheckLimits] = readinessCheckLimits.asJava
+
+  /**
+   * Java API
+   */
+  def getLivenessCheckLimits(): java.util.Map[String, HealthCheckLimits] = livenessCheckLimits.asJava
+
+  private def copy(
+      resultCacheEnabled: Boolean = resultCacheEnabled,
+      resultCacheSuccessTtl: FiniteDuration = resultCacheSuccessTtl,
+      resultCacheFailureTtl: FiniteDuration = resultCacheFailureTtl,
+      backgroundEvaluationEnabled: Boolean = backgroundEvaluationEnabled,
+      backgroundEvaluationInterval: FiniteDuration = backgroundEvaluationInterval,
+      maxSnapshotAge: FiniteDuration = maxSnapshotAge,
+      failFast: Boolean = failFast,
+      startupCheckLimits: immutable.Map[String, HealthCheckLimits] = startupCheckLimits,
+      readinessCheckLimits: immutable.Map[String, HealthCheckLimits] = readinessCheckLimits,
+      livenessCheckLimits: immutable.Map[String, HealthCheckLimits] = livenessCheckLimits): HealthCheckSettings =
+    new HealthCheckSettings(
+      startupChecks,
+      readinessChecks,
+      livenessChecks,
+      startupPath,
+      readinessPath,
+      livenessPath,
+      checkTimeout,
+      resultCacheEnabled,
+      resultCacheSuccessTtl,
+      resultCacheFailureTtl,
+      backgroundEvaluationEnabled,
+      backgroundEvaluationInterval,
+      maxSnapshotAge,
+      failFast,
+      startupCheckLimits,
+      readinessCheckLimits,
+      livenessCheckLimits)
 }
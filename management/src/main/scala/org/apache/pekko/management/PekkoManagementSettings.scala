@@ -88,6 +88,25 @@ final class PekkoManagementSettings(val config: Config) {
         s"pekko.management.http.graceful-termination-timeout must be positive (was $d)")
       d
     }
+
+    val RouteDispatcher: Option[String] = cc.getString("route-dispatcher") match {
+      case ""    => None
+      case value => Some(value)
+    }
+
+    val MaxConnections: Int = {
+      val n = cc.getInt("max-connections")
+      require(n >= 0, s"pekko.management.http.max-connections must be >= 0 (was $n)")
+      n
+    }
+
+    val MaxConcurrentRequests: Int = {
+      val n = cc.getInt("max-concurrent-requests")
+      require(n >= 0, s"pekko.management.http.max-concurrent-requests must be >= 0 (was $n)")
+      n
+    }
+
+    val EnableHttp2: Boolean = cc.getBoolean("enable-http2")
   }
 
   /** Java API */
@@ -108,6 +127,15 @@ final class PekkoManagementSettings(val config: Config) {
   /** Java API */
   def getHttpRouteProviders: java.util.List[NamedRouteProvider] = Http.RouteProviders.asJava
 
+  /** Java API */
+  def getHttpRouteDispatcher: Optional[String] = Http.RouteDispatcher.toJava
+
+  /** Java API */
+  def getHttpMaxConnections: Int = Http.MaxConnections
+
+  /** Java API */
+  def getHttpMaxConcurrentRequests: Int = Http.MaxConcurrentRequests
+
 }
 
 /**
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.internal
+
+import java.util.concurrent.atomic.AtomicReference
+
+import org.apache.pekko
+import pekko.actor.{ Cancellable, Scheduler }
+import pekko.annotation.InternalApi
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.concurrent.duration._
+import scala.util.{ Failure, Success, Try }
+
+/**
+ * INTERNAL API
+ *
+ * Report of one evaluation of a set of health checks, and when it was published.
+ */
+@InternalApi
+final private[pekko] class HealthCheckSnapshot(val report: HealthCheckReport, val evaluatedAtNanos: Long) {
+  def age(nowNanos: Long): FiniteDuration = (nowNanos - evaluatedAtNanos).nanos
+}
+
+/**
+ * INTERNAL API
+ *
+ * Evaluates a set of health checks on the scheduler, waiting `interval` between the end of one evaluation and the
+ * start of the next, and publishes each result as a [[HealthCheckSnapshot]]. Reading the result does not start any
+ * futures. The evaluations go on until [[stop]] is called.
+ */
+@InternalApi
+final private[pekko] class BackgroundHealthCheck(
+    kind: String,
+    evaluate: () => Future[HealthCheckReport],
+    interval: FiniteDuration,
+    maxSnapshotAge: FiniteDuration,
+    scheduler: Scheduler)(implicit ec: ExecutionContext) {
+
+  private val notEvaluatedYet = HealthCheckReport(Success(Left(s"$kind checks not evaluated yet")), Nil)
+
+  private val snapshot = new AtomicReference[HealthCheckSnapshot](null)
+
+  private val evaluateTask: Runnable = () => evaluateAndPublish()
+
+  // the next evaluation
+  private val scheduled = new AtomicReference[Cancellable](Cancellable.alreadyCancelled)
+
+  @volatile private var stopped = false
+
+  def start(): Unit = schedule(Duration.Zero)
+
+  /**
+   * Cancels the next evaluation. An evaluation in progress still publishes its result.
+   */
+  def stop(): Unit = {
+    stopped = true
+    scheduled.get().cancel()
+  }
+
+  /**
+   * The last published snapshot, `null` until the first evaluation completes.
+   */
+  def currentSnapshot(): HealthCheckSnapshot = snapshot.get()
+
+  /**
+   * The result of the last published snapshot, a failure if no evaluation has completed yet or if the snapshot is
+   * older than `maxSnapshotAge`.
+   */
+  def result(): Try[Either[String, Unit]] = report().result
+
+  /**
+   * The report of the last published snapshot, with a failed result if no evaluation has completed yet or if the
+   * snapshot is older than `maxSnapshotAge`.
+   */
+  def report(): HealthCheckReport = {
+    val current = snapshot.get()
+    if (current eq null) notEvaluatedYet
+    else if (maxSnapshotAge > Duration.Zero) {
+      val age = current.age(System.nanoTime())
+      if (age > maxSnapshotAge)
+        current.report.copy(result = Success(Left(s"$kind checks last evaluated [${age.toMillis}] ms ago")))
+      else current.report
+    } else current.report
+  }
+
+  private def evaluateAndPublish(): Unit = {
+    Future.fromTry(Try(evaluate())).flatten.onComplete { result =>
+      val report = result match {
+        case Success(r) => r
+        case Failure(t) => HealthCheckReport(Failure(t), Nil)
+      }
+      snapshot.set(new HealthCheckSnapshot(report, System.nanoTime()))
+      schedule(interval)
+    }
+  }
+
+  private def schedule(delay: FiniteDuration): Unit =
+    if (!stopped) {
+      try {
+        scheduled.set(scheduler.scheduleOnce(delay, evaluateTask))
+        // stopped while scheduling
+        if (stopped) scheduled.get().cancel()
+      } catch {
+        case _: IllegalStateException => // scheduler shut down together with the actor system
+      }
+    }
+}
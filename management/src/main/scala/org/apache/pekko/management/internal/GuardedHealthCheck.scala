@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.internal
+
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicReference }
+
+import org.apache.pekko
+import pekko.actor.Scheduler
+import pekko.annotation.InternalApi
+import pekko.management.HealthCheckLimits
+import pekko.pattern.{ CircuitBreaker, CircuitBreakerOpenException }
+
+import scala.annotation.tailrec
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.duration.FiniteDuration
+import scala.util.Try
+
+/**
+ * INTERNAL API
+ *
+ * Wraps a health check with the [[HealthCheckLimits]] configured for it. At most `maxConcurrentInvocations`
+ * invocations of the check run at the same time, further callers share the most recently started invocation.
+ * With a circuit breaker, failures and timeouts of the check open the breaker, and while it is open the check is
+ * not invoked and the last known result is returned instead.
+ *
+ * @param name the name used for the check in results and logs
+ */
+@InternalApi
+final private[pekko] class GuardedHealthCheck(
+    val name: String,
+    check: () => Future[Boolean],
+    limits: HealthCheckLimits,
+    callTimeout: FiniteDuration,
+    scheduler: Scheduler)(implicit ec: ExecutionContext)
+    extends (() => Future[Boolean]) {
+
+  private val inFlight = new AtomicInteger(0)
+  private val latestInvocation = new AtomicReference[Future[Boolean]](null)
+  private val lastKnownResult = new AtomicReference[Try[Boolean]](null)
+
+  private val breaker: Option[CircuitBreaker] =
+    if (limits.circuitBreakerMaxFailures > 0)
+      Some(
+        new CircuitBreaker(
+          scheduler,
+          limits.circuitBreakerMaxFailures,
+          callTimeout,
+          limits.circuitBreakerResetTimeout))
+    else None
+
+  @tailrec
+  override def apply(): Future[Boolean] =
+    if (limits.maxConcurrentInvocations == 0) invoke()
+    else if (tryAcquire()) {
+      val promise = Promise[Boolean]()
+      latestInvocation.set(promise.future)
+      promise.completeWith(invoke())
+      promise.future.onComplete(_ => inFlight.decrementAndGet())
+      promise.future
+    } else {
+      val latest = latestInvocation.get()
+      // null only in the short window before the first invocation has been published
+      if (latest ne null) latest else apply()
+    }
+
+  @tailrec
+  private def tryAcquire(): Boolean = {
+    val current = inFlight.get()
+    if (current >= limits.maxConcurrentInvocations) false
+    else if (inFlight.compareAndSet(current, current + 1)) true
+    else tryAcquire()
+  }
+
+  private def invoke(): Future[Boolean] = breaker match {
+    case None     => invokeAndRecord()
+    case Some(cb) =>
+      cb.withCircuitBreaker(invokeAndRecord()).recoverWith {
+        case e: CircuitBreakerOpenException =>
+          lastKnownResult.get() match {
+            case null => Future.failed(e)
+            case last => Future.fromTry(last)
+          }
+      }
+  }
+
+  private def invokeAndRecord(): Future[Boolean] = {
+    val result = Future.fromTry(Try(check())).flatten
+    result.onComplete(lastKnownResult.set)
+    result
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management.internal
+
+import org.apache.pekko.annotation.InternalApi
+
+import scala.collection.immutable
+import scala.concurrent.duration.FiniteDuration
+import scala.util.{ Success, Try }
+
+/**
+ * INTERNAL API
+ *
+ * Outcome and latency of a single check within one evaluation.
+ *
+ * @param status one of the status constants in the companion object
+ * @param message reason for a check that was not ok, failed or timed out
+ */
+@InternalApi
+final private[pekko] case class CheckOutcome(
+    name: String,
+    status: String,
+    duration: FiniteDuration,
+    message: Option[String])
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object CheckOutcome {
+  val Ok = "ok"
+  val NotOk = "not-ok"
+  val Failed = "failed"
+  val TimedOut = "timed-out"
+
+  /** The evaluation completed before this check, for example because another check failed first */
+  val Pending = "pending"
+}
+
+/**
+ * INTERNAL API
+ *
+ * Overall result of one evaluation of a set of health checks together with the outcome of each check.
+ */
+@InternalApi
+final private[pekko] case class HealthCheckReport(
+    result: Try[Either[String, Unit]],
+    checks: immutable.Seq[CheckOutcome])
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object HealthCheckReport {
+  val Empty: HealthCheckReport = HealthCheckReport(Success(Right(())), Nil)
+}
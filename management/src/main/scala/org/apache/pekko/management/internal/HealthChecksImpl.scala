@@ -14,22 +14,34 @@
 package org.apache.pekko.management.internal
 
 import java.util.concurrent.CompletionStage
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger, AtomicReference, AtomicReferenceArray }
 import java.util.function.Supplier
 import java.util.{ List => JList }
 import java.lang.{ Boolean => JBoolean }
 
 import org.apache.pekko
-import pekko.actor.{ ActorSystem, ExtendedActorSystem }
+import pekko.Done
+import pekko.actor.{ ActorSystem, Cancellable, CoordinatedShutdown, ExtendedActorSystem }
 import pekko.annotation.InternalApi
-import pekko.event.Logging
-import pekko.management.{ HealthCheckSettings, InvalidHealthCheckException, ManagementLogMarker, NamedHealthCheck }
+import pekko.event.{ LogMarker, Logging }
+import pekko.management.{
+  HealthCheckLimits,
+  HealthCheckSettings,
+  InvalidHealthCheckException,
+  ManagementLogMarker,
+  NamedHealthCheck,
+  PekkoManagementSettings
+}
 import pekko.management.javadsl.{ LivenessCheckSetup => JLivenessCheckSetup }
 import pekko.management.javadsl.{ ReadinessCheckSetup => JReadinessCheckSetup }
 import pekko.management.javadsl.{ StartupCheckSetup => JStartupCheckSetup }
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.management.scaladsl.{ HealthChecks, LivenessCheckSetup, ReadinessCheckSetup, StartupCheckSetup }
 
+import scala.annotation.tailrec
 import scala.collection.immutable
-import scala.concurrent.Future
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.concurrent.duration._
 import scala.jdk.CollectionConverters._
 import scala.jdk.FutureConverters._
 import scala.util.{ Failure, Success, Try }
@@ -45,7 +57,13 @@ final case class CheckTimeoutException(msg: String) extends RuntimeException(msg
 final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, settings: HealthCheckSettings)
     extends HealthChecks {
   import HealthChecks._
-  import system.dispatcher
+
+  // run the checks on the management route dispatcher, if configured, so that they are not starved by the application
+  private implicit val ec: ExecutionContext =
+    new PekkoManagementSettings(system.settings.config).Http.RouteDispatcher match {
+      case Some(dispatcherId) => system.dispatchers.lookup(dispatcherId)
+      case None               => system.dispatcher
+    }
 
   private val log = Logging.withMarker(system, classOf[HealthChecksImpl])
 
@@ -68,7 +86,7 @@ final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, setting
       case None        => Nil
       case Some(setup) => convertSuppliersToScala(setup.createHealthChecks(system))
     }
-    val fromConfig = load(settings.startupChecks)
+    val fromConfig = load(settings.startupChecks, settings.startupCheckLimits)
     fromConfig ++ fromScaladslSetup ++ fromJavadslSetup
   }
 
@@ -81,7 +99,7 @@ final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, setting
       case None        => Nil
       case Some(setup) => convertSuppliersToScala(setup.createHealthChecks(system))
     }
-    val fromConfig = load(settings.readinessChecks)
+    val fromConfig = load(settings.readinessChecks, settings.readinessCheckLimits)
     fromConfig ++ fromScaladslSetup ++ fromJavadslSetup
   }
 
@@ -94,7 +112,7 @@ final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, setting
       case None        => Nil
       case Some(setup) => convertSuppliersToScala(setup.createHealthChecks(system))
     }
-    val fromConfig = load(settings.livenessChecks)
+    val fromConfig = load(settings.livenessChecks, settings.livenessCheckLimits)
     fromConfig ++ fromScaladslSetup ++ fromJavadslSetup
   }
 
@@ -131,7 +149,8 @@ final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, setting
   }
 
   private def load(
-      checks: immutable.Seq[NamedHealthCheck]): immutable.Seq[HealthCheck] = {
+      checks: immutable.Seq[NamedHealthCheck],
+      checkLimits: Map[String, HealthCheckLimits]): immutable.Seq[HealthCheck] = {
     checks
       .map(namedHealthCheck =>
         tryLoadScalaHealthCheck(namedHealthCheck.fullyQualifiedClassName).recoverWith {
@@ -154,46 +173,168 @@ final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, setting
             "Uncaught exception from Health check construction",
             t)
       }
+      .zip(checks)
+      .map {
+        case (check, namedHealthCheck) =>
+          checkLimits.get(namedHealthCheck.name) match {
+            case Some(limits) =>
+              new GuardedHealthCheck(check.getClass.getName, check, limits, settings.checkTimeout, system.scheduler)
+            case None => check
+          }
+      }
+  }
+
+  private def checkName(check: HealthCheck): String = check match {
+    case guarded: GuardedHealthCheck => guarded.name
+    case _                           => check.getClass.getName
+  }
+
+  private val metrics = ManagementMetrics(system)
+
+  /**
+   * The latency histogram and the counters of the outcomes of each check, in the same order as the checks, looked up
+   * once so that the evaluations only update them.
+   */
+  private final class CheckMetrics(kind: String, checks: immutable.Seq[HealthCheck]) {
+    val durations: Array[ManagementMetrics.Histogram] = checks.map { check =>
+      metrics.histogram(
+        "pekko_management_health_check_duration_seconds",
+        "The time until a health check completed or timed out",
+        "kind" -> kind,
+        "check" -> checkName(check))
+    }.toArray
+
+    // per check, the counters of the outcomes in the order of outcomeStatuses
+    val outcomes: Array[Array[ManagementMetrics.Counter]] = checks.map { check =>
+      outcomeStatuses.map { status =>
+        metrics.counter(
+          "pekko_management_health_checks",
+          "The health checks that completed, by outcome",
+          "kind" -> kind,
+          "check" -> checkName(check),
+          "outcome" -> status)
+      }.toArray
+    }.toArray
+  }
+
+  private val outcomeStatuses =
+    Vector(CheckOutcome.Ok, CheckOutcome.NotOk, CheckOutcome.Failed, CheckOutcome.TimedOut)
+
+  private val startupMetrics = new CheckMetrics("startup", startupChecks)
+  private val readinessMetrics = new CheckMetrics("readiness", readiness)
+  private val livenessMetrics = new CheckMetrics("liveness", liveness)
+
+  private val startupEvaluation: () => Future[HealthCheckReport] = evaluation { () =>
+    logFailure(check(startupChecks, startupMetrics), ManagementLogMarker.startupCheckFailed)
+  }
+
+  private val readinessEvaluation: () => Future[HealthCheckReport] = evaluation { () =>
+    logFailure(check(readiness, readinessMetrics), ManagementLogMarker.readinessCheckFailed)
+  }
+
+  private val livenessEvaluation: () => Future[HealthCheckReport] = evaluation { () =>
+    logFailure(check(liveness, livenessMetrics), ManagementLogMarker.livenessCheckFailed)
+  }
+
+  private def logFailure(report: Future[HealthCheckReport], marker: LogMarker): Future[HealthCheckReport] = {
+    report.foreach { r =>
+      r.result match {
+        case Success(Right(()))    =>
+        case Success(Left(reason)) =>
+          log.info(marker, reason)
+        case Failure(e) =>
+          log.warning(marker, e.getMessage)
+      }
+    }
+    report
   }
 
-  def startupResult(): Future[Either[String, Unit]] = {
-    val result = check(startupChecks)
-    result.onComplete {
-      case Success(Right(()))    =>
-      case Success(Left(reason)) =>
-        log.info(ManagementLogMarker.startupCheckFailed, reason)
-      case Failure(e) =>
-        log.warning(ManagementLogMarker.startupCheckFailed, e.getMessage)
+  private def evaluation(evaluate: () => Future[HealthCheckReport]): () => Future[HealthCheckReport] =
+    if (settings.resultCacheEnabled && !settings.backgroundEvaluationEnabled)
+      new HealthCheckResultCache(evaluate, settings.resultCacheSuccessTtl, settings.resultCacheFailureTtl)
+    else evaluate
+
+  private[pekko] val startupBackground: Option[BackgroundHealthCheck] =
+    backgroundEvaluation("startup", startupEvaluation)
+
+  private[pekko] val readinessBackground: Option[BackgroundHealthCheck] =
+    backgroundEvaluation("readiness", readinessEvaluation)
+
+  private[pekko] val livenessBackground: Option[BackgroundHealthCheck] =
+    backgroundEvaluation("liveness", livenessEvaluation)
+
+  if (settings.backgroundEvaluationEnabled) {
+    // as late as possible, so that the probes are answered with fresh results while shutting down
+    CoordinatedShutdown(system).addTask(CoordinatedShutdown.PhaseBeforeActorSystemTerminate,
+      "stop-health-check-evaluation") { () =>
+      stopBackgroundEvaluation()
+      Future.successful(Done)
     }
-    result
+  }
+
+  /**
+   * INTERNAL API: stops evaluating the checks in the background
+   */
+  private[pekko] def stopBackgroundEvaluation(): Unit =
+    (startupBackground ++ readinessBackground ++ livenessBackground).foreach(_.stop())
+
+  private def backgroundEvaluation(
+      kind: String,
+      evaluate: () => Future[HealthCheckReport]): Option[BackgroundHealthCheck] =
+    if (settings.backgroundEvaluationEnabled) {
+      val background = new BackgroundHealthCheck(
+        kind,
+        evaluate,
+        settings.backgroundEvaluationInterval,
+        settings.maxSnapshotAge,
+        system.scheduler)
+      background.start()
+      Some(background)
+    } else None
+
+  private val reportResult: HealthCheckReport => Future[Either[String, Unit]] = report => Future.fromTry(report.result)
+
+  /**
+   * INTERNAL API: the startup result together with the outcome and latency of each check
+   */
+  private[pekko] def startupReport(): Future[HealthCheckReport] = startupBackground match {
+    case Some(background) => Future.successful(background.report())
+    case None             => startupEvaluation()
+  }
+
+  def startupResult(): Future[Either[String, Unit]] = startupBackground match {
+    case Some(background) => Future.fromTry(background.result())
+    case None             => startupEvaluation().flatMap(reportResult)
   }
 
   def startup(): Future[Boolean] = startupResult().map(_.isRight)
 
-  def readyResult(): Future[Either[String, Unit]] = {
-    val result = check(readiness)
-    result.onComplete {
-      case Success(Right(()))    =>
-      case Success(Left(reason)) =>
-        log.info(ManagementLogMarker.readinessCheckFailed, reason)
-      case Failure(e) =>
-        log.warning(ManagementLogMarker.readinessCheckFailed, e.getMessage)
-    }
-    result
+  /**
+   * INTERNAL API: the readiness result together with the outcome and latency of each check
+   */
+  private[pekko] def readyReport(): Future[HealthCheckReport] = readinessBackground match {
+    case Some(background) => Future.successful(background.report())
+    case None             => readinessEvaluation()
+  }
+
+  def readyResult(): Future[Either[String, Unit]] = readinessBackground match {
+    case Some(background) => Future.fromTry(background.result())
+    case None             => readinessEvaluation().flatMap(reportResult)
   }
 
   def ready(): Future[Boolean] = readyResult().map(_.isRight)
 
-  def aliveResult(): Future[Either[String, Unit]] = {
-    val result = check(liveness)
-    result.onComplete {
-      case Success(Right(()))    =>
-      case Success(Left(reason)) =>
-        log.info(ManagementLogMarker.livenessCheckFailed, reason)
-      case Failure(e) =>
-        log.warning(ManagementLogMarker.livenessCheckFailed, e.getMessage)
-    }
-    result
+  /**
+   * INTERNAL API: the liveness result together with the outcome and latency of each check
+   */
+  private[pekko] def aliveReport(): Future[HealthCheckReport] = livenessBackground match {
+    case Some(background) => Future.successful(background.report())
+    case None             => livenessEvaluation()
+  }
+
+  def aliveResult(): Future[Either[String, Unit]] = livenessBackground match {
+    case Some(background) => Future.fromTry(background.result())
+    case None             => livenessEvaluation().flatMap(reportResult)
   }
 
   def alive(): Future[Boolean] = aliveResult().map(_.isRight)
@@ -202,32 +343,162 @@ final private[pekko] class HealthChecksImpl(system: ExtendedActorSystem, setting
     Future.fromTry(Try(check())).flatMap(identity)
   }
 
-  private def check(checks: immutable.Seq[HealthCheck]): Future[Either[String, Unit]] = {
-    val spawnedChecks: Seq[Future[Either[String, Unit]]] = checks.map { check =>
-      val checkName = check.getClass.getName
-      // Create a per-check timeout so each check gets its own timer,
-      // avoiding the shared timeout that leaks scheduler resources.
-      val timeout = pekko.pattern.after(settings.checkTimeout, system.scheduler)(
-        Future.failed(CheckTimeoutException(s"Check [$checkName] timed out after ${settings.checkTimeout}"))
-      )
-      Future.firstCompletedOf(
-        Seq(
-          timeout,
-          runCheck(check)
-            .map {
-              case true  => Right(())
-              case false => Left(s"Check [$checkName] not ok")
-            }
-            .recoverWith {
-              case t: Throwable => Future.failed(CheckFailedException(s"Check [$checkName] failed: ${t.getMessage}", t))
-            }))
+  private def check(checks: immutable.Seq[HealthCheck], checkMetrics: CheckMetrics): Future[HealthCheckReport] =
+    if (checks.isEmpty) Future.successful(HealthCheckReport.Empty)
+    else new CheckRun(checks.toVector, checkMetrics).start()
+
+  /**
+   * One evaluation of a set of checks. Each check gets its own timer, which is cancelled as soon as the check
+   * completes. The evaluation completes when all checks are done or when a check fails with an exception, and with
+   * `fail-fast` also on the first check that is not ok, in which case the timers of the pending checks are cancelled.
+   */
+  private final class CheckRun(checks: immutable.IndexedSeq[HealthCheck], checkMetrics: CheckMetrics) {
+    private val startNanos = System.nanoTime()
+    private val outcomes = new AtomicReferenceArray[CheckOutcome](checks.size)
+    private val timers = new AtomicReferenceArray[Cancellable](checks.size)
+    private val remaining = new AtomicInteger(checks.size)
+    private val completed = new AtomicBoolean(false)
+    private val report = Promise[HealthCheckReport]()
+
+    def start(): Future[HealthCheckReport] = {
+      var i = 0
+      while (i < checks.size && !completed.get()) {
+        startCheck(i)
+        i += 1
+      }
+      report.future
+    }
+
+    private def startCheck(index: Int): Unit = {
+      val check = checks(index)
+      val name = checkName(check)
+      val checkStartNanos = System.nanoTime()
+      val result = Promise[Either[String, Unit]]()
+      timers.set(
+        index,
+        system.scheduler.scheduleOnce(settings.checkTimeout) {
+          result.tryFailure(CheckTimeoutException(s"Check [$name] timed out after ${settings.checkTimeout}"))
+        })
+      result.completeWith(
+        runCheck(check)
+          .map {
+            case true  => Right(())
+            case false => Left(s"Check [$name] not ok")
+          }
+          .recoverWith {
+            case t: Throwable => Future.failed(CheckFailedException(s"Check [$name] failed: ${t.getMessage}", t))
+          })
+      result.future.onComplete { r =>
+        timers.get(index).cancel()
+        checkCompleted(index, name, (System.nanoTime() - checkStartNanos).nanos, r)
+      }
+    }
+
+    private def checkCompleted(
+        index: Int,
+        name: String,
+        duration: FiniteDuration,
+        result: Try[Either[String, Unit]]): Unit = {
+      val outcome = result match {
+        case Success(Right(()))    => CheckOutcome(name, CheckOutcome.Ok, duration, None)
+        case Success(Left(reason)) => CheckOutcome(name, CheckOutcome.NotOk, duration, Some(reason))
+        case Failure(e: CheckTimeoutException) =>
+          CheckOutcome(name, CheckOutcome.TimedOut, duration, Some(e.getMessage))
+        case Failure(e) => CheckOutcome(name, CheckOutcome.Failed, duration, Some(e.getMessage))
+      }
+      outcomes.set(index, outcome)
+      checkMetrics.durations(index).recordNanos(duration.toNanos)
+      checkMetrics.outcomes(index)(outcomeStatuses.indexOf(outcome.status)).increment()
+      result match {
+        case Failure(e)                                    => complete(Failure(e))
+        case Success(notOk @ Left(_)) if settings.failFast => complete(Success(notOk))
+        case _                                             =>
+      }
+      if (remaining.decrementAndGet() == 0)
+        complete(Success(firstNotOk()))
+    }
+
+    // same order as the checks so that the reported reason does not depend on timing
+    private def firstNotOk(): Either[String, Unit] = {
+      var i = 0
+      while (i < checks.size) {
+        val outcome = outcomes.get(i)
+        if (outcome.status == CheckOutcome.NotOk) return Left(outcome.message.getOrElse(""))
+        i += 1
+      }
+      Right(())
     }
 
-    Future.sequence(spawnedChecks).map { completedChecks =>
-      completedChecks.collectFirst { case Left(failure) => failure } match {
-        case Some(notOk) => Left(notOk)
-        case None        => Right(())
+    private def complete(result: Try[Either[String, Unit]]): Unit =
+      if (completed.compareAndSet(false, true)) {
+        val elapsed = (System.nanoTime() - startNanos).nanos
+        val checkOutcomes = checks.indices.map { i =>
+          outcomes.get(i) match {
+            case null    => CheckOutcome(checkName(checks(i)), CheckOutcome.Pending, elapsed, None)
+            case outcome => outcome
+          }
+        }
+        if (settings.failFast) {
+          var i = 0
+          while (i < checks.size) {
+            val timer = timers.get(i)
+            if (timer ne null) timer.cancel()
+            i += 1
+          }
+        }
+        report.success(HealthCheckReport(result, checkOutcomes))
       }
+  }
+}
+
+/**
+ * INTERNAL API
+ *
+ * Shares one in-flight evaluation between concurrent callers and reuses the completed result for
+ * `successTtl` or `failureTtl` depending on the outcome.
+ */
+@InternalApi
+final private[pekko] class HealthCheckResultCache(
+    evaluate: () => Future[HealthCheckReport],
+    successTtl: FiniteDuration,
+    failureTtl: FiniteDuration)(implicit ec: ExecutionContext)
+    extends (() => Future[HealthCheckReport]) {
+  import HealthCheckResultCache._
+
+  private val state = new AtomicReference[CachedResult](null)
+
+  @tailrec
+  override def apply(): Future[HealthCheckReport] = {
+    val current = state.get()
+    if ((current ne null) && current.isValid(System.nanoTime())) current.result
+    else {
+      val promise = Promise[HealthCheckReport]()
+      val inFlight = new CachedResult(promise.future, InFlight)
+      if (state.compareAndSet(current, inFlight)) {
+        Future.fromTry(Try(evaluate())).flatten.onComplete { result =>
+          val ttl = result match {
+            case Success(HealthCheckReport(Success(Right(())), _)) => successTtl
+            case _                                                => failureTtl
+          }
+          // publish the expiry before completing so that callers seeing the result also see the expiry
+          state.compareAndSet(inFlight, new CachedResult(promise.future, System.nanoTime() + ttl.toNanos))
+          promise.complete(result)
+        }
+        promise.future
+      } else apply()
     }
   }
 }
+
+/**
+ * INTERNAL API
+ */
+@InternalApi
+private[pekko] object HealthCheckResultCache {
+  private val InFlight = Long.MaxValue
+
+  final private class CachedResult(val result: Future[HealthCheckReport], val expiresAtNanos: Long) {
+    def isValid(nowNanos: Long): Boolean =
+      expiresAtNanos == InFlight || nowNanos - expiresAtNanos < 0
+  }
+}
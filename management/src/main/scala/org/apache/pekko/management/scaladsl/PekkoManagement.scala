@@ -26,20 +26,29 @@ import pekko.actor.{
 import pekko.event.{ LogSource, Logging }
 import pekko.http.javadsl.server.directives.SecurityDirectives.ProvidedCredentials
 import pekko.http.scaladsl.Http
-import pekko.http.scaladsl.model.Uri
+import pekko.http.scaladsl.model.{ HttpRequest, HttpResponse, StatusCodes, Uri }
 import pekko.http.scaladsl.server.Directives.{ authenticateBasicAsync, pathPrefix, rawPathPrefix }
-import pekko.http.scaladsl.server.{ Directive, Directives, PathMatchers, Route }
+import pekko.http.scaladsl.server.{
+  Directive,
+  Directives,
+  ExceptionHandler,
+  PathMatchers,
+  RejectionHandler,
+  Route,
+  RoutingLog
+}
 import pekko.http.scaladsl.server.directives.Credentials
-import pekko.http.scaladsl.settings.ServerSettings
+import pekko.http.scaladsl.settings.{ ParserSettings, RoutingSettings, ServerSettings }
 import pekko.management.{ javadsl, ManagementLogMarker, NamedRouteProvider, PekkoManagementSettings }
+import pekko.stream.{ ActorMaterializerSettings, Materializer, SystemMaterializer }
 import pekko.util.ManifestInfo
 
 import java.util.Optional
-import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicReference }
 
-import scala.annotation.tailrec
+import scala.annotation.{ nowarn, tailrec }
 import scala.collection.immutable
-import scala.concurrent.{ Future, Promise }
+import scala.concurrent.{ ExecutionContext, ExecutionContextExecutor, Future, Promise }
 import scala.jdk.FutureConverters._
 import scala.jdk.OptionConverters._
 import scala.util.{ Failure, Success }
@@ -161,17 +170,22 @@ final class PekkoManagement(implicit private[pekko] val system: ExtendedActorSys
 
     log.info("Binding Pekko Management (HTTP) endpoint to: {}:{}", effectiveBindHostname, effectiveBindPort)
 
-    val combinedRoutes = prepareCombinedRoutes(effectiveProviderSettings)
+    val combinedRoutes = limitConcurrentRequests(prepareCombinedRoutes(effectiveProviderSettings))
 
     val baseBuilder = Http()
       .newServerAt(effectiveBindHostname, effectiveBindPort)
-      .withSettings(ServerSettings(system).withRemoteAddressAttribute(true))
+      .withSettings(serverSettings())
 
     val securedBuilder = effectiveProviderSettings.httpsConnectionContext match {
       case Some(httpsContext) => baseBuilder.enableHttps(httpsContext)
       case None               => baseBuilder
     }
-    val serverFutureBinding = securedBuilder.bind(combinedRoutes)
+    val serverFutureBinding = routeDispatcher match {
+      case Some((executionContext, materializer)) =>
+        securedBuilder.withMaterializer(materializer).bind(handler(combinedRoutes, executionContext, materializer))
+      case None =>
+        securedBuilder.bind(combinedRoutes)
+    }
 
     serverBindingPromise.completeWith(serverFutureBinding).future.flatMap { binding =>
       val boundPort = binding.localAddress.getPort
@@ -184,6 +198,68 @@ final class PekkoManagement(implicit private[pekko] val system: ExtendedActorSys
     }
   }
 
+  private def serverSettings(): ServerSettings = {
+    val defaults = ServerSettings(system).withRemoteAddressAttribute(true)
+    val withMaxConnections =
+      if (settings.Http.MaxConnections > 0) defaults.withMaxConnections(settings.Http.MaxConnections)
+      else defaults
+    if (settings.Http.EnableHttp2)
+      withMaxConnections.withPreviewServerSettings(withMaxConnections.previewServerSettings.withEnableHttp2(true))
+    else withMaxConnections
+  }
+
+  /**
+   * The connection streams and the routes of the management HTTP server run on the configured route dispatcher,
+   * so that probes are answered when the application saturates the default dispatcher.
+   */
+  @nowarn("msg=deprecated") // there is no other way to select the dispatcher of the materializer used by the server
+  private lazy val routeDispatcher: Option[(ExecutionContextExecutor, Materializer)] =
+    settings.Http.RouteDispatcher.map { dispatcherId =>
+      val materializer = SystemMaterializer(system).createAdditionalLegacySystemMaterializer(
+        "pekko-management",
+        ActorMaterializerSettings(system).withDispatcher(dispatcherId))
+      (system.dispatchers.lookup(dispatcherId), materializer)
+    }
+
+  @nowarn("msg=deprecated") // Route.toFunction always completes the response on the default dispatcher
+  private def handler(
+      route: Route,
+      executionContext: ExecutionContextExecutor,
+      materializer: Materializer): HttpRequest => Future[HttpResponse] = {
+    val routingSettings = RoutingSettings(system)
+    val handler = Route.asyncHandler(route)(
+      routingSettings,
+      ParserSettings.forServer(system),
+      materializer,
+      RoutingLog(system.log),
+      executionContext,
+      RejectionHandler.default,
+      ExceptionHandler.default(routingSettings))
+    request => Future.delegate(handler(request))(executionContext)
+  }
+
+  private def limitConcurrentRequests(route: Route): Route = {
+    val maxConcurrentRequests = settings.Http.MaxConcurrentRequests
+    if (maxConcurrentRequests <= 0) route
+    else {
+      val inFlight = new AtomicInteger
+      ctx =>
+        if (inFlight.incrementAndGet() > maxConcurrentRequests) {
+          inFlight.decrementAndGet()
+          ctx.complete(HttpResponse(StatusCodes.ServiceUnavailable,
+            entity = "Too many concurrent requests to the Pekko Management endpoint"))
+        } else {
+          val result =
+            try route(ctx)
+            catch {
+              case NonFatal(e) => Future.failed(e)
+            }
+          result.onComplete(_ => inFlight.decrementAndGet())(ExecutionContext.parasitic)
+          result
+        }
+    }
+  }
+
   private def prepareCombinedRoutes(providerSettings: ManagementRouteProviderSettings): Route = {
     val basePath: Directive[Unit] = {
       val pathPrefixName = settings.Http.BasePath.getOrElse("")
@@ -15,16 +15,20 @@ package org.apache.pekko.management
 
 import org.apache.pekko
 import pekko.actor.ExtendedActorSystem
-import pekko.http.scaladsl.model.{ StatusCodes, Uri }
+import pekko.http.scaladsl.model.{ ContentTypes, StatusCodes, Uri }
 import pekko.http.scaladsl.server._
 import pekko.http.scaladsl.testkit.ScalatestRouteTest
 import pekko.management.scaladsl.{ HealthChecks, ManagementRouteProviderSettings }
 
+import spray.json._
+
 import scala.concurrent.Future
+import scala.concurrent.duration._
+import org.scalatest.concurrent.Eventually
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
-class HealthCheckRoutesSpec extends AnyWordSpec with Matchers with ScalatestRouteTest {
+class HealthCheckRoutesSpec extends AnyWordSpec with Matchers with ScalatestRouteTest with Eventually {
 
   private val eas = system.asInstanceOf[ExtendedActorSystem]
 
@@ -44,6 +48,50 @@ class HealthCheckRoutesSpec extends AnyWordSpec with Matchers with ScalatestRout
     }.routes(ManagementRouteProviderSettings(Uri("http://whocares"), readOnly = false))
   }
 
+  "Health check endpoints with background evaluation" should {
+    "serve the last published snapshot" in {
+      val checks = HealthChecks(
+        eas,
+        new HealthCheckSettings(Nil, Nil, Nil, "startup", "ready", "alive", 1.second)
+          .withBackgroundEvaluation(interval = 1.minute, maxSnapshotAge = Duration.Zero))
+      val route = new HealthCheckRoutes(eas) {
+        override protected val healthChecks: HealthChecks = checks
+      }.routes(ManagementRouteProviderSettings(Uri("http://whocares"), readOnly = false))
+      eventually(timeout(3.seconds)) {
+        Get("/ready") ~> route ~> check {
+          status shouldEqual StatusCodes.OK
+        }
+      }
+    }
+  }
+
+  "Health check endpoints with details" should {
+    "return the outcome of each check" in {
+      val checks = HealthChecks(
+        eas,
+        new HealthCheckSettings(
+          Nil,
+          List(NamedHealthCheck("Ok", "org.apache.pekko.management.Ok")),
+          Nil,
+          "startup",
+          "ready",
+          "alive",
+          1.second))
+      val route = new HealthCheckRoutes(eas) {
+        override protected val healthChecks: HealthChecks = checks
+      }.routes(ManagementRouteProviderSettings(Uri("http://whocares"), readOnly = false))
+      Get("/ready?details") ~> route ~> check {
+        status shouldEqual StatusCodes.OK
+        val json = responseAs[String].parseJson.asJsObject
+        json.fields("status") shouldEqual JsString("ok")
+        val checkJson = json.fields("checks").asInstanceOf[JsArray].elements.head.asJsObject
+        checkJson.fields("name") shouldEqual JsString("org.apache.pekko.management.Ok")
+        checkJson.fields("status") shouldEqual JsString("ok")
+        checkJson.fields.contains("durationMillis") shouldEqual true
+      }
+    }
+  }
+
   tests("/startup", result => testRoute(startupResultValue = result))
   tests("/ready", result => testRoute(readyResultValue = result))
   tests("/alive", result => testRoute(aliveResultValue = result))
@@ -67,6 +115,16 @@ class HealthCheckRoutesSpec extends AnyWordSpec with Matchers with ScalatestRout
           responseAs[String] shouldEqual "Health Check Failed: darn it"
         }
       }
+      "return a JSON body for Left when details are requested" in {
+        Get(s"$endpoint?details") ~> route(Future.successful(Left("com.someclass.MyCheck"))) ~> check {
+          status shouldEqual StatusCodes.InternalServerError
+          contentType shouldEqual ContentTypes.`application/json`
+          responseAs[String].parseJson shouldEqual JsObject(
+            "status" -> JsString("not-ok"),
+            "message" -> JsString("com.someclass.MyCheck"),
+            "checks" -> JsArray())
+        }
+      }
     }
   }
 }
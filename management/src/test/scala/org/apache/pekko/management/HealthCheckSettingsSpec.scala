@@ -14,7 +14,7 @@
 package org.apache.pekko.management
 
 import scala.annotation.nowarn
-import scala.concurrent.duration.DurationInt
+import scala.concurrent.duration.{ Duration, DurationInt }
 
 import com.typesafe.config.ConfigFactory
 import org.scalatest.matchers.should.Matchers
@@ -23,6 +23,8 @@ import org.scalatest.wordspec.AnyWordSpec
 @nowarn("msg=deprecated")
 class HealthCheckSettingsSpec extends AnyWordSpec with Matchers {
 
+  private val defaults = ConfigFactory.defaultReference().getConfig("pekko.management.health-checks")
+
   "Health Check Settings" should {
     "filter out blank fqcn" in {
       HealthCheckSettings(ConfigFactory.parseString("""
@@ -60,6 +62,100 @@ class HealthCheckSettingsSpec extends AnyWordSpec with Matchers {
         """)).livenessChecks shouldEqual Nil
     }
 
+    "read the result cache settings" in {
+      val healthCheckSettings = HealthCheckSettings(ConfigFactory.parseString("""
+         startup-checks {}
+         readiness-checks {}
+         liveness-checks {}
+         startup-path = ""
+         readiness-path = ""
+         liveness-path = ""
+         check-timeout = 1s
+         result-cache {
+           enabled = on
+           success-ttl = 2s
+           failure-ttl = 500ms
+         }
+        """))
+      healthCheckSettings.resultCacheEnabled shouldEqual true
+      healthCheckSettings.resultCacheSuccessTtl shouldEqual 2.seconds
+      healthCheckSettings.resultCacheFailureTtl shouldEqual 500.millis
+    }
+
+    "use the reference settings for the result cache when they are not configured" in {
+      val healthCheckSettings = HealthCheckSettings(ConfigFactory.parseString("""
+         startup-checks {}
+         readiness-checks {}
+         liveness-checks {}
+         startup-path = ""
+         readiness-path = ""
+         liveness-path = ""
+         check-timeout = 1s
+        """))
+      healthCheckSettings.resultCacheEnabled shouldEqual false
+      healthCheckSettings.resultCacheSuccessTtl shouldEqual 1.second
+      healthCheckSettings.resultCacheFailureTtl shouldEqual Duration.Zero
+    }
+
+    "read the background evaluation settings" in {
+      val healthCheckSettings = HealthCheckSettings(ConfigFactory.parseString("""
+         background-evaluation {
+           enabled = on
+           interval = 2s
+           max-snapshot-age = 10s
+         }
+        """).withFallback(defaults))
+      healthCheckSettings.backgroundEvaluationEnabled shouldEqual true
+      healthCheckSettings.backgroundEvaluationInterval shouldEqual 2.seconds
+      healthCheckSettings.maxSnapshotAge shouldEqual 10.seconds
+    }
+
+    "read the fail-fast setting" in {
+      HealthCheckSettings(ConfigFactory.parseString("fail-fast = on").withFallback(defaults)).failFast shouldEqual true
+      HealthCheckSettings(defaults).failFast shouldEqual false
+    }
+
+    "read checks defined as an object together with their limits" in {
+      val healthCheckSettings = HealthCheckSettings(ConfigFactory.parseString("""
+         readiness-checks {
+           plain = "com.example.PlainCheck"
+           database {
+             class = "com.example.DatabaseCheck"
+             max-concurrent-invocations = 2
+             circuit-breaker.max-failures = 3
+           }
+           disabled {
+             class = ""
+           }
+         }
+        """).withFallback(defaults))
+      healthCheckSettings.readinessChecks.toSet shouldEqual Set(
+        NamedHealthCheck("plain", "com.example.PlainCheck"),
+        NamedHealthCheck("database", "com.example.DatabaseCheck"))
+      healthCheckSettings.readinessCheckLimits shouldEqual Map("database" -> HealthCheckLimits(2, 3, 30.seconds))
+      healthCheckSettings.startupCheckLimits shouldBe empty
+      healthCheckSettings.livenessCheckLimits shouldBe empty
+    }
+
+    "keep the limits of checks with the same name in different sets apart" in {
+      val healthCheckSettings = HealthCheckSettings(ConfigFactory.parseString("""
+         readiness-checks {
+           database {
+             class = "com.example.DatabaseCheck"
+             max-concurrent-invocations = 2
+           }
+         }
+         liveness-checks {
+           database {
+             class = "com.example.DatabaseCheck"
+             circuit-breaker.max-failures = 5
+           }
+         }
+        """).withFallback(defaults))
+      healthCheckSettings.readinessCheckLimits shouldEqual Map("database" -> HealthCheckLimits(2, 0, 30.seconds))
+      healthCheckSettings.livenessCheckLimits shouldEqual Map("database" -> HealthCheckLimits(0, 5, 30.seconds))
+    }
+
     "be creatable with primary constructor" in {
       HealthCheckSettings.create(
         startupChecks = java.util.Collections.emptyList(),
@@ -18,17 +18,20 @@ import org.apache.pekko
 import pekko.actor.setup.ActorSystemSetup
 import pekko.actor.{ ActorSystem, BootstrapSetup, ExtendedActorSystem }
 import pekko.management.HealthChecksSpec.{ ctxException, failedCause }
-import pekko.management.internal.{ CheckFailedException, CheckTimeoutException }
+import pekko.management.internal.{ CheckFailedException, CheckOutcome, CheckTimeoutException, HealthChecksImpl }
 import pekko.management.scaladsl.{ HealthChecks, LivenessCheckSetup, ReadinessCheckSetup, StartupCheckSetup }
 import pekko.testkit.TestKit
 import org.scalatest.BeforeAndAfterAll
-import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpecLike
 
+import java.util.concurrent.atomic.AtomicInteger
+
 import scala.collection.{ immutable => im }
 import scala.concurrent.duration._
 import scala.concurrent.{ Await, Future }
+import scala.util.Failure
 import scala.util.control.NoStackTrace
 
 object HealthChecksSpec {
@@ -77,6 +80,39 @@ class Slow(system: ActorSystem) extends (() => Future[Boolean]) {
   }
 }
 
+object Counting {
+  val invocations = new AtomicInteger()
+}
+
+class Counting(system: ActorSystem) extends (() => Future[Boolean]) {
+  override def apply(): Future[Boolean] = {
+    Counting.invocations.incrementAndGet()
+    pekko.pattern.after(50.millis, system.scheduler)(Future.successful(true))(system.dispatcher)
+  }
+}
+
+object CountingFalse {
+  val invocations = new AtomicInteger()
+}
+
+class CountingFalse(system: ActorSystem) extends (() => Future[Boolean]) {
+  override def apply(): Future[Boolean] = {
+    CountingFalse.invocations.incrementAndGet()
+    Future.successful(false)
+  }
+}
+
+object CountingThrows {
+  val invocations = new AtomicInteger()
+}
+
+class CountingThrows(system: ActorSystem) extends (() => Future[Boolean]) {
+  override def apply(): Future[Boolean] = {
+    CountingThrows.invocations.incrementAndGet()
+    Future.failed(failedCause)
+  }
+}
+
 class Naughty() extends (() => Future[Boolean]) {
   override def apply(): Future[Boolean] = {
     throw new RuntimeException("bad")
@@ -95,6 +131,7 @@ class HealthChecksSpec
     with AnyWordSpecLike
     with BeforeAndAfterAll
     with ScalaFutures
+    with Eventually
     with Matchers {
 
   val eas = system.asInstanceOf[ExtendedActorSystem]
@@ -113,6 +150,9 @@ class HealthChecksSpec
   val WrongTypeCheck = NamedHealthCheck("WrongType", "org.apache.pekko.management.WrongType")
   val DoesNotExist = NamedHealthCheck("DoesNotExist", "org.apache.pekko.management.DoesNotExist")
   val CtrExceptionCheck = NamedHealthCheck("CtrExceptionCheck", "org.apache.pekko.management.CtrException")
+  val CountingCheck = NamedHealthCheck("Counting", "org.apache.pekko.management.Counting")
+  val CountingFalseCheck = NamedHealthCheck("CountingFalse", "org.apache.pekko.management.CountingFalse")
+  val CountingThrowsCheck = NamedHealthCheck("CountingThrows", "org.apache.pekko.management.CountingThrows")
 
   def settings(startup: im.Seq[NamedHealthCheck], readiness: im.Seq[NamedHealthCheck],
       liveness: im.Seq[NamedHealthCheck]) =
@@ -269,6 +309,135 @@ class HealthChecksSpec
         HealthChecks(eas, settings(checks, checks, checks))
       }.getCause shouldEqual ctxException
     }
+    "share in-flight evaluations and reuse successful results when the result cache is enabled" in {
+      import system.dispatcher
+      Counting.invocations.set(0)
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(CountingCheck), Nil).withResultCache(successTtl = 1.minute, failureTtl = Duration.Zero))
+      val concurrent = (1 to 10).map(_ => hc.readyResult())
+      Future.sequence(concurrent).futureValue.foreach(_ shouldEqual Right(()))
+      Counting.invocations.get() shouldEqual 1
+      hc.readyResult().futureValue shouldEqual Right(())
+      Counting.invocations.get() shouldEqual 1
+    }
+    "re-evaluate failed results after the failure ttl" in {
+      CountingFalse.invocations.set(0)
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(CountingFalseCheck), Nil)
+          .withResultCache(successTtl = 1.minute, failureTtl = Duration.Zero))
+      hc.readyResult().futureValue shouldEqual Left("Check [org.apache.pekko.management.CountingFalse] not ok")
+      hc.readyResult().futureValue shouldEqual Left("Check [org.apache.pekko.management.CountingFalse] not ok")
+      CountingFalse.invocations.get() shouldEqual 2
+    }
+    "evaluate the checks on every call when the result cache is disabled" in {
+      import system.dispatcher
+      Counting.invocations.set(0)
+      val hc = HealthChecks(eas, settings(Nil, im.Seq(CountingCheck), Nil))
+      Future.sequence((1 to 3).map(_ => hc.readyResult())).futureValue
+      Counting.invocations.get() shouldEqual 3
+    }
+    "serve the last published snapshot when background evaluation is enabled" in {
+      Counting.invocations.set(0)
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(CountingCheck), Nil)
+          .withBackgroundEvaluation(interval = 1.minute, maxSnapshotAge = Duration.Zero))
+      eventually(timeout(3.seconds)) {
+        hc.readyResult().futureValue shouldEqual Right(())
+      }
+      (1 to 10).foreach(_ => hc.readyResult().futureValue shouldEqual Right(()))
+      Counting.invocations.get() shouldEqual 1
+    }
+    "report a failure for checks that have not been evaluated yet in the background" in {
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(SlowCheck), Nil)
+          .withBackgroundEvaluation(interval = 1.minute, maxSnapshotAge = Duration.Zero))
+      hc.readyResult().futureValue shouldEqual Left("readiness checks not evaluated yet")
+    }
+    "stop evaluating the checks in the background" in {
+      Counting.invocations.set(0)
+      val hc = new HealthChecksImpl(
+        eas,
+        settings(Nil, im.Seq(CountingCheck), Nil)
+          .withBackgroundEvaluation(interval = 20.millis, maxSnapshotAge = Duration.Zero))
+      eventually(timeout(3.seconds)) {
+        Counting.invocations.get() should be >= 2
+      }
+      hc.stopBackgroundEvaluation()
+      // an evaluation in progress completes
+      Thread.sleep(200)
+      val evaluated = Counting.invocations.get()
+      Thread.sleep(300)
+      Counting.invocations.get() shouldEqual evaluated
+    }
+    "report a stale background snapshot as failure" in {
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(OkCheck), Nil)
+          .withBackgroundEvaluation(interval = 1.minute, maxSnapshotAge = 200.millis))
+      eventually(timeout(3.seconds)) {
+        hc.readyResult().futureValue shouldEqual Right(())
+      }
+      eventually(timeout(3.seconds)) {
+        hc.readyResult().futureValue.left.getOrElse("") should startWith("readiness checks last evaluated")
+      }
+    }
+    "complete on the first check that is not ok with fail-fast" in {
+      val checks = im.Seq(SlowCheck, FalseCheck)
+      val hc = HealthChecks(eas, settings(checks, checks, checks).withFailFast(true))
+      Await.result(hc.readyResult(), 300.millis) shouldEqual Left("Check [org.apache.pekko.management.False] not ok")
+      Await.result(hc.startupResult(), 300.millis) shouldEqual Left("Check [org.apache.pekko.management.False] not ok")
+      Await.result(hc.aliveResult(), 300.millis) shouldEqual Left("Check [org.apache.pekko.management.False] not ok")
+    }
+    "wait for all checks without fail-fast" in {
+      val checks = im.Seq(SlowCheck, FalseCheck)
+      val hc = HealthChecks(eas, settings(checks, checks, checks))
+      Await.result(hc.readyResult().failed, 1.second) shouldEqual CheckTimeoutException(
+        "Check [org.apache.pekko.management.Slow] timed out after 500 milliseconds")
+    }
+    "report the outcome and latency of each check" in {
+      val hc = new HealthChecksImpl(eas, settings(Nil, im.Seq(OkCheck, FalseCheck, SlowCheck), Nil))
+      val report = Await.result(hc.readyReport(), 1.second)
+      report.result shouldEqual Failure(
+        CheckTimeoutException("Check [org.apache.pekko.management.Slow] timed out after 500 milliseconds"))
+      report.checks.map(c => c.name -> c.status) shouldEqual Seq(
+        "org.apache.pekko.management.Ok" -> CheckOutcome.Ok,
+        "org.apache.pekko.management.False" -> CheckOutcome.NotOk,
+        "org.apache.pekko.management.Slow" -> CheckOutcome.TimedOut)
+      report.checks(2).duration should be >= 500.millis
+    }
+    "report checks that did not complete before a fail-fast result as pending" in {
+      val hc =
+        new HealthChecksImpl(eas, settings(Nil, im.Seq(SlowCheck, FalseCheck), Nil).withFailFast(true))
+      val report = Await.result(hc.readyReport(), 300.millis)
+      report.checks.map(_.status) shouldEqual Seq(CheckOutcome.Pending, CheckOutcome.NotOk)
+    }
+    "limit concurrent invocations of a check" in {
+      import system.dispatcher
+      Counting.invocations.set(0)
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(CountingCheck), Nil)
+          .withReadinessCheckLimits("Counting", HealthCheckLimits(1, 0, 30.seconds)))
+      Future.sequence((1 to 5).map(_ => hc.readyResult())).futureValue.foreach(_ shouldEqual Right(()))
+      Counting.invocations.get() shouldEqual 1
+    }
+    "answer with the last known result while the circuit breaker is open" in {
+      CountingThrows.invocations.set(0)
+      val hc = HealthChecks(
+        eas,
+        settings(Nil, im.Seq(CountingThrowsCheck), Nil)
+          .withReadinessCheckLimits("CountingThrows", HealthCheckLimits(0, 1, 1.minute)))
+      val expected =
+        CheckFailedException("Check [org.apache.pekko.management.CountingThrows] failed: null", failedCause)
+      hc.readyResult().failed.futureValue shouldEqual expected
+      hc.readyResult().failed.futureValue shouldEqual expected
+      hc.readyResult().failed.futureValue shouldEqual expected
+      CountingThrows.invocations.get() shouldEqual 1
+    }
     "be possible to define via ActorSystem Setup" in {
       val startupSetup = StartupCheckSetup(system => List(new Ok(system), new False(system)))
       val readinessSetup = ReadinessCheckSetup(system => List(new Ok(system), new False(system)))
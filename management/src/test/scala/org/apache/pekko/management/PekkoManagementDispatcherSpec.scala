@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * license agreements; and to You under the Apache License, version 2.0:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * This file is part of the Apache Pekko project, which was derived from Akka.
+ */
+
+package org.apache.pekko.management
+
+import java.net.URI
+import java.net.http.{ HttpClient, HttpRequest, HttpResponse, HttpTimeoutException }
+import java.time.{ Duration => JDuration }
+import java.util.concurrent.{ CountDownLatch, Semaphore, TimeUnit }
+import java.util.concurrent.atomic.AtomicBoolean
+
+import scala.concurrent.{ Await, Promise }
+import scala.concurrent.duration._
+import scala.jdk.FutureConverters._
+
+import org.apache.pekko
+import pekko.actor.ActorSystem
+import pekko.http.scaladsl.server.{ Directives, Route }
+import pekko.management.scaladsl.{ ManagementRouteProvider, ManagementRouteProviderSettings, PekkoManagement }
+import pekko.testkit.TestKit
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import com.typesafe.config.ConfigFactory
+
+object PekkoManagementDispatcherSpec {
+  @volatile var slowResponse: Promise[String] = Promise()
+}
+
+class PekkoManagementDispatcherSpecSlowRoutes extends ManagementRouteProvider with Directives {
+  override def routes(settings: ManagementRouteProviderSettings): Route =
+    path("slow") {
+      get {
+        complete(PekkoManagementDispatcherSpec.slowResponse.future)
+      }
+    }
+}
+
+class PekkoManagementDispatcherSpec extends AnyWordSpec with Matchers with ScalaFutures with Eventually {
+
+  // the HTTP client runs on its own threads, so that it is not affected by the flooded or blocked dispatcher
+  private val client = HttpClient.newBuilder().connectTimeout(JDuration.ofSeconds(3)).build()
+
+  private def get(uri: String, timeout: FiniteDuration = 10.seconds): HttpResponse[String] =
+    client.send(
+      HttpRequest.newBuilder(URI.create(uri)).timeout(JDuration.ofMillis(timeout.toMillis)).build(),
+      HttpResponse.BodyHandlers.ofString())
+
+  private def withManagement(config: String)(block: (ActorSystem, String) => Unit): Unit = {
+    val system = ActorSystem(
+      "PekkoManagementDispatcherSpec",
+      ConfigFactory.parseString(s"""
+          pekko.management.http.hostname = "127.0.0.1"
+          pekko.management.http.port = 0
+          $config
+        """).withFallback(ConfigFactory.load()))
+    try {
+      val management = PekkoManagement(system)
+      val uri = Await.result(management.start(), 10.seconds)
+      block(system, uri.toString)
+      Await.result(management.stop(), 10.seconds)
+    } finally TestKit.shutdownActorSystem(system)
+  }
+
+  private val defaultDispatcherThreads = 4
+
+  private val smallDefaultDispatcher = s"""
+      pekko.actor.default-dispatcher.fork-join-executor {
+        parallelism-min = $defaultDispatcherThreads
+        parallelism-max = $defaultDispatcherThreads
+      }
+    """
+
+  /** Keeps every thread of the default dispatcher blocked while `block` runs. */
+  private def withBlockedDefaultDispatcher(system: ActorSystem)(block: => Unit): Unit = {
+    val blocked = new CountDownLatch(defaultDispatcherThreads)
+    val release = new CountDownLatch(1)
+    (1 to defaultDispatcherThreads).foreach { _ =>
+      system.dispatcher.execute { () =>
+        blocked.countDown()
+        release.await()
+      }
+    }
+    try {
+      blocked.await(10, TimeUnit.SECONDS) shouldEqual true
+      block
+    } finally release.countDown()
+  }
+
+  /**
+   * Keeps every thread of the default dispatcher busy with CPU work while `block` runs, with as many tasks queued
+   * behind them.
+   */
+  private def withFloodedDefaultDispatcher[T](system: ActorSystem)(block: => T): T = {
+    val flooding = new AtomicBoolean(true)
+    val outstanding = new Semaphore(2 * defaultDispatcherThreads)
+    val flooder = new Thread(() =>
+      while (flooding.get()) {
+        outstanding.acquire()
+        system.dispatcher.execute { () =>
+          try {
+            val end = System.nanoTime() + 20.millis.toNanos
+            while (System.nanoTime() < end) {}
+          } finally outstanding.release()
+        }
+      })
+    flooder.setDaemon(true)
+    flooder.start()
+    try block
+    finally {
+      flooding.set(false)
+      flooder.join()
+    }
+  }
+
+  "Pekko Management HTTP server" should {
+
+    "answer probes within a bounded p99 latency while the default dispatcher is flooded" in {
+      withManagement(smallDefaultDispatcher + """
+          pekko.management.http.route-dispatcher = "pekko.management.dispatcher"
+        """) { (system, uri) =>
+        get(s"$uri/alive").statusCode() shouldEqual 200 // warm up
+
+        val latencies = withFloodedDefaultDispatcher(system) {
+          (1 to 200).map { _ =>
+            val start = System.nanoTime()
+            get(s"$uri/alive").statusCode() shouldEqual 200
+            (System.nanoTime() - start).nanos
+          }
+        }
+
+        val sorted = latencies.sorted
+        val p50 = sorted(sorted.size / 2)
+        val p99 = sorted((sorted.size * 99) / 100 - 1)
+        info(s"probe latency p50 [${p50.toMillis} ms], p99 [${p99.toMillis} ms], max [${sorted.last.toMillis} ms]")
+        p99 should be < 500.millis
+      }
+    }
+
+    "answer probes while every thread of the default dispatcher is blocked" in {
+      withManagement(smallDefaultDispatcher + """
+          pekko.management.http.route-dispatcher = "pekko.management.dispatcher"
+        """) { (system, uri) =>
+        get(s"$uri/alive").statusCode() shouldEqual 200 // warm up
+
+        withBlockedDefaultDispatcher(system) {
+          (1 to 20).foreach { _ =>
+            get(s"$uri/alive", timeout = 2.seconds).statusCode() shouldEqual 200
+          }
+        }
+      }
+    }
+
+    "not answer probes while every thread of the default dispatcher is blocked, without a route dispatcher" in {
+      withManagement(smallDefaultDispatcher) { (system, uri) =>
+        get(s"$uri/alive").statusCode() shouldEqual 200 // warm up
+
+        withBlockedDefaultDispatcher(system) {
+          an[HttpTimeoutException] should be thrownBy get(s"$uri/alive", timeout = 2.seconds)
+        }
+        get(s"$uri/alive").statusCode() shouldEqual 200
+      }
+    }
+
+    "reject requests over max-concurrent-requests with 503" in {
+      PekkoManagementDispatcherSpec.slowResponse = Promise()
+      withManagement("""
+          pekko.management.http.max-concurrent-requests = 1
+          pekko.management.http.routes {
+            slow = "org.apache.pekko.management.PekkoManagementDispatcherSpecSlowRoutes"
+          }
+        """) { (_, uri) =>
+        val first = client
+          .sendAsync(HttpRequest.newBuilder(URI.create(s"$uri/slow")).build(), HttpResponse.BodyHandlers.ofString())
+          .asScala
+
+        eventually {
+          get(s"$uri/alive").statusCode() shouldEqual 503
+        }
+        first.isCompleted shouldEqual false
+
+        PekkoManagementDispatcherSpec.slowResponse.success("done")
+        first.futureValue(timeout(5.seconds)).body() shouldEqual "done"
+        get(s"$uri/alive").statusCode() shouldEqual 200
+      }
+    }
+
+    "serve HTTP/2 when enabled" in {
+      withManagement("""
+          pekko.management.http.enable-http2 = on
+        """) { (_, uri) =>
+        val http2Client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build()
+        val response = http2Client.send(
+          HttpRequest.newBuilder(URI.create(s"$uri/alive")).build(),
+          HttpResponse.BodyHandlers.ofString())
+        response.statusCode() shouldEqual 200
+        response.version() shouldEqual HttpClient.Version.HTTP_2
+      }
+    }
+  }
+}
@@ -62,6 +62,12 @@ object Dependencies {
     "org.apache.pekko" %% "pekko-http-spray-json" % pekkoHttpVersion,
     "org.scalatest" %% "scalatest" % scalaTestVersion % Test)
 
+  val discoveryCaching = Seq(
+    "org.apache.pekko" %% "pekko-actor" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-discovery" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-testkit" % pekkoVersion % Test,
+    "org.scalatest" %% "scalatest" % scalaTestVersion % Test)
+
   val discoveryMarathonApi = Seq(
     "org.apache.pekko" %% "pekko-actor" % pekkoVersion,
     "org.apache.pekko" %% "pekko-discovery" % pekkoVersion,
@@ -83,6 +89,7 @@ object Dependencies {
     "org.apache.pekko" %% "pekko-stream" % pekkoVersion,
     "org.apache.pekko" %% "pekko-http" % pekkoHttpVersion,
     "org.apache.pekko" %% "pekko-http-spray-json" % pekkoHttpVersion,
+    ("software.amazon.awssdk" % "ec2" % "2.54.1").exclude("software.amazon.awssdk", "apache-client"),
     ("software.amazon.awssdk" % "ecs" % "2.54.1").exclude("software.amazon.awssdk", "apache-client"),
     "org.scalatest" %% "scalatest" % scalaTestVersion % Test) ++ jacksonDatabind // aws-java-sdk depends on insecure version of jackson
 
@@ -100,6 +107,12 @@ object Dependencies {
     "org.apache.pekko" %% "pekko-pki" % pekkoVersion,
     "org.scalatest" %% "scalatest" % scalaTestVersion % Test)
 
+  val kubernetesApiClient = Seq(
+    "org.apache.pekko" %% "pekko-actor" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-stream" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-http" % pekkoHttpVersion,
+    "org.scalatest" %% "scalatest" % scalaTestVersion % Test)
+
   val managementLoglevelsLogback = Seq(
     "org.apache.pekko" %% "pekko-actor" % pekkoVersion,
     "org.apache.pekko" %% "pekko-slf4j" % pekkoVersion,
@@ -126,6 +139,18 @@ object Dependencies {
     "org.apache.pekko" %% "pekko-testkit" % pekkoVersion % Test,
     "org.apache.pekko" %% "pekko-http-testkit" % pekkoHttpVersion % Test)
 
+  val managementMetrics = Seq(
+    "org.apache.pekko" %% "pekko-actor" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-stream" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-http" % pekkoHttpVersion,
+    "org.scalatest" %% "scalatest" % scalaTestVersion % Test,
+    "org.apache.pekko" %% "pekko-testkit" % pekkoVersion % Test,
+    "org.apache.pekko" %% "pekko-http-testkit" % pekkoHttpVersion % Test)
+
+  val managementMetricsRegistry = Seq(
+    "org.apache.pekko" %% "pekko-actor" % pekkoVersion,
+    "org.scalatest" %% "scalatest" % scalaTestVersion % Test)
+
   val managementClusterHttp = Seq(
     "org.apache.pekko" %% "pekko-cluster" % pekkoVersion,
     "org.apache.pekko" %% "pekko-cluster-sharding" % pekkoVersion,
@@ -167,6 +192,13 @@ object Dependencies {
     "org.apache.pekko" %% "pekko-testkit" % pekkoVersion % Test) ++
     wireMockDependencies
 
+  val kubernetesApiTestkit = Seq(
+    "org.apache.pekko" %% "pekko-stream" % pekkoVersion,
+    "org.apache.pekko" %% "pekko-http" % pekkoHttpVersion,
+    "org.apache.pekko" %% "pekko-http-spray-json" % pekkoHttpVersion,
+    "org.apache.pekko" %% "pekko-testkit" % pekkoVersion % Test,
+    "org.scalatest" %% "scalatest" % scalaTestVersion % Test)
+
   val rollingUpdateKubernetesIntTest = Seq(
     "org.scalatest" %% "scalatest" % scalaTestVersion,
     "org.apache.pekko" %% "pekko-testkit" % pekkoVersion % Test)
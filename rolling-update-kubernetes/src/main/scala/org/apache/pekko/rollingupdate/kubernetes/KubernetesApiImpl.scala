@@ -14,11 +14,9 @@
 package org.apache.pekko.rollingupdate.kubernetes
 
 import java.util.Locale
-import java.nio.charset.StandardCharsets
 import scala.collection.immutable
 import scala.concurrent.ExecutionContext
 import scala.concurrent.Future
-import scala.concurrent.Promise
 import scala.util.control.NonFatal
 
 import org.apache.pekko
@@ -28,8 +26,6 @@ import pekko.annotation.InternalApi
 import pekko.dispatch.Dispatchers.DefaultBlockingDispatcherId
 import pekko.event.Logging
 import pekko.event.LoggingAdapter
-import pekko.http.scaladsl.ConnectionContext
-import pekko.http.scaladsl.Http
 import pekko.http.scaladsl.HttpsConnectionContext
 import pekko.http.scaladsl.marshalling.Marshal
 import pekko.http.scaladsl.model.HttpEntity
@@ -43,7 +39,7 @@ import pekko.http.scaladsl.model.headers.Authorization
 import pekko.http.scaladsl.model.headers.OAuth2BearerToken
 import pekko.http.scaladsl.unmarshalling.Unmarshal
 
-import pekko.pki.kubernetes.PemManagersProvider
+import pekko.kubernetes.client.KubernetesApiClient
 import pekko.util.ByteString
 
 import java.nio.file.Files
@@ -65,10 +61,19 @@ import java.nio.file.Paths
 
   private implicit val sys: ActorSystem = system
   private val log = Logging(system, classOf[KubernetesApiImpl])
-  private val http = Http()(system)
+  private val client = KubernetesApiClient(system)
 
   private val scheme = if (settings.secure) "https" else "http"
-  private lazy val headers = if (settings.secure) immutable.Seq(Authorization(OAuth2BearerToken(apiToken))) else Nil
+  // the token is rotated by Kubernetes, the file is only read again when it changed
+  private def headers: immutable.Seq[HttpHeader] =
+    if (settings.secure) {
+      val token =
+        try client.readFile(settings.apiTokenPath)
+        catch {
+          case NonFatal(_) => apiToken
+        }
+      immutable.Seq(Authorization(OAuth2BearerToken(token)))
+    } else Nil
 
   log.debug("kubernetes access namespace: {}. Secure: {}", namespace, settings.secure)
 
@@ -267,34 +272,13 @@ PUTs must contain resourceVersions. Response:
     HttpRequest(uri = uri, headers = headers, method = method, entity = entity)
   }
 
-  private def makeRequest(request: HttpRequest, timeoutMsg: String): Future[HttpResponse] = {
-    val response = {
-      clientHttpsConnectionContext match {
-        case None                         => http.singleRequest(request)
-        case Some(httpsConnectionContext) => http.singleRequest(request, httpsConnectionContext)
-      }
-    }
-
-    // Use a Promise-based pattern instead of Future.firstCompletedOf so that when the
-    // timeout fires first, we properly discard the in-flight response entity to release
-    // the HTTP connection back to the pool.
-    val promise = Promise[HttpResponse]()
-    val timeoutCancellable = system.scheduler.scheduleOnce(settings.apiServiceRequestTimeout) {
-      promise.tryFailure(new PodCostTimeoutException(s"$timeoutMsg. Is the API server up?"))
-    }
-    response.onComplete {
-      case scala.util.Success(resp) =>
-        timeoutCancellable.cancel()
-        if (!promise.trySuccess(resp)) {
-          // Timeout already fired — discard the response to release the connection
-          resp.discardEntityBytes()(pekko.stream.Materializer.matFromSystem(system))
-        }
-      case scala.util.Failure(ex) =>
-        timeoutCancellable.cancel()
-        promise.tryFailure(ex)
-    }(system.dispatcher)
-    promise.future.flatMap(_.toStrict(settings.bodyReadTimeout))
-  }
+  private def makeRequest(request: HttpRequest, timeoutMsg: String): Future[HttpResponse] =
+    client
+      .withTimeout(
+        settings.apiServiceRequestTimeout,
+        new PodCostTimeoutException(s"$timeoutMsg. Is the API server up?"))(
+        client.singleRequest(request, clientHttpsConnectionContext))
+      .flatMap(_.toStrict(settings.bodyReadTimeout))
 
   private def toPodCostResource(cr: PodCostCustomResource) = {
     log.debug("Converting {}", cr)
@@ -448,7 +432,7 @@ PUTs must contain resourceVersions. Response:
           .orElse(readConfigVarFromFilesystem(k8sSettings.namespacePath, "namespace", log))
           .getOrElse("default")
       }
-      httpsContext <- Future(clientHttpsConnectionContext(k8sSettings))
+      httpsContext <- Future(clientHttpsConnectionContext(k8sSettings, KubernetesApiClient(system)))
     } yield {
       new KubernetesApiImpl(system, k8sSettings, podNamespace, apiToken, httpsContext)
     }
@@ -457,11 +441,12 @@ PUTs must contain resourceVersions. Response:
   /**
    * This uses blocking IO, and so should only be used to read configuration at startup from blocking dispatcher.
    */
-  private def readConfigVarFromFilesystem(path: String, name: String, log: LoggingAdapter): Option[String] = {
+  private def readConfigVarFromFilesystem(path: String, name: String, log: LoggingAdapter)(
+      implicit system: ActorSystem): Option[String] = {
     val file = Paths.get(path)
     if (Files.exists(file)) {
       try {
-        Some(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+        Some(KubernetesApiClient(system).readFile(path))
       } catch {
         case NonFatal(e) =>
           log.error(e, "Error reading {} from {}", name, path)
@@ -476,10 +461,11 @@ PUTs must contain resourceVersions. Response:
   /**
    * This uses blocking IO, and so should only be used at startup from blocking dispatcher.
    */
-  private def clientHttpsConnectionContext(k8sSettings: KubernetesSettings): Option[HttpsConnectionContext] = {
+  private def clientHttpsConnectionContext(
+      k8sSettings: KubernetesSettings,
+      client: KubernetesApiClient): Option[HttpsConnectionContext] = {
     if (k8sSettings.secure) {
-      val sslContext = PemManagersProvider.createSslContext(k8sSettings.apiCaPath, "TLSv1.2")
-      Some(ConnectionContext.httpsClient(sslContext))
+      Some(client.httpsConnectionContext(k8sSettings.apiCaPath, "TLSv1.2"))
     } else
       None
   }
@@ -39,6 +39,7 @@ import pekko.cluster.Member
 import pekko.cluster.UniqueAddress
 import pekko.event.Logging.InfoLevel
 import pekko.event.Logging.WarningLevel
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.pattern.pipe
 import pekko.rollingupdate.OlderCostsMore
 import com.typesafe.config.Config
@@ -65,6 +66,17 @@ import com.typesafe.config.Config
 
   private val cluster = Cluster(context.system)
 
+  private val updatedCounter = updateCounter("updated")
+  private val retriedCounter = updateCounter("retried")
+  private val gaveUpCounter = updateCounter("gave-up")
+
+  private def updateCounter(outcome: String): ManagementMetrics.Counter =
+    ManagementMetrics(context.system).counter(
+      "pekko_management_pod_deletion_cost_updates",
+      "The updates of the pod deletion cost, by outcome: updated, retried or gave-up",
+      "resource" -> (if (crName.isDefined) "pod-cost" else "annotation"),
+      "outcome" -> outcome)
+
   Cluster(context.system).subscribe(context.self, classOf[ClusterEvent.MemberUp], classOf[ClusterEvent.MemberRemoved])
 
   private implicit val memberAgeOrdering: Ordering[Member] = Member.ageOrdering
@@ -84,12 +96,14 @@ import com.typesafe.config.Config
       updateIfNewCost(deletionCost, membersByAgeDesc - m, retryNr)
 
     case PodAnnotated =>
+      updatedCounter.increment()
       log.debug("{} updated successfully to [{}]", resourceLogDescription, deletionCost)
       // cancelling an eventual retry in case the operation succeeded in the meantime
       timers.cancel(RetryTimerId)
       context.become(idle(deletionCost, membersByAgeDesc, 0))
 
     case ScheduleRetry(ex) =>
+      retriedCounter.increment()
       val ll = if (retryNr < 3) InfoLevel else WarningLevel
       log.log(
         ll,
@@ -105,6 +119,7 @@ import com.typesafe.config.Config
       context.become(underRetryBackoff(membersByAgeDesc, retryNr))
 
     case GiveUp(er: String) =>
+      gaveUpCounter.increment()
       log.error(
         "There was a client error when trying to set {}. " +
         "Not retrying, check configuration. Error: {}",
@@ -28,6 +28,7 @@ import pekko.cluster.ClusterEvent.MemberUp
 import pekko.cluster.Member
 import pekko.cluster.MemberStatus
 import pekko.cluster.UniqueAddress
+import pekko.management.metrics.internal.ManagementMetrics
 import pekko.testkit.EventFilter
 import pekko.testkit.ImplicitSender
 import pekko.testkit.TestKit
@@ -168,6 +169,12 @@ class PodDeletionCostAnnotatorCrSpec
         api.getPodCosts() should have size 1
         api.getPodCosts().head.podName shouldEqual podName1
       }
+      val updates = ManagementMetrics(system).counter(
+        "pekko_management_pod_deletion_cost_updates",
+        "The updates of the pod deletion cost, by outcome: updated, retried or gave-up",
+        "resource" -> "pod-cost",
+        "outcome" -> "updated")
+      eventually(updates.value should be >= 1L)
     }
 
     "update pod cost for second node in the cluster" in {